@@ -5,8 +5,12 @@ import com.example.cartservice.dto.response.ApiResponse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 
+import java.util.List;
+
 @FeignClient(name = "product-service", url = "${product.service.url:http://localhost:8081}")
 public interface ProductServiceClient {
 
@@ -15,4 +19,11 @@ public interface ProductServiceClient {
             @PathVariable("productId") String productId,
             @RequestHeader("Authorization") String authorization
     );
+
+    // Lấy nhiều sản phẩm trong 1 request, kết quả theo đúng thứ tự productIds
+    @PostMapping("/api/v1/products/batch")
+    ApiResponse<List<ProductDetailRequest>> getProductsByIds(
+            @RequestBody List<Long> productIds,
+            @RequestHeader("Authorization") String authorization
+    );
 }
@@ -24,6 +24,7 @@
     import org.springframework.stereotype.Service;
     import org.springframework.transaction.annotation.Transactional;
 
+    import java.util.HashMap;
     import java.util.List;
     import java.util.Map;
     import java.util.Optional;
@@ -72,7 +73,58 @@
                 );
             }
 
-            // Giữ nguyên logic fix imageUrl (nếu bạn đang có biến productServicePublicUrl)
+            adjustImageUrl(productDetail);
+            return productDetail;
+
+        } catch (FeignException e) {
+            log.error("FeignException when calling ProductService: {}", e.getMessage(), e);
+            throw new CartException(
+                    ErrorCodeCart.PRODUCT_NOT_AVAILABLE,
+                    "Could not retrieve product details for ID: " + productId
+            );
+        }
+    }
+
+        // Lấy chi tiết toàn bộ sản phẩm trong giỏ bằng 1 lần gọi product-service
+        private Map<String, ProductDetailRequest> fetchProductDetailsBatchOrFail(List<String> productIds, String token) {
+            List<Long> ids;
+            try {
+                ids = productIds.stream().distinct().map(Long::valueOf).collect(Collectors.toList());
+            } catch (NumberFormatException e) {
+                throw new CartException(ErrorCodeCart.PRODUCT_NOT_AVAILABLE, "Invalid product ID in cart: " + productIds);
+            }
+            try {
+                ApiResponse<List<ProductDetailRequest>> response = productServiceClient.getProductsByIds(ids, token);
+                List<ProductDetailRequest> details =
+                        (response != null && response.getResult() != null) ? response.getResult() : List.of();
+
+                Map<String, ProductDetailRequest> detailsById = new HashMap<>();
+                for (ProductDetailRequest detail : details) {
+                    if (detail != null && detail.getId() != null) {
+                        adjustImageUrl(detail);
+                        detailsById.put(String.valueOf(detail.getId()), detail);
+                    }
+                }
+                for (String productId : productIds) {
+                    if (!detailsById.containsKey(productId)) {
+                        throw new CartException(
+                                ErrorCodeCart.PRODUCT_NOT_AVAILABLE,
+                                "Product details are invalid for ID: " + productId
+                        );
+                    }
+                }
+                return detailsById;
+            } catch (FeignException e) {
+                log.error("FeignException when calling ProductService batch: {}", e.getMessage(), e);
+                throw new CartException(
+                        ErrorCodeCart.PRODUCT_NOT_AVAILABLE,
+                        "Could not retrieve product details for IDs: " + productIds
+                );
+            }
+        }
+
+        // Giữ nguyên logic fix imageUrl (nếu bạn đang có biến productServicePublicUrl)
+        private void adjustImageUrl(ProductDetailRequest productDetail) {
             if (productDetail.getImageUrl() != null
                     && productDetail.getImageUrl().contains("productservice:8081")) {
 
@@ -83,26 +135,18 @@
                 log.info("Adjusted imageUrl from {} to {}", productDetail.getImageUrl(), newImageUrl);
                 productDetail.setImageUrl(newImageUrl);
             }
-
-            return productDetail;
-
-        } catch (FeignException e) {
-            log.error("FeignException when calling ProductService: {}", e.getMessage(), e);
-            throw new CartException(
-                    ErrorCodeCart.PRODUCT_NOT_AVAILABLE,
-                    "Could not retrieve product details for ID: " + productId
-            );
         }
-    }
 
         private CartResponse mapCartToEnrichedDto(Cart cart, String token) {
             CartResponse cartDto = cartMapper.toCartResponse(cart);
             if (cartDto.getItems() != null && !cartDto.getItems().isEmpty()) {
+                Map<String, ProductDetailRequest> productDetails = fetchProductDetailsBatchOrFail(
+                        cart.getItems().stream().map(CartItem::getProductId).collect(Collectors.toList()),
+                        token
+                );
                 List<CartItemResponse> enrichedItems = cart.getItems().stream()
-                    .map(cartItemEntity -> {
-                        ProductDetailRequest productDetail = fetchProductDetailsOrFail(cartItemEntity.getProductId(), token);
-                        return cartItemMapper.toCartItemResponse(cartItemEntity, productDetail);
-                    })
+                    .map(cartItemEntity -> cartItemMapper.toCartItemResponse(
+                            cartItemEntity, productDetails.get(cartItemEntity.getProductId())))
                     .collect(Collectors.toList());
                 cartDto.setItems(enrichedItems);
             }
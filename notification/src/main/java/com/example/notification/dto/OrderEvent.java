@@ -1,11 +1,13 @@
 package com.example.notification.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Data;
 
+// Message cũ (gửi trước khi bỏ authorizationHeader) vẫn đọc được
 @Data
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class OrderEvent {
     private Long id;
     private String userId;
     private String status;
-    private String authorizationHeader;
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import com.example.notification.dto.UserResponse;
 import com.example.notification.dto.response.ApiResponRequest;
 import com.example.notification.entity.Notification;
 import com.example.notification.repository.NotificationRepository;
+import com.example.notification.security.ServiceTokenProvider;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
@@ -25,6 +26,7 @@ public class NotificationService {
     private final NotificationRepository notificationRepository;
     private final FirebaseMessaging firebaseMessaging;
     private final UserServiceClient userServiceClient;
+    private final ServiceTokenProvider serviceTokenProvider;
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
 
     // Xử lý thông báo từ đơn hàng
@@ -34,13 +36,10 @@ public class NotificationService {
             logger.error("OrderEvent userId is null: {}", event);
             return;
         }
-        if (event.getAuthorizationHeader() == null) {
-            logger.error("OrderEvent authorizationHeader is null: {}", event);
-            return;
-        }
         try {
             logger.debug("Calling UserService for userId: {}", event.getUserId());
-            ApiResponRequest<UserResponse> response = userServiceClient.getUserById(event.getUserId(), event.getAuthorizationHeader());
+            // Event không mang token: dùng token service của chính notification-service
+            ApiResponRequest<UserResponse> response = userServiceClient.getUserById(event.getUserId(), serviceTokenProvider.bearer());
             if (response.getResult() == null || response.getResult().getId() == null) {
                 logger.error("UserResponse or id is null for userId: {}", event.getUserId());
                 return;
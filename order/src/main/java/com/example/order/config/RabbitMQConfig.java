@@ -1,5 +1,6 @@
 package com.example.order.config;
 
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -9,9 +10,19 @@ import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class RabbitMQConfig {
+
+    public static final String ORDER_DELIVERED_EXCHANGE = "order.delivered";
+    public static final String ORDER_NOTIFICATIONS_QUEUE = "order_notifications";
+
     @Bean
     public Queue orderQueue() {
-        return new Queue("order_notifications", true);
+        return new Queue(ORDER_NOTIFICATIONS_QUEUE, true);
+    }
+
+    // Fanout: mỗi service quan tâm (product-service, ...) tự bind hàng đợi riêng
+    @Bean
+    public FanoutExchange orderDeliveredExchange() {
+        return new FanoutExchange(ORDER_DELIVERED_EXCHANGE, true, false);
     }
 
     @Bean
@@ -6,6 +6,7 @@ import java.util.List;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
+import com.example.order.security.ServiceTokenProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -78,7 +79,8 @@ public class SecurityConfig {
                 // Nếu cho admin: .requestMatchers(HttpMethod.GET, API_ORDERS_BASE_PATH + "/user/{userId}").hasRole("ADMIN")
                 // Nếu cho user xem của chính mình, sẽ dùng @PreAuthorize ở controller để so sánh userId trong path với userId trong token.
                 .requestMatchers(HttpMethod.GET, API_ORDERS_BASE_PATH + "/user/{userId}").authenticated()
-                .requestMatchers("/api/v1/internal/orders/has-purchased").permitAll()
+                // API nội bộ (lịch sử mua của bất kỳ user): chỉ service khác gọi, bằng token service có scope SERVICE
+                .requestMatchers("/api/v1/internal/**").hasAuthority(ServiceTokenProvider.SERVICE_SCOPE) // converter bên dưới không thêm tiền tố
                 .anyRequest().authenticated()
             )
             .oauth2ResourceServer(oauth2 -> oauth2
@@ -1,6 +1,8 @@
 package com.example.order.controller;
 
 import com.example.order.dto.request.CreateOrderRequest;
+import com.example.order.dto.response.CheckoutStatusResponse;
+import com.example.order.dto.response.OrderHistoryPageResponse;
 // Sử dụng OrderResponse từ package dto.response
 import com.example.order.dto.response.OrderResponse;
 import com.example.order.entity.OrderStatus;
@@ -8,19 +10,23 @@ import com.example.order.exception.ErrorCodeOrder;
 import com.example.order.exception.OrderException;
 import com.example.order.service.OrderQueryService;
 import com.example.order.service.OrderService;
+import com.example.order.service.checkout.CheckoutSagaOrchestrator;
+import com.example.order.service.idempotency.OrderIdempotency;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
 
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 // import org.springframework.security.oauth2.jwt.Jwt; // Nếu cần truy cập trực tiếp vào JWT claims
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +38,8 @@ public class OrderController {
 
     private final OrderService orderService;
     private final OrderQueryService orderQueryService;
+    private final CheckoutSagaOrchestrator checkoutSagaOrchestrator;
+    private final OrderIdempotency orderIdempotency;
     // Giả sử bạn có OrderSecurityService được inject hoặc có sẵn như một bean
     // private final OrderSecurityService orderSecurityService; // Nếu không dùng @beanName trong @PreAuthorize
 
@@ -39,15 +47,20 @@ public class OrderController {
      * Tạo một đơn hàng mới.
      * Người dùng phải được xác thực.
      * UserId trong CreateOrderRequest sẽ được ghi đè bằng userId của người dùng đã xác thực.
+     * Đơn được nhận ngay (trạng thái PLACING) và checkout chạy nền; theo dõi tiến trình qua
+     * {@code GET /{orderId}/checkout} hoặc {@code GET /{orderId}/checkout/events} (SSE).
+     * Có header {@code Idempotency-Key} thì gửi lại cùng key (và cùng body) nhận lại đúng phản hồi lần đầu,
+     * kèm header {@code Idempotent-Replayed: true}, không tạo thêm đơn.
      *
      * @param createOrderRequest DTO chứa thông tin để tạo đơn hàng.
      * @param authentication   Thông tin xác thực của người dùng hiện tại.
-     * @return
+     * @return 202 kèm orderId và trạng thái checkout
      */
     @PostMapping
-    public ResponseEntity<OrderResponse> createOrder(
+    public ResponseEntity<CheckoutStatusResponse> createOrder(
         @Valid @RequestBody CreateOrderRequest createOrderRequest,
         @RequestHeader("Authorization") String authorizationHeader,
+        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
         Authentication authentication) {
 
     if (authentication == null || !authentication.isAuthenticated()) {
@@ -56,9 +69,33 @@ public class OrderController {
     String authenticatedUserId = authentication.getName();
     createOrderRequest.setUserId(authenticatedUserId);
 
-    OrderResponse orderResponse = orderService.createOrder(createOrderRequest, authorizationHeader);
-    return new ResponseEntity<>(orderResponse, HttpStatus.CREATED);
+    if (idempotencyKey == null) {
+        CheckoutStatusResponse accepted = checkoutSagaOrchestrator.start(createOrderRequest, authorizationHeader);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/orders/" + accepted.getOrderId() + "/checkout"))
+                .body(accepted);
+    }
+    OrderIdempotency.Outcome outcome = orderIdempotency.placeOnce(authenticatedUserId, idempotencyKey, createOrderRequest,
+            () -> checkoutSagaOrchestrator.start(createOrderRequest, authorizationHeader));
+    return ResponseEntity.accepted()
+            .location(URI.create("/api/v1/orders/" + outcome.response().getOrderId() + "/checkout"))
+            .header("Idempotent-Replayed", String.valueOf(outcome.replayed()))
+            .body(outcome.response());
 }
+
+    // Tiến trình checkout (polling)
+    @GetMapping("/{orderId}/checkout")
+    @PreAuthorize("@orderSecurityService.canAccessOrder(authentication, #orderId) or hasRole('ADMIN')")
+    public ResponseEntity<CheckoutStatusResponse> getCheckoutStatus(@PathVariable Long orderId) {
+        return ResponseEntity.ok(checkoutSagaOrchestrator.status(orderId));
+    }
+
+    // Tiến trình checkout (SSE): gửi trạng thái hiện tại, mỗi lần đổi trạng thái, đóng khi kết thúc
+    @GetMapping(path = "/{orderId}/checkout/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("@orderSecurityService.canAccessOrder(authentication, #orderId) or hasRole('ADMIN')")
+    public SseEmitter streamCheckoutStatus(@PathVariable Long orderId) {
+        return checkoutSagaOrchestrator.watch(orderId);
+    }
     /**
      * Lấy thông tin chi tiết của một đơn hàng dựa trên ID đơn hàng.
      * Chỉ chủ sở hữu đơn hàng hoặc người dùng có vai trò ADMIN mới có quyền truy cập.
@@ -77,33 +114,41 @@ public class OrderController {
     }
 
     /**
-     * Lấy danh sách các đơn hàng của người dùng hiện tại đã xác thực.
+     * Lịch sử đơn hàng của người dùng hiện tại đã xác thực, mới nhất trước.
+     * Mỗi đơn chỉ có thông tin tóm tắt; chi tiết items lấy qua {@code GET /{orderId}}.
      *
+     * @param cursor         {@code nextCursor} của trang trước, bỏ trống để lấy trang đầu.
+     * @param size           Số đơn mỗi trang (tối đa 50).
      * @param authentication Thông tin xác thực của người dùng hiện tại.
-     * @return ResponseEntity chứa danh sách OrderResponse và HTTP status OK.
+     * @return ResponseEntity chứa một trang OrderSummaryResponse và HTTP status OK.
      */
     @GetMapping("/my-orders")
-    public ResponseEntity<List<OrderResponse>> getMyOrders(Authentication authentication) {
+    public ResponseEntity<OrderHistoryPageResponse> getMyOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             throw new OrderException(ErrorCodeOrder.USER_NOT_AUTHENTICATED_FOR_ORDER);
         }
         String userId = authentication.getName(); // Lấy userId từ 'sub' claim của JWT
-        List<OrderResponse> orders = orderService.getOrdersByUserId(userId);
-        return ResponseEntity.ok(orders);
+        return ResponseEntity.ok(orderService.getOrderHistory(userId, cursor, size));
     }
 
     /**
      * @param userId     
+     * @param cursor     {@code nextCursor} của trang trước, bỏ trống để lấy trang đầu.
+     * @param size       Số đơn mỗi trang (tối đa 50).
      * @param authentication
-     * @return ResponseEntity chứa danh sách OrderResponse và HTTP status OK.
+     * @return ResponseEntity chứa một trang OrderSummaryResponse và HTTP status OK.
      */
     @GetMapping("/user/{userId}")
     @PreAuthorize("@orderSecurityService.isOwnerOrAdmin(authentication, #userId)")
-    public ResponseEntity<List<OrderResponse>> getOrdersByUserIdOfUser(
+    public ResponseEntity<OrderHistoryPageResponse> getOrdersByUserIdOfUser(
             @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
             Authentication authentication) {
-        List<OrderResponse> orders = orderService.getOrdersByUserId(userId);
-        return ResponseEntity.ok(orders);
+        return ResponseEntity.ok(orderService.getOrderHistory(userId, cursor, size));
     }
 
     /**
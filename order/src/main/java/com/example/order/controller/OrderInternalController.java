@@ -1,15 +1,20 @@
 package com.example.order.controller;
 
+import com.example.order.dto.response.DeliveredPurchaseResponse;
 import com.example.order.service.OrderQueryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/internal/orders")
 @RequiredArgsConstructor
 public class OrderInternalController {
 
+    private static final int MAX_DELIVERED_PAGE = 1000;
+
     private final OrderQueryService orderQueryService;
 
     // GET /api/v1/internal/orders/has-purchased?username=baodh&productId=1
@@ -21,4 +26,21 @@ public class OrderInternalController {
         boolean purchased = orderQueryService.hasUserPurchasedProduct(username, productId);
         return ResponseEntity.ok(purchased);
     }
+
+    // GET /api/v1/internal/orders/purchased-products?username=baodh
+    @GetMapping("/purchased-products")
+    public ResponseEntity<List<Long>> getPurchasedProductIds(@RequestParam String username) {
+        return ResponseEntity.ok(orderQueryService.getPurchasedProductIds(username));
+    }
+
+    // GET /api/v1/internal/orders/delivered-purchases?afterOrderId=0&limit=500
+    // Trang tiếp theo: afterOrderId = orderId của dòng cuối
+    @GetMapping("/delivered-purchases")
+    public ResponseEntity<List<DeliveredPurchaseResponse>> getDeliveredPurchases(
+            @RequestParam(defaultValue = "0") Long afterOrderId,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        int orderLimit = Math.max(1, Math.min(limit, MAX_DELIVERED_PAGE));
+        return ResponseEntity.ok(orderQueryService.getDeliveredPurchases(afterOrderId, orderLimit));
+    }
 }
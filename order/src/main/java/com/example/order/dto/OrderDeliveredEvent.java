@@ -0,0 +1,17 @@
+package com.example.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Phát lên exchange order.delivered khi đơn chuyển sang DELIVERED (product-service dùng để xác nhận đã mua)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderDeliveredEvent {
+    private Long orderId;
+    private String username;
+    private List<Long> productIds;
+}
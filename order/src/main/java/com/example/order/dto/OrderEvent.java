@@ -7,5 +7,4 @@ public class OrderEvent {
     private Long id;
     private String userId;
     private String status;
-    private String authorizationHeader;
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.example.order.dto.response;
+
+import com.example.order.entity.CheckoutSaga;
+import com.example.order.entity.OrderStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Tiến trình checkout trả về cho client (202 khi đặt hàng, polling và SSE)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CheckoutStatusResponse {
+    private Long orderId;
+    private CheckoutSaga.State state;
+    private OrderStatus orderStatus;
+    private boolean finished;
+    private String failureReason;
+
+    // Chỉ có khi đơn đã tạo xong
+    private OrderResponse order;
+}
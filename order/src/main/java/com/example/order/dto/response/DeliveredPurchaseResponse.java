@@ -0,0 +1,18 @@
+package com.example.order.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Một sản phẩm trong một đơn đã giao (API nội bộ, product-service dùng để nạp lại lịch sử mua)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveredPurchaseResponse {
+    private Long orderId;
+    private String username;
+    private Long productId;
+    private LocalDateTime orderDate;
+}
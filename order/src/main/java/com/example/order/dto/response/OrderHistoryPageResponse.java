@@ -0,0 +1,18 @@
+package com.example.order.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderHistoryPageResponse {
+    private List<OrderSummaryResponse> orders;
+    // Truyền lại vào ?cursor= để lấy trang sau; null là đã hết
+    private String nextCursor;
+}
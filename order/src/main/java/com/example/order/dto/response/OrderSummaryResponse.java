@@ -0,0 +1,22 @@
+package com.example.order.dto.response;
+
+import com.example.order.entity.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Một dòng trong lịch sử đơn hàng (không kèm items, xem chi tiết qua GET /orders/{orderId})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryResponse {
+    private Long id;
+    private LocalDateTime orderDate;
+    private OrderStatus status;
+    private BigDecimal finalAmount;
+    private Long itemCount;
+    private String thumbnailUrl; // ảnh của item đầu tiên
+}
@@ -0,0 +1,98 @@
+package com.example.order.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Tiến trình checkout của một đơn (saga): mỗi bước gọi service khác xong thì ghi lại trạng thái ở đây
+@Entity
+@Table(name = "checkout_sagas", indexes = {
+        @Index(name = "idx_checkout_sagas_state_next", columnList = "state, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutSaga {
+
+    public enum State {
+        STARTED,            // Đơn PLACING đã lưu, chưa lấy giỏ / giá
+        PRICED,             // Đã có OrderItem, tổng tiền, số tiền giảm
+        VOUCHER_REDEEMED,   // Đã qua bước voucher (đánh dấu đã dùng nếu đơn có giảm giá)
+        STOCK_RESERVED,     // Đã giữ hàng bên product-service
+        COMPLETED,          // Đơn chuyển PENDING, đã ghi event thông báo
+        COMPENSATING,       // Đang hoàn tác các bước đã làm (trả voucher, hoàn kho)
+        FAILED;             // Đã hoàn tác xong, đơn chuyển FAILED
+
+        public boolean isTerminal() {
+            return this == COMPLETED || this == FAILED;
+        }
+    }
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private State state;
+
+    @Column(nullable = false, length = 100)
+    private String username;
+
+    // UUID bên user-service (voucher + notification dùng id này)
+    @Column(name = "buyer_id", length = 36)
+    private String buyerId;
+
+    // CreateOrderRequest gốc dạng JSON
+    @Column(name = "request_payload", nullable = false, columnDefinition = "TEXT")
+    private String requestPayload;
+
+    // Các dòng giỏ hàng đã chọn thanh toán (JSON), dùng để trừ giỏ khi hoàn tất
+    @Column(name = "checkout_items", columnDefinition = "TEXT")
+    private String checkoutItems;
+
+    // Đơn có dùng voucher và (có thể) đã gửi yêu cầu đánh dấu; bù trừ trả voucher theo orderRef
+    @Column(name = "voucher_marked", nullable = false)
+    private boolean voucherMarked;
+
+    // Đã gửi yêu cầu giữ hàng (có thể đã giữ dù không nhận được phản hồi)
+    @Column(name = "stock_requested", nullable = false)
+    private boolean stockRequested;
+
+    // Số lần thử liên tiếp của bước hiện tại
+    @Column(nullable = false)
+    private int attempts;
+
+    // Thời điểm sớm nhất được chạy tiếp (lần thử lại kế tiếp, hoặc hết hạn "giữ chỗ" của worker đang chạy)
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "failure_reason", length = 500)
+    private String failureReason;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    // Worker mất lease mà vẫn ghi thì bị từ chối, không đè lên worker mới
+    @Version
+    private Long version;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
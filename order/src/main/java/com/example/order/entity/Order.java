@@ -10,7 +10,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+// (user_id, order_date) phục vụ lịch sử đơn của user; InnoDB tự gắn id vào cuối index nên cursor (orderDate, id) đi thẳng theo index
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_user_date", columnList = "user_id, order_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -73,6 +76,10 @@ public class Order {
 
     private String paymentMethod;
     private String paymentTransactionId;
+
+    // Mã phiếu giữ hàng bên product-service, dùng để hoàn kho khi huỷ đơn
+    @Column(length = 36)
+    private String stockReservationId;
     
 
     @Column(updatable = false)
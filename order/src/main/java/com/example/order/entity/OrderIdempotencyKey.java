@@ -0,0 +1,38 @@
+package com.example.order.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Kết quả của POST /orders theo Idempotency-Key, để request gửi lại nhận đúng phản hồi cũ thay vì tạo đơn mới
+@Entity
+@Table(name = "order_idempotency_keys", indexes = {
+        @Index(name = "idx_order_idempotency_created", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderIdempotencyKey {
+
+    // SHA-256 (hex) của username + key: độ dài cố định, key của user khác nhau không đụng nhau
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    // SHA-256 (hex) của body request: cùng key mà body khác thì từ chối
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    // Phản hồi đã trả (JSON)
+    @Column(name = "response_body", nullable = false, columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,6 +1,7 @@
 package com.example.order.entity;
 
 public enum OrderStatus {
+    PLACING,        // Đang tạo: saga checkout chưa chạy xong (xem CheckoutSaga)
     PENDING,        // Chờ xử lý / Chờ thanh toán
     PROCESSING,     // Đang xử lý (ví dụ: đã thanh toán, chờ đóng gói)
     CONFIRMED,      // Đã xác nhận (sau khi thanh toán thành công)
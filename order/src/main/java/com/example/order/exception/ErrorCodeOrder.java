@@ -22,6 +22,9 @@ public enum ErrorCodeOrder {
     ORDER_CANCEL_NOT_ALLOWED(4105, "Order cancellation is not allowed for its current status", HttpStatus.BAD_REQUEST),
     DATABASE_ERROR(4106, "Database error occurred", HttpStatus.BAD_REQUEST),
     INVALID_TOKEN(4107, "Invalid or expired token",HttpStatus.BAD_REQUEST),
+    IDEMPOTENCY_KEY_REUSED(4108, "Idempotency-Key đã được dùng cho một yêu cầu khác", HttpStatus.UNPROCESSABLE_ENTITY),
+    IDEMPOTENCY_KEY_IN_PROGRESS(4109, "Yêu cầu với Idempotency-Key này vẫn đang được xử lý", HttpStatus.CONFLICT),
+    CHECKOUT_SESSION_LOST(4110, "Không còn token của người mua để đọc giỏ hàng, vui lòng đặt lại đơn", HttpStatus.CONFLICT),
 
     // Lỗi liên quan đến Product khi tạo Order (ví dụ: 42xx - có thể trùng với cart nhưng message cụ thể hơn cho order)
     // Các mã lỗi này có thể tham chiếu hoặc tương tự ErrorCodeCart nhưng nên được định nghĩa riêng
@@ -44,6 +47,7 @@ public enum ErrorCodeOrder {
     FORBIDDEN_SELLER_ORDER(5002, "Đơn hàng không thuộc quyền xử lý của seller",HttpStatus.BAD_REQUEST),
     USER_SERVICE_UNREACHABLE(4308, "Dịch vụ người dùng không thể truy cập hoặc đã trả về lỗi trong quá trình xử lý đơn hàng", HttpStatus.SERVICE_UNAVAILABLE),
     STORE_ID_NULL(4309, "Mã cửa hàng rỗng", HttpStatus.BAD_REQUEST),
+    VOUCHER_SERVICE_UNREACHABLE(4310, "Voucher service is unreachable or returned an error", HttpStatus.SERVICE_UNAVAILABLE),
 
     // Lỗi xác thực/ủy quyền (ví dụ: 44xx)
     ORDER_ACCESS_DENIED(4400, "Access to this order is denied", HttpStatus.FORBIDDEN),
@@ -0,0 +1,29 @@
+package com.example.order.repository;
+
+import com.example.order.entity.CheckoutSaga;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface CheckoutSagaRepository extends JpaRepository<CheckoutSaga, Long> {
+
+    @Query("SELECT s.orderId FROM CheckoutSaga s WHERE s.state IN :states AND s.nextAttemptAt <= :now ORDER BY s.nextAttemptAt")
+    List<Long> findDueOrderIds(@Param("states") Collection<CheckoutSaga.State> states,
+                               @Param("now") LocalDateTime now,
+                               Pageable pageable);
+
+    // Giữ chỗ: chỉ một worker (trên mọi replica) đổi được next_attempt_at của một saga đang tới hạn
+    @Modifying
+    @Query("UPDATE CheckoutSaga s SET s.nextAttemptAt = :leaseUntil"
+            + " WHERE s.orderId = :orderId AND s.state IN :states AND s.nextAttemptAt <= :now")
+    int claim(@Param("orderId") Long orderId,
+              @Param("states") Collection<CheckoutSaga.State> states,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+}
@@ -0,0 +1,26 @@
+package com.example.order.repository;
+
+import com.example.order.entity.OrderIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface OrderIdempotencyKeyRepository extends JpaRepository<OrderIdempotencyKey, String> {
+
+    // INSERT thẳng (không merge): request cùng key ở replica khác phải chờ khoá trên khoá chính rồi nhận lỗi trùng
+    @Modifying
+    @Query(value = "INSERT INTO order_idempotency_keys (id, request_hash, order_id, response_body, created_at)"
+            + " VALUES (:id, :requestHash, :orderId, :responseBody, :createdAt)", nativeQuery = true)
+    int insert(@Param("id") String id,
+               @Param("requestHash") String requestHash,
+               @Param("orderId") Long orderId,
+               @Param("responseBody") String responseBody,
+               @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Query(value = "DELETE FROM order_idempotency_keys WHERE created_at < :before LIMIT 1000", nativeQuery = true)
+    int purgeBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,7 @@
+package com.example.order.repository;
+
+import com.example.order.entity.OrderOutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+}
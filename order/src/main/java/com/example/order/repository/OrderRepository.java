@@ -1,15 +1,50 @@
 package com.example.order.repository; 
 
+import com.example.order.dto.response.DeliveredPurchaseResponse;
+import com.example.order.dto.response.OrderSummaryResponse;
 import com.example.order.entity.Order;
 import com.example.order.entity.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.LocalDateTime;
 import java.util.List;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUserId(String userId); // Đảm bảo userId là String
+    // Lịch sử đơn (trang đầu): một query, số item và ảnh đại diện lấy bằng subquery thay vì load items
+    @Query("""
+        SELECT new com.example.order.dto.response.OrderSummaryResponse(
+            o.id, o.orderDate, o.status, COALESCE(o.finalAmount, o.totalAmount),
+            (SELECT COUNT(c) FROM OrderItem c WHERE c.order = o),
+            (SELECT t.imageUrl FROM OrderItem t
+              WHERE t.id = (SELECT MIN(f.id) FROM OrderItem f WHERE f.order = o)))
+        FROM Order o
+        WHERE o.userId = :userId
+        ORDER BY o.orderDate DESC, o.id DESC
+    """)
+    List<OrderSummaryResponse> findHistory(@Param("userId") String userId, Pageable pageable);
+
+    // Lịch sử đơn (các trang sau): keyset theo (orderDate, id) của dòng cuối trang trước
+    @Query("""
+        SELECT new com.example.order.dto.response.OrderSummaryResponse(
+            o.id, o.orderDate, o.status, COALESCE(o.finalAmount, o.totalAmount),
+            (SELECT COUNT(c) FROM OrderItem c WHERE c.order = o),
+            (SELECT t.imageUrl FROM OrderItem t
+              WHERE t.id = (SELECT MIN(f.id) FROM OrderItem f WHERE f.order = o)))
+        FROM Order o
+        WHERE o.userId = :userId
+          AND (o.orderDate < :orderDate OR (o.orderDate = :orderDate AND o.id < :id))
+        ORDER BY o.orderDate DESC, o.id DESC
+    """)
+    List<OrderSummaryResponse> findHistoryAfter(
+            @Param("userId") String userId,
+            @Param("orderDate") LocalDateTime orderDate,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
     boolean existsByUserIdAndStatusAndItemsProductId(
             String userId,
             OrderStatus status,
@@ -30,5 +65,43 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
             @Param("status") OrderStatus status
     );
 
+    // Toàn bộ productId user đã mua (đơn ở trạng thái status), dùng cho cache xác nhận mua hàng bên product-service
+    @Query("""
+        SELECT DISTINCT i.productId
+        FROM Order o
+        JOIN o.items i
+        WHERE o.userId = :userId
+          AND o.status = :status
+    """)
+    List<Long> findPurchasedProductIds(
+            @Param("userId") String userId,
+            @Param("status") OrderStatus status
+    );
+
+    // Keyset theo id: các đơn (có item) ở trạng thái status sau afterId, dùng cho backfill lịch sử mua
+    @Query("""
+        SELECT DISTINCT o.id
+        FROM Order o
+        JOIN o.items i
+        WHERE o.status = :status
+          AND o.id > :afterId
+        ORDER BY o.id
+    """)
+    List<Long> findIdsWithItemsAfter(
+            @Param("status") OrderStatus status,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
+    @Query("""
+        SELECT DISTINCT new com.example.order.dto.response.DeliveredPurchaseResponse(
+            o.id, o.userId, i.productId, o.orderDate)
+        FROM Order o
+        JOIN o.items i
+        WHERE o.id IN :orderIds
+        ORDER BY o.id
+    """)
+    List<DeliveredPurchaseResponse> findPurchasesByOrderIds(@Param("orderIds") List<Long> orderIds);
+
     
 }
\ No newline at end of file
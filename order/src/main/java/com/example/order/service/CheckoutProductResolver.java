@@ -0,0 +1,185 @@
+package com.example.order.service;
+
+import com.example.order.dto.ProductDTO;
+import com.example.order.dto.response.ApiResponRequest;
+import com.example.order.exception.ErrorCodeOrder;
+import com.example.order.exception.OrderException;
+import com.example.order.service.client.ProductServiceClient;
+
+import feign.FeignException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Giai đoạn resolve sản phẩm khi checkout.
+ * Các productId (đã loại trùng) được gom thành từng lô và gọi {@code POST /api/v1/products/batch};
+ * giỏ bình thường chỉ tốn một request. Nếu có nhiều lô, các lô chạy song song (virtual thread)
+ * và mỗi lời gọi có deadline riêng. Kết quả trả về là một snapshot dùng chung
+ * cho cả bước validate lẫn bước tạo OrderItem.
+ */
+@Service
+public class CheckoutProductResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutProductResolver.class);
+
+    private final ProductServiceClient productServiceClient;
+    private final long callTimeoutMs;
+    private final int batchSize;
+    private final Semaphore inFlightLimit;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public CheckoutProductResolver(
+            ProductServiceClient productServiceClient,
+            @Value("${checkout.product-fetch.timeout-ms:3000}") long callTimeoutMs,
+            @Value("${checkout.product-fetch.max-concurrency:32}") int maxConcurrency,
+            @Value("${checkout.product-fetch.batch-size:100}") int batchSize) {
+        this.productServiceClient = productServiceClient;
+        this.callTimeoutMs = callTimeoutMs;
+        this.batchSize = batchSize;
+        this.inFlightLimit = new Semaphore(maxConcurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Lấy thông tin các sản phẩm cần cho đơn hàng.
+     *
+     * @param productIds danh sách productId (có thể trùng lặp)
+     * @param authorizationHeader token để gọi product-service
+     * @return map productId -> ProductDTO, giữ nguyên thứ tự xuất hiện đầu tiên
+     * @throws OrderException nếu có sản phẩm không tồn tại hoặc product-service lỗi / quá hạn
+     */
+    public Map<Long, ProductDTO> resolve(Collection<Long> productIds, String authorizationHeader) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(productIds));
+        logger.info("Resolving {} distinct products for checkout ({} requested).",
+                distinctIds.size(), productIds.size());
+
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < distinctIds.size(); i += batchSize) {
+            chunks.add(distinctIds.subList(i, Math.min(i + batchSize, distinctIds.size())));
+        }
+
+        Map<List<Long>, CompletableFuture<List<ProductDTO>>> futures = new LinkedHashMap<>();
+        for (List<Long> chunk : chunks) {
+            futures.put(chunk, CompletableFuture
+                    .supplyAsync(() -> fetchWithLimit(chunk, authorizationHeader), executor)
+                    .orTimeout(callTimeoutMs, TimeUnit.MILLISECONDS));
+        }
+
+        Map<Long, ProductDTO> fetched = new HashMap<>();
+        try {
+            for (Map.Entry<List<Long>, CompletableFuture<List<ProductDTO>>> entry : futures.entrySet()) {
+                for (ProductDTO product : await(entry.getKey(), entry.getValue())) {
+                    fetched.put(product.getId(), product);
+                }
+            }
+        } catch (OrderException e) {
+            // Một lô lỗi thì cả đơn thất bại -> huỷ các lời gọi còn lại
+            futures.values().forEach(f -> f.cancel(true));
+            throw e;
+        }
+
+        Map<Long, ProductDTO> products = new LinkedHashMap<>();
+        for (Long productId : distinctIds) {
+            ProductDTO product = fetched.get(productId);
+            if (product == null) {
+                throw new OrderException(
+                        ErrorCodeOrder.PRODUCT_NOT_FOUND_FOR_ORDER,
+                        "Product with ID " + productId + " not found."
+                );
+            }
+            products.put(productId, product);
+        }
+        return products;
+    }
+
+    private List<ProductDTO> await(List<Long> productIds, CompletableFuture<List<ProductDTO>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderException(
+                    ErrorCodeOrder.PRODUCT_SERVICE_UNREACHABLE_FOR_ORDER,
+                    "Interrupted while fetching products " + productIds,
+                    e
+            );
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof OrderException orderException) {
+                throw orderException;
+            }
+            if (cause instanceof TimeoutException) {
+                logger.error("Timed out after {} ms fetching products {}", callTimeoutMs, productIds);
+                throw new OrderException(
+                        ErrorCodeOrder.PRODUCT_SERVICE_UNREACHABLE_FOR_ORDER,
+                        "Timed out fetching products " + productIds,
+                        cause
+                );
+            }
+            logger.error("Unexpected error fetching products {}: {}", productIds, cause.getMessage(), cause);
+            throw new OrderException(
+                    ErrorCodeOrder.PRODUCT_SERVICE_UNREACHABLE_FOR_ORDER,
+                    "Could not fetch products " + productIds,
+                    cause
+            );
+        }
+    }
+
+    private List<ProductDTO> fetchWithLimit(List<Long> productIds, String authorizationHeader) {
+        try {
+            inFlightLimit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        try {
+            return fetchProducts(productIds, authorizationHeader);
+        } finally {
+            inFlightLimit.release();
+        }
+    }
+
+    private List<ProductDTO> fetchProducts(List<Long> productIds, String authorizationHeader) {
+        try {
+            ApiResponRequest<List<ProductDTO>> response =
+                    productServiceClient.getProductsByIds(productIds, authorizationHeader);
+
+            List<ProductDTO> products = (response != null && response.getResult() != null)
+                    ? response.getResult()
+                    : List.of();
+            logger.info("Fetched {} of {} products from product-service in one batch.",
+                    products.size(), productIds.size());
+
+            return products;
+        } catch (FeignException e) {
+            logger.error("FeignException fetching products {}: {}", productIds, e.getMessage(), e);
+            throw new OrderException(
+                    ErrorCodeOrder.PRODUCT_SERVICE_UNREACHABLE_FOR_ORDER,
+                    "Could not fetch products " + productIds,
+                    e
+            );
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.order.service;
 
+import com.example.order.dto.response.DeliveredPurchaseResponse;
 import com.example.order.dto.response.SellerRevenueStatResponse;
 import com.example.order.entity.OrderStatus;
 import com.example.order.repository.OrderItemRepository;
 import com.example.order.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -31,6 +33,20 @@ public class OrderQueryService {
         );
     }
 
+    public List<Long> getPurchasedProductIds(String username) {
+        return orderRepository.findPurchasedProductIds(username, OrderStatus.DELIVERED);
+    }
+
+    // Một trang lịch sử mua (đơn DELIVERED, id > afterOrderId); trang rỗng = hết
+    public List<DeliveredPurchaseResponse> getDeliveredPurchases(Long afterOrderId, int orderLimit) {
+        List<Long> orderIds = orderRepository.findIdsWithItemsAfter(
+                OrderStatus.DELIVERED, afterOrderId, PageRequest.of(0, orderLimit));
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+        return orderRepository.findPurchasesByOrderIds(orderIds);
+    }
+
     private Set<OrderStatus> completedStatuses() {
         return EnumSet.of(OrderStatus.DELIVERED, OrderStatus.CONFIRMED);
     }
@@ -0,0 +1,142 @@
+package com.example.order.service;
+
+import com.example.order.dto.response.ApiResponRequest;
+import com.example.order.dto.response.UserResponse;
+import com.example.order.exception.ErrorCodeOrder;
+import com.example.order.exception.OrderException;
+import com.example.order.service.client.UserServiceClient;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import feign.FeignException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Đổi username sang UUID / storeId của user.
+ * UUID lấy thẳng từ claim {@code userId} của JWT nếu token đang đăng nhập là của chính user đó.
+ * Còn lại tra cache (giới hạn số phần tử, hết hạn theo TTL); cache miss thì gọi user-service,
+ * các request cùng username chờ chung một lời gọi. Lỗi không được cache.
+ * Bản cache chưa có storeId không được dùng để trả storeId: user có thể vừa mở store sau khi được cache.
+ */
+@Service
+public class UserIdentityResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIdentityResolver.class);
+
+    static final String USER_ID_CLAIM = "userId";
+
+    public record UserIdentity(String userId, String username, String storeId) {
+    }
+
+    private final UserServiceClient userServiceClient;
+    private final Cache<String, UserIdentity> cache;
+
+    public UserIdentityResolver(
+            UserServiceClient userServiceClient,
+            @Value("${user-identity.cache.max-size:10000}") long maxSize,
+            @Value("${user-identity.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.userServiceClient = userServiceClient;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * UUID của user.
+     *
+     * @throws OrderException USER_NOT_FOUND nếu user không tồn tại, USER_SERVICE_UNREACHABLE_FOR_ORDER nếu user-service lỗi
+     */
+    public String userId(String username, String authorizationHeader) {
+        String fromToken = userIdFromToken(username);
+        if (fromToken != null) {
+            return fromToken;
+        }
+        return resolve(username, authorizationHeader).userId();
+    }
+
+    /**
+     * storeId của seller.
+     *
+     * @throws OrderException STORE_ID_NULL nếu user không có store
+     */
+    public String storeId(String username, String authorizationHeader) {
+        UserIdentity cached = cache.getIfPresent(username);
+        UserIdentity identity = cached != null && cached.storeId() != null
+                ? cached
+                : reload(username, authorizationHeader);
+        String storeId = identity.storeId();
+        if (storeId == null) {
+            logger.error("Seller storeId is null for username: {}", username);
+            throw new OrderException(
+                    ErrorCodeOrder.STORE_ID_NULL,
+                    "Store ID is null for seller username: " + username
+            );
+        }
+        return storeId;
+    }
+
+    /**
+     * UUID trong JWT của request hiện tại, null nếu không có claim, token là của user khác
+     * hoặc đang chạy ngoài request (worker).
+     */
+    public String userIdFromToken(String username) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof Jwt jwt && username.equals(jwt.getSubject())) {
+            return jwt.getClaimAsString(USER_ID_CLAIM);
+        }
+        return null;
+    }
+
+    public UserIdentity resolve(String username, String authorizationHeader) {
+        return cache.get(username, key -> load(key, authorizationHeader));
+    }
+
+    // Bỏ qua bản cache, tra lại user-service và ghi đè
+    private UserIdentity reload(String username, String authorizationHeader) {
+        UserIdentity identity = load(username, authorizationHeader);
+        cache.put(username, identity);
+        return identity;
+    }
+
+    private UserIdentity load(String username, String authorizationHeader) {
+        logger.debug("Fetching user for username: {}", username);
+        ApiResponRequest<UserResponse> response;
+        try {
+            response = userServiceClient.getUserByUsername(username, authorizationHeader);
+        } catch (FeignException e) {
+            logger.error("Failed to fetch user for username: {}. Error: {}", username, e.getMessage());
+            throw remoteFailure(e, "User not found for username: " + username);
+        }
+        if (response == null || response.getResult() == null || response.getResult().getId() == null) {
+            logger.error("UserResponse or id is null for username: {}", username);
+            throw new OrderException(
+                    ErrorCodeOrder.USER_NOT_FOUND,
+                    "User not found for username: " + username
+            );
+        }
+        UserResponse user = response.getResult();
+        String storeId = user.getStore() != null ? user.getStore().getStoreId() : null;
+        return new UserIdentity(user.getId(), username, storeId);
+    }
+
+    // 4xx (trừ 408/429) là không có user; 401/403 là token hết hạn; còn lại (5xx, timeout) là user-service lỗi
+    private static OrderException remoteFailure(FeignException e, String message) {
+        int status = e.status();
+        if (status == 401 || status == 403) {
+            return new OrderException(ErrorCodeOrder.INVALID_TOKEN, message, e);
+        }
+        if (status >= 400 && status < 500 && status != 408 && status != 429) {
+            return new OrderException(ErrorCodeOrder.USER_NOT_FOUND, message, e);
+        }
+        return new OrderException(ErrorCodeOrder.USER_SERVICE_UNREACHABLE_FOR_ORDER, message, e);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.order.service.checkout;
+
+import com.example.order.dto.response.CheckoutStatusResponse;
+import com.example.order.entity.CheckoutSaga;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Các kết nối SSE đang theo dõi tiến trình checkout trên replica này.
+ * Worker chạy saga ở replica này đẩy trạng thái mới ngay; saga chạy ở replica khác thì
+ * {@link CheckoutSagaOrchestrator} đọc lại định kỳ các đơn đang có người theo dõi.
+ * Trạng thái trùng với lần gửi trước không gửi lại; trạng thái kết thúc thì đóng kết nối.
+ */
+@Component
+public class CheckoutProgress {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutProgress.class);
+
+    private static final class Watchers {
+        final CopyOnWriteArrayList<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        volatile CheckoutSaga.State lastState;
+    }
+
+    private final Map<Long, Watchers> watchers = new ConcurrentHashMap<>();
+    private final long timeoutMs;
+
+    public CheckoutProgress(@Value("${checkout.saga.sse-timeout-ms:120000}") long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public SseEmitter subscribe(CheckoutStatusResponse current) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        if (!send(emitter, current)) {
+            return emitter;
+        }
+        if (current.isFinished()) {
+            emitter.complete();
+            return emitter;
+        }
+        Long orderId = current.getOrderId();
+        Watchers group = watchers.computeIfAbsent(orderId, id -> new Watchers());
+        group.emitters.add(emitter);
+        Runnable remove = () -> unsubscribe(orderId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        return emitter;
+    }
+
+    public boolean isWatched(Long orderId) {
+        return watchers.containsKey(orderId);
+    }
+
+    public Set<Long> watchedOrderIds() {
+        return watchers.keySet();
+    }
+
+    public void publish(CheckoutStatusResponse status) {
+        Watchers group = watchers.get(status.getOrderId());
+        if (group == null || status.getState() == group.lastState) {
+            return;
+        }
+        group.lastState = status.getState();
+        for (SseEmitter emitter : group.emitters) {
+            if (send(emitter, status) && status.isFinished()) {
+                emitter.complete();
+            }
+        }
+        if (status.isFinished()) {
+            watchers.remove(status.getOrderId());
+        }
+    }
+
+    private void unsubscribe(Long orderId, SseEmitter emitter) {
+        watchers.computeIfPresent(orderId, (id, group) -> {
+            group.emitters.remove(emitter);
+            return group.emitters.isEmpty() ? null : group;
+        });
+    }
+
+    private boolean send(SseEmitter emitter, CheckoutStatusResponse status) {
+        try {
+            emitter.send(SseEmitter.event().name("checkout").data(status));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client đã ngắt
+            logger.debug("Dropping checkout progress stream for order {}: {}", status.getOrderId(), e.getMessage());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
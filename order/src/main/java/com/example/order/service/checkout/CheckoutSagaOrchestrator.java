@@ -0,0 +1,497 @@
+package com.example.order.service.checkout;
+
+import com.example.order.dto.CartItemDTO;
+import com.example.order.dto.OrderEvent;
+import com.example.order.dto.request.CreateOrderRequest;
+import com.example.order.dto.response.CheckoutStatusResponse;
+import com.example.order.dto.response.OrderResponse;
+import com.example.order.entity.CheckoutSaga;
+import com.example.order.entity.Order;
+import com.example.order.entity.OrderItem;
+import com.example.order.entity.OrderStatus;
+import com.example.order.exception.ErrorCodeOrder;
+import com.example.order.exception.OrderException;
+import com.example.order.repository.CheckoutSagaRepository;
+import com.example.order.repository.OrderRepository;
+import com.example.order.service.OrderService;
+import com.example.order.service.UserIdentityResolver;
+import com.example.order.service.outbox.OrderOutbox;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Điều phối checkout dạng saga.
+ * Request đặt hàng chỉ lưu đơn PLACING + {@link CheckoutSaga} trong một transaction ngắn rồi trả 202;
+ * các bước còn lại (định giá → đánh dấu voucher → giữ hàng → hoàn tất) chạy trên pool worker.
+ * Mỗi bước gọi service khác ngoài transaction, xong mới mở một transaction ngắn để ghi kết quả và chuyển trạng thái,
+ * nên không giữ kết nối DB trong lúc chờ HTTP. Lỗi tạm thời thì hẹn thử lại với backoff; lỗi nghiệp vụ
+ * (hoặc hết lượt thử) thì chuyển COMPENSATING: trả voucher, hoàn kho, rồi đơn chuyển FAILED.
+ * Worker "giữ chỗ" saga bằng next_attempt_at (như relay outbox) nên nhiều replica chạy cùng lúc không chạy trùng;
+ * replica chết giữa chừng thì saga được replica khác chạy tiếp sau khi hết lease.
+ * Token của người mua không được lưu xuống DB: nó chỉ nằm trong bộ nhớ của replica nhận request (có TTL) và chỉ
+ * dùng để đọc / cập nhật giỏ hàng. Saga chưa định giá mà mất token (restart, replica khác) thì thất bại và người mua
+ * đặt lại; các bước còn lại và bù trừ gọi service khác bằng token của order-service.
+ */
+@Service
+public class CheckoutSagaOrchestrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutSagaOrchestrator.class);
+
+    private static final List<CheckoutSaga.State> ACTIVE = List.of(
+            CheckoutSaga.State.STARTED,
+            CheckoutSaga.State.PRICED,
+            CheckoutSaga.State.VOUCHER_REDEEMED,
+            CheckoutSaga.State.STOCK_RESERVED,
+            CheckoutSaga.State.COMPENSATING
+    );
+    private static final TypeReference<List<CartItemDTO>> CART_ITEMS = new TypeReference<>() {
+    };
+
+    private final CheckoutSagaRepository sagaRepository;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final OrderOutbox orderOutbox;
+    private final CheckoutSteps steps;
+    private final CheckoutProgress progress;
+    private final UserIdentityResolver userIdentityResolver;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final long leaseMs;
+    private final int maxAttempts;
+    private final long maxBackoffMs;
+    private final int recoveryBatchSize;
+
+    private final ThreadPoolExecutor workers;
+    // Saga đã nằm trong hàng đợi của pool: lượt quét không xếp hàng trùng
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    // orderId -> header Authorization của người mua, chỉ trong bộ nhớ
+    private final Cache<Long, String> buyerTokens;
+
+    public CheckoutSagaOrchestrator(
+            CheckoutSagaRepository sagaRepository,
+            OrderRepository orderRepository,
+            OrderService orderService,
+            OrderOutbox orderOutbox,
+            CheckoutSteps steps,
+            CheckoutProgress progress,
+            UserIdentityResolver userIdentityResolver,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${checkout.saga.worker-threads:16}") int workerThreads,
+            @Value("${checkout.saga.queue-capacity:1000}") int queueCapacity,
+            @Value("${checkout.saga.lease-ms:120000}") long leaseMs,
+            @Value("${checkout.saga.max-attempts:8}") int maxAttempts,
+            @Value("${checkout.saga.max-backoff-ms:60000}") long maxBackoffMs,
+            @Value("${checkout.saga.recovery-batch-size:100}") int recoveryBatchSize,
+            @Value("${checkout.saga.buyer-token-ttl-ms:900000}") long buyerTokenTtlMs) {
+        this.sagaRepository = sagaRepository;
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.orderOutbox = orderOutbox;
+        this.steps = steps;
+        this.progress = progress;
+        this.userIdentityResolver = userIdentityResolver;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseMs = leaseMs;
+        this.maxAttempts = maxAttempts;
+        this.maxBackoffMs = maxBackoffMs;
+        this.recoveryBatchSize = recoveryBatchSize;
+        this.buyerTokens = Caffeine.newBuilder()
+                .maximumSize(queueCapacity + 10_000L)
+                .expireAfterWrite(Duration.ofMillis(buyerTokenTtlMs))
+                .build();
+        // Hàng đợi có giới hạn: đầy thì saga nằm lại trong DB, lượt quét sau lấy tiếp
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("checkout-saga-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Lưu đơn PLACING và saga rồi giao cho worker; trả về ngay, không chờ service khác.
+     * Gọi trong một transaction sẵn có thì dùng chung transaction đó và chỉ giao cho worker sau commit.
+     */
+    public CheckoutStatusResponse start(CreateOrderRequest request, String authorizationHeader) {
+        String payload = toJson(request);
+        CheckoutSaga saga = transactionTemplate.execute(status -> {
+            Order order = orderRepository.save(steps.initializeOrder(request));
+            CheckoutSaga created = new CheckoutSaga();
+            created.setOrderId(order.getId());
+            created.setState(CheckoutSaga.State.STARTED);
+            created.setUsername(request.getUserId());
+            // UUID từ claim của JWT (nếu có): bước định giá chạy trên worker không phải gọi user-service
+            created.setBuyerId(userIdentityResolver.userIdFromToken(request.getUserId()));
+            created.setRequestPayload(payload);
+            created.setNextAttemptAt(LocalDateTime.now());
+            return sagaRepository.save(created);
+        });
+        buyerTokens.put(saga.getOrderId(), authorizationHeader);
+        logger.info("Accepted checkout for user {} as order {}", request.getUserId(), saga.getOrderId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(saga.getOrderId());
+                }
+            });
+        } else {
+            submit(saga.getOrderId());
+        }
+        return describe(saga);
+    }
+
+    public CheckoutStatusResponse status(Long orderId) {
+        CheckoutSaga saga = sagaRepository.findById(orderId).orElse(null);
+        if (saga == null) {
+            // Đơn tạo trước khi có saga: coi như checkout đã xong
+            OrderResponse order = orderService.getOrderById(orderId);
+            return CheckoutStatusResponse.builder()
+                    .orderId(orderId)
+                    .state(CheckoutSaga.State.COMPLETED)
+                    .orderStatus(order.getStatus())
+                    .finished(true)
+                    .order(order)
+                    .build();
+        }
+        return describe(saga);
+    }
+
+    public SseEmitter watch(Long orderId) {
+        return progress.subscribe(status(orderId));
+    }
+
+    // Chạy tiếp các saga tới hạn (thử lại, hết lease, hoặc chưa vào được hàng đợi) và báo tiến trình cho SSE
+    @Scheduled(fixedDelayString = "${checkout.saga.recovery-interval-ms:1000}")
+    public void resumeDue() {
+        try {
+            sagaRepository.findDueOrderIds(ACTIVE, LocalDateTime.now(), PageRequest.of(0, recoveryBatchSize))
+                    .forEach(this::submit);
+            // Saga chạy ở replica khác: đọc lại trạng thái cho các client đang theo dõi trên replica này
+            if (!progress.watchedOrderIds().isEmpty()) {
+                sagaRepository.findAllById(List.copyOf(progress.watchedOrderIds()))
+                        .forEach(saga -> progress.publish(describe(saga)));
+            }
+        } catch (DataAccessException e) {
+            logger.error("Checkout saga recovery sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void submit(Long orderId) {
+        if (!queued.add(orderId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                queued.remove(orderId);
+                run(orderId);
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(orderId);
+            logger.warn("Checkout worker queue is full, order {} left for the recovery sweep", orderId);
+        }
+    }
+
+    private void run(Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status ->
+                sagaRepository.claim(orderId, ACTIVE, now, now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs))));
+        if (claimed == null || claimed == 0) {
+            return; // đã kết thúc, chưa tới hạn, hoặc worker khác đang giữ
+        }
+        try {
+            CheckoutSaga saga = sagaRepository.findById(orderId).orElseThrow();
+            while (!saga.getState().isTerminal()) {
+                try {
+                    saga = step(saga);
+                } catch (ObjectOptimisticLockingFailureException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    if (saga.getState() != CheckoutSaga.State.COMPENSATING && !isTransient(e)) {
+                        saga = startCompensation(saga, e, e.getMessage());
+                    } else {
+                        saga = retryLater(saga, e);
+                        if (saga.getAttempts() > 0) {
+                            return; // chờ backoff, lượt quét sẽ chạy lại
+                        }
+                    }
+                }
+                if (progress.isWatched(orderId)) {
+                    progress.publish(describe(saga));
+                }
+            }
+        } catch (ObjectOptimisticLockingFailureException e) {
+            logger.warn("Checkout saga for order {} was taken over by another worker", orderId);
+        } catch (RuntimeException e) {
+            // Không ghi được trạng thái: hết lease thì saga được chạy lại từ bước cuối đã ghi
+            logger.error("Checkout saga for order {} stopped unexpectedly: {}", orderId, e.getMessage(), e);
+        }
+    }
+
+    // Chạy đúng một bước của trạng thái hiện tại và ghi kết quả (tối đa một transaction ngắn)
+    private CheckoutSaga step(CheckoutSaga saga) {
+        Long orderId = saga.getOrderId();
+        CreateOrderRequest request = fromJson(saga.getRequestPayload(), CreateOrderRequest.class);
+        switch (saga.getState()) {
+            case STARTED -> {
+                String buyerToken = buyerTokens.getIfPresent(orderId);
+                if (buyerToken == null) {
+                    throw new OrderException(ErrorCodeOrder.CHECKOUT_SESSION_LOST,
+                            "Buyer token for order " + orderId + " is no longer available on this instance");
+                }
+                CheckoutSteps.Priced priced = steps.price(request, saga.getBuyerId(), buyerToken);
+                String checkoutItems = toJson(priced.items());
+                return transition(saga, order -> {
+                    List<OrderItem> items = new ArrayList<>(priced.orderItems());
+                    items.forEach(item -> item.setOrder(order));
+                    order.setItems(items);
+                    order.setTotalAmount(priced.totalAmount());
+                    order.setDiscountAmount(priced.discountAmount());
+                    order.setFinalAmount(priced.finalAmount());
+                    order.setVoucherCode(priced.voucherCode());
+                }, s -> {
+                    s.setBuyerId(priced.buyerId());
+                    s.setCheckoutItems(checkoutItems);
+                    // Ghi trước lời gọi đánh dấu: timeout vẫn có thể đã đánh dấu, bù trừ phải trả voucher
+                    s.setVoucherMarked(priced.voucherCode() != null
+                            && priced.discountAmount() != null
+                            && priced.discountAmount().compareTo(BigDecimal.ZERO) > 0);
+                    s.setState(CheckoutSaga.State.PRICED);
+                });
+            }
+            case PRICED -> {
+                if (saga.isVoucherMarked()) {
+                    steps.markVoucherUsed(orderId, saga.getBuyerId(), loadOrder(orderId).getVoucherCode());
+                }
+                return transition(saga, null, s -> {
+                    // Từ đây có thể đã giữ hàng (kể cả khi lời gọi giữ hàng timeout), bù trừ phải hoàn kho
+                    s.setStockRequested(true);
+                    s.setState(CheckoutSaga.State.VOUCHER_REDEEMED);
+                });
+            }
+            case VOUCHER_REDEEMED -> {
+                String reservationId = steps.reserveStock(loadOrder(orderId));
+                return transition(saga, order -> order.setStockReservationId(reservationId),
+                        s -> s.setState(CheckoutSaga.State.STOCK_RESERVED));
+            }
+            case STOCK_RESERVED -> {
+                OrderEvent event = new OrderEvent();
+                event.setId(orderId);
+                event.setUserId(saga.getBuyerId());
+                event.setStatus(OrderStatus.PENDING.name());
+                CheckoutSaga completed = transition(saga, order -> {
+                    order.setStatus(OrderStatus.PENDING);
+                    orderOutbox.appendNotification(orderId, event);
+                }, s -> s.setState(CheckoutSaga.State.COMPLETED));
+                logger.info("Checkout completed for order {}", orderId);
+                // Sau commit, best-effort như trước: giỏ lỗi (hoặc không còn token người mua) thì đơn vẫn thành công
+                String buyerToken = buyerTokens.getIfPresent(orderId);
+                buyerTokens.invalidate(orderId);
+                if (buyerToken != null) {
+                    steps.updateCart(request, fromJson(saga.getCheckoutItems(), CART_ITEMS), orderId, buyerToken);
+                } else {
+                    logger.warn("Buyer token for order {} is gone, cart was not updated", orderId);
+                }
+                return completed;
+            }
+            case COMPENSATING -> {
+                return compensate(saga);
+            }
+            default -> throw new IllegalStateException("Checkout saga for order " + orderId + " is " + saga.getState());
+        }
+    }
+
+    // Mỗi lần một việc bù trừ, ghi lại ngay để lần thử lại không làm lại việc đã xong
+    private CheckoutSaga compensate(CheckoutSaga saga) {
+        Long orderId = saga.getOrderId();
+        if (saga.isVoucherMarked()) {
+            Order order = loadOrder(orderId);
+            steps.releaseVoucher(orderId, saga.getBuyerId(), order.getVoucherCode());
+            logger.info("Released voucher {} of failed order {}", order.getVoucherCode(), orderId);
+            return transition(saga, null, s -> s.setVoucherMarked(false));
+        }
+        if (saga.isStockRequested()) {
+            Order order = loadOrder(orderId);
+            String reservationId = order.getStockReservationId();
+            if (reservationId == null) {
+                // Không nhận được phản hồi giữ hàng: gọi lại (idempotent theo orderRef) để lấy phiếu nếu đã giữ
+                try {
+                    reservationId = steps.reserveStock(order);
+                } catch (OrderException e) {
+                    if (e.getErrorCodeOrder() != ErrorCodeOrder.INSUFFICIENT_STOCK_FOR_ORDER) {
+                        throw e;
+                    }
+                }
+            }
+            if (reservationId != null) {
+                steps.releaseStock(orderId, reservationId);
+            }
+            return transition(saga, null, s -> s.setStockRequested(false));
+        }
+        logger.warn("Checkout failed for order {}: {}", orderId, saga.getFailureReason());
+        buyerTokens.invalidate(orderId);
+        return transition(saga, order -> order.setStatus(OrderStatus.FAILED),
+                s -> s.setState(CheckoutSaga.State.FAILED));
+    }
+
+    private CheckoutSaga startCompensation(CheckoutSaga saga, RuntimeException cause, String reason) {
+        logger.warn("Checkout for order {} failed at {}: {}. Compensating.", saga.getOrderId(), saga.getState(), reason);
+        // Giữ hàng là all-or-nothing: hết hàng nghĩa là không có gì phải hoàn
+        boolean nothingReserved = cause instanceof OrderException e
+                && e.getErrorCodeOrder() == ErrorCodeOrder.INSUFFICIENT_STOCK_FOR_ORDER;
+        return transition(saga, null, s -> {
+            s.setState(CheckoutSaga.State.COMPENSATING);
+            s.setFailureReason(truncate(reason));
+            if (nothingReserved) {
+                s.setStockRequested(false);
+            }
+        });
+    }
+
+    private CheckoutSaga retryLater(CheckoutSaga saga, RuntimeException e) {
+        int attempts = saga.getAttempts() + 1;
+        String error = truncate(e.getClass().getSimpleName() + ": " + e.getMessage());
+        if (attempts >= maxAttempts) {
+            if (saga.getState() != CheckoutSaga.State.COMPENSATING) {
+                return startCompensation(saga, e, "Gave up after " + attempts + " attempts: " + error);
+            }
+            // Bù trừ không xong: dừng lại để xử lý tay, không thử mãi
+            logger.error("Compensation for order {} failed {} times, giving up: {}", saga.getOrderId(), attempts, error);
+            buyerTokens.invalidate(saga.getOrderId());
+            return transition(saga, order -> order.setStatus(OrderStatus.FAILED), s -> {
+                s.setState(CheckoutSaga.State.FAILED);
+                s.setLastError(truncate("Compensation incomplete: " + error));
+            });
+        }
+        long backoffMs = Math.min(maxBackoffMs, 1000L << Math.min(attempts - 1, 20));
+        logger.warn("Checkout step {} for order {} failed (attempt {}), retrying in {} ms: {}",
+                saga.getState(), saga.getOrderId(), attempts, backoffMs, error);
+        return transition(saga, null, s -> {
+            s.setAttempts(attempts);
+            s.setLastError(error);
+            s.setNextAttemptAt(LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs)));
+        });
+    }
+
+    /**
+     * Ghi kết quả một bước trong một transaction ngắn: đọc lại saga, từ chối nếu worker khác đã ghi (version khác),
+     * áp thay đổi lên đơn hàng và saga, gia hạn lease. Trả về bản saga mới (version mới).
+     */
+    private CheckoutSaga transition(CheckoutSaga saga, Consumer<Order> orderChange, Consumer<CheckoutSaga> sagaChange) {
+        return transactionTemplate.execute(status -> {
+            CheckoutSaga current = sagaRepository.findById(saga.getOrderId()).orElseThrow();
+            if (!Objects.equals(current.getVersion(), saga.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(CheckoutSaga.class, saga.getOrderId());
+            }
+            if (orderChange != null) {
+                Order order = orderRepository.findById(saga.getOrderId()).orElseThrow();
+                orderChange.accept(order);
+                orderRepository.save(order);
+            }
+            current.setAttempts(0);
+            current.setLastError(null);
+            current.setNextAttemptAt(LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs)));
+            sagaChange.accept(current);
+            return sagaRepository.saveAndFlush(current);
+        });
+    }
+
+    // Đọc đơn kèm items trong transaction chỉ-đọc (items là LAZY, worker không có session mở sẵn)
+    private Order loadOrder(Long orderId) {
+        return transactionTemplate.execute(status -> {
+            Order order = orderRepository.findById(orderId)
+                    .orElseThrow(() -> new OrderException(ErrorCodeOrder.ORDER_NOT_FOUND, "Order not found with ID: " + orderId));
+            if (order.getItems() != null) {
+                order.getItems().size();
+            }
+            return order;
+        });
+    }
+
+    private CheckoutStatusResponse describe(CheckoutSaga saga) {
+        CheckoutStatusResponse.CheckoutStatusResponseBuilder builder = CheckoutStatusResponse.builder()
+                .orderId(saga.getOrderId())
+                .state(saga.getState())
+                .finished(saga.getState().isTerminal())
+                .failureReason(saga.getFailureReason());
+        if (saga.getState() == CheckoutSaga.State.COMPLETED) {
+            OrderResponse order = orderService.getOrderById(saga.getOrderId());
+            return builder.orderStatus(order.getStatus()).order(order).build();
+        }
+        return builder
+                .orderStatus(saga.getState() == CheckoutSaga.State.FAILED ? OrderStatus.FAILED : OrderStatus.PLACING)
+                .build();
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        if (e instanceof OrderException orderException) {
+            return CheckoutSteps.TRANSIENT.contains(orderException.getErrorCodeOrder());
+        }
+        // Lỗi DB, lỗi mạng ngoài dự kiến...: thử lại
+        return true;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new OrderException(ErrorCodeOrder.ORDER_CREATION_FAILED, "Cannot serialize checkout data", e);
+        }
+    }
+
+    private <T> T fromJson(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt checkout saga payload", e);
+        }
+    }
+
+    private <T> T fromJson(String json, TypeReference<T> type) {
+        try {
+            return json == null ? null : objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt checkout saga payload", e);
+        }
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > 500 ? value.substring(0, 500) : value;
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.order.service.checkout;
+
+import com.example.order.dto.AddressDTO;
+import com.example.order.dto.CartDTO;
+import com.example.order.dto.CartItemDTO;
+import com.example.order.dto.ProductDTO;
+import com.example.order.dto.request.CreateOrderRequest;
+import com.example.order.dto.response.ApiResponRequest;
+import com.example.order.entity.Order;
+import com.example.order.entity.OrderItem;
+import com.example.order.entity.OrderStatus;
+import com.example.order.exception.ErrorCodeOrder;
+import com.example.order.exception.OrderException;
+import com.example.order.security.ServiceTokenProvider;
+import com.example.order.service.CheckoutProductResolver;
+import com.example.order.service.UserIdentityResolver;
+import com.example.order.service.client.CartServiceClient;
+import com.example.order.service.client.CheckoutCartItemRequest;
+import com.example.order.service.client.ProductServiceClient;
+import com.example.order.service.client.StockReservationRequest;
+import com.example.order.service.client.StockReservationResponse;
+import com.example.order.service.client.VoucherServiceClient;
+
+import feign.FeignException;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Các bước của checkout: lời gọi sang user / cart / product / voucher service và dựng dữ liệu đơn hàng.
+ * Chỉ giỏ hàng cần token của người mua (cart-service đọc user từ token); user / product / voucher
+ * được gọi bằng token của order-service, nên bù trừ chạy muộn vẫn được dù token người mua đã hết hạn.
+ * Không bước nào chạy trong transaction. Lỗi ném ra là {@link OrderException}: mã trong
+ * {@link #TRANSIENT} là lỗi tạm thời (service không tới được, 5xx, timeout) và được thử lại,
+ * còn lại là lỗi nghiệp vụ làm checkout thất bại.
+ */
+@Component
+@RequiredArgsConstructor
+public class CheckoutSteps {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutSteps.class);
+
+    static final Set<ErrorCodeOrder> TRANSIENT = Set.of(
+            ErrorCodeOrder.USER_SERVICE_UNREACHABLE_FOR_ORDER,
+            ErrorCodeOrder.CART_SERVICE_UNREACHABLE,
+            ErrorCodeOrder.PRODUCT_SERVICE_UNREACHABLE_FOR_ORDER,
+            ErrorCodeOrder.PRODUCT_SERVICE_STOCK_UPDATE_FAILED,
+            ErrorCodeOrder.VOUCHER_SERVICE_UNREACHABLE,
+            ErrorCodeOrder.DATABASE_ERROR
+    );
+
+    private final UserIdentityResolver userIdentityResolver;
+    private final CartServiceClient cartServiceClient;
+    private final ProductServiceClient productServiceClient;
+    private final VoucherServiceClient voucherServiceClient;
+    private final CheckoutProductResolver checkoutProductResolver;
+    private final ServiceTokenProvider serviceTokenProvider;
+
+    // Kết quả bước định giá: người mua, các dòng được thanh toán và đơn hàng đã tính tiền (chưa lưu)
+    record Priced(String buyerId, List<CartItemDTO> items, List<OrderItem> orderItems,
+                  BigDecimal totalAmount, BigDecimal discountAmount, BigDecimal finalAmount, String voucherCode) {
+    }
+
+    // ✅ Đơn giản hoá: billingAddress null → dùng shippingAddress
+    Order initializeOrder(CreateOrderRequest request) {
+        Order order = new Order();
+        order.setUserId(request.getUserId());
+        order.setOrderDate(LocalDateTime.now());
+        order.setStatus(OrderStatus.PLACING);
+        order.setTotalAmount(BigDecimal.ZERO);
+
+        AddressDTO shipping = request.getShippingAddress();
+        AddressDTO billing = request.getBillingAddress() != null
+                ? request.getBillingAddress()
+                : shipping; // nếu không gửi billing → dùng shipping luôn
+
+        mapAddressDtoToOrder(shipping, order, true);
+        mapAddressDtoToOrder(billing, order, false);
+
+        order.setPaymentMethod(request.getPaymentMethod());
+        return order;
+    }
+
+    /**
+     * Lấy người mua + giỏ hàng, chọn các dòng được thanh toán, lấy snapshot sản phẩm, tính tiền và áp voucher.
+     * Chỉ đọc, chạy lại bao nhiêu lần cũng được.
+     *
+     * @param knownBuyerId UUID người mua đã biết từ JWT lúc nhận request, null thì tra qua {@link UserIdentityResolver}
+     * @param buyerAuthorizationHeader token của người mua, chỉ dùng để đọc giỏ hàng
+     */
+    Priced price(CreateOrderRequest request, String knownBuyerId, String buyerAuthorizationHeader) {
+        String serviceAuthorization = serviceTokenProvider.bearer();
+        // UUID (dùng cho voucher + noti)
+        String buyerId = knownBuyerId != null
+                ? knownBuyerId
+                : userIdentityResolver.userId(request.getUserId(), serviceAuthorization);
+
+        CartDTO cart = fetchCart(buyerId, buyerAuthorizationHeader);
+        if (cart.getItems() == null || cart.getItems().isEmpty()) {
+            logger.warn("Cart is empty for user ID: {}. Cannot create order.", buyerId);
+            throw new OrderException(ErrorCodeOrder.EMPTY_CART_FOR_ORDER);
+        }
+        List<CartItemDTO> items = selectItems(request, cart.getItems());
+        logger.info("Will create order with {} items.", items.size());
+
+        // Lấy snapshot sản phẩm (mỗi productId gọi 1 lần) rồi kiểm tra
+        Map<Long, ProductDTO> products = checkoutProductResolver.resolve(
+                items.stream().map(CartItemDTO::getProductId).collect(Collectors.toList()),
+                serviceAuthorization
+        );
+        for (CartItemDTO item : items) {
+            validateProductAvailability(products.get(item.getProductId()), item.getQuantity());
+        }
+
+        List<OrderItem> orderItems = items.stream()
+                .map(item -> createOrderItem(products.get(item.getProductId()), item.getQuantity()))
+                .collect(Collectors.toList());
+
+        // Tổng trước giảm
+        BigDecimal totalAmount = orderItems.stream()
+                .map(OrderItem::getSubtotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (totalAmount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new OrderException(
+                    ErrorCodeOrder.INVALID_ORDER_REQUEST,
+                    "Total amount must be greater than zero."
+            );
+        }
+
+        // Áp dụng voucher (nếu có)
+        String voucherCode = request.getVoucherCode() != null && !request.getVoucherCode().isBlank()
+                ? request.getVoucherCode()
+                : null;
+        BigDecimal discountAmount = BigDecimal.ZERO;
+        if (voucherCode != null) {
+            try {
+                discountAmount = voucherServiceClient.applyVoucher(buyerId, voucherCode, totalAmount, serviceAuthorization);
+            } catch (FeignException e) {
+                logger.error("Failed to apply voucher {} for user {}: {}", voucherCode, buyerId, e.getMessage());
+                throw remoteFailure(e, ErrorCodeOrder.VOUCHER_SERVICE_UNREACHABLE,
+                        ErrorCodeOrder.INVALID_ORDER_REQUEST, "Cannot apply voucher: " + voucherCode);
+            }
+        }
+        if (discountAmount == null) {
+            discountAmount = BigDecimal.ZERO;
+        }
+
+        // Tổng sau giảm (không âm)
+        BigDecimal finalAmount = totalAmount.subtract(discountAmount);
+        if (finalAmount.compareTo(BigDecimal.ZERO) < 0) {
+            finalAmount = BigDecimal.ZERO;
+        }
+        logger.info("Order discount for user {}: total={}, discount={}, final={}, voucher={}",
+                request.getUserId(), totalAmount, discountAmount, finalAmount, voucherCode);
+        return new Priced(buyerId, items, orderItems, totalAmount, discountAmount, finalAmount, voucherCode);
+    }
+
+    /**
+     * Đánh dấu voucher cho đơn. voucher-service ghi orderRef lên bản voucher đã dùng và bỏ qua lần gọi lặp lại
+     * của cùng đơn, nên thử lại sau timeout không tiêu thêm một bản voucher.
+     */
+    void markVoucherUsed(Long orderId, String buyerId, String voucherCode) {
+        try {
+            voucherServiceClient.markVoucherUsed(buyerId, voucherCode, orderRef(orderId), serviceTokenProvider.bearer());
+        } catch (FeignException e) {
+            logger.error("Failed to mark voucher {} as used for user {}: {}", voucherCode, buyerId, e.getMessage());
+            throw remoteFailure(e, ErrorCodeOrder.VOUCHER_SERVICE_UNREACHABLE,
+                    ErrorCodeOrder.INVALID_ORDER_REQUEST, "Cannot redeem voucher: " + voucherCode);
+        }
+    }
+
+    /** Trả đúng bản voucher mà đơn này đã dùng; đơn chưa từng đánh dấu (hoặc đã trả) thì không làm gì. */
+    void releaseVoucher(Long orderId, String buyerId, String voucherCode) {
+        try {
+            voucherServiceClient.releaseVoucher(buyerId, voucherCode, orderRef(orderId), serviceTokenProvider.bearer());
+        } catch (FeignException e) {
+            logger.error("Failed to release voucher {} for user {}: {}", voucherCode, buyerId, e.getMessage());
+            throw remoteFailure(e, ErrorCodeOrder.VOUCHER_SERVICE_UNREACHABLE,
+                    ErrorCodeOrder.INVALID_ORDER_REQUEST, "Cannot release voucher: " + voucherCode);
+        }
+    }
+
+    // Khóa idempotent của đơn khi gọi sang product / voucher service
+    private static String orderRef(Long orderId) {
+        return "order-" + orderId;
+    }
+
+    /**
+     * Giữ hàng cho cả đơn. product-service trả lại phiếu đã có nếu orderRef đã được giữ trước đó,
+     * nên gọi lại sau timeout không trừ kho hai lần.
+     */
+    String reserveStock(Order order) {
+        StockReservationRequest request = new StockReservationRequest(
+                orderRef(order.getId()),
+                order.getItems().stream()
+                        .map(item -> new StockReservationRequest.Item(item.getProductId(), item.getQuantity()))
+                        .collect(Collectors.toList())
+        );
+        try {
+            ApiResponRequest<StockReservationResponse> response =
+                    productServiceClient.reserveStock(request, serviceTokenProvider.bearer());
+            if (response == null || response.getResult() == null || response.getResult().getReservationId() == null) {
+                throw new OrderException(
+                        ErrorCodeOrder.PRODUCT_SERVICE_STOCK_UPDATE_FAILED,
+                        "Product service returned no stock reservation for order " + order.getId()
+                );
+            }
+            logger.debug("Reserved stock for order {} with reservation {}",
+                    order.getId(), response.getResult().getReservationId());
+            return response.getResult().getReservationId();
+        } catch (FeignException.BadRequest e) {
+            logger.warn("Insufficient stock when reserving order {}: {}", order.getId(), e.getMessage());
+            throw new OrderException(
+                    ErrorCodeOrder.INSUFFICIENT_STOCK_FOR_ORDER,
+                    "Insufficient stock for one or more products.",
+                    e
+            );
+        } catch (FeignException e) {
+            logger.error("FeignException reserving stock for order {}: {}", order.getId(), e.getMessage());
+            throw remoteFailure(e, ErrorCodeOrder.PRODUCT_SERVICE_STOCK_UPDATE_FAILED,
+                    ErrorCodeOrder.PRODUCT_SERVICE_STOCK_UPDATE_FAILED, "Failed to reserve stock.");
+        }
+    }
+
+    void releaseStock(Long orderId, String reservationId) {
+        try {
+            productServiceClient.releaseStock(reservationId, serviceTokenProvider.bearer());
+            logger.info("Released stock reservation {} for order {}", reservationId, orderId);
+        } catch (FeignException.NotFound e) {
+            logger.warn("Stock reservation {} for order {} not found, nothing to release", reservationId, orderId);
+        } catch (FeignException e) {
+            logger.error("Failed to release stock reservation {} for order {}: {}", reservationId, orderId, e.getMessage());
+            throw new OrderException(ErrorCodeOrder.PRODUCT_SERVICE_STOCK_UPDATE_FAILED,
+                    "Failed to release stock reservation " + reservationId, e);
+        }
+    }
+
+    // Cập nhật giỏ sau thanh toán: không gửi items -> xoá cả giỏ, checkout một phần -> chỉ trừ số lượng đã mua.
+    // Không throw để đơn vẫn thành công
+    void updateCart(CreateOrderRequest request, List<CartItemDTO> purchasedItems, Long orderId, String authorizationHeader) {
+        try {
+            if (request.getItems() == null || request.getItems().isEmpty()) {
+                cartServiceClient.clearCart(authorizationHeader);
+                logger.info("Cleared cart for user {} after order {}", request.getUserId(), orderId);
+            } else {
+                List<CheckoutCartItemRequest> payload = purchasedItems.stream()
+                        .map(i -> new CheckoutCartItemRequest(i.getProductId(), i.getQuantity()))
+                        .collect(Collectors.toList());
+                cartServiceClient.removeItemsAfterCheckout(payload, authorizationHeader);
+                logger.info("Adjusted cart for user {} after order {} ({} items).",
+                        request.getUserId(), orderId, purchasedItems.size());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to update cart for user {} after order {}: {}",
+                    request.getUserId(), orderId, e.getMessage(), e);
+        }
+    }
+
+    private CartDTO fetchCart(String userId, String authorizationHeader) {
+        logger.info("Fetching cart for user {}", userId);
+        try {
+            // CartService dùng token để lấy current user
+            return cartServiceClient.getCartByUserId(authorizationHeader);
+        } catch (Exception e) {
+            logger.error("Failed to fetch cart for user {}: {}", userId, e.getMessage());
+            // Token người mua đã hết hạn: thử lại cũng vô ích
+            if (e.getCause() instanceof FeignException feign && (feign.status() == 401 || feign.status() == 403)) {
+                throw new OrderException(ErrorCodeOrder.INVALID_TOKEN, "Could not fetch cart for user " + userId, e);
+            }
+            throw new OrderException(
+                    ErrorCodeOrder.CART_SERVICE_UNREACHABLE,
+                    "Could not fetch cart for user " + userId,
+                    e
+            );
+        }
+    }
+
+    private List<CartItemDTO> selectItems(CreateOrderRequest request, List<CartItemDTO> cartItems) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            // 🟢 Không gửi items trong request -> thanh toán toàn bộ giỏ
+            logger.info("No items specified in request. Will checkout ALL cart items.");
+            return cartItems;
+        }
+        // 🟡 Gửi danh sách items -> chỉ checkout các item này
+        logger.info("Request contains {} items to checkout (partial checkout).", request.getItems().size());
+
+        // Map cart theo productId để tra nhanh
+        Map<Long, CartItemDTO> cartItemMap = new HashMap<>();
+        for (CartItemDTO ci : cartItems) {
+            cartItemMap.put(ci.getProductId(), ci);
+        }
+
+        List<CartItemDTO> selected = request.getItems().stream().map(reqItem -> {
+            CartItemDTO inCart = cartItemMap.get(reqItem.getProductId());
+            if (inCart == null) {
+                throw new OrderException(
+                        ErrorCodeOrder.INVALID_ORDER_REQUEST,
+                        "Product " + reqItem.getProductId() + " is not in cart."
+                );
+            }
+            if (reqItem.getQuantity() == null || reqItem.getQuantity() <= 0) {
+                throw new OrderException(
+                        ErrorCodeOrder.INVALID_ORDER_REQUEST,
+                        "Requested quantity for product " + reqItem.getProductId() + " must be > 0."
+                );
+            }
+            // Không cho mua nhiều hơn số lượng trong giỏ
+            return new CartItemDTO(inCart.getProductId(), Math.min(reqItem.getQuantity(), inCart.getQuantity()));
+        }).collect(Collectors.toList());
+
+        if (selected.isEmpty()) {
+            throw new OrderException(
+                    ErrorCodeOrder.INVALID_ORDER_REQUEST,
+                    "No valid cart items selected for checkout."
+            );
+        }
+        return selected;
+    }
+
+    private void validateProductAvailability(ProductDTO product, int requestedQuantity) {
+        if (!product.isActive() || product.isDeleted()) {
+            throw new OrderException(
+                    ErrorCodeOrder.PRODUCT_UNAVAILABLE_FOR_ORDER,
+                    "Product " + product.getId() + " is unavailable."
+            );
+        }
+        if (product.getStockQuantity() < requestedQuantity) {
+            throw new OrderException(
+                    ErrorCodeOrder.INSUFFICIENT_STOCK_FOR_ORDER,
+                    "Insufficient stock for product " + product.getId()
+            );
+        }
+    }
+
+    private OrderItem createOrderItem(ProductDTO product, int quantity) {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setProductId(product.getId());
+        orderItem.setQuantity(quantity);
+        orderItem.setPrice(product.getPrice());
+        orderItem.setStoreId(product.getSellerInfo().getStoreId());
+
+        String imageUrl = product.getImageUrl();
+        if (imageUrl != null && imageUrl.contains("productservice:8081")) {
+            imageUrl = imageUrl.replace("productservice:8081", "localhost:8081");
+        }
+        orderItem.setImageUrl(imageUrl);
+        orderItem.setProductName(product.getName());
+        orderItem.setSubtotal(product.getPrice().multiply(BigDecimal.valueOf(quantity)));
+        return orderItem;
+    }
+
+    private void mapAddressDtoToOrder(AddressDTO addressDTO, Order order, boolean isShipping) {
+        if (addressDTO == null) return;
+        if (isShipping) {
+            order.setShippingAddressLine1(addressDTO.getAddressLine1());
+            order.setShippingAddressLine2(addressDTO.getAddressLine2());
+            order.setShippingCity(addressDTO.getCity());
+            order.setShippingPostalCode(addressDTO.getPostalCode());
+            order.setShippingCountry(addressDTO.getCountry());
+        } else {
+            order.setBillingAddressLine1(addressDTO.getAddressLine1());
+            order.setBillingAddressLine2(addressDTO.getAddressLine2());
+            order.setBillingCity(addressDTO.getCity());
+            order.setBillingPostalCode(addressDTO.getPostalCode());
+            order.setBillingCountry(addressDTO.getCountry());
+        }
+    }
+
+    // 4xx (trừ 408/429) là bị từ chối; 401/403 là token hết hạn; còn lại (5xx, timeout, không kết nối được) là tạm thời
+    private static OrderException remoteFailure(FeignException e, ErrorCodeOrder unreachable,
+                                                ErrorCodeOrder rejected, String message) {
+        int status = e.status();
+        if (status == 401 || status == 403) {
+            return new OrderException(ErrorCodeOrder.INVALID_TOKEN, message, e);
+        }
+        if (status >= 400 && status < 500 && status != 408 && status != 429) {
+            return new OrderException(rejected, message, e);
+        }
+        return new OrderException(unreachable, message, e);
+    }
+}
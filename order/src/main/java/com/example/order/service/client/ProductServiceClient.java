@@ -6,10 +6,13 @@ import com.example.order.dto.response.ApiResponRequest;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 
+import java.util.List;
+
 @FeignClient(name = "product-service", url = "http://productservice:8081")
 public interface ProductServiceClient {
 
@@ -19,6 +22,13 @@ public interface ProductServiceClient {
             @RequestHeader("Authorization") String authorization
     );
 
+    // Lấy nhiều sản phẩm trong 1 request, kết quả theo đúng thứ tự productIds
+    @PostMapping("/api/v1/products/batch")
+    ApiResponRequest<List<ProductDTO>> getProductsByIds(
+            @RequestBody List<Long> productIds,
+            @RequestHeader("Authorization") String authorization
+    );
+
     @PutMapping("/api/v1/products/{productId}/stock")
     void decreaseStock(
             @PathVariable Long productId,
@@ -33,6 +43,19 @@ public interface ProductServiceClient {
             @RequestHeader("Authorization") String authorization
     );
 
+    // Trừ kho cả đơn trong 1 transaction phía product-service (all-or-nothing)
+    @PostMapping("/api/v1/products/stock-reservations")
+    ApiResponRequest<StockReservationResponse> reserveStock(
+            @RequestBody StockReservationRequest request,
+            @RequestHeader("Authorization") String authorization
+    );
+
+    @PostMapping("/api/v1/products/stock-reservations/{reservationId}/release")
+    ApiResponRequest<StockReservationResponse> releaseStock(
+            @PathVariable String reservationId,
+            @RequestHeader("Authorization") String authorization
+    );
+
     @GetMapping("/api/v1/products/{productId}/category")
     CategoryDTO getCategoryByProductId(
             @PathVariable Long productId,
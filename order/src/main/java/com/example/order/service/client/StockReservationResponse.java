@@ -0,0 +1,14 @@
+package com.example.order.service.client;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class StockReservationResponse {
+    private String reservationId;
+    private String orderRef;
+    private String status;
+}
@@ -29,6 +29,16 @@ public interface VoucherServiceClient {
     void markVoucherUsed(
             @RequestParam("userId") String userId,
             @RequestParam("code") String code,
+            @RequestParam("orderRef") String orderRef,
+            @RequestHeader("Authorization") String authorizationHeader
+    );
+
+    // Hoàn tác markVoucherUsed (bù trừ khi checkout thất bại sau bước voucher)
+    @PostMapping("/voucher/vouchers/release")
+    void releaseVoucher(
+            @RequestParam("userId") String userId,
+            @RequestParam("code") String code,
+            @RequestParam("orderRef") String orderRef,
             @RequestHeader("Authorization") String authorizationHeader
     );
 }
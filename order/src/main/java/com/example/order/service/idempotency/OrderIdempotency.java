@@ -0,0 +1,238 @@
+package com.example.order.service.idempotency;
+
+import com.example.order.dto.request.CreateOrderRequest;
+import com.example.order.dto.response.CheckoutStatusResponse;
+import com.example.order.entity.OrderIdempotencyKey;
+import com.example.order.exception.ErrorCodeOrder;
+import com.example.order.exception.OrderException;
+import com.example.order.repository.OrderIdempotencyKeyRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key cho POST /api/v1/orders.
+ * Kết quả của mỗi key (hash của body + phản hồi đã trả) được ghi vào order_idempotency_keys cùng transaction
+ * với đơn hàng, phía trước là một LRU trong bộ nhớ; request gửi lại chỉ tốn một lần tra cache.
+ * Request trùng key đến cùng lúc trên replica này chờ lần chạy đầu tiên thay vì tự chạy lại;
+ * trên replica khác thì INSERT của nó chờ khoá trên khoá chính, gặp lỗi trùng và đọc lại kết quả đã ghi.
+ * Request lỗi không được ghi nên gửi lại với cùng key sẽ chạy lại.
+ */
+@Component
+public class OrderIdempotency {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderIdempotency.class);
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    public record Outcome(CheckoutStatusResponse response, boolean replayed) {
+    }
+
+    private record Stored(String requestHash, String responseBody, LocalDateTime createdAt) {
+    }
+
+    private final OrderIdempotencyKeyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlHours;
+    private final long waitTimeoutMs;
+
+    private final Map<String, Stored> recent;
+    private final Map<String, CompletableFuture<Stored>> inFlight = new ConcurrentHashMap<>();
+
+    public OrderIdempotency(
+            OrderIdempotencyKeyRepository repository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${order-idempotency.ttl-hours:24}") long ttlHours,
+            @Value("${order-idempotency.memory-size:10000}") int memorySize,
+            @Value("${order-idempotency.wait-timeout-ms:10000}") long waitTimeoutMs) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlHours = ttlHours;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<String, Stored>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stored> eldest) {
+                return size() > memorySize;
+            }
+        });
+    }
+
+    /**
+     * Chạy {@code placeOrder} đúng một lần cho mỗi (username, key). {@code placeOrder} được gọi trong transaction
+     * ghi key, nên đơn hàng và key cùng commit hoặc cùng rollback.
+     */
+    public Outcome placeOnce(String username, String idempotencyKey, CreateOrderRequest request,
+                             Supplier<CheckoutStatusResponse> placeOrder) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new OrderException(ErrorCodeOrder.INVALID_ORDER_REQUEST,
+                    "Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters.");
+        }
+        String id = sha256(username + '\n' + idempotencyKey);
+        String requestHash = sha256(toJson(request));
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+
+        while (true) {
+            CompletableFuture<Stored> mine = new CompletableFuture<>();
+            CompletableFuture<Stored> running = inFlight.putIfAbsent(id, mine);
+            if (running == null) {
+                return runFirst(id, requestHash, placeOrder, mine);
+            }
+            // Cùng key đang chạy trên replica này: chờ kết quả; lần đó lỗi thì thử giành chạy lại
+            Stored stored = await(running, deadline);
+            if (stored != null) {
+                return replay(stored, requestHash);
+            }
+            inFlight.remove(id, running);
+        }
+    }
+
+    private Outcome runFirst(String id, String requestHash, Supplier<CheckoutStatusResponse> placeOrder,
+                             CompletableFuture<Stored> mine) {
+        try {
+            Stored stored = lookup(id);
+            if (stored != null) {
+                mine.complete(stored);
+                return replay(stored, requestHash);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            String[] body = new String[1];
+            CheckoutStatusResponse response;
+            try {
+                response = transactionTemplate.execute(status -> {
+                    CheckoutStatusResponse placed = placeOrder.get();
+                    body[0] = toJson(placed);
+                    repository.insert(id, requestHash, placed.getOrderId(), body[0], now);
+                    return placed;
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Replica khác vừa ghi cùng key: đơn của request này đã rollback, trả kết quả của request kia
+                stored = repository.findById(id).map(OrderIdempotency::toStored).orElseThrow(() -> e);
+                logger.info("Idempotency key {} was completed concurrently by another instance", id);
+                recent.put(id, stored);
+                mine.complete(stored);
+                return replay(stored, requestHash);
+            }
+            stored = new Stored(requestHash, body[0], now);
+            recent.put(id, stored);
+            mine.complete(stored);
+            return new Outcome(response, false);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    private Stored lookup(String id) {
+        LocalDateTime expiredBefore = LocalDateTime.now().minusHours(ttlHours);
+        Stored stored = recent.get(id);
+        if (stored != null && stored.createdAt().isAfter(expiredBefore)) {
+            return stored;
+        }
+        OrderIdempotencyKey row = repository.findById(id).orElse(null);
+        if (row == null) {
+            return null;
+        }
+        if (!row.getCreatedAt().isAfter(expiredBefore)) {
+            // Hết hạn nhưng chưa bị dọn: xoá để dùng lại key
+            recent.remove(id);
+            repository.deleteById(id);
+            return null;
+        }
+        stored = toStored(row);
+        recent.put(id, stored);
+        return stored;
+    }
+
+    // null = lần chạy kia lỗi
+    private Stored await(CompletableFuture<Stored> running, long deadline) {
+        try {
+            return running.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            throw new OrderException(ErrorCodeOrder.IDEMPOTENCY_KEY_IN_PROGRESS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderException(ErrorCodeOrder.IDEMPOTENCY_KEY_IN_PROGRESS);
+        }
+    }
+
+    private Outcome replay(Stored stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new OrderException(ErrorCodeOrder.IDEMPOTENCY_KEY_REUSED);
+        }
+        try {
+            return new Outcome(objectMapper.readValue(stored.responseBody(), CheckoutStatusResponse.class), true);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt idempotent response", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${order-idempotency.purge-interval-ms:3600000}",
+            fixedDelayString = "${order-idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime before = LocalDateTime.now().minusHours(ttlHours);
+        try {
+            int deleted;
+            int total = 0;
+            do {
+                deleted = transactionTemplate.execute(status -> repository.purgeBefore(before));
+                total += deleted;
+            } while (deleted == 1000);
+            if (total > 0) {
+                logger.info("Purged {} idempotency keys older than {} hours", total, ttlHours);
+            }
+        } catch (DataAccessException e) {
+            logger.error("Failed to purge idempotency keys: {}", e.getMessage(), e);
+        }
+    }
+
+    private static Stored toStored(OrderIdempotencyKey row) {
+        return new Stored(row.getRequestHash(), row.getResponseBody(), row.getCreatedAt());
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new OrderException(ErrorCodeOrder.INVALID_ORDER_REQUEST, "Cannot serialize request", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,44 +1,42 @@
 package com.example.order.service.iml;
 
 import com.example.order.dto.AddressDTO;
-import com.example.order.dto.CartDTO;
-import com.example.order.dto.CartItemDTO;
+import com.example.order.config.RabbitMQConfig;
+import com.example.order.dto.OrderDeliveredEvent;
 import com.example.order.dto.OrderEvent;
-import com.example.order.dto.ProductDTO;
-import com.example.order.dto.request.CreateOrderRequest;
-import com.example.order.dto.response.ApiResponRequest;
+import com.example.order.dto.response.OrderHistoryPageResponse;
 import com.example.order.dto.response.OrderItemResponse;
 import com.example.order.dto.response.OrderResponse;
-import com.example.order.dto.response.UserResponse;
+import com.example.order.dto.response.OrderSummaryResponse;
 import com.example.order.entity.Order;
 import com.example.order.entity.OrderItem;
 import com.example.order.entity.OrderStatus;
 import com.example.order.exception.ErrorCodeOrder;
 import com.example.order.exception.OrderException;
 import com.example.order.repository.OrderRepository;
+import com.example.order.security.ServiceTokenProvider;
 import com.example.order.service.OrderService;
-import com.example.order.service.client.CartServiceClient;
+import com.example.order.service.UserIdentityResolver;
 import com.example.order.service.client.ProductServiceClient;
 import com.example.order.service.client.UpdateStockRequest;
-import com.example.order.service.client.UserServiceClient;
-import com.example.order.service.client.VoucherServiceClient;
-import com.example.order.service.client.CheckoutCartItemRequest;
+import com.example.order.service.outbox.OrderOutbox;
 
-import feign.FeignException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.Map;        // ✅ thêm
 import java.util.stream.Collectors;
 
 @Service
@@ -47,413 +45,13 @@ public class OrderServiceImpl implements OrderService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderServiceImpl.class);
 
+    private static final int MAX_HISTORY_PAGE_SIZE = 50;
+
     private final OrderRepository orderRepository;
     private final ProductServiceClient productServiceClient;
-    private final CartServiceClient cartServiceClient;
-    private final RabbitTemplate rabbitTemplate;
-    private final UserServiceClient userServiceClient;
-    private final VoucherServiceClient voucherServiceClient;
-
-    @Override
-    @Transactional
-    public OrderResponse createOrder(CreateOrderRequest createOrderRequest, String authorizationHeader) {
-        logger.info("Attempting to create order for user ID: {}, Authorization: {}",
-                createOrderRequest.getUserId(), authorizationHeader);
-
-        // 1) Lấy username & UUID từ user-service
-        String username = createOrderRequest.getUserId(); // ví dụ: admin
-        logger.debug("Fetching user for username: {}", username);
-        ApiResponRequest<UserResponse> userRes;
-        try {
-            userRes = userServiceClient.getUserByUsername(username, authorizationHeader);
-            if (userRes.getResult() == null
-                    || userRes.getResult().getId() == null
-                    || userRes.getResult().getUsername() == null) {
-                logger.error("UserResponse, id, or username is null for username: {}", username);
-                throw new OrderException(
-                        ErrorCodeOrder.USER_NOT_FOUND,
-                        "User not found for username: " + username
-                );
-            }
-        } catch (FeignException e) {
-            logger.error("Failed to fetch user for username: {}. Error: {}", username, e.getMessage(), e);
-            throw new OrderException(
-                    ErrorCodeOrder.USER_NOT_FOUND,
-                    "User not found for username: " + username,
-                    e
-            );
-        }
-
-        String userIdForOrder = userRes.getResult().getUsername(); // lưu username
-        String userIdForNotification = userRes.getResult().getId(); // UUID (dùng cho voucher + noti)
-        logger.debug("Retrieved username: {} and UUID: {} for username: {}",
-                userIdForOrder, userIdForNotification, username);
-
-        // 2) Lấy giỏ hàng từ cart-service
-        // 2) Lấy giỏ hàng từ cart-service
-        CartDTO cart = fetchCartFromService(userIdForNotification, authorizationHeader);
-        if (cart.getItems() == null || cart.getItems().isEmpty()) {
-            logger.warn("Cart is empty for user ID: {}. Cannot create order.", userIdForNotification);
-            throw new OrderException(ErrorCodeOrder.EMPTY_CART_FOR_ORDER);
-        }
-        List<CartItemDTO> cartItems = cart.getItems();
-        logger.info("Cart fetched for user {}: {} items", userIdForNotification, cartItems.size());
-
-        // 2.1) Xác định danh sách item sẽ thanh toán
-List<CartItemDTO> itemsToOrder;
-
-if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmpty()) {
-    // 🟢 Không gửi items trong request -> thanh toán toàn bộ giỏ
-    itemsToOrder = cartItems;
-    logger.info("No items specified in request. Will checkout ALL cart items.");
-} else {
-    // 🟡 Gửi danh sách items -> chỉ checkout các item này
-    logger.info("Request contains {} items to checkout (partial checkout).", createOrderRequest.getItems().size());
-
-    // Map cart theo productId để tra nhanh
-    Map<Long, CartItemDTO> cartItemMap = new HashMap<>();
-    for (CartItemDTO ci : cartItems) {
-        cartItemMap.put(ci.getProductId(), ci);
-    }
-
-    itemsToOrder = createOrderRequest.getItems().stream().map(reqItem -> {
-        CartItemDTO inCart = cartItemMap.get(reqItem.getProductId());
-        if (inCart == null) {
-            throw new OrderException(
-                    ErrorCodeOrder.INVALID_ORDER_REQUEST,
-                    "Product " + reqItem.getProductId() + " is not in cart."
-            );
-        }
-        int requestedQty = reqItem.getQuantity();
-        if (requestedQty <= 0) {
-            throw new OrderException(
-                    ErrorCodeOrder.INVALID_ORDER_REQUEST,
-                    "Requested quantity for product " + reqItem.getProductId() + " must be > 0."
-            );
-        }
-
-        int quantityToBuy = Math.min(requestedQty, inCart.getQuantity());
-
-        CartItemDTO clone = new CartItemDTO();
-        clone.setProductId(inCart.getProductId());
-        clone.setQuantity(quantityToBuy);
-        // nếu CartItemDTO có thêm field khác thì có thể copy thêm ở đây
-        return clone;
-    }).collect(Collectors.toList());
-
-    if (itemsToOrder.isEmpty()) {
-        throw new OrderException(
-                ErrorCodeOrder.INVALID_ORDER_REQUEST,
-                "No valid cart items selected for checkout."
-        );
-    }
-}
-
-logger.info("Will create order with {} items.", itemsToOrder.size());
-
-        // 3) Kiểm tra từng sản phẩm (chỉ trên selectedItems)
-        for (CartItemDTO item : itemsToOrder) {
-    logger.info("Processing cart item: productId={}, quantity={}", item.getProductId(), item.getQuantity());
-    ProductDTO product = fetchProductFromService(item.getProductId(), authorizationHeader);
-    validateProductAvailability(product, item.getQuantity());
-}
-
-        // 4) Khởi tạo Order
-        Order order = initializeOrder(createOrderRequest);  
-        order.setUserId(userIdForOrder); // lưu username
-
-        // 5) Tạo OrderItem từ selectedItems
-        List<OrderItem> orderItems = itemsToOrder.stream()
-        .map(item -> {
-            ProductDTO product = fetchProductFromService(item.getProductId(), authorizationHeader);
-            return createOrderItem(product, item.getQuantity(), order);
-        })
-        .collect(Collectors.toList());
-order.setItems(orderItems);
-
-        // 6) Tính tổng trước giảm
-        BigDecimal totalAmountBeforeDiscount = orderItems.stream()
-                .map(OrderItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        if (totalAmountBeforeDiscount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new OrderException(
-                    ErrorCodeOrder.INVALID_ORDER_REQUEST,
-                    "Total amount must be greater than zero."
-            );
-        }
-
-        // 7) Áp dụng voucher (nếu có)
-        String voucherCode = createOrderRequest.getVoucherCode();
-        BigDecimal discountAmount = BigDecimal.ZERO;
-
-        if (voucherCode != null && !voucherCode.isBlank()) {
-            try {
-                discountAmount = voucherServiceClient.applyVoucher(
-                        userIdForNotification,   // UUID dùng cho user_voucher.user_id
-                        voucherCode,
-                        totalAmountBeforeDiscount,
-                        authorizationHeader
-                );
-            } catch (Exception e) {
-                logger.error("Failed to apply voucher {} for user {}: {}",
-                        voucherCode, userIdForNotification, e.getMessage(), e);
-                throw new OrderException(
-                        ErrorCodeOrder.INVALID_ORDER_REQUEST,
-                        "Cannot apply voucher: " + voucherCode,
-                        e
-                );
-            }
-        }
-
-        if (discountAmount == null) {
-            discountAmount = BigDecimal.ZERO;
-        }
-
-        // 8) Tính tổng sau giảm (không âm)
-        BigDecimal finalAmount = totalAmountBeforeDiscount.subtract(discountAmount);
-        if (finalAmount.compareTo(BigDecimal.ZERO) < 0) {
-            finalAmount = BigDecimal.ZERO;
-        }
-
-        // 9) Gán vào Order
-        order.setTotalAmount(totalAmountBeforeDiscount);
-        order.setDiscountAmount(discountAmount);
-        order.setFinalAmount(finalAmount);
-        order.setVoucherCode(
-                (voucherCode != null && !voucherCode.isBlank()) ? voucherCode : null
-        );
-
-        logger.info("Order discount for user {}: total={}, discount={}, final={}, voucher={}",
-                userIdForOrder, totalAmountBeforeDiscount, discountAmount, finalAmount, voucherCode);
-
-        // 10) Lưu đơn
-Order savedOrder = saveOrderToDatabase(order);
-
-// 11) Trừ tồn kho
-decreaseProductStock(savedOrder, authorizationHeader);
-
-// 12) Cập nhật giỏ hàng sau thanh toán
-// - Nếu checkout ALL giỏ (request không gửi items) -> clearCart
-// - Nếu checkout 1 phần -> chỉ trừ số lượng đã mua
-if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmpty()) {
-    // Thanh toán toàn bộ
-    clearUserCart(userIdForNotification, savedOrder.getId(), authorizationHeader);
-} else {
-    // Thanh toán một phần
-    adjustCartAfterCheckout(userIdForNotification, itemsToOrder, savedOrder.getId(), authorizationHeader);
-}
-
-        // 13) Xác nhận đơn
-        confirmOrder(savedOrder);
-
-        // 14) Nếu có voucher & đã giảm > 0 → đánh dấu đã dùng
-        if (savedOrder.getVoucherCode() != null
-                && savedOrder.getDiscountAmount() != null
-                && savedOrder.getDiscountAmount().compareTo(BigDecimal.ZERO) > 0) {
-            try {
-                voucherServiceClient.markVoucherUsed(
-                        userIdForNotification,
-                        savedOrder.getVoucherCode(),
-                        authorizationHeader
-                );
-            } catch (Exception e) {
-                logger.error("Failed to mark voucher {} as used for user {}: {}",
-                        savedOrder.getVoucherCode(), userIdForNotification, e.getMessage(), e);
-                // không throw nữa để đơn hàng vẫn thành công
-            }
-        }
-
-        // 15) Gửi event RabbitMQ
-        OrderEvent event = new OrderEvent();
-        event.setId(savedOrder.getId());
-        event.setUserId(userIdForNotification);
-        event.setStatus(savedOrder.getStatus().name());
-        event.setAuthorizationHeader(authorizationHeader);
-        logger.debug("Sending OrderEvent for order creation: {}", event);
-        rabbitTemplate.convertAndSend("order_notifications", event);
-
-        return mapOrderToResponseDTO(savedOrder);
-    }
-
-    private List<CartItemDTO> resolveSelectedItems(CreateOrderRequest request, List<CartItemDTO> cartItems) {
-        List<CartItemDTO> fromRequest = request.getItems();
-        if (fromRequest == null || fromRequest.isEmpty()) {
-            // Thanh toán toàn bộ giỏ hàng
-            return cartItems;
-        }
-
-        // map productId -> CartItemDTO trong giỏ
-        Map<Long, CartItemDTO> cartItemMap = cartItems.stream()
-                .collect(Collectors.toMap(CartItemDTO::getProductId, c -> c));
-
-        return fromRequest.stream().map(reqItem -> {
-            CartItemDTO cartItem = cartItemMap.get(reqItem.getProductId());
-            if (cartItem == null) {
-                throw new OrderException(
-                        ErrorCodeOrder.INVALID_ORDER_REQUEST,
-                        "Product " + reqItem.getProductId() + " is not in cart."
-                );
-            }
-
-            int quantityToOrder = reqItem.getQuantity();
-            if (quantityToOrder <= 0) {
-                throw new OrderException(
-                        ErrorCodeOrder.INVALID_ORDER_REQUEST,
-                        "Invalid quantity for product " + reqItem.getProductId()
-                );
-            }
-
-            if (quantityToOrder > cartItem.getQuantity()) {
-                // Không cho mua nhiều hơn số lượng trong giỏ
-                quantityToOrder = cartItem.getQuantity();
-            }
-
-            cartItem.setQuantity(quantityToOrder);
-            return cartItem;
-        }).collect(Collectors.toList());
-    }
-
-    private CartDTO fetchCartFromService(String userId, String authorizationHeader) {
-        logger.info("Fetching cart for user {}", userId);
-        try {
-            // hiện tại CartServiceImpl bên bạn đang dùng token để lấy current user
-            return cartServiceClient.getCartByUserId(authorizationHeader);
-        } catch (Exception e) {
-            logger.error("Failed to fetch cart for user {}: {}", userId, e.getMessage(), e);
-            throw new OrderException(
-                    ErrorCodeOrder.CART_SERVICE_UNREACHABLE,
-                    "Could not fetch cart for user " + userId,
-                    e
-            );
-        }
-    }
-
-    private ProductDTO fetchProductFromService(Long productId, String authorizationHeader) {
-        try {
-            ApiResponRequest<ProductDTO> response =
-                    productServiceClient.getProductById(productId, authorizationHeader);
-
-            if (response == null || response.getResult() == null) {
-                throw new OrderException(
-                        ErrorCodeOrder.PRODUCT_NOT_FOUND_FOR_ORDER,
-                        "Product with ID " + productId + " not found."
-                );
-            }
-
-            ProductDTO product = response.getResult();
-            logger.info("Fetched product from product-service: id={}, name={}, active={}, stock={}",
-                    product.getId(), product.getName(), product.isActive(), product.getStockQuantity());
-
-            return product;
-        } catch (FeignException e) {
-            logger.error("FeignException fetching product {}: {}", productId, e.getMessage(), e);
-            throw new OrderException(
-                    ErrorCodeOrder.PRODUCT_SERVICE_UNREACHABLE_FOR_ORDER,
-                    "Could not fetch product " + productId,
-                    e
-            );
-        }
-    }
-
-    private void validateProductAvailability(ProductDTO product, int requestedQuantity) {
-        if (!product.isActive() || product.isDeleted()) {
-            throw new OrderException(
-                    ErrorCodeOrder.PRODUCT_UNAVAILABLE_FOR_ORDER,
-                    "Product " + product.getId() + " is unavailable."
-            );
-        }
-        if (product.getStockQuantity() < requestedQuantity) {
-            throw new OrderException(
-                    ErrorCodeOrder.INSUFFICIENT_STOCK_FOR_ORDER,
-                    "Insufficient stock for product " + product.getId()
-            );
-        }
-    }
-
-    // ✅ Đơn giản hoá: billingAddress null → dùng shippingAddress
-    private Order initializeOrder(CreateOrderRequest request) {
-        Order order = new Order();
-        order.setUserId(request.getUserId());
-        order.setOrderDate(LocalDateTime.now());
-        order.setStatus(OrderStatus.PENDING);
-
-        AddressDTO shipping = request.getShippingAddress();
-        AddressDTO billing = request.getBillingAddress() != null
-                ? request.getBillingAddress()
-                : shipping; // nếu không gửi billing → dùng shipping luôn
-
-        mapAddressDtoToOrder(shipping, order, true);
-        mapAddressDtoToOrder(billing, order, false);
-
-        order.setPaymentMethod(request.getPaymentMethod());
-        return order;
-    }
-
-    private OrderItem createOrderItem(ProductDTO product, int quantity, Order order) {
-        OrderItem orderItem = new OrderItem();
-        orderItem.setOrder(order);
-        orderItem.setProductId(product.getId());
-        orderItem.setQuantity(quantity);
-        orderItem.setPrice(product.getPrice());
-        orderItem.setStoreId(product.getSellerInfo().getStoreId());  // ✔ đúng JSON
-
-        
-
-        String imageUrl = product.getImageUrl();
-        if (imageUrl != null && imageUrl.contains("productservice:8081")) {
-            imageUrl = imageUrl.replace("productservice:8081", "localhost:8081");
-        }
-        orderItem.setImageUrl(imageUrl);
-        orderItem.setProductName(product.getName());
-        orderItem.setSubtotal(product.getPrice().multiply(BigDecimal.valueOf(quantity)));
-        return orderItem;
-    }
-
-    private Order saveOrderToDatabase(Order order) {
-        logger.info("Saving order for user: {}", order.getUserId());
-        try {
-            return orderRepository.save(order);
-        } catch (Exception e) {
-            logger.error("Failed to save order: {}", e.getMessage(), e);
-            throw new OrderException(ErrorCodeOrder.DATABASE_ERROR, "Could not save order.");
-        }
-    }
-
-    private void decreaseProductStock(Order savedOrder, String authorizationHeader) {
-        try {
-            for (OrderItem item : savedOrder.getItems()) {
-                UpdateStockRequest request = new UpdateStockRequest(-item.getQuantity());
-                productServiceClient.decreaseStock(item.getProductId(), request, authorizationHeader);
-                logger.debug("Decreased stock for product {} by {}", item.getProductId(), item.getQuantity());
-            }
-        } catch (FeignException e) {
-            logger.error("FeignException decreasing stock for order {}: {}", savedOrder.getId(), e.getMessage(), e);
-            throw new OrderException(
-                    ErrorCodeOrder.PRODUCT_SERVICE_STOCK_UPDATE_FAILED,
-                    "Failed to update stock.",
-                    e
-            );
-        }
-    }
-
-    private void clearUserCart(String userId, Long orderId, String authorizationHeader) {
-        try {
-            cartServiceClient.clearCart(authorizationHeader);
-            logger.info("Cleared cart for user {} after order {}", userId, orderId);
-        } catch (Exception e) {
-            logger.error("Failed to clear cart for user {} after order {}: {}", userId, orderId, e.getMessage(), e);
-        }
-    }
-
-    private void confirmOrder(Order order) {
-        order.setStatus(OrderStatus.PENDING);
-        try {
-            orderRepository.save(order);
-        } catch (Exception e) {
-            logger.error("Failed to confirm order {}: {}", order.getId(), e.getMessage(), e);
-        }
-    }
+    private final OrderOutbox orderOutbox;
+    private final UserIdentityResolver userIdentityResolver;
+    private final ServiceTokenProvider serviceTokenProvider;
 
     @Override
     @Transactional(readOnly = true)
@@ -468,12 +66,47 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
     }
 
     @Override
-    public List<OrderResponse> getOrdersByUserId(String userId) {
-        logger.debug("Fetching orders for user ID: {}", userId);
-        List<Order> orders = orderRepository.findByUserId(userId);
-        return orders.stream()
-                .map(this::mapOrderToResponseDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public OrderHistoryPageResponse getOrderHistory(String userId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        logger.debug("Fetching order history for user ID: {} (cursor: {}, size: {})", userId, cursor, pageSize);
+        // Lấy dư một dòng để biết còn trang sau hay không
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<OrderSummaryResponse> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = orderRepository.findHistory(userId, limit);
+        } else {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            rows = orderRepository.findHistoryAfter(userId, after.orderDate(), after.id(), limit);
+        }
+        if (rows.size() <= pageSize) {
+            return new OrderHistoryPageResponse(rows, null);
+        }
+        List<OrderSummaryResponse> page = rows.subList(0, pageSize);
+        OrderSummaryResponse last = page.get(pageSize - 1);
+        return new OrderHistoryPageResponse(new ArrayList<>(page),
+                new HistoryCursor(last.getOrderDate(), last.getId()).encode());
+    }
+
+    // Vị trí (orderDate, id) của dòng cuối trang, gửi cho client dưới dạng chuỗi base64url
+    private record HistoryCursor(LocalDateTime orderDate, Long id) {
+
+        String encode() {
+            String raw = orderDate + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static HistoryCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new HistoryCursor(
+                        LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new OrderException(ErrorCodeOrder.INVALID_ORDER_REQUEST, "Invalid order history cursor.", e);
+            }
+        }
     }
 
     @Override
@@ -485,6 +118,7 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
                         ErrorCodeOrder.ORDER_NOT_FOUND,
                         "Order not found with ID: " + orderId
                 ));
+        rejectWhilePlacing(order);
 
         order.setStatus(newStatus);
         Order updatedOrder;
@@ -499,38 +133,18 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
             );
         }
         logger.info("Order ID {} status updated to {}.", updatedOrder.getId(), updatedOrder.getStatus());
+        publishDeliveredIfNeeded(updatedOrder);
 
-        // lấy UUID từ user-service để gửi noti
-        String username = updatedOrder.getUserId();
-        logger.debug("Fetching user for username: {}", username);
-        ApiResponRequest<UserResponse> response;
-        try {
-            response = userServiceClient.getUserByUsername(username, authorizationHeader);
-            if (response.getResult() == null || response.getResult().getId() == null) {
-                logger.error("UserResponse or id is null for username: {}", username);
-                throw new OrderException(
-                        ErrorCodeOrder.USER_NOT_FOUND,
-                        "User ID is null for username: " + username
-                );
-            }
-        } catch (FeignException e) {
-            logger.error("Failed to fetch user for username: {}. Error: {}", username, e.getMessage(), e);
-            throw new OrderException(
-                    ErrorCodeOrder.USER_NOT_FOUND,
-                    "User not found for username: " + username,
-                    e
-            );
-        }
-        String userIdForNotification = response.getResult().getId();
+        // lấy UUID (JWT / cache, chỉ gọi user-service khi chưa có) để gửi noti
+        String userIdForNotification = userIdentityResolver.userId(updatedOrder.getUserId(), authorizationHeader);
 
-        // Gửi event
+        // Ghi event vào outbox
         OrderEvent event = new OrderEvent();
         event.setId(updatedOrder.getId());
         event.setUserId(userIdForNotification);
         event.setStatus(updatedOrder.getStatus().name());
-        event.setAuthorizationHeader(authorizationHeader);
-        logger.debug("Sending OrderEvent: {}", event);
-        rabbitTemplate.convertAndSend("order_notifications", event);
+        logger.debug("Queueing OrderEvent: {}", event);
+        orderOutbox.appendNotification(updatedOrder.getId(), event);
 
         if (newStatus == OrderStatus.CANCELLED) {
             handleOrderCancellationStockAdjustment(updatedOrder, authorizationHeader);
@@ -538,8 +152,44 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
         return mapOrderToResponseDTO(updatedOrder);
     }
 
+    // Đơn còn đang chạy saga checkout: chỉ saga được đổi trạng thái (PENDING hoặc FAILED)
+    private void rejectWhilePlacing(Order order) {
+        if (order.getStatus() == OrderStatus.PLACING) {
+            throw new OrderException(
+                    ErrorCodeOrder.INVALID_STATUS_UPDATE,
+                    "Order " + order.getId() + " is still being placed."
+            );
+        }
+    }
+
+    private void publishDeliveredIfNeeded(Order order) {
+        if (order.getStatus() != OrderStatus.DELIVERED) {
+            return;
+        }
+        List<Long> productIds = order.getItems().stream()
+                .map(OrderItem::getProductId)
+                .distinct()
+                .collect(Collectors.toList());
+        OrderDeliveredEvent event = new OrderDeliveredEvent(order.getId(), order.getUserId(), productIds);
+        orderOutbox.append(order.getId(), RabbitMQConfig.ORDER_DELIVERED_EXCHANGE, "", event);
+        logger.debug("Queued OrderDeliveredEvent: {}", event);
+    }
+
     private void handleOrderCancellationStockAdjustment(Order cancelledOrder, String authorizationHeader) {
         logger.info("Order {} cancelled. Increasing stock.", cancelledOrder.getId());
+        if (cancelledOrder.getStockReservationId() != null) {
+            try {
+                // API giữ / hoàn kho chỉ nhận token của service
+                productServiceClient.releaseStock(cancelledOrder.getStockReservationId(), serviceTokenProvider.bearer());
+                logger.debug("Released stock reservation {} for order {}",
+                        cancelledOrder.getStockReservationId(), cancelledOrder.getId());
+            } catch (Exception e) {
+                logger.error("Failed to release stock reservation {} for order {}: {}",
+                        cancelledOrder.getStockReservationId(), cancelledOrder.getId(), e.getMessage(), e);
+            }
+            return;
+        }
+        // Đơn cũ (tạo trước khi có stock reservation): hoàn kho từng sản phẩm
         try {
             for (OrderItem item : cancelledOrder.getItems()) {
                 UpdateStockRequest request = new UpdateStockRequest(item.getQuantity());
@@ -594,23 +244,6 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
         return dto;
     }
 
-    private void mapAddressDtoToOrder(AddressDTO addressDTO, Order order, boolean isShipping) {
-        if (addressDTO == null) return;
-        if (isShipping) {
-            order.setShippingAddressLine1(addressDTO.getAddressLine1());
-            order.setShippingAddressLine2(addressDTO.getAddressLine2());
-            order.setShippingCity(addressDTO.getCity());
-            order.setShippingPostalCode(addressDTO.getPostalCode());
-            order.setShippingCountry(addressDTO.getCountry());
-        } else {
-            order.setBillingAddressLine1(addressDTO.getAddressLine1());
-            order.setBillingAddressLine2(addressDTO.getAddressLine2());
-            order.setBillingCity(addressDTO.getCity());
-            order.setBillingPostalCode(addressDTO.getPostalCode());
-            order.setBillingCountry(addressDTO.getCountry());
-        }
-    }
-
     private AddressDTO mapOrderToAddressDTO(Order order, boolean isShipping) {
         AddressDTO dto = new AddressDTO();
         if (isShipping) {
@@ -633,27 +266,6 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
         return dto;
     }
 
-        private void adjustCartAfterCheckout(
-            String userId,
-            List<CartItemDTO> purchasedItems,
-            Long orderId,
-            String authorizationHeader
-    ) {
-        try {
-            List<CheckoutCartItemRequest> payload = purchasedItems.stream()
-                    .map(i -> new CheckoutCartItemRequest(i.getProductId(), i.getQuantity()))
-                    .collect(Collectors.toList());
-
-            cartServiceClient.removeItemsAfterCheckout(payload, authorizationHeader);
-            logger.info("Adjusted cart for user {} after order {} ({} items).",
-                    userId, orderId, purchasedItems.size());
-        } catch (Exception e) {
-            logger.error("Failed to adjust cart for user {} after order {}: {}",
-                    userId, orderId, e.getMessage(), e);
-            // không throw để đơn vẫn thành công
-        }
-    }
-
     @Override
     @Transactional
     public OrderResponse updateOrderStatusBySeller(Long orderId, OrderStatus newStatus, String authorizationHeader) {
@@ -666,6 +278,7 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
                         ErrorCodeOrder.ORDER_NOT_FOUND,
                         "Order not found with ID: " + orderId
                 ));
+        rejectWhilePlacing(order);
 
         // 2) Lấy username seller từ SecurityContext
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -678,51 +291,20 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
         String sellerUsername = auth.getName();   // ví dụ: "Kid"
         logger.debug("Current seller username from SecurityContext: {}", sellerUsername);
 
-        // 3) Gọi user-service lấy thông tin seller + storeId
-        ApiResponRequest<UserResponse> sellerRes;
-        try {
-            sellerRes = userServiceClient.getUserByUsername(sellerUsername, authorizationHeader);
-
-            if (sellerRes == null || sellerRes.getResult() == null) {
-                logger.error("Seller user is null for username: {}", sellerUsername);
-                throw new OrderException(
-                        ErrorCodeOrder.USER_NOT_FOUND,
-                        "Seller user not found for username: " + sellerUsername
-                );
-            }
-
-            UserResponse seller = sellerRes.getResult();
-
-            if (seller.getStore() == null || seller.getStore().getStoreId() == null) {
-                logger.error("Seller user or storeId is null for username: {}", sellerUsername);
-                throw new OrderException(
-                        ErrorCodeOrder.STORE_ID_NULL,
-                        "Store ID is null for seller username: " + sellerUsername
-                );
-            }
-
-            String sellerStoreId = seller.getStore().getStoreId();
-            logger.debug("Seller storeId = {} for seller username {}", sellerStoreId, sellerUsername);
+        // 3) Lấy storeId của seller (cache, chỉ gọi user-service khi chưa có)
+        String sellerStoreId = userIdentityResolver.storeId(sellerUsername, authorizationHeader);
+        logger.debug("Seller storeId = {} for seller username {}", sellerStoreId, sellerUsername);
 
-            // 4) Kiểm tra order có chứa item thuộc store này không
-            boolean hasItemOfSeller = order.getItems().stream()
-                    .anyMatch(i -> sellerStoreId.equals(i.getStoreId()));
-
-            if (!hasItemOfSeller) {
-                logger.warn("Seller {} (storeId = {}) tried to update order {} that does not belong to them.",
-                        sellerUsername, sellerStoreId, orderId);
-                throw new OrderException(
-                        ErrorCodeOrder.FORBIDDEN_SELLER_ORDER,
-                        "You are not allowed to update this order."
-                );
-            }
+        // 4) Kiểm tra order có chứa item thuộc store này không
+        boolean hasItemOfSeller = order.getItems().stream()
+                .anyMatch(i -> sellerStoreId.equals(i.getStoreId()));
 
-        } catch (FeignException e) {
-            logger.error("Failed to fetch seller info for username: {}. Error: {}", sellerUsername, e.getMessage(), e);
+        if (!hasItemOfSeller) {
+            logger.warn("Seller {} (storeId = {}) tried to update order {} that does not belong to them.",
+                    sellerUsername, sellerStoreId, orderId);
             throw new OrderException(
-                    ErrorCodeOrder.USER_SERVICE_UNREACHABLE,
-                    "Could not fetch seller info for username: " + sellerUsername,
-                    e
+                    ErrorCodeOrder.FORBIDDEN_SELLER_ORDER,
+                    "You are not allowed to update this order."
             );
         }
 
@@ -751,35 +333,21 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
 
         logger.info("Order ID {} status updated to {} by seller {}.",
                 updatedOrder.getId(), updatedOrder.getStatus(), sellerUsername);
+        publishDeliveredIfNeeded(updatedOrder);
 
         // 7) Gửi event RabbitMQ cho BUYER (customer) – dùng UUID
         try {
-            // updatedOrder.getUserId() đang là username của khách (vd: "hbao")
-            String buyerUsername = updatedOrder.getUserId();
-            logger.debug("Fetching buyer info for username: {}", buyerUsername);
-
-            ApiResponRequest<UserResponse> buyerRes =
-                    userServiceClient.getUserByUsername(buyerUsername, authorizationHeader);
-
-            if (buyerRes == null || buyerRes.getResult() == null || buyerRes.getResult().getId() == null) {
-                logger.error("Buyer not found or id is null for username: {}", buyerUsername);
-                throw new OrderException(
-                        ErrorCodeOrder.USER_NOT_FOUND,
-                        "Buyer not found for username: " + buyerUsername
-                );
-            }
-
-            String buyerIdForNotification = buyerRes.getResult().getId();  // UUID
+            // updatedOrder.getUserId() đang là username của khách (vd: "hbao"); token là của seller nên UUID lấy từ cache
+            String buyerIdForNotification = userIdentityResolver.userId(updatedOrder.getUserId(), authorizationHeader);
 
             OrderEvent event = new OrderEvent();
             event.setId(updatedOrder.getId());
             event.setUserId(buyerIdForNotification);   // ✅ Gửi UUID giống các chỗ khác
             event.setStatus(updatedOrder.getStatus().name());
-            event.setAuthorizationHeader(authorizationHeader);
-            logger.debug("Sending OrderEvent for seller update: {}", event);
-            rabbitTemplate.convertAndSend("order_notifications", event);
+            logger.debug("Queueing OrderEvent for seller update: {}", event);
+            orderOutbox.appendNotification(updatedOrder.getId(), event);
 
-        } catch (FeignException e) {
+        } catch (OrderException e) {
             logger.error("Failed to fetch buyer info for username from order: {}. Error: {}",
                     updatedOrder.getUserId(), e.getMessage(), e);
             // Có thể throw hoặc chỉ log, tuỳ bạn muốn noti fail có làm fail API hay không
@@ -807,38 +375,8 @@ if (createOrderRequest.getItems() == null || createOrderRequest.getItems().isEmp
         String sellerUsername = auth.getName();
         logger.debug("Current seller username from SecurityContext: {}", sellerUsername);
 
-        // Gọi user-service lấy thông tin seller
-        ApiResponRequest<UserResponse> sellerRes;
-        try {
-            sellerRes = userServiceClient.getUserByUsername(sellerUsername, authorizationHeader);
-        } catch (FeignException e) {
-            logger.error("Failed to fetch seller info for username: {}. Error: {}",
-                    sellerUsername, e.getMessage(), e);
-            throw new OrderException(
-                    ErrorCodeOrder.USER_SERVICE_UNREACHABLE,
-                    "Could not fetch seller info for username: " + sellerUsername,
-                    e
-            );
-        }
-
-        if (sellerRes == null || sellerRes.getResult() == null) {
-            logger.error("Seller not found from user-service for username: {}", sellerUsername);
-            throw new OrderException(
-                    ErrorCodeOrder.USER_NOT_FOUND,
-                    "Seller not found for username: " + sellerUsername
-            );
-        }
-
-        UserResponse seller = sellerRes.getResult();
-        if (seller.getStore() == null || seller.getStore().getStoreId() == null) {
-            logger.error("Seller storeId is null for username: {}", sellerUsername);
-            throw new OrderException(
-                    ErrorCodeOrder.STORE_ID_NULL,
-                    "Store ID is null for seller username: " + sellerUsername
-            );
-        }
-
-        String storeId = seller.getStore().getStoreId();
+        // storeId từ cache, chỉ gọi user-service khi chưa có
+        String storeId = userIdentityResolver.storeId(sellerUsername, authorizationHeader);
         logger.debug("Seller storeId = {} for seller username {}", storeId, sellerUsername);
         return storeId;
     }
@@ -0,0 +1,69 @@
+package com.example.order.service.outbox;
+
+import com.example.order.config.RabbitMQConfig;
+import com.example.order.entity.OrderOutboxEvent;
+import com.example.order.repository.OrderOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ghi event của đơn hàng vào bảng order_outbox trong cùng transaction với thay đổi của đơn.
+ * Event chỉ tồn tại khi đơn đã commit, và {@link OrderOutboxRelay} gửi nó lên RabbitMQ ở nền;
+ * request không bao giờ chờ broker. Sau commit relay được đánh thức ngay thay vì đợi lượt quét kế tiếp.
+ */
+@Service
+public class OrderOutbox {
+
+    private final OrderOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+    private final OrderOutboxRelay relay;
+
+    public OrderOutbox(OrderOutboxRepository outboxRepository, ObjectMapper objectMapper, OrderOutboxRelay relay) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
+        this.relay = relay;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(Long orderId, String exchange, String routingKey, Object event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox event " + event.getClass().getName(), e);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        OrderOutboxEvent row = new OrderOutboxEvent();
+        row.setAggregateId(orderId);
+        row.setExchange(exchange);
+        row.setRoutingKey(routingKey);
+        row.setPayloadType(event.getClass().getName());
+        row.setPayload(payload);
+        row.setStatus(OrderOutboxEvent.Status.PENDING);
+        row.setNextAttemptAt(now);
+        row.setCreatedAt(now);
+        outboxRepository.save(row);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    relay.wakeUp();
+                }
+            });
+        }
+    }
+
+    // Gửi vào hàng đợi order_notifications qua default exchange, như convertAndSend("order_notifications", event)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendNotification(Long orderId, Object event) {
+        append(orderId, "", RabbitMQConfig.ORDER_NOTIFICATIONS_QUEUE, event);
+    }
+}
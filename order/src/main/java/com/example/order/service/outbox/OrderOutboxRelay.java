@@ -0,0 +1,257 @@
+package com.example.order.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gửi các event trong order_outbox lên RabbitMQ ở một thread nền.
+ * Mỗi vòng: "giữ chỗ" một lô event (SELECT ... FOR UPDATE SKIP LOCKED rồi đẩy next_attempt_at lên một khoảng lease,
+ * nên nhiều replica chạy song song không lấy trùng), gửi cả lô với publisher confirm, chờ confirm,
+ * rồi đánh dấu PUBLISHED hoặc hẹn thử lại với backoff tăng dần. Chỉ event PENDING sớm nhất của mỗi đơn
+ * được lấy, nên các event của cùng một đơn luôn đi đúng thứ tự kể cả khi có event phải thử lại.
+ * Relay chết giữa chừng thì event được gửi lại sau khi hết lease (at-least-once, phía nhận phải chịu được trùng).
+ */
+@Component
+public class OrderOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderOutboxRelay.class);
+
+    private static final String CLAIM_SQL = """
+            SELECT o.id, o.exchange, o.routing_key, o.payload_type, o.payload, o.attempts
+            FROM order_outbox o
+            WHERE o.status = 'PENDING' AND o.next_attempt_at <= ?
+              AND NOT EXISTS (SELECT 1 FROM order_outbox p
+                              WHERE p.aggregate_id = o.aggregate_id AND p.status = 'PENDING' AND p.id < o.id)
+            ORDER BY o.id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+    private static final String LEASE_SQL = "UPDATE order_outbox SET next_attempt_at = ? WHERE id = ?";
+    private static final String PUBLISHED_SQL =
+            "UPDATE order_outbox SET status = 'PUBLISHED', published_at = ?, attempts = attempts + 1, last_error = NULL WHERE id = ?";
+    private static final String RETRY_SQL =
+            "UPDATE order_outbox SET status = ?, attempts = ?, next_attempt_at = ?, last_error = ? WHERE id = ?";
+    private static final String PURGE_SQL =
+            "DELETE FROM order_outbox WHERE status = 'PUBLISHED' AND published_at < ? LIMIT 1000";
+    private static final String SCRUB_CREDENTIALS_SQL =
+            "UPDATE order_outbox SET payload = JSON_REMOVE(payload, '$.authorizationHeader')"
+                    + " WHERE payload LIKE '%\"authorizationHeader\"%'";
+
+    private record Claimed(long id, String exchange, String routingKey, String payloadType, String payload, int attempts) {
+    }
+
+    private record Outcome(Claimed event, CorrelationData correlation, String error) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate claimTransaction;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long pollIntervalNanos;
+    private final long confirmTimeoutMs;
+    private final long leaseMs;
+    private final long maxBackoffMs;
+    private final int maxAttempts;
+    private final int retentionDays;
+
+    private volatile boolean running = true;
+    private Thread worker;
+    private long nextPurgeAt;
+
+    public OrderOutboxRelay(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            RabbitTemplate rabbitTemplate,
+            ObjectMapper objectMapper,
+            @Value("${order-outbox.batch-size:100}") int batchSize,
+            @Value("${order-outbox.poll-interval-ms:500}") long pollIntervalMs,
+            @Value("${order-outbox.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+            @Value("${order-outbox.lease-ms:30000}") long leaseMs,
+            @Value("${order-outbox.max-backoff-ms:300000}") long maxBackoffMs,
+            @Value("${order-outbox.max-attempts:20}") int maxAttempts,
+            @Value("${order-outbox.retention-days:7}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        // READ COMMITTED: FOR UPDATE chỉ khoá đúng các dòng lấy được, không khoá khoảng trống (không chặn INSERT của request)
+        this.claimTransaction = new TransactionTemplate(transactionManager);
+        this.claimTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMs);
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.leaseMs = leaseMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.maxAttempts = maxAttempts;
+        this.retentionDays = retentionDays;
+    }
+
+    @PostConstruct
+    public void start() {
+        scrubStoredCredentials();
+        worker = Thread.ofPlatform().name("order-outbox-relay").daemon().start(this::relayLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(worker);
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    // Gọi sau commit của transaction có ghi outbox: gửi ngay thay vì chờ lượt quét kế tiếp
+    public void wakeUp() {
+        LockSupport.unpark(worker);
+    }
+
+    private void relayLoop() {
+        while (running) {
+            int relayed = 0;
+            try {
+                relayed = relayBatch();
+                purgeIfDue();
+            } catch (RuntimeException e) {
+                logger.error("Outbox relay iteration failed: {}", e.getMessage(), e);
+            }
+            // Lô đầy: còn việc, chạy tiếp ngay
+            if (relayed < batchSize && running) {
+                LockSupport.parkNanos(pollIntervalNanos);
+            }
+        }
+    }
+
+    private int relayBatch() {
+        List<Claimed> batch = claimTransaction.execute(status -> claim());
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        for (Claimed event : batch) {
+            CorrelationData correlation = new CorrelationData(String.valueOf(event.id()));
+            try {
+                Object payload = objectMapper.readValue(event.payload(), Class.forName(event.payloadType()));
+                rabbitTemplate.convertAndSend(event.exchange(), event.routingKey(), payload, correlation);
+                outcomes.add(new Outcome(event, correlation, null));
+            } catch (Exception e) {
+                outcomes.add(new Outcome(event, null, e.getClass().getSimpleName() + ": " + e.getMessage()));
+            }
+        }
+
+        // Chờ confirm của cả lô với một deadline chung
+        long deadline = System.currentTimeMillis() + confirmTimeoutMs;
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> published = new ArrayList<>();
+        List<Object[]> retries = new ArrayList<>();
+        for (Outcome outcome : outcomes) {
+            String error = outcome.error() != null ? outcome.error() : awaitConfirm(outcome.correlation(), deadline);
+            Claimed event = outcome.event();
+            if (error == null) {
+                published.add(new Object[]{Timestamp.valueOf(now), event.id()});
+                continue;
+            }
+            int attempts = event.attempts() + 1;
+            boolean giveUp = attempts >= maxAttempts;
+            long backoffMs = Math.min(maxBackoffMs, 1000L << Math.min(attempts - 1, 20));
+            retries.add(new Object[]{giveUp ? "FAILED" : "PENDING", attempts,
+                    Timestamp.valueOf(now.plusNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs))),
+                    error.length() > 500 ? error.substring(0, 500) : error, event.id()});
+            if (giveUp) {
+                logger.error("Outbox event {} to {}/{} failed {} times, giving up: {}",
+                        event.id(), event.exchange(), event.routingKey(), attempts, error);
+            } else {
+                logger.warn("Outbox event {} to {}/{} failed (attempt {}), retrying in {} ms: {}",
+                        event.id(), event.exchange(), event.routingKey(), attempts, backoffMs, error);
+            }
+        }
+        if (!published.isEmpty()) {
+            jdbcTemplate.batchUpdate(PUBLISHED_SQL, published);
+        }
+        if (!retries.isEmpty()) {
+            jdbcTemplate.batchUpdate(RETRY_SQL, retries);
+        }
+        logger.debug("Outbox relay published {} events, {} to retry", published.size(), retries.size());
+        return batch.size();
+    }
+
+    private List<Claimed> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Claimed> batch = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new Claimed(
+                        rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5), rs.getInt(6)),
+                Timestamp.valueOf(now), batchSize);
+        if (!batch.isEmpty()) {
+            Timestamp leaseUntil = Timestamp.valueOf(now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs)));
+            jdbcTemplate.batchUpdate(LEASE_SQL, batch.stream()
+                    .map(event -> new Object[]{leaseUntil, event.id()})
+                    .toList());
+        }
+        return batch;
+    }
+
+    // null = broker đã ack
+    private String awaitConfirm(CorrelationData correlation, long deadline) {
+        try {
+            CorrelationData.Confirm confirm = correlation.getFuture()
+                    .get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            return confirm.isAck() ? null : "nack: " + confirm.getReason();
+        } catch (TimeoutException e) {
+            return "confirm timeout";
+        } catch (ExecutionException e) {
+            return "confirm failed: " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    // Event cũ từng mang header Authorization của người gọi: xoá khỏi payload đã lưu (relay đọc lại không cần nó)
+    private void scrubStoredCredentials() {
+        try {
+            int scrubbed = jdbcTemplate.update(SCRUB_CREDENTIALS_SQL);
+            if (scrubbed > 0) {
+                logger.info("Removed stored authorization headers from {} outbox events", scrubbed);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Could not scrub authorization headers from outbox events: {}", e.getMessage());
+        }
+    }
+
+    private void purgeIfDue() {
+        long now = System.currentTimeMillis();
+        if (now < nextPurgeAt) {
+            return;
+        }
+        nextPurgeAt = now + TimeUnit.HOURS.toMillis(1);
+        Timestamp before = Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays));
+        int deleted;
+        int total = 0;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, before);
+            total += deleted;
+        } while (deleted == 1000 && running);
+        if (total > 0) {
+            logger.info("Purged {} published outbox events older than {} days", total, retentionDays);
+        }
+    }
+}
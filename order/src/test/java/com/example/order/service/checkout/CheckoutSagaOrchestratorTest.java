@@ -0,0 +1,239 @@
+package com.example.order.service.checkout;
+
+import com.example.order.dto.request.CreateOrderRequest;
+import com.example.order.entity.CheckoutSaga;
+import com.example.order.entity.Order;
+import com.example.order.entity.OrderStatus;
+import com.example.order.exception.ErrorCodeOrder;
+import com.example.order.exception.OrderException;
+import com.example.order.repository.CheckoutSagaRepository;
+import com.example.order.repository.OrderRepository;
+import com.example.order.service.OrderService;
+import com.example.order.service.UserIdentityResolver;
+import com.example.order.service.outbox.OrderOutbox;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CheckoutSagaOrchestratorTest {
+
+	private static final Long ORDER_ID = 1L;
+	private static final String BUYER_TOKEN = "Bearer buyer";
+
+	private final AtomicReference<Order> order = new AtomicReference<>();
+	private final AtomicReference<CheckoutSaga> saga = new AtomicReference<>();
+	private CheckoutSagaRepository sagaRepository;
+	private OrderRepository orderRepository;
+	private OrderOutbox orderOutbox;
+	private CheckoutSteps steps;
+	private CheckoutSagaOrchestrator orchestrator;
+
+	@BeforeEach
+	void setUp() {
+		sagaRepository = mock(CheckoutSagaRepository.class);
+		orderRepository = mock(OrderRepository.class);
+		orderOutbox = mock(OrderOutbox.class);
+		steps = mock(CheckoutSteps.class);
+
+		// Kho trong bộ nhớ cho một đơn / một saga
+		when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+			Order saved = invocation.getArgument(0);
+			saved.setId(ORDER_ID);
+			order.set(saved);
+			return saved;
+		});
+		when(orderRepository.findById(ORDER_ID)).thenAnswer(invocation -> Optional.ofNullable(order.get()));
+		when(sagaRepository.save(any(CheckoutSaga.class))).thenAnswer(invocation -> {
+			saga.set(invocation.getArgument(0));
+			return saga.get();
+		});
+		when(sagaRepository.saveAndFlush(any(CheckoutSaga.class))).thenAnswer(invocation -> invocation.getArgument(0));
+		when(sagaRepository.findById(ORDER_ID)).thenAnswer(invocation -> Optional.ofNullable(saga.get()));
+		when(sagaRepository.claim(eq(ORDER_ID), anyCollection(), any(), any())).thenReturn(1);
+
+		when(steps.initializeOrder(any())).thenAnswer(invocation -> {
+			Order placing = new Order();
+			placing.setStatus(OrderStatus.PLACING);
+			return placing;
+		});
+		when(steps.price(any(), any(), eq(BUYER_TOKEN))).thenReturn(new CheckoutSteps.Priced("buyer-1", List.of(),
+				List.of(), BigDecimal.valueOf(100), BigDecimal.TEN, BigDecimal.valueOf(90), "SALE10"));
+
+		orchestrator = orchestrator(8);
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		orchestrator.stop();
+	}
+
+	@Test
+	void successfulCheckoutRunsEveryStepInOrderWithoutCompensation() throws Exception {
+		when(steps.reserveStock(any())).thenReturn("res-1");
+
+		orchestrator.start(request(), BUYER_TOKEN);
+		awaitTerminal();
+		// Giỏ hàng được cập nhật sau khi saga đã ghi COMPLETED
+		verify(steps, timeout(5_000)).updateCart(any(), any(), eq(ORDER_ID), eq(BUYER_TOKEN));
+
+		InOrder inOrder = inOrder(steps, orderOutbox);
+		inOrder.verify(steps).price(any(), any(), eq(BUYER_TOKEN));
+		inOrder.verify(steps).markVoucherUsed(ORDER_ID, "buyer-1", "SALE10");
+		inOrder.verify(steps).reserveStock(any());
+		inOrder.verify(orderOutbox).appendNotification(eq(ORDER_ID), any());
+		inOrder.verify(steps).updateCart(any(), any(), eq(ORDER_ID), eq(BUYER_TOKEN));
+		verify(steps, never()).releaseVoucher(anyLong(), any(), any());
+		verify(steps, never()).releaseStock(anyLong(), any());
+		assertEquals(CheckoutSaga.State.COMPLETED, saga.get().getState());
+		assertEquals(OrderStatus.PENDING, order.get().getStatus());
+		assertEquals("res-1", order.get().getStockReservationId());
+	}
+
+	@Test
+	void outOfStockReleasesTheVoucherAndReleasesNoStock() throws Exception {
+		when(steps.reserveStock(any())).thenThrow(new OrderException(ErrorCodeOrder.INSUFFICIENT_STOCK_FOR_ORDER));
+
+		orchestrator.start(request(), BUYER_TOKEN);
+		awaitTerminal();
+
+		InOrder inOrder = inOrder(steps);
+		inOrder.verify(steps).markVoucherUsed(ORDER_ID, "buyer-1", "SALE10");
+		inOrder.verify(steps).reserveStock(any());
+		inOrder.verify(steps).releaseVoucher(ORDER_ID, "buyer-1", "SALE10");
+		// Giữ hàng là all-or-nothing: hết hàng thì không gọi lại, không hoàn kho
+		verify(steps, times(1)).reserveStock(any());
+		verify(steps, never()).releaseStock(anyLong(), any());
+		assertFailed();
+	}
+
+	@Test
+	void failureAfterReservingReleasesVoucherThenStock() throws Exception {
+		when(steps.reserveStock(any())).thenReturn("res-1");
+		doThrow(new OrderException(ErrorCodeOrder.ORDER_CREATION_FAILED))
+				.when(orderOutbox).appendNotification(eq(ORDER_ID), any());
+
+		orchestrator.start(request(), BUYER_TOKEN);
+		awaitTerminal();
+
+		InOrder inOrder = inOrder(steps);
+		inOrder.verify(steps).reserveStock(any());
+		inOrder.verify(steps).releaseVoucher(ORDER_ID, "buyer-1", "SALE10");
+		inOrder.verify(steps).releaseStock(ORDER_ID, "res-1");
+		verify(steps, never()).updateCart(any(), any(), anyLong(), anyString());
+		assertFailed();
+	}
+
+	@Test
+	void compensationLooksUpAReservationWhoseResponseWasLost() throws Exception {
+		// Lần giữ hàng đầu lỗi dù product-service có thể đã giữ: bù trừ gọi lại (idempotent) để lấy phiếu rồi hoàn
+		when(steps.reserveStock(any()))
+				.thenThrow(new OrderException(ErrorCodeOrder.PRODUCT_NOT_AVAILABLE))
+				.thenReturn("res-1");
+
+		orchestrator.start(request(), BUYER_TOKEN);
+		awaitTerminal();
+
+		InOrder inOrder = inOrder(steps);
+		inOrder.verify(steps).reserveStock(any());
+		inOrder.verify(steps).releaseVoucher(ORDER_ID, "buyer-1", "SALE10");
+		inOrder.verify(steps).reserveStock(any());
+		inOrder.verify(steps).releaseStock(ORDER_ID, "res-1");
+		assertFailed();
+	}
+
+	@Test
+	void transientFailureIsRetriedLaterWithoutCompensating() throws Exception {
+		when(steps.reserveStock(any()))
+				.thenThrow(new OrderException(ErrorCodeOrder.PRODUCT_SERVICE_UNREACHABLE_FOR_ORDER));
+
+		orchestrator.start(request(), BUYER_TOKEN);
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (saga.get().getAttempts() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(1, saga.get().getAttempts());
+		assertEquals(CheckoutSaga.State.VOUCHER_REDEEMED, saga.get().getState());
+		assertTrue(saga.get().getNextAttemptAt().isAfter(LocalDateTime.now()));
+		verify(steps, never()).releaseVoucher(anyLong(), any(), any());
+	}
+
+	@Test
+	void exhaustedRetriesCompensate() throws Exception {
+		orchestrator.stop();
+		orchestrator = orchestrator(1);
+		// Lần gọi lại khi bù trừ cho biết không có gì được giữ
+		when(steps.reserveStock(any()))
+				.thenThrow(new OrderException(ErrorCodeOrder.PRODUCT_SERVICE_UNREACHABLE_FOR_ORDER))
+				.thenThrow(new OrderException(ErrorCodeOrder.INSUFFICIENT_STOCK_FOR_ORDER));
+
+		orchestrator.start(request(), BUYER_TOKEN);
+		awaitTerminal();
+
+		verify(steps, never()).releaseStock(anyLong(), any());
+		verify(steps).releaseVoucher(ORDER_ID, "buyer-1", "SALE10");
+		assertTrue(saga.get().getFailureReason().startsWith("Gave up after 1 attempts"));
+		assertFailed();
+	}
+
+	private CheckoutSagaOrchestrator orchestrator(int maxAttempts) {
+		PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+		when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+		UserIdentityResolver userIdentityResolver = mock(UserIdentityResolver.class);
+		when(userIdentityResolver.userIdFromToken("alice")).thenReturn("buyer-1");
+		return new CheckoutSagaOrchestrator(sagaRepository, orderRepository, mock(OrderService.class), orderOutbox,
+				steps, new CheckoutProgress(60_000), userIdentityResolver, new ObjectMapper(), transactionManager,
+				1, 10, 60_000, maxAttempts, 60_000, 10, 60_000);
+	}
+
+	private void awaitTerminal() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (!saga.get().getState().isTerminal() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(saga.get().getState().isTerminal(), "Saga dừng ở " + saga.get().getState());
+	}
+
+	private void assertFailed() {
+		assertEquals(CheckoutSaga.State.FAILED, saga.get().getState());
+		assertEquals(OrderStatus.FAILED, order.get().getStatus());
+		// Bù trừ xong thì không còn việc dở
+		assertFalse(saga.get().isVoucherMarked());
+		assertFalse(saga.get().isStockRequested());
+	}
+
+	private static CreateOrderRequest request() {
+		CreateOrderRequest request = new CreateOrderRequest();
+		request.setUserId("alice");
+		request.setPaymentMethod("COD");
+		request.setVoucherCode("SALE10");
+		return request;
+	}
+}
@@ -0,0 +1,220 @@
+package com.example.order.service.idempotency;
+
+import com.example.order.dto.request.CreateOrderRequest;
+import com.example.order.dto.response.CheckoutStatusResponse;
+import com.example.order.entity.CheckoutSaga;
+import com.example.order.entity.OrderIdempotencyKey;
+import com.example.order.exception.ErrorCodeOrder;
+import com.example.order.exception.OrderException;
+import com.example.order.repository.OrderIdempotencyKeyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderIdempotencyTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private OrderIdempotencyKeyRepository repository;
+	private OrderIdempotency idempotency;
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(OrderIdempotencyKeyRepository.class);
+		when(repository.findById(anyString())).thenReturn(Optional.empty());
+		PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+		when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+		idempotency = new OrderIdempotency(repository, objectMapper, transactionManager, 24, 100, 5_000);
+	}
+
+	@Test
+	void retryWithSameBodyReplaysStoredResponseWithoutPlacingAgain() {
+		AtomicInteger placed = new AtomicInteger();
+		Supplier<CheckoutStatusResponse> placeOrder = () -> accepted(100L + placed.incrementAndGet());
+
+		OrderIdempotency.Outcome first = idempotency.placeOnce("alice", "key-1", request("COD"), placeOrder);
+		OrderIdempotency.Outcome retry = idempotency.placeOnce("alice", "key-1", request("COD"), placeOrder);
+
+		assertFalse(first.replayed());
+		assertTrue(retry.replayed());
+		assertEquals(101L, retry.response().getOrderId());
+		assertEquals(CheckoutSaga.State.STARTED, retry.response().getState());
+		assertEquals(1, placed.get());
+		verify(repository).insert(anyString(), anyString(), any(), anyString(), any());
+	}
+
+	@Test
+	void sameKeyWithDifferentBodyIsRejected() {
+		idempotency.placeOnce("alice", "key-1", request("COD"), () -> accepted(101L));
+
+		OrderException reused = assertThrows(OrderException.class,
+				() -> idempotency.placeOnce("alice", "key-1", request("CREDIT_CARD"), () -> accepted(102L)));
+
+		assertEquals(ErrorCodeOrder.IDEMPOTENCY_KEY_REUSED, reused.getErrorCodeOrder());
+	}
+
+	@Test
+	void keyIsScopedToTheUser() {
+		idempotency.placeOnce("alice", "key-1", request("COD"), () -> accepted(101L));
+
+		OrderIdempotency.Outcome other = idempotency.placeOnce("bob", "key-1", request("COD"), () -> accepted(102L));
+
+		assertFalse(other.replayed());
+		assertEquals(102L, other.response().getOrderId());
+	}
+
+	@Test
+	void failedAttemptIsNotStoredSoTheKeyCanBeRetried() {
+		assertThrows(OrderException.class, () -> idempotency.placeOnce("alice", "key-1", request("COD"), () -> {
+			throw new OrderException(ErrorCodeOrder.ORDER_CREATION_FAILED);
+		}));
+
+		OrderIdempotency.Outcome retry = idempotency.placeOnce("alice", "key-1", request("COD"), () -> accepted(101L));
+
+		assertFalse(retry.replayed());
+		assertEquals(101L, retry.response().getOrderId());
+		verify(repository, times(1)).insert(anyString(), anyString(), any(), anyString(), any());
+	}
+
+	@Test
+	void duplicateKeyFromAnotherInstanceReplaysItsStoredResponse() throws Exception {
+		String winner = objectMapper.writeValueAsString(accepted(200L));
+		// Replica khác ghi key trước: INSERT của replica này gặp lỗi trùng, lần đọc sau thấy dòng của replica kia
+		when(repository.insert(anyString(), anyString(), any(), anyString(), any()))
+				.thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+		when(repository.findById(anyString()))
+				.thenReturn(Optional.empty())
+				.thenAnswer(invocation -> Optional.of(new OrderIdempotencyKey(invocation.getArgument(0),
+						sha256Of(request("COD")), 200L, winner, LocalDateTime.now())));
+
+		OrderIdempotency.Outcome outcome = idempotency.placeOnce("alice", "key-1", request("COD"), () -> accepted(101L));
+
+		assertTrue(outcome.replayed());
+		assertEquals(200L, outcome.response().getOrderId());
+	}
+
+	@Test
+	void storedRowIsReplayedAfterTheMemoryCacheIsLost() throws Exception {
+		String stored = objectMapper.writeValueAsString(accepted(300L));
+		when(repository.findById(anyString())).thenAnswer(invocation -> Optional.of(new OrderIdempotencyKey(
+				invocation.getArgument(0), sha256Of(request("COD")), 300L, stored, LocalDateTime.now().minusHours(1))));
+		AtomicInteger placed = new AtomicInteger();
+
+		OrderIdempotency.Outcome outcome = idempotency.placeOnce("alice", "key-1", request("COD"), () -> {
+			placed.incrementAndGet();
+			return accepted(301L);
+		});
+
+		assertTrue(outcome.replayed());
+		assertEquals(300L, outcome.response().getOrderId());
+		assertEquals(0, placed.get());
+	}
+
+	@Test
+	void expiredRowIsDeletedAndTheKeyIsReused() throws Exception {
+		String stored = objectMapper.writeValueAsString(accepted(300L));
+		when(repository.findById(anyString())).thenAnswer(invocation -> Optional.of(new OrderIdempotencyKey(
+				invocation.getArgument(0), sha256Of(request("COD")), 300L, stored, LocalDateTime.now().minusHours(25))));
+
+		OrderIdempotency.Outcome outcome = idempotency.placeOnce("alice", "key-1", request("COD"), () -> accepted(301L));
+
+		assertFalse(outcome.replayed());
+		assertEquals(301L, outcome.response().getOrderId());
+		verify(repository).deleteById(anyString());
+	}
+
+	@Test
+	void concurrentRequestsWithSameKeyPlaceOneOrder() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger placed = new AtomicInteger();
+		Supplier<CheckoutStatusResponse> slowPlaceOrder = () -> {
+			placed.incrementAndGet();
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return accepted(101L);
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<OrderIdempotency.Outcome> first = executor.submit(
+					() -> idempotency.placeOnce("alice", "key-1", request("COD"), slowPlaceOrder));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			// Request thứ hai đến khi lần đầu còn đang chạy: phải chờ, không tự đặt đơn
+			Future<OrderIdempotency.Outcome> second = executor.submit(
+					() -> idempotency.placeOnce("alice", "key-1", request("COD"), slowPlaceOrder));
+			Thread.sleep(100);
+			assertFalse(second.isDone());
+			release.countDown();
+
+			assertFalse(first.get(5, TimeUnit.SECONDS).replayed());
+			assertTrue(second.get(5, TimeUnit.SECONDS).replayed());
+			assertEquals(101L, second.get().response().getOrderId());
+			assertEquals(1, placed.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void blankOrOversizedKeyIsRejectedBeforeTouchingTheDatabase() {
+		for (String key : new String[]{" ", "k".repeat(101)}) {
+			OrderException invalid = assertThrows(OrderException.class,
+					() -> idempotency.placeOnce("alice", key, request("COD"), () -> accepted(101L)));
+			assertEquals(ErrorCodeOrder.INVALID_ORDER_REQUEST, invalid.getErrorCodeOrder());
+		}
+		verify(repository, never()).findById(anyString());
+		verify(repository, never()).insert(anyString(), anyString(), anyLong(), anyString(), any());
+	}
+
+	private String sha256Of(CreateOrderRequest request) throws Exception {
+		byte[] digest = MessageDigest.getInstance("SHA-256")
+				.digest(objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(digest);
+	}
+
+	private static CreateOrderRequest request(String paymentMethod) {
+		CreateOrderRequest request = new CreateOrderRequest();
+		request.setUserId("alice");
+		request.setPaymentMethod(paymentMethod);
+		return request;
+	}
+
+	private static CheckoutStatusResponse accepted(Long orderId) {
+		return CheckoutStatusResponse.builder()
+				.orderId(orderId)
+				.state(CheckoutSaga.State.STARTED)
+				.build();
+	}
+}
@@ -0,0 +1,145 @@
+package com.example.order.service.iml;
+
+import com.example.order.dto.response.OrderHistoryPageResponse;
+import com.example.order.dto.response.OrderSummaryResponse;
+import com.example.order.entity.OrderStatus;
+import com.example.order.exception.ErrorCodeOrder;
+import com.example.order.exception.OrderException;
+import com.example.order.repository.OrderRepository;
+import com.example.order.security.ServiceTokenProvider;
+import com.example.order.service.UserIdentityResolver;
+import com.example.order.service.client.ProductServiceClient;
+import com.example.order.service.outbox.OrderOutbox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderServiceImplHistoryTest {
+
+	private static final String USER = "alice";
+	private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+	private final List<OrderSummaryResponse> orders = new ArrayList<>();
+	private OrderRepository orderRepository;
+	private OrderServiceImpl orderService;
+
+	@BeforeEach
+	void setUp() {
+		orderRepository = mock(OrderRepository.class);
+		// Giả lập hai query keyset trên danh sách trong bộ nhớ, cùng thứ tự (orderDate DESC, id DESC)
+		when(orderRepository.findHistory(eq(USER), any())).thenAnswer(invocation ->
+				page(orders, invocation.getArgument(1)));
+		when(orderRepository.findHistoryAfter(eq(USER), any(), any(), any())).thenAnswer(invocation -> {
+			LocalDateTime orderDate = invocation.getArgument(1);
+			Long id = invocation.getArgument(2);
+			List<OrderSummaryResponse> after = orders.stream()
+					.filter(o -> o.getOrderDate().isBefore(orderDate)
+							|| (o.getOrderDate().equals(orderDate) && o.getId() < id))
+					.toList();
+			return page(after, invocation.getArgument(3));
+		});
+		orderService = new OrderServiceImpl(orderRepository, mock(ProductServiceClient.class), mock(OrderOutbox.class),
+				mock(UserIdentityResolver.class), mock(ServiceTokenProvider.class));
+	}
+
+	@Test
+	void followingCursorsVisitsEveryOrderOnceIncludingSameTimestampTies() {
+		for (long id = 1; id <= 23; id++) {
+			// Từng nhóm 3 đơn cùng thời điểm (có phần nano) để cursor phải phân biệt bằng id
+			add(id, BASE.plusSeconds(id / 3).plusNanos(123_456_789));
+		}
+
+		List<Long> visited = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			OrderHistoryPageResponse page = orderService.getOrderHistory(USER, cursor, 5);
+			page.getOrders().forEach(o -> visited.add(o.getId()));
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+
+		List<Long> expected = orders.stream().map(OrderSummaryResponse::getId).toList();
+		assertEquals(expected, visited);
+		assertEquals(5, pages);
+	}
+
+	@Test
+	void cursorEncodesTheLastRowOfThePage() {
+		add(1L, BASE);
+		add(2L, BASE.plusNanos(1));
+		add(3L, BASE.plusMinutes(1));
+
+		OrderHistoryPageResponse first = orderService.getOrderHistory(USER, null, 2);
+		assertEquals(List.of(3L, 2L), first.getOrders().stream().map(OrderSummaryResponse::getId).toList());
+		assertNotNull(first.getNextCursor());
+
+		orderService.getOrderHistory(USER, first.getNextCursor(), 2);
+		// Thời điểm giữ nguyên độ chính xác nano khi đi qua cursor
+		verify(orderRepository).findHistoryAfter(eq(USER), eq(BASE.plusNanos(1)), eq(2L), any());
+	}
+
+	@Test
+	void exactlyFullLastPageHasNoCursor() {
+		for (long id = 1; id <= 4; id++) {
+			add(id, BASE.plusSeconds(id));
+		}
+
+		OrderHistoryPageResponse page = orderService.getOrderHistory(USER, null, 4);
+
+		assertEquals(4, page.getOrders().size());
+		assertNull(page.getNextCursor());
+	}
+
+	@Test
+	void pageSizeIsClampedAndOneExtraRowIsFetched() {
+		orderService.getOrderHistory(USER, null, 500);
+		verify(orderRepository).findHistory(eq(USER), eq(PageRequest.of(0, 51)));
+
+		orderService.getOrderHistory(USER, "", 0);
+		verify(orderRepository).findHistory(eq(USER), eq(PageRequest.of(0, 2)));
+	}
+
+	@Test
+	void malformedCursorIsRejectedAsInvalidRequest() {
+		for (String cursor : new String[]{"not base64!", encode("no-separator"), encode("2024-03-01T10:00|abc"),
+				encode("yesterday|5")}) {
+			OrderException invalid = assertThrows(OrderException.class,
+					() -> orderService.getOrderHistory(USER, cursor, 10), cursor);
+			assertEquals(ErrorCodeOrder.INVALID_ORDER_REQUEST, invalid.getErrorCodeOrder(), cursor);
+		}
+	}
+
+	private void add(Long id, LocalDateTime orderDate) {
+		orders.add(new OrderSummaryResponse(id, orderDate, OrderStatus.PENDING, BigDecimal.TEN, 1L, null));
+		orders.sort(Comparator.comparing(OrderSummaryResponse::getOrderDate)
+				.thenComparing(OrderSummaryResponse::getId).reversed());
+	}
+
+	private static List<OrderSummaryResponse> page(List<OrderSummaryResponse> rows, Pageable pageable) {
+		return new ArrayList<>(rows.subList(0, Math.min(rows.size(), pageable.getPageSize())));
+	}
+
+	private static String encode(String raw) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,201 @@
+package com.example.order.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderOutboxRelayTest {
+
+	private static final String PAYLOAD_TYPE = "java.util.LinkedHashMap";
+
+	private final List<Object[]> pending = new ArrayList<>();
+	private final AtomicBoolean claimed = new AtomicBoolean();
+	private JdbcTemplate jdbcTemplate;
+	private PlatformTransactionManager transactionManager;
+	private RabbitTemplate rabbitTemplate;
+	private OrderOutboxRelay relay;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		jdbcTemplate = mock(JdbcTemplate.class);
+		transactionManager = mock(PlatformTransactionManager.class);
+		rabbitTemplate = mock(RabbitTemplate.class);
+		when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+		// Lượt giữ chỗ đầu trả về các dòng đang chờ, các lượt sau không còn gì
+		when(jdbcTemplate.query(argThat((String sql) -> sql.contains("FOR UPDATE SKIP LOCKED")),
+				any(RowMapper.class), any(), any())).thenAnswer(invocation -> {
+			if (claimed.getAndSet(true)) {
+				return List.of();
+			}
+			RowMapper<Object> mapper = invocation.getArgument(1);
+			List<Object> rows = new ArrayList<>();
+			for (Object[] row : pending) {
+				rows.add(mapper.mapRow(resultSet(row), rows.size()));
+			}
+			return rows;
+		});
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		if (relay != null) {
+			relay.stop();
+		}
+	}
+
+	@Test
+	void claimLeasesTheBatchInReadCommittedBeforePublishing() {
+		pending.add(row(1L, "{\"orderId\":1}", 0));
+		pending.add(row(2L, "{\"orderId\":2}", 0));
+		confirmWith(true);
+
+		relay = relay(20);
+		verify(jdbcTemplate, timeout(5_000)).batchUpdate(startsWith("UPDATE order_outbox SET status = 'PUBLISHED'"),
+				anyList());
+
+		verify(transactionManager).getTransaction(argThat(definition ->
+				definition.getIsolationLevel() == TransactionDefinition.ISOLATION_READ_COMMITTED));
+		InOrder inOrder = inOrder(jdbcTemplate, rabbitTemplate);
+		inOrder.verify(jdbcTemplate).query(anyString(), any(RowMapper.class), any(), eq(100));
+		inOrder.verify(jdbcTemplate).batchUpdate(startsWith("UPDATE order_outbox SET next_attempt_at"),
+				argThat((List<Object[]> leases) -> leases.size() == 2
+						&& ((Timestamp) leases.get(0)[0]).toLocalDateTime().isAfter(LocalDateTime.now().plusSeconds(20))));
+		inOrder.verify(rabbitTemplate).convertAndSend(eq("order.exchange"), eq("order.created"),
+				eq(Map.of("orderId", 1)), any(CorrelationData.class));
+		inOrder.verify(rabbitTemplate).convertAndSend(eq("order.exchange"), eq("order.created"),
+				eq(Map.of("orderId", 2)), any(CorrelationData.class));
+		assertEquals(List.of(1L, 2L), ids(batchUpdates("UPDATE order_outbox SET status = 'PUBLISHED'"), 1));
+		verify(jdbcTemplate, never()).batchUpdate(startsWith("UPDATE order_outbox SET status = ?"), anyList());
+	}
+
+	@Test
+	void nackedEventIsRescheduledWithExponentialBackoff() {
+		pending.add(row(1L, "{\"orderId\":1}", 2));
+		confirmWith(false);
+
+		relay = relay(20);
+		verify(jdbcTemplate, timeout(5_000)).batchUpdate(startsWith("UPDATE order_outbox SET status = ?"), anyList());
+
+		Object[] retry = batchUpdates("UPDATE order_outbox SET status = ?").get(0);
+		assertEquals("PENDING", retry[0]);
+		assertEquals(3, retry[1]);
+		// Lần thử thứ 3: chờ 1s * 2^2
+		LocalDateTime nextAttempt = ((Timestamp) retry[2]).toLocalDateTime();
+		assertTrue(nextAttempt.isAfter(LocalDateTime.now().plusSeconds(2)));
+		assertTrue(nextAttempt.isBefore(LocalDateTime.now().plusSeconds(5)));
+		assertEquals("nack: broker full", retry[3]);
+		assertEquals(1L, retry[4]);
+	}
+
+	@Test
+	void eventThatReachesMaxAttemptsIsMarkedFailed() {
+		pending.add(row(1L, "{\"orderId\":1}", 4));
+		confirmWith(false);
+
+		relay = relay(5);
+		verify(jdbcTemplate, timeout(5_000)).batchUpdate(startsWith("UPDATE order_outbox SET status = ?"), anyList());
+
+		Object[] retry = batchUpdates("UPDATE order_outbox SET status = ?").get(0);
+		assertEquals("FAILED", retry[0]);
+		assertEquals(5, retry[1]);
+	}
+
+	@Test
+	void unreadablePayloadIsRetriedWithoutBlockingTheRestOfTheBatch() {
+		pending.add(row(1L, "not json", 0));
+		pending.add(row(2L, "{\"orderId\":2}", 0));
+		confirmWith(true);
+
+		relay = relay(20);
+		verify(jdbcTemplate, timeout(5_000)).batchUpdate(startsWith("UPDATE order_outbox SET status = ?"), anyList());
+		verify(jdbcTemplate, timeout(5_000)).batchUpdate(startsWith("UPDATE order_outbox SET status = 'PUBLISHED'"),
+				anyList());
+
+		List<Object[]> retries = batchUpdates("UPDATE order_outbox SET status = ?");
+		assertEquals(List.of(1L), ids(retries, 4));
+		assertTrue(((String) retries.get(0)[3]).startsWith("JsonParseException"));
+		assertEquals(List.of(2L), ids(batchUpdates("UPDATE order_outbox SET status = 'PUBLISHED'"), 1));
+		verify(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+	}
+
+	private OrderOutboxRelay relay(int maxAttempts) {
+		OrderOutboxRelay started = new OrderOutboxRelay(jdbcTemplate, transactionManager, rabbitTemplate,
+				new ObjectMapper(), 100, 10, 5_000, 30_000, 300_000, maxAttempts, 7);
+		started.start();
+		return started;
+	}
+
+	// Broker xác nhận ngay khi gửi
+	private void confirmWith(boolean ack) {
+		doAnswer(invocation -> {
+			CorrelationData correlation = invocation.getArgument(3);
+			correlation.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "broker full"));
+			return null;
+		}).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Object[]> batchUpdates(String sqlPrefix) {
+		ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+		verify(jdbcTemplate).batchUpdate(startsWith(sqlPrefix), args.capture());
+		return args.getValue();
+	}
+
+	private static List<Long> ids(List<Object[]> rows, int idColumn) {
+		return rows.stream().map(row -> (Long) row[idColumn]).toList();
+	}
+
+	private static String startsWith(String prefix) {
+		return argThat((String sql) -> sql != null && sql.startsWith(prefix));
+	}
+
+	private static Object[] row(long id, String payload, int attempts) {
+		return new Object[]{id, "order.exchange", "order.created", PAYLOAD_TYPE, payload, attempts};
+	}
+
+	private static ResultSet resultSet(Object[] row) throws Exception {
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getLong(1)).thenReturn((Long) row[0]);
+		when(rs.getString(2)).thenReturn((String) row[1]);
+		when(rs.getString(3)).thenReturn((String) row[2]);
+		when(rs.getString(4)).thenReturn((String) row[3]);
+		when(rs.getString(5)).thenReturn((String) row[4]);
+		when(rs.getInt(6)).thenReturn((Integer) row[5]);
+		return rs;
+	}
+}
@@ -1,10 +1,14 @@
 package com.example.product.client;
 
+import com.example.product.dto.response.DeliveredPurchaseResponse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient(name = "order-service", url = "http://orderservice:8083")
+import java.util.List;
+
+// API nội bộ của order-service chỉ nhận token service (scope SERVICE)
+@FeignClient(name = "order-service", url = "http://orderservice:8083", configuration = ServiceAuthFeignConfig.class)
 public interface OrderClient {
 
     @GetMapping("/api/v1/internal/orders/has-purchased")
@@ -12,4 +16,15 @@ public interface OrderClient {
             @RequestParam("username") String username,
             @RequestParam("productId") Long productId
     );
+
+    // Toàn bộ productId user đã nhận hàng, dùng để nạp cache xác nhận mua hàng
+    @GetMapping("/api/v1/internal/orders/purchased-products")
+    List<Long> getPurchasedProductIds(@RequestParam("username") String username);
+
+    // Lịch sử mua của các đơn đã giao theo trang (keyset theo orderId), dùng để nạp product_purchases
+    @GetMapping("/api/v1/internal/orders/delivered-purchases")
+    List<DeliveredPurchaseResponse> getDeliveredPurchases(
+            @RequestParam("afterOrderId") Long afterOrderId,
+            @RequestParam("limit") int limit
+    );
 }
@@ -0,0 +1,15 @@
+package com.example.product.client;
+
+import com.example.product.security.ServiceTokenProvider;
+import feign.RequestInterceptor;
+import org.springframework.context.annotation.Bean;
+
+// Cấu hình riêng cho từng FeignClient (không @Configuration để không áp lên mọi client):
+// gắn token của product-service vào lời gọi API nội bộ
+public class ServiceAuthFeignConfig {
+
+    @Bean
+    RequestInterceptor serviceAuthInterceptor(ServiceTokenProvider serviceTokenProvider) {
+        return template -> template.header("Authorization", serviceTokenProvider.bearer());
+    }
+}
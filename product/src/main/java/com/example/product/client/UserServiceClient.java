@@ -3,10 +3,15 @@ package com.example.product.client;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 
+import com.example.product.dto.response.SellerBatchResponse;
 import com.example.product.dto.response.UserServiceResponse;
 
+import java.util.List;
+
 @FeignClient(name = "userservice", url = "http://userservice:8080")
 public interface UserServiceClient {
 
@@ -14,4 +19,10 @@ public interface UserServiceClient {
     UserServiceResponse getUserByStoreId(
             @PathVariable("storeId") String storeId,
             @RequestHeader("Authorization") String token);
-}
\ No newline at end of file
+
+    // Lấy người bán cho nhiều storeId trong 1 lần gọi
+    @PostMapping("/user/users/stores/sellers")
+    SellerBatchResponse getSellersByStoreIds(
+            @RequestBody List<String> storeIds,
+            @RequestHeader("Authorization") String token);
+}
@@ -0,0 +1,76 @@
+package com.example.product.config;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitMQConfig {
+
+    public static final String PRODUCT_CACHE_INVALIDATION_EXCHANGE = "product.cache.invalidation";
+    // Exchange do order-service khai báo, phát khi đơn chuyển sang DELIVERED
+    public static final String ORDER_DELIVERED_EXCHANGE = "order.delivered";
+    public static final String PURCHASE_HISTORY_QUEUE = "product.purchase-history";
+
+    @Bean
+    public FanoutExchange productCacheInvalidationExchange() {
+        return new FanoutExchange(PRODUCT_CACHE_INVALIDATION_EXCHANGE, true, false);
+    }
+
+    // Mỗi instance có hàng đợi riêng (tự xoá khi tắt) -> mọi replica đều nhận được lệnh xoá cache
+    @Bean
+    public Queue productCacheInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding productCacheInvalidationBinding() {
+        return BindingBuilder.bind(productCacheInvalidationQueue()).to(productCacheInvalidationExchange());
+    }
+
+    @Bean
+    public FanoutExchange orderDeliveredExchange() {
+        return new FanoutExchange(ORDER_DELIVERED_EXCHANGE, true, false);
+    }
+
+    // Cache đã-mua nằm trong bộ nhớ từng instance nên mỗi instance cần hàng đợi riêng
+    @Bean
+    public Queue orderDeliveredQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding orderDeliveredBinding() {
+        return BindingBuilder.bind(orderDeliveredQueue()).to(orderDeliveredExchange());
+    }
+
+    // Lịch sử mua cho bộ gợi ý được ghi vào DB dùng chung -> một hàng đợi bền cho tất cả replica (mỗi event ghi một lần)
+    @Bean
+    public Queue purchaseHistoryQueue() {
+        return new Queue(PURCHASE_HISTORY_QUEUE, true);
+    }
+
+    @Bean
+    public Binding purchaseHistoryBinding() {
+        return BindingBuilder.bind(purchaseHistoryQueue()).to(orderDeliveredExchange());
+    }
+
+    @Bean
+    public Jackson2JsonMessageConverter messageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+
+    @Bean
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMessageConverter(messageConverter());
+        return template;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.product.config;
 
+import com.example.product.security.ServiceTokenProvider;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,10 +73,16 @@ public class SecurityConfigProduct {
                         
                         // Nếu muốn mở GET product public cho khách vãng lai thì thêm:
                         .requestMatchers(HttpMethod.GET, "/api/v1/products/**").permitAll()
+                        // Batch lookup chỉ đọc dữ liệu, tương đương GET /api/v1/products/{id}
+                        .requestMatchers(HttpMethod.POST, "/api/v1/products/batch").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/v1/categories/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/v1/recommendations/similar/**").permitAll()
 
 
+                        // Giữ / hoàn kho theo đơn: chỉ order-service gọi, bằng token service
+                        .requestMatchers("/api/v1/products/stock-reservations/**")
+                                .hasAuthority("SCOPE_" + ServiceTokenProvider.SERVICE_SCOPE)
+
                         // Các request còn lại yêu cầu JWT
                         .anyRequest().authenticated()
                 )
@@ -0,0 +1,36 @@
+package com.example.product.controller;
+
+import com.example.product.dto.response.ApiResponse;
+import com.example.product.dto.response.AutocompleteResponse;
+import com.example.product.service.autocomplete.AutocompleteIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/products/autocomplete")
+@RequiredArgsConstructor
+public class AutocompleteController {
+
+    private static final int MAX_LIMIT = 20;
+    private static final int CATEGORY_LIMIT = 3;
+
+    private final AutocompleteIndex autocompleteIndex;
+
+    // Gợi ý theo tiền tố cho ô tìm kiếm (public, trả lời từ bộ nhớ, không truy vấn DB)
+    @GetMapping
+    public ResponseEntity<ApiResponse<AutocompleteResponse>> autocomplete(
+            @RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(defaultValue = "8") int limit) {
+        int safeLimit = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        ApiResponse<AutocompleteResponse> response = ApiResponse.<AutocompleteResponse>builder()
+                .code(1000)
+                .message(autocompleteIndex.isReady() ? "Lấy gợi ý thành công" : "Chỉ mục gợi ý đang được dựng")
+                .result(autocompleteIndex.suggest(query, safeLimit, Math.min(CATEGORY_LIMIT, safeLimit)))
+                .build();
+        return ResponseEntity.ok(response);
+    }
+}
@@ -18,6 +18,8 @@ import java.util.List;
 @RequiredArgsConstructor // Lombok constructor injection
 public class CategoryController {
 
+    private static final int MAX_PRODUCT_PAGE_SIZE = 100;
+
     private final CategoryService categoryService;
 
     @PostMapping
@@ -27,9 +29,13 @@ public class CategoryController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<CategoryResponse> getCategoryById(@PathVariable Long id) {
-        CategoryResponse category = categoryService.getCategoryById(id);
-        return ResponseEntity.ok(category); // Bao gồm sản phẩm
+    public ResponseEntity<CategoryResponse> getCategoryById(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        int safeSize = Math.min(Math.max(size, 1), MAX_PRODUCT_PAGE_SIZE);
+        CategoryResponse category = categoryService.getCategoryById(id, Math.max(page, 0), safeSize);
+        return ResponseEntity.ok(category); // Bao gồm một trang sản phẩm
     }
 
     @GetMapping
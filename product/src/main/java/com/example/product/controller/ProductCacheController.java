@@ -0,0 +1,29 @@
+package com.example.product.controller;
+
+import com.example.product.dto.response.ApiResponse;
+import com.example.product.dto.response.ProductCacheStatsResponse;
+import com.example.product.service.cache.ProductDetailCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/product-cache")
+@RequiredArgsConstructor
+public class ProductCacheController {
+
+    private final ProductDetailCache productDetailCache;
+
+    // Số liệu hit / miss / eviction của cache chi tiết sản phẩm (cần đăng nhập)
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<ProductCacheStatsResponse>> getStats() {
+        ApiResponse<ProductCacheStatsResponse> response = ApiResponse.<ProductCacheStatsResponse>builder()
+                .code(1000)
+                .message("Lấy thống kê cache thành công")
+                .result(productDetailCache.stats())
+                .build();
+        return ResponseEntity.ok(response);
+    }
+}
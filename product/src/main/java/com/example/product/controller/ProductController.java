@@ -5,10 +5,17 @@ import com.example.product.dto.response.ApiResponse;
 import com.example.product.dto.response.ProductResponse;
 import com.example.product.dto.response.RatingResponse;
 import com.example.product.dto.request.UpdateStockRequest;
+import com.example.product.service.FlashSaleInventoryService;
 import com.example.product.service.ProductService;
 import com.example.product.service.ProductViewHistoryService;
 import com.example.product.service.RatingService;
+import com.example.product.service.cache.ProductListingCache;
+import com.example.product.service.catalog.CatalogVersion;
+import com.example.product.service.trending.TrendingProducts;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,12 +24,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.data.domain.Sort;
 import org.slf4j.Logger;
@@ -42,6 +51,11 @@ public class ProductController {
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
     private final ProductViewHistoryService productViewHistoryService;
     private final RatingService ratingService;
+    private final FlashSaleInventoryService flashSaleInventoryService;
+    private final TrendingProducts trendingProducts;
+    private final CatalogVersion catalogVersion;
+    private final ProductListingCache productListingCache;
+    private final ObjectMapper objectMapper;
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<ProductResponse> createProduct(
@@ -72,15 +86,52 @@ public class ProductController {
     }
 
     @GetMapping
-    public ResponseEntity<Page<ProductResponse>> findProducts(
+    public ResponseEntity<?> findProducts(
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) String q,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "false") boolean facets,
             @PageableDefault(size = 10, sort = "name", direction = Sort.Direction.ASC) Pageable pageable,
-            @RequestHeader(value = "Authorization", required = false) String token) {
-        Page<ProductResponse> productPage = productService.findProducts(categoryId, q, minPrice, maxPrice, pageable, token);
-        return ResponseEntity.ok(productPage);
+            @RequestHeader(value = "Authorization", required = false) String token,
+            HttpServletRequest request,
+            WebRequest webRequest) {
+        // Đọc phiên bản trước khi đọc dữ liệu; ETag khớp -> 304, không chạm DB
+        long version = catalogVersion.current();
+        if (webRequest.checkNotModified(catalogVersion.etag(version, token == null ? "a" : "u"))) {
+            return null;
+        }
+
+        // Khách chưa đăng nhập: response không phụ thuộc người gọi -> dùng lại JSON đã serialize theo URL
+        String cacheKey = token == null
+                ? request.getRequestURL() + (request.getQueryString() != null ? "?" + request.getQueryString() : "")
+                : null;
+        if (cacheKey != null) {
+            byte[] cached = productListingCache.get(version, cacheKey);
+            if (cached != null) {
+                return jsonResponse(cached);
+            }
+        }
+
+        // facets=true: trả thêm trường "facets" (đếm theo category / khoảng giá / cửa hàng) trong cùng response
+        Page<ProductResponse> productPage = productService.findProducts(categoryId, q, minPrice, maxPrice, pageable, facets, token);
+        if (cacheKey != null) {
+            try {
+                byte[] body = objectMapper.writeValueAsBytes(productPage);
+                productListingCache.put(version, cacheKey, body);
+                return jsonResponse(body);
+            } catch (JsonProcessingException e) {
+                logger.warn("Không serialize được trang sản phẩm để cache: {}", e.getMessage());
+            }
+        }
+        return ResponseEntity.ok().header(HttpHeaders.VARY, HttpHeaders.AUTHORIZATION).body(productPage);
+    }
+
+    private ResponseEntity<byte[]> jsonResponse(byte[] body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.AUTHORIZATION)
+                .body(body);
     }
 
     @DeleteMapping("/{id}")
@@ -146,6 +197,24 @@ public class ProductController {
         }
     }
 
+    // Bật/tắt flash sale: tồn kho của SKU được chuyển vào bộ đếm trong bộ nhớ (hoặc trả lại cho DB)
+    @PatchMapping("/{id}/flash-sale")
+    public ResponseEntity<ApiResponse<Void>> setFlashSale(
+            @PathVariable Long id,
+            @RequestParam boolean enabled,
+            @RequestHeader(value = "X-Store-Id", required = true) String storeId) {
+        if (enabled) {
+            flashSaleInventoryService.enable(id, storeId);
+        } else {
+            flashSaleInventoryService.disable(id, storeId);
+        }
+        ApiResponse<Void> response = ApiResponse.<Void>builder()
+                .code(1000)
+                .message(enabled ? "Bật flash sale thành công" : "Tắt flash sale thành công")
+                .build();
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/store/{storeId}")
     public ResponseEntity<List<Map<String, Object>>> getProductsByStoreId(
             @PathVariable String storeId,
@@ -160,7 +229,8 @@ public class ProductController {
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<ProductResponse>> getProductById(
             @PathVariable Long id,
-            @AuthenticationPrincipal Jwt jwt   // Lấy JWT trong header Authorization
+            @AuthenticationPrincipal Jwt jwt,   // Lấy JWT trong header Authorization
+            WebRequest webRequest
     ) {
         String username = null;
         String token = null;
@@ -171,18 +241,40 @@ public class ProductController {
             token = "Bearer " + jwt.getTokenValue();  // dùng để gọi user-service
         }
 
-    // Ghi lịch sử người xem sản phẩm
-        productViewHistoryService.logView(id, username);
+    // Bản client đang giữ vẫn đúng với phiên bản catalog hiện tại -> 304; chỉ là revalidate, không tính lượt xem
+        if (webRequest.checkNotModified(catalogVersion.etag(catalogVersion.current(), jwt == null ? "a" : "u"))) {
+            return null;
+        }
 
     // Truyền đúng token JWT (KHÔNG truyền username nữa!)
         ProductResponse product = productService.getProductById(id, token);
 
+    // Ghi lịch sử người xem sản phẩm (sau khi chắc chắn sản phẩm tồn tại; chỉ đưa vào hàng đợi, không chờ DB)
+        productViewHistoryService.logView(id, username);
+        trendingProducts.recordView(id, product.isActive() ? product.getCategoryId() : null);
+
         ApiResponse<ProductResponse> response = ApiResponse.<ProductResponse>builder()
                 .code(1000)
                 .message("Lấy chi tiết sản phẩm thành công")
                 .result(product)
                 .build();
 
+        return ResponseEntity.ok().header(HttpHeaders.VARY, HttpHeaders.AUTHORIZATION).body(response);
+    }
+
+    // Lấy nhiều sản phẩm trong 1 lần gọi (order-service, cart-service), trả về đúng thứ tự ids gửi lên
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ApiResponse<List<ProductResponse>>> getProductsByIds(
+            @RequestBody List<Long> ids,
+            @RequestHeader(value = "Authorization", required = false) String token) {
+        List<ProductResponse> products = productService.getProductsByIds(ids, token);
+
+        ApiResponse<List<ProductResponse>> response = ApiResponse.<List<ProductResponse>>builder()
+                .code(1000)
+                .message("Lấy danh sách sản phẩm thành công")
+                .result(products)
+                .build();
+
         return ResponseEntity.ok(response);
     }
 
@@ -0,0 +1,40 @@
+package com.example.product.controller;
+
+import com.example.product.service.image.ProductImageDelivery;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// Phục vụ ảnh tại app.static-resource.public-path-pattern (trước đây là resource handler mặc định):
+// thêm ETag / 304 / Range / Cache-Control và gửi file bằng sendfile
+@RestController
+@RequiredArgsConstructor
+public class ProductImageController {
+
+    private final ProductImageDelivery productImageDelivery;
+
+    @Value("${app.static-resource.public-path-pattern}")
+    private String publicPathPattern;
+
+    @RequestMapping(value = "${app.static-resource.public-path-pattern}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String prefix = publicPathPattern.endsWith("/**")
+                ? publicPathPattern.substring(0, publicPathPattern.length() - 2)
+                : publicPathPattern;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(prefix)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String relativePath = UriUtils.decode(path.substring(prefix.length()), StandardCharsets.UTF_8);
+        productImageDelivery.serve(relativePath, request, response);
+    }
+}
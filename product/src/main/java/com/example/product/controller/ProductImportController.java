@@ -0,0 +1,47 @@
+package com.example.product.controller;
+
+import com.example.product.dto.response.ApiResponse;
+import com.example.product.dto.response.ProductImportJobResponse;
+import com.example.product.service.ProductImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+@RestController
+@RequestMapping("/api/v1/product-imports")
+@RequiredArgsConstructor
+public class ProductImportController {
+
+    private final ProductImportService productImportService;
+
+    // Nhập sản phẩm hàng loạt: file CSV/NDJSON + zip ảnh (tuỳ chọn, cột "image" là tên file trong zip).
+    // Trả về 202 kèm jobId, tiến độ và lỗi theo dòng xem qua GET /{jobId}
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ApiResponse<ProductImportJobResponse>> submitImport(
+            @RequestPart("file") MultipartFile file,
+            @RequestPart(value = "images", required = false) MultipartFile images,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = "X-Store-Id", required = true) String storeId) {
+        ApiResponse<ProductImportJobResponse> response = ApiResponse.<ProductImportJobResponse>builder()
+                .code(1000)
+                .message("Đã nhận file, đang nhập sản phẩm")
+                .result(productImportService.submit(storeId, file, images, format))
+                .build();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ApiResponse<ProductImportJobResponse>> getImportJob(
+            @PathVariable String jobId,
+            @RequestHeader(value = "X-Store-Id", required = true) String storeId) {
+        ApiResponse<ProductImportJobResponse> response = ApiResponse.<ProductImportJobResponse>builder()
+                .code(1000)
+                .message("Lấy trạng thái nhập sản phẩm thành công")
+                .result(productImportService.getJob(jobId, storeId))
+                .build();
+        return ResponseEntity.ok(response);
+    }
+}
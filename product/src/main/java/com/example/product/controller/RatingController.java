@@ -2,6 +2,7 @@ package com.example.product.controller;
 
 import com.example.product.dto.request.RatingRequest;
 import com.example.product.dto.response.ApiResponse;
+import com.example.product.dto.response.RatingPageResponse;
 import com.example.product.dto.response.RatingResponse;
 import com.example.product.dto.response.RatingSummaryResponse;
 import com.example.product.service.RatingService;
@@ -13,8 +14,6 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/v1/products/{productId}")
 @RequiredArgsConstructor
@@ -42,14 +41,16 @@ public class RatingController {
         return ResponseEntity.ok(response);
     }
 
-    // 🟢 Xem danh sách đánh giá của sản phẩm (public)
+    // 🟢 Xem danh sách đánh giá của sản phẩm (public), mới nhất trước, phân trang bằng cursor
     @GetMapping("/ratings")
-    public ResponseEntity<ApiResponse<List<RatingResponse>>> getRatings(
-            @PathVariable Long productId
+    public ResponseEntity<ApiResponse<RatingPageResponse>> getRatings(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
     ) {
-        List<RatingResponse> ratings = ratingService.getRatingsForProduct(productId);
+        RatingPageResponse ratings = ratingService.getRatingsForProduct(productId, cursor, size);
 
-        ApiResponse<List<RatingResponse>> response = ApiResponse.<List<RatingResponse>>builder()
+        ApiResponse<RatingPageResponse> response = ApiResponse.<RatingPageResponse>builder()
                 .code(1000)
                 .message("Lấy danh sách đánh giá thành công")
                 .result(ratings)
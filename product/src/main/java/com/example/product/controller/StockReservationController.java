@@ -0,0 +1,48 @@
+package com.example.product.controller;
+
+import com.example.product.dto.request.StockReservationRequest;
+import com.example.product.dto.response.ApiResponse;
+import com.example.product.dto.response.StockReservationResponse;
+import com.example.product.service.StockReservationService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/products/stock-reservations")
+@RequiredArgsConstructor
+public class StockReservationController {
+
+    private final StockReservationService stockReservationService;
+
+    // Trừ kho cho cả đơn hàng trong 1 transaction (order-service gọi khi tạo đơn)
+    @PostMapping
+    public ResponseEntity<ApiResponse<StockReservationResponse>> reserve(
+            @Valid @RequestBody StockReservationRequest request) {
+        StockReservationResponse result = stockReservationService.reserve(request);
+
+        ApiResponse<StockReservationResponse> response = ApiResponse.<StockReservationResponse>builder()
+                .code(1000)
+                .message("Giữ hàng thành công")
+                .result(result)
+                .build();
+
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+    // Hoàn kho khi đơn bị huỷ
+    @PostMapping("/{reservationId}/release")
+    public ResponseEntity<ApiResponse<StockReservationResponse>> release(@PathVariable String reservationId) {
+        StockReservationResponse result = stockReservationService.release(reservationId);
+
+        ApiResponse<StockReservationResponse> response = ApiResponse.<StockReservationResponse>builder()
+                .code(1000)
+                .message("Hoàn kho thành công")
+                .result(result)
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.product.controller;
+
+import com.example.product.dto.response.ApiResponse;
+import com.example.product.dto.response.TrendingResponse;
+import com.example.product.service.trending.TrendingProducts;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/products/trending")
+@RequiredArgsConstructor
+public class TrendingController {
+
+    private static final int MAX_LIMIT = 50;
+
+    private final TrendingProducts trendingProducts;
+
+    // Sản phẩm thịnh hành toàn sàn hoặc theo danh mục (public, xếp hạng từ bộ nhớ, không quét lịch sử xem)
+    @GetMapping
+    public ResponseEntity<ApiResponse<TrendingResponse>> trending(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(defaultValue = "20") int limit) {
+        int safeLimit = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        ApiResponse<TrendingResponse> response = ApiResponse.<TrendingResponse>builder()
+                .code(1000)
+                .message("Lấy sản phẩm thịnh hành thành công")
+                .result(trendingProducts.trending(categoryId, safeLimit))
+                .build();
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.product.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AutocompleteResponse {
+    private String query;
+    private List<Suggestion> products;
+    private List<Suggestion> categories;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Suggestion {
+        private Long id;
+        private String text;
+        // Độ phổ biến dùng để xếp hạng: lượt xem gần đây (sản phẩm) / số sản phẩm đang bán (danh mục)
+        private long score;
+    }
+}
@@ -12,5 +12,11 @@ public class CategoryResponse {
     private boolean isActive;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    // Số sản phẩm đang bán trong danh mục
+    private long productCount;
+    // Trang sản phẩm (chỉ có ở GET /categories/{id})
+    private Integer page;
+    private Integer size;
+    private Boolean hasMore;
     private List<ProductResponse> products;
 }
\ No newline at end of file
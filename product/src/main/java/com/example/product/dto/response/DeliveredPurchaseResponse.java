@@ -0,0 +1,20 @@
+package com.example.product.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một sản phẩm trong một đơn đã giao, trả về từ API nội bộ delivered-purchases của order-service.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveredPurchaseResponse {
+    private Long orderId;
+    private String username;
+    private Long productId;
+    private LocalDateTime orderDate;
+}
@@ -0,0 +1,25 @@
+package com.example.product.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * Trang sản phẩm kèm facet: JSON giống hệt Page hiện tại, thêm trường "facets" khi FE yêu cầu.
+ */
+public class FacetedProductPage extends PageImpl<ProductResponse> {
+
+    private final ProductFacetsResponse facets;
+
+    public FacetedProductPage(List<ProductResponse> content, Pageable pageable, long total, ProductFacetsResponse facets) {
+        super(content, pageable, total);
+        this.facets = facets;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public ProductFacetsResponse getFacets() {
+        return facets;
+    }
+}
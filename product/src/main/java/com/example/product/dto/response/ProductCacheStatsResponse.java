@@ -0,0 +1,25 @@
+package com.example.product.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductCacheStatsResponse {
+    // L1 (on-heap)
+    private long l1Size;
+    private long l1Hits;
+    private long l1Misses;
+    private long l1Evictions;
+    private double l1HitRate;
+
+    // L2 (off-heap), null khi tắt
+    private boolean offHeapEnabled;
+    private Integer l2Size;
+    private Long l2Hits;
+    private Long l2Misses;
+    private Long l2Evictions;
+    private Long l2UsedBytes;
+}
@@ -0,0 +1,27 @@
+package com.example.product.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+public class ProductFacetsResponse {
+    private List<FacetCount> categories;
+    private List<FacetCount> priceRanges;
+    private List<FacetCount> stores;
+
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class FacetCount {
+        private String key;       // categoryId / storeId / "min-max"
+        private String label;     // tên category (nếu có)
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        private long count;
+    }
+}
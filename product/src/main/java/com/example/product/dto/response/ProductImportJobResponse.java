@@ -0,0 +1,39 @@
+package com.example.product.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductImportJobResponse {
+    private String jobId;
+    private String storeId;
+    private String format; // CSV | NDJSON
+    private String status; // QUEUED | RUNNING | COMPLETED | FAILED
+    private String message;
+
+    private long processedRows;
+    private long importedRows;
+    private long failedRows;
+    // true nếu số dòng lỗi vượt quá số lỗi được trả về chi tiết
+    private boolean errorsTruncated;
+    private List<RowError> errors;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class RowError {
+        private long row; // số dòng trong file (CSV tính cả dòng tiêu đề)
+        private String sku;
+        private String reason;
+    }
+}
@@ -20,7 +20,9 @@ public class ProductResponse {
     private BigDecimal price;
     private int stockQuantity;
     private String imageUrl;
+    private ImageUrls images; // URL theo kích thước (thumbnail cho danh sách, detail cho trang chi tiết)
     private boolean isActive;
+    private boolean flashSale;
     private Long categoryId; // Thêm categoryId
     private String categoryName; // Thêm categoryName cho tiện hiển thị
     private LocalDateTime createdAt;
@@ -36,4 +38,14 @@ public class ProductResponse {
         private String userId;
         private String username;
     }
+
+    @Getter
+    @Setter
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ImageUrls {
+        private String thumbnail;
+        private String card;
+        private String detail;
+        private String original;
+    }
 }
@@ -0,0 +1,15 @@
+package com.example.product.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class RatingPageResponse {
+    private List<RatingResponse> items;
+    // Truyền lại qua ?cursor= để lấy trang kế tiếp; null khi đã hết
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,16 @@
+package com.example.product.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Response của POST /user/users/stores/sellers
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class SellerBatchResponse {
+    private int code;
+    private List<UserServiceResponse.UserResult> result;
+}
@@ -0,0 +1,24 @@
+package com.example.product.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class StockReservationResponse {
+    private String reservationId;
+    private String orderRef;
+    private String status;
+    private List<Item> items;
+    private LocalDateTime createdAt;
+
+    @Data
+    @Builder
+    public static class Item {
+        private Long productId;
+        private int quantity;
+    }
+}
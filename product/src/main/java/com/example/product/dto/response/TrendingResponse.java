@@ -0,0 +1,28 @@
+package com.example.product.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+public class TrendingResponse {
+    private Long categoryId; // null = toàn sàn
+    private List<Item> products;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long id;
+        private String name;
+        private BigDecimal price;
+        private String imageUrl;
+        // Điểm xem/mua đã suy giảm theo half-life, chỉ dùng để so sánh tương đối
+        private double score;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.product.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Số thứ tự (seq) cao nhất của journal flash sale đã được ghi xuống bảng products.
+ * Được cập nhật trong cùng transaction với việc trừ stock_quantity (xem FlashSaleInventoryServiceImpl#flush),
+ * nên khi khôi phục các bản ghi journal có seq <= giá trị này được bỏ qua thay vì trừ kho lần hai.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "flash_sale_flush_marks")
+public class FlashSaleFlushMark {
+
+    // Một journal cho mỗi product-service (flash sale chạy trên một instance) -> một dòng
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "flushed_seq", nullable = false)
+    private long flushedSeq;
+}
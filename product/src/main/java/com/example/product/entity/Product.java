@@ -56,6 +56,10 @@ public class Product {
     @Column(name = "is_deleted", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
     private boolean isDeleted = false;
 
+    // SKU flash sale: tồn kho được giữ trong bộ nhớ (FlashSaleInventoryService), cột stock_quantity được flush theo lô
+    @Column(name = "is_flash_sale", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private boolean isFlashSale = false;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
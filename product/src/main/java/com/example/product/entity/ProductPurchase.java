@@ -0,0 +1,43 @@
+package com.example.product.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lịch sử mua (user, sản phẩm) ghi lại từ event order.delivered, làm dữ liệu cho bộ gợi ý sản phẩm.
+ * Unique (order_id, product_id) để message được giao lại không bị đếm hai lần.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "product_purchases",
+        uniqueConstraints = @UniqueConstraint(name = "uk_purchase_order_product", columnNames = {"order_id", "product_id"}),
+        indexes = {
+                @Index(name = "idx_purchase_purchased_at", columnList = "purchased_at"),
+                @Index(name = "idx_purchase_username", columnList = "username, purchased_at")
+        })
+public class ProductPurchase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "username", nullable = false, length = 150)
+    private String username;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "purchased_at", nullable = false)
+    private LocalDateTime purchasedAt;
+}
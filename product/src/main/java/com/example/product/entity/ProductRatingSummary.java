@@ -0,0 +1,45 @@
+package com.example.product.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Tổng hợp đánh giá của một sản phẩm, được cộng/trừ ngay trong transaction ghi rating
+ * (xem RatingServiceImpl) nên đọc tổng quan chỉ tốn 1 dòng thay vì quét cả bảng product_ratings.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "product_rating_summary")
+public class ProductRatingSummary {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "rating_count", nullable = false)
+    private long ratingCount;
+
+    @Column(name = "rating_sum", nullable = false)
+    private long ratingSum;
+
+    @Column(name = "count_1_star", nullable = false)
+    private long count1Star;
+
+    @Column(name = "count_2_star", nullable = false)
+    private long count2Star;
+
+    @Column(name = "count_3_star", nullable = false)
+    private long count3Star;
+
+    @Column(name = "count_4_star", nullable = false)
+    private long count4Star;
+
+    @Column(name = "count_5_star", nullable = false)
+    private long count5Star;
+}
@@ -7,7 +7,11 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "product_view_history")
+@Table(name = "product_view_history",
+        indexes = {
+                @Index(name = "idx_view_history_viewed_product", columnList = "viewed_at, product_id"),
+                @Index(name = "idx_view_history_username", columnList = "username, viewed_at")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
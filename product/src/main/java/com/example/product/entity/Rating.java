@@ -11,6 +11,10 @@ import java.time.LocalDateTime;
 @Table(name = "product_ratings",
        uniqueConstraints = {
            @UniqueConstraint(columnNames = {"product_id", "username"})
+       },
+       // Phục vụ phân trang keyset (mới nhất trước) theo sản phẩm
+       indexes = {
+           @Index(name = "idx_rating_product_created", columnList = "product_id, created_at, id")
        })
 @Getter
 @Setter
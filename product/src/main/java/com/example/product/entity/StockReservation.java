@@ -0,0 +1,49 @@
+package com.example.product.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+// Mỗi orderRef chỉ có một phiếu: hai lần giữ hàng đồng thời cho cùng đơn thì lần sau bị DB chặn
+@Table(name = "stock_reservations", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stock_reservations_order_ref", columnNames = "order_ref")
+})
+public class StockReservation {
+
+    // UUID trả về cho order-service, dùng lại khi release
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    // Tham chiếu phía gọi (ví dụ: "order-123"); giữ hàng lại với cùng orderRef trả về phiếu đã có
+    @Column(name = "order_ref", length = 100)
+    private String orderRef;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private StockReservationStatus status;
+
+    @OneToMany(mappedBy = "reservation", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    private List<StockReservationLine> lines = new ArrayList<>();
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
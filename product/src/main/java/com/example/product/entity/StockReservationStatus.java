@@ -0,0 +1,6 @@
+package com.example.product.entity;
+
+public enum StockReservationStatus {
+    RESERVED,   // Đã trừ tồn kho cho đơn hàng
+    RELEASED    // Đã hoàn lại tồn kho (đơn bị huỷ)
+}
@@ -0,0 +1,14 @@
+package com.example.product.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi danh mục được tạo / sửa / huỷ kích hoạt / kích hoạt / xoá vĩnh viễn.
+ * {@link com.example.product.service.catalog.CategoryCatalog} đọc lại danh mục sau khi transaction commit.
+ */
+@Getter
+@AllArgsConstructor
+public class CategoryChangedEvent {
+    private final Long categoryId;
+}
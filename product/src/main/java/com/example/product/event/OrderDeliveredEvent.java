@@ -0,0 +1,19 @@
+package com.example.product.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Message order-service phát lên exchange order.delivered khi một đơn chuyển sang DELIVERED.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderDeliveredEvent {
+    private Long orderId;
+    private String username;
+    private List<Long> productIds;
+}
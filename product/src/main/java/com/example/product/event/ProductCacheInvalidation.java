@@ -0,0 +1,19 @@
+package com.example.product.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lệnh xoá cache chi tiết sản phẩm gửi qua RabbitMQ (fanout) cho các replica khác.
+ * origin = id của instance gửi, để instance đó bỏ qua tin của chính mình.
+ * stockOnly = chỉ tồn kho thay đổi: xoá cache chi tiết nhưng không đổi phiên bản catalog.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCacheInvalidation {
+    private Long productId;
+    private String origin;
+    private boolean stockOnly;
+}
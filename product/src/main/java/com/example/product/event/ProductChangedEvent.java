@@ -0,0 +1,28 @@
+package com.example.product.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi một sản phẩm được tạo / sửa / xoá / kích hoạt / huỷ kích hoạt,
+ * hoặc khi chỉ tồn kho thay đổi (STOCK_CHANGED - chỉ mục tìm kiếm và phiên bản catalog bỏ qua, cache chi tiết thì xoá entry).
+ * Các listener xử lý sau khi transaction commit (AFTER_COMMIT) và tự đọc lại trạng thái mới nhất từ DB khi cần.
+ * UPSERT / DELETE mang kèm danh mục đang bán trước và sau thay đổi để số đếm theo danh mục cập nhật theo chênh lệch,
+ * không phải đọc lại DB.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    public enum Type { UPSERT, DELETE, STOCK_CHANGED }
+
+    private final Long productId;
+    private final Type type;
+    // Danh mục khi sản phẩm đang bán (null = chưa có / ngừng bán / đã xoá / không có danh mục)
+    private final Long previousCategoryId;
+    private final Long categoryId;
+
+    public ProductChangedEvent(Long productId, Type type) {
+        this(productId, type, null, null);
+    }
+}
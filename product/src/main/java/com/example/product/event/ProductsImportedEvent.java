@@ -0,0 +1,17 @@
+package com.example.product.event;
+
+import com.example.product.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Phát ra (đồng bộ, trên worker nhập) sau mỗi lô sản phẩm được INSERT thẳng bằng JDBC khi nhập hàng loạt,
+ * thay cho một {@link ProductChangedEvent} cho từng dòng. Danh sách là các sản phẩm vừa đọc lại từ DB.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductsImportedEvent {
+    private final List<Product> products;
+}
@@ -19,6 +19,14 @@ public enum ErrorCode {
     CATEGORY_NAME_EXISTED(2004, "Tên danh mục đã tồn tại", HttpStatus.BAD_REQUEST), // Hoặc CONFLICT (409)
     STOCK_QUANTITY_INVALID(2005, "Cập nhật số lượng hàng tồn kho không được > 0", HttpStatus.BAD_REQUEST),
     CANNOT_ACTIVATE_DELETED_PRODUCT(2006, "Không thể kích hoạt lại sản phẩm đã xóa", HttpStatus.BAD_REQUEST),
+    PRODUCT_BATCH_TOO_LARGE(2008, "Số lượng sản phẩm yêu cầu trong một lần vượt quá giới hạn", HttpStatus.BAD_REQUEST),
+    INSUFFICIENT_STOCK(2009, "Không đủ hàng tồn kho", HttpStatus.BAD_REQUEST),
+    STOCK_RESERVATION_NOT_FOUND(2010, "Không tìm thấy phiếu giữ hàng", HttpStatus.NOT_FOUND),
+    INVALID_CURSOR(2011, "Cursor phân trang không hợp lệ", HttpStatus.BAD_REQUEST),
+    IMAGE_PROCESSING_BUSY(2012, "Hệ thống đang xử lý nhiều ảnh, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    IMPORT_JOB_NOT_FOUND(2013, "Không tìm thấy tác vụ nhập sản phẩm", HttpStatus.NOT_FOUND),
+    IMPORT_BUSY(2014, "Đang có quá nhiều tác vụ nhập sản phẩm, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    INVALID_IMPORT_FILE(2015, "File nhập sản phẩm không hợp lệ (chỉ hỗ trợ CSV hoặc NDJSON)", HttpStatus.BAD_REQUEST),
 
     // Lỗi validation (có thể dùng chung hoặc định nghĩa riêng cho từng trường)
     // Cách bạn đang làm (dùng message từ validation làm key cho ErrorCode) cũng là một hướng
@@ -0,0 +1,17 @@
+package com.example.product.repository;
+
+import com.example.product.entity.FlashSaleFlushMark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface FlashSaleFlushMarkRepository extends JpaRepository<FlashSaleFlushMark, Integer> {
+
+    // Chỉ tăng, không bao giờ lùi
+    @Modifying
+    @Query(value = "INSERT INTO flash_sale_flush_marks (id, flushed_seq) VALUES (:id, :seq) " +
+            "ON DUPLICATE KEY UPDATE flushed_seq = GREATEST(flushed_seq, VALUES(flushed_seq))",
+            nativeQuery = true)
+    int advance(@Param("id") Integer id, @Param("seq") long seq);
+}
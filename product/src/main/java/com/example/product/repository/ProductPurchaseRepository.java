@@ -0,0 +1,22 @@
+package com.example.product.repository;
+
+import com.example.product.entity.ProductPurchase;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface ProductPurchaseRepository extends JpaRepository<ProductPurchase, Long> {
+
+    // INSERT IGNORE: message order.delivered giao lại (cùng order_id, product_id) thì bỏ qua
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO product_purchases (order_id, username, product_id, purchased_at) " +
+            "VALUES (:orderId, :username, :productId, :purchasedAt)",
+            nativeQuery = true)
+    int insertIgnore(@Param("orderId") Long orderId,
+                     @Param("username") String username,
+                     @Param("productId") Long productId,
+                     @Param("purchasedAt") LocalDateTime purchasedAt);
+}
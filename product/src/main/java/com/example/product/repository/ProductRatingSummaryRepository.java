@@ -0,0 +1,58 @@
+package com.example.product.repository;
+
+import com.example.product.entity.ProductRatingSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ProductRatingSummaryRepository extends JpaRepository<ProductRatingSummary, Long> {
+
+    // Cộng dồn delta trong 1 câu lệnh (upsert) -> các rating đồng thời của cùng sản phẩm không ghi đè lẫn nhau
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_summary " +
+            "(product_id, rating_count, rating_sum, count_1_star, count_2_star, count_3_star, count_4_star, count_5_star) " +
+            "VALUES (:productId, :count, :sum, :c1, :c2, :c3, :c4, :c5) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "rating_count = rating_count + VALUES(rating_count), " +
+            "rating_sum = rating_sum + VALUES(rating_sum), " +
+            "count_1_star = count_1_star + VALUES(count_1_star), " +
+            "count_2_star = count_2_star + VALUES(count_2_star), " +
+            "count_3_star = count_3_star + VALUES(count_3_star), " +
+            "count_4_star = count_4_star + VALUES(count_4_star), " +
+            "count_5_star = count_5_star + VALUES(count_5_star)",
+            nativeQuery = true)
+    int applyDelta(@Param("productId") Long productId,
+                   @Param("count") long count,
+                   @Param("sum") long sum,
+                   @Param("c1") long c1,
+                   @Param("c2") long c2,
+                   @Param("c3") long c3,
+                   @Param("c4") long c4,
+                   @Param("c5") long c5);
+
+    // Tính lại toàn bộ từ product_ratings trong một lượt quét (GROUP BY chạy trên DB, không kéo rating về JVM)
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_summary " +
+            "(product_id, rating_count, rating_sum, count_1_star, count_2_star, count_3_star, count_4_star, count_5_star) " +
+            "SELECT r.product_id, COUNT(*), SUM(r.rating_value), " +
+            "SUM(r.rating_value = 1), SUM(r.rating_value = 2), SUM(r.rating_value = 3), " +
+            "SUM(r.rating_value = 4), SUM(r.rating_value = 5) " +
+            "FROM product_ratings r GROUP BY r.product_id " +
+            "ON DUPLICATE KEY UPDATE " +
+            "rating_count = VALUES(rating_count), " +
+            "rating_sum = VALUES(rating_sum), " +
+            "count_1_star = VALUES(count_1_star), " +
+            "count_2_star = VALUES(count_2_star), " +
+            "count_3_star = VALUES(count_3_star), " +
+            "count_4_star = VALUES(count_4_star), " +
+            "count_5_star = VALUES(count_5_star)",
+            nativeQuery = true)
+    int rebuildFromRatings();
+
+    @Modifying
+    @Query(value = "DELETE FROM product_rating_summary WHERE product_id NOT IN " +
+            "(SELECT DISTINCT r.product_id FROM product_ratings r)",
+            nativeQuery = true)
+    int deleteOrphans();
+}
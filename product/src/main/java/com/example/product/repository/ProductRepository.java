@@ -3,12 +3,17 @@ package com.example.product.repository;
 import com.example.product.entity.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +22,9 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     List<Product> findBySkuAndIsDeletedFalseAndIsActiveTrue(String sku);
 
+    // Nhập hàng loạt: lấy lại các sản phẩm vừa INSERT bằng JDBC (theo SKU) để đưa vào chỉ mục tìm kiếm
+    List<Product> findBySkuIn(Collection<String> skus);
+
     Optional<Product> findByIdAndIsDeletedFalse(Long id);
 
     Optional<Product> findById(Long id);
@@ -37,6 +45,14 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     );
 
     Page<Product> findByCategoryIdAndIsDeletedFalseAndIsActiveTrue(Long categoryId, Pageable pageable);
+
+    // Trang sản phẩm của danh mục không kèm truy vấn COUNT (tổng số lấy từ CategoryCatalog)
+    Slice<Product> findSliceByCategoryIdAndIsDeletedFalseAndIsActiveTrue(Long categoryId, Pageable pageable);
+
+    // (categoryId, số sản phẩm đang bán) để dựng số sản phẩm theo danh mục
+    @Query("SELECT p.category.id, COUNT(p) FROM Product p " +
+           "WHERE p.isDeleted = false AND p.isActive = true AND p.category IS NOT NULL GROUP BY p.category.id")
+    List<Object[]> countActiveProductsByCategory();
     Page<Product> findByNameContainingIgnoreCaseAndIsDeletedFalseAndIsActiveTrue(String nameQuery, Pageable pageable);
 
     @Query("SELECT p FROM Product p WHERE p.isDeleted = false AND p.isActive = true AND " +
@@ -51,4 +67,32 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
          boolean existsByCategoryIdAndIsDeletedFalseAndIsActiveTrue(Long categoryId);
 
         Page<Product> findByStoreIdAndIsDeletedFalseAndIsActiveTrue(String storeId, Pageable pageable);
-}
\ No newline at end of file
+
+    // Trừ kho có điều kiện: trả về 0 nếu không đủ hàng (không có read-modify-write, không oversell)
+    // SKU flash sale bị loại ra: tồn kho của chúng do FlashSaleInventoryService quyết định
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity " +
+           "WHERE p.id = :id AND p.stockQuantity >= :quantity AND p.isFlashSale = false")
+    int decreaseStockIfAvailable(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity WHERE p.id = :id")
+    int increaseStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Khoá dòng sản phẩm khi bật/tắt flash sale để không lẫn với các lượt trừ kho đang chạy
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+
+    List<Product> findByIsFlashSaleTrueAndIsDeletedFalse();
+
+    // Duyệt toàn bộ sản phẩm đang hiển thị theo lô (keyset theo id), dùng khi nạp chỉ mục tìm kiếm
+    List<Product> findTop1000ByIdGreaterThanAndIsDeletedFalseAndIsActiveTrueOrderByIdAsc(Long id);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Product p SET p.isFlashSale = :flashSale WHERE p.id = :id")
+    int updateFlashSale(@Param("id") Long id, @Param("flashSale") boolean flashSale);
+
+    // Ảnh lưu theo hash nội dung có thể dùng chung giữa nhiều sản phẩm
+    long countByImageUrl(String imageUrl);
+}
@@ -2,7 +2,10 @@ package com.example.product.repository;
 
 import com.example.product.entity.ProductViewHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ProductViewHistoryRepository extends JpaRepository<ProductViewHistory, Long> {
@@ -12,4 +15,9 @@ public interface ProductViewHistoryRepository extends JpaRepository<ProductViewH
 
     // Lịch sử xem theo product
     List<ProductViewHistory> findByProductIdOrderByViewedAtDesc(Long productId);
+
+    // Số lượt xem theo sản phẩm từ một thời điểm (độ phổ biến cho autocomplete), dùng index (viewed_at, product_id)
+    @Query(value = "SELECT product_id, COUNT(*) FROM product_view_history WHERE viewed_at >= :since GROUP BY product_id",
+            nativeQuery = true)
+    List<Object[]> countViewsSince(@Param("since") LocalDateTime since);
 }
@@ -1,8 +1,14 @@
 package com.example.product.repository;
 
 import com.example.product.entity.Rating;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,7 +18,30 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
 
     Optional<Rating> findByProductIdAndUsername(Long productId, String username);
 
+    // Phân trang keyset (createdAt, id) giảm dần: không OFFSET, mỗi trang chỉ đọc đúng số dòng cần
+    @Query("SELECT r FROM Rating r WHERE r.product.id = :productId ORDER BY r.createdAt DESC, r.id DESC")
+    List<Rating> findFirstPage(@Param("productId") Long productId, Pageable limit);
+
+    @Query("SELECT r FROM Rating r WHERE r.product.id = :productId " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Rating> findPageAfter(@Param("productId") Long productId,
+                               @Param("createdAt") LocalDateTime createdAt,
+                               @Param("id") Long id,
+                               Pageable limit);
+
     List<Rating> findByUsername(String username);
 
-    
+    @Query("SELECT COUNT(DISTINCT r.product.id) FROM Rating r")
+    long countRatedProducts();
+
+    // Khoá dòng khi sửa/xoá: số sao cũ dùng để trừ khỏi bảng tổng hợp phải là giá trị đang nằm trong DB
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Rating r WHERE r.product.id = :productId AND r.username = :username")
+    Optional<Rating> findByProductIdAndUsernameForUpdate(@Param("productId") Long productId,
+                                                         @Param("username") String username);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Rating r WHERE r.id = :id")
+    Optional<Rating> findByIdForUpdate(@Param("id") Long id);
 }
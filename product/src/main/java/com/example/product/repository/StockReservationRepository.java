@@ -0,0 +1,20 @@
+package com.example.product.repository;
+
+import com.example.product.entity.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, String> {
+
+    // Khoá reservation khi release để hai request huỷ đồng thời không hoàn kho hai lần
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.id = :id")
+    Optional<StockReservation> findByIdForUpdate(@Param("id") String id);
+
+    Optional<StockReservation> findByOrderRef(String orderRef);
+}
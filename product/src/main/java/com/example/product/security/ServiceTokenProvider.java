@@ -0,0 +1,73 @@
+package com.example.product.security;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Token của chính product-service khi gọi API nội bộ của service khác (không mượn token của người dùng).
+ * Ký HS512 bằng jwt.signerKey dùng chung nên service nhận kiểm tra như token thường; scope SERVICE
+ * không bao giờ có trong token người dùng. Token sống ngắn, được tạo lại trước khi hết hạn.
+ */
+@Component
+public class ServiceTokenProvider {
+
+    public static final String SERVICE_SCOPE = "SERVICE";
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration REFRESH_BEFORE = Duration.ofMinutes(1);
+
+    private final JwtEncoder encoder;
+    private final String serviceName;
+    private volatile Jwt current;
+
+    public ServiceTokenProvider(
+            @Value("${jwt.signerKey}") String signerKey,
+            @Value("${spring.application.name:product-service}") String serviceName) {
+        SecretKey key = new SecretKeySpec(signerKey.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
+        this.encoder = new NimbusJwtEncoder(new ImmutableSecret<>(key));
+        this.serviceName = serviceName;
+    }
+
+    /** Giá trị header Authorization. */
+    public String bearer() {
+        Jwt token = current;
+        if (token == null || token.getExpiresAt().isBefore(Instant.now().plus(REFRESH_BEFORE))) {
+            token = refresh();
+        }
+        return "Bearer " + token.getTokenValue();
+    }
+
+    private synchronized Jwt refresh() {
+        Jwt token = current;
+        Instant now = Instant.now();
+        if (token != null && token.getExpiresAt().isAfter(now.plus(REFRESH_BEFORE))) {
+            return token;
+        }
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject(serviceName)
+                .issuer("hyperbuy.com")
+                .issuedAt(now)
+                .expiresAt(now.plus(TTL))
+                .id(UUID.randomUUID().toString())
+                .claim("scope", SERVICE_SCOPE)
+                .build();
+        token = encoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS512).build(), claims));
+        current = token;
+        return token;
+    }
+}
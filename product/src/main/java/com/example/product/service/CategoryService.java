@@ -6,7 +6,7 @@ import java.util.List;
 
 public interface CategoryService {
     CategoryResponse createCategory(CategoryRequest categoryRequest);
-    CategoryResponse getCategoryById(Long id);
+    CategoryResponse getCategoryById(Long id, int page, int size);
     List<CategoryResponse> getAllCategories(boolean activeOnly);
     CategoryResponse updateCategory(Long id, CategoryRequest categoryRequest);
     void deleteCategory(Long id); // Soft delete
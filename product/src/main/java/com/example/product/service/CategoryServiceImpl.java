@@ -5,13 +5,19 @@ import com.example.product.dto.response.CategoryResponse;
 import com.example.product.dto.response.ProductResponse;
 import com.example.product.entity.Category;
 import com.example.product.entity.Product;
+import com.example.product.event.CategoryChangedEvent;
 // Import AppException và ErrorCode
 import com.example.product.exception.AppException;
 import com.example.product.exception.ErrorCode;
 import com.example.product.repository.CategoryRepository;
 import com.example.product.repository.ProductRepository;
+import com.example.product.service.catalog.CategoryCatalog;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,6 +30,8 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final ProductRepository productRepository; 
+    private final CategoryCatalog categoryCatalog;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -36,25 +44,30 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = mapToEntity(categoryRequest);
         category.setActive(true);
         Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getId()));
         return mapToResponse(savedCategory);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public CategoryResponse getCategoryById(Long id) {
-        Category category = categoryRepository.findById(id)
+    public CategoryResponse getCategoryById(Long id, int page, int size) {
+        CategoryCatalog.Entry category = categoryCatalog.get(id)
                 .orElseThrow(() -> new AppException(ErrorCode.CATEGORY_NOT_FOUND));
 
         CategoryResponse response = mapToResponse(category);
 
-        // Lấy sản phẩm active và chưa bị xóa
-        List<ProductResponse> products = productRepository
-                .findByCategoryIdAndIsDeletedFalseAndIsActiveTrue(id, null)
+        // Chỉ lấy một trang sản phẩm active và chưa bị xóa (mới nhất trước); tổng số lấy từ catalog
+        Slice<Product> slice = productRepository.findSliceByCategoryIdAndIsDeletedFalseAndIsActiveTrue(
+                id, PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id")));
+        List<ProductResponse> products = slice.getContent()
                 .stream()
                 .map(this::mapToProductResponse)
                 .collect(Collectors.toList());
 
         response.setProducts(products);
+        response.setPage(page);
+        response.setSize(size);
+        response.setHasMore(slice.hasNext());
         return response;
     }
 
@@ -73,15 +86,8 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<CategoryResponse> getAllCategories(boolean activeOnly) {
-        List<Category> categories;
-        if (activeOnly) {
-            categories = categoryRepository.findByIsActiveTrue();
-        } else {
-            categories = categoryRepository.findAll();
-        }
-        return categories.stream()
+        return categoryCatalog.all(activeOnly).stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
@@ -102,6 +108,7 @@ public class CategoryServiceImpl implements CategoryService {
         existingCategory.setDescription(categoryRequest.getDescription());
 
         Category updatedCategory = categoryRepository.save(existingCategory);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
         return mapToResponse(updatedCategory);
     }
 
@@ -122,6 +129,7 @@ public class CategoryServiceImpl implements CategoryService {
         // 4. Nếu không có Product, tiến hành xóa mềm (deactivate)
         category.setActive(false);
         categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
     
 
@@ -132,6 +140,7 @@ public class CategoryServiceImpl implements CategoryService {
                 .orElseThrow(() -> new AppException(ErrorCode.CATEGORY_NOT_FOUND));
         category.setActive(true);
         categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
 
     private CategoryResponse mapToResponse(Category category) {
@@ -142,6 +151,19 @@ public class CategoryServiceImpl implements CategoryService {
         response.setActive(category.isActive());
         response.setCreatedAt(category.getCreatedAt());
         response.setUpdatedAt(category.getUpdatedAt());
+        response.setProductCount(categoryCatalog.productCount(category.getId()));
+        return response;
+    }
+
+    private CategoryResponse mapToResponse(CategoryCatalog.Entry category) {
+        CategoryResponse response = new CategoryResponse();
+        response.setId(category.id());
+        response.setName(category.name());
+        response.setDescription(category.description());
+        response.setActive(category.active());
+        response.setCreatedAt(category.createdAt());
+        response.setUpdatedAt(category.updatedAt());
+        response.setProductCount(categoryCatalog.productCount(category.id()));
         return response;
     }
 
@@ -166,5 +188,6 @@ public class CategoryServiceImpl implements CategoryService {
 
         // Xóa vĩnh viễn category
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
 }
\ No newline at end of file
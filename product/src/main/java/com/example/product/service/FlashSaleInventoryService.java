@@ -0,0 +1,39 @@
+package com.example.product.service;
+
+import java.util.OptionalLong;
+
+/**
+ * Tồn kho trong bộ nhớ cho các SKU flash sale.
+ * Quyết định giữ hàng không chạm DB; lượng đã bán được flush xuống {@code products.stock_quantity} theo lô.
+ * Lưu ý: bộ đếm nằm trong JVM nên mỗi SKU flash sale chỉ được phục vụ bởi một instance product-service.
+ */
+public interface FlashSaleInventoryService {
+
+    enum Admission {
+        ADMITTED,
+        SOLD_OUT,
+        // Sản phẩm không (còn) là flash sale -> đi đường trừ kho trên DB
+        NOT_MANAGED
+    }
+
+    boolean isManaged(Long productId);
+
+    Admission tryReserve(Long productId, int quantity);
+
+    /**
+     * Trả lại hàng đã giữ qua {@link #tryReserve}. Nếu SKU đã bị tắt flash sale,
+     * lượng trả chỉ được ghi journal và cộng vào DB ở lần flush kế tiếp.
+     */
+    void release(Long productId, int quantity);
+
+    OptionalLong available(Long productId);
+
+    /** Bật flash sale: nạp tồn kho hiện tại của sản phẩm vào bộ đếm. */
+    void enable(Long productId, String storeId);
+
+    /** Tắt flash sale: flush phần còn treo rồi trả quyền trừ kho lại cho DB. */
+    void disable(Long productId, String storeId);
+
+    /** Ghi lượng đã bán/đã trả chưa flush xuống bảng products. */
+    void flush();
+}
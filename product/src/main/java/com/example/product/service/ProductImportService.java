@@ -0,0 +1,15 @@
+package com.example.product.service;
+
+import com.example.product.dto.response.ProductImportJobResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface ProductImportService {
+
+    /**
+     * Nhận file CSV/NDJSON (và file zip ảnh tuỳ chọn), trả về ngay tác vụ ở trạng thái QUEUED;
+     * việc nhập chạy nền, theo dõi qua {@link #getJob(String, String)}.
+     */
+    ProductImportJobResponse submit(String storeId, MultipartFile file, MultipartFile images, String format);
+
+    ProductImportJobResponse getJob(String jobId, String storeId);
+}
@@ -1,6 +1,7 @@
 package com.example.product.service;
 
 import com.example.product.dto.request.ProductRequest;
+import com.example.product.dto.response.FacetedProductPage;
 import com.example.product.dto.response.ProductResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -13,7 +14,10 @@ import java.util.Map;
 public interface ProductService {
     ProductResponse createProduct(ProductRequest productRequest, MultipartFile imageFile, String token);
     ProductResponse getProductById(Long id, String token);
+    List<ProductResponse> getProductsByIds(List<Long> ids, String token);
     Page<ProductResponse> findProducts(Long categoryId, String nameQuery, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable, String token);
+    // withFacets = true: kèm số lượng theo category / khoảng giá / cửa hàng trong cùng response
+    FacetedProductPage findProducts(Long categoryId, String nameQuery, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable, boolean withFacets, String token);
     ProductResponse updateProduct(Long id, ProductRequest productRequest, MultipartFile imageFile, String token);
     void deleteProduct(Long id, String storeId);
     ProductResponse updateStock(Long id, int quantityChange, String token);
@@ -1,22 +1,34 @@
 package com.example.product.service;
 
-import com.example.product.client.UserServiceClient;
 import com.example.product.dto.request.ProductRequest;
+import com.example.product.dto.response.FacetedProductPage;
+import com.example.product.dto.response.ProductFacetsResponse;
 import com.example.product.dto.response.ProductResponse;
 import com.example.product.dto.response.UserServiceResponse;
 import com.example.product.entity.Product;
 import com.example.product.entity.Category;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.exception.AppException;
+import com.example.product.exception.ErrorCode;
 import com.example.product.repository.ProductRepository;
 import com.example.product.repository.CategoryRepository;
+import com.example.product.service.cache.ProductDetailCache;
+import com.example.product.service.cache.ProductSnapshot;
+import com.example.product.service.image.ImageVariant;
+import com.example.product.service.image.ProductImageStorage;
+import com.example.product.service.search.ProductSearchIndex;
+import com.example.product.service.search.ProductSearchIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import jakarta.annotation.PostConstruct;
@@ -24,12 +36,13 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,28 +50,73 @@ public class ProductServiceImpl implements ProductService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductServiceImpl.class);
 
+    // Giới hạn số ID cho một lần gọi /products/batch
+    private static final int MAX_BATCH_SIZE = 200;
+    private static final int MAX_STORE_FACETS = 20;
+    private static final String IMAGE_URL_PREFIX_ATTRIBUTE = ProductServiceImpl.class.getName() + ".imageUrlPrefix";
+
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
-    private final UserServiceClient userServiceClient;
+    private final SellerResolver sellerResolver;
+    private final FlashSaleInventoryService flashSaleInventoryService;
+    private final ProductSearchIndexer productSearchIndexer;
+    private final ProductDetailCache productDetailCache;
+    private final ProductImageStorage productImageStorage;
+    private final ApplicationEventPublisher eventPublisher;
     private final Path rootLocation;
 
     @Value("${app.static-resource.public-path-pattern}")
     private String publicPathPattern;
+    // publicPathPattern đã chuẩn hoá ("/files/**" -> "/files"), tính một lần khi khởi động
+    private String cleanPublicPath;
 
     public ProductServiceImpl(
             ProductRepository productRepository,
             CategoryRepository categoryRepository,
-            UserServiceClient userServiceClient,
+            SellerResolver sellerResolver,
+            FlashSaleInventoryService flashSaleInventoryService,
+            ProductSearchIndexer productSearchIndexer,
+            ProductDetailCache productDetailCache,
+            ProductImageStorage productImageStorage,
+            ApplicationEventPublisher eventPublisher,
             @Value("${app.upload.dir}") String uploadDirConfiguration) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
-        this.userServiceClient = userServiceClient;
+        this.sellerResolver = sellerResolver;
+        this.flashSaleInventoryService = flashSaleInventoryService;
+        this.productSearchIndexer = productSearchIndexer;
+        this.productDetailCache = productDetailCache;
+        this.productImageStorage = productImageStorage;
+        this.eventPublisher = eventPublisher;
         this.rootLocation = Paths.get(uploadDirConfiguration);
     }
 
     @PostConstruct
     public void init() {
         ensureUploadDirectoryExists();
+        String path = publicPathPattern.endsWith("/**")
+                ? publicPathPattern.substring(0, publicPathPattern.length() - 3)
+                : publicPathPattern;
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        cleanPublicPath = path.startsWith("/") ? path : "/" + path;
+    }
+
+    // "http://host/context/files/": base URL chỉ phụ thuộc request, dựng một lần cho cả trang thay vì mỗi sản phẩm
+    private String imageUrlPrefix() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object cached = attributes != null
+                ? attributes.getAttribute(IMAGE_URL_PREFIX_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+                : null;
+        if (cached != null) {
+            return (String) cached;
+        }
+        String prefix = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString() + cleanPublicPath + "/";
+        if (attributes != null) {
+            attributes.setAttribute(IMAGE_URL_PREFIX_ATTRIBUTE, prefix, RequestAttributes.SCOPE_REQUEST);
+        }
+        return prefix;
     }
 
     private void ensureUploadDirectoryExists() {
@@ -76,62 +134,37 @@ public class ProductServiceImpl implements ProductService {
             logger.warn("Không có file nào được cung cấp hoặc file rỗng.");
             return null;
         }
-
-        String originalFilenameFromMultipart = file.getOriginalFilename();
-        if (originalFilenameFromMultipart == null || originalFilenameFromMultipart.strip().isEmpty()) {
-            logger.warn("Tên file gốc từ MultipartFile là null hoặc rỗng. Không thể lưu file.");
-            return null;
-        }
-
-        String originalFilename = StringUtils.cleanPath(originalFilenameFromMultipart);
-        String extension = "";
-        int i = originalFilename.lastIndexOf('.');
-        if (i > 0) {
-            extension = originalFilename.substring(i);
-        }
-        String uniqueFileName = UUID.randomUUID().toString() + extension;
-
-        try {
-            if (originalFilename.contains("..")) {
-                throw new RuntimeException("Không thể lưu file với đường dẫn tương đối ngoài thư mục hiện tại: " + originalFilename);
-            }
-            Path destinationFile = this.rootLocation.resolve(uniqueFileName).normalize().toAbsolutePath();
-            if (!destinationFile.getParent().equals(this.rootLocation.toAbsolutePath())) {
-                throw new RuntimeException("Không thể lưu file ngoài thư mục hiện tại: " + originalFilename);
-            }
-
-            try (var inputStream = file.getInputStream()) {
-                Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-            }
-            logger.info("Đã lưu file: {}", uniqueFileName);
-            return uniqueFileName;
-        } catch (IOException e) {
-            logger.error("Lưu file {} thất bại: {}", uniqueFileName, e.getMessage());
-            throw new RuntimeException("Lưu file " + originalFilename + " thất bại", e);
-        }
+        // Lưu theo hash nội dung + sinh ảnh thumbnail/card/detail (xem ProductImageStorage)
+        return productImageStorage.store(file);
     }
 
+    // Ảnh lưu theo nội dung có thể được nhiều sản phẩm dùng chung -> chỉ xoá khi không còn sản phẩm nào khác trỏ tới
     private void deleteStoredFile(String filename) {
         if (filename == null || filename.isEmpty()) {
             return;
         }
-        try {
-            Path fileToDelete = rootLocation.resolve(filename).normalize().toAbsolutePath();
-            Files.deleteIfExists(fileToDelete);
-            logger.info("Đã xóa file đã lưu: {}", filename);
-        } catch (IOException e) {
-            logger.error("Xóa file {} thất bại: {}", filename, e.getMessage());
-        }
+        // Đếm lại dưới khoá của hash trong ProductImageStorage, tuần tự với upload cùng nội dung
+        productImageStorage.delete(filename, () -> productRepository.countByImageUrl(filename) > 1);
     }
 
     private ProductResponse convertToProductResponseWithImageUrl(Product product, String token) {
+        return convertToProductResponseWithImageUrl(product, token, new HashMap<>());
+    }
+
+    // sellerCache: người bán đã resolve sẵn cho cả trang (xem resolveSellers); storeId chưa có thì tra qua SellerResolver
+    private ProductResponse convertToProductResponseWithImageUrl(
+            Product product, String token, Map<String, UserServiceResponse.UserResult> sellerCache) {
     ProductResponse dto = new ProductResponse();
     dto.setId(product.getId());
     dto.setName(product.getName());
     if (product.getDescription() != null) dto.setDescription(product.getDescription());
     if (product.getPrice() != null) dto.setPrice(product.getPrice());
     if (product.getSku() != null) dto.setSku(product.getSku());
-    dto.setStockQuantity(product.getStockQuantity());
+    // SKU flash sale: số liệu chính xác nằm trong bộ đếm, cột stock_quantity chỉ được flush theo lô
+    dto.setStockQuantity(product.isFlashSale()
+            ? (int) flashSaleInventoryService.available(product.getId()).orElse(product.getStockQuantity())
+            : product.getStockQuantity());
+    dto.setFlashSale(product.isFlashSale());
     dto.setCategoryId(product.getCategory() != null ? product.getCategory().getId() : null);
     dto.setActive(product.isActive());
 
@@ -141,14 +174,12 @@ public class ProductServiceImpl implements ProductService {
 
     // Gọi UserService để lấy userId và username
     if (token != null) {
-        try {
-            UserServiceResponse response = userServiceClient.getUserByStoreId(product.getStoreId(), token);
-            if (response != null && response.getResult() != null) {
-                sellerInfo.setUserId(response.getResult().getUserId());
-                sellerInfo.setUsername(response.getResult().getUsername());
-            }
-        } catch (Exception e) {
-            logger.warn("Không thể lấy userId và username cho storeId: {}. Lỗi: {}", product.getStoreId(), e.getMessage(), e);
+        UserServiceResponse.UserResult seller = sellerCache.containsKey(product.getStoreId())
+                ? sellerCache.get(product.getStoreId())
+                : sellerResolver.resolve(product.getStoreId(), token);
+        if (seller != null) {
+            sellerInfo.setUserId(seller.getUserId());
+            sellerInfo.setUsername(seller.getUsername());
         }
     }
     dto.setSellerInfo(sellerInfo);
@@ -165,26 +196,39 @@ public class ProductServiceImpl implements ProductService {
             storedImageIdentifier = storedImageIdentifier.substring("files/".length());
         }
 
-        String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString();
-        String cleanPublicPath = publicPathPattern.endsWith("/**")
-                ? publicPathPattern.substring(0, publicPathPattern.length() - 3)
-                : publicPathPattern;
-
-        if (cleanPublicPath.endsWith("/")) {
-            cleanPublicPath = cleanPublicPath.substring(0, cleanPublicPath.length() - 1);
-        }
-        if (!cleanPublicPath.startsWith("/")) {
-            cleanPublicPath = "/" + cleanPublicPath;
-        }
-
-        String fullImageUrl = baseUrl + cleanPublicPath + "/" + storedImageIdentifier;
+        String urlPrefix = imageUrlPrefix();
+        String fullImageUrl = urlPrefix + storedImageIdentifier;
         dto.setImageUrl(fullImageUrl);
+        dto.setImages(buildImageUrls(storedImageIdentifier, urlPrefix, fullImageUrl));
     } else {
         dto.setImageUrl(null);
     }
     return dto;
 }
 
+    // URL theo từng kích thước; ảnh cũ chưa có bản dẫn xuất thì trả về ảnh gốc cho mọi kích thước
+    private ProductResponse.ImageUrls buildImageUrls(String identifier, String urlPrefix, String originalUrl) {
+        ProductResponse.ImageUrls images = new ProductResponse.ImageUrls();
+        images.setThumbnail(variantUrl(identifier, ImageVariant.THUMBNAIL, urlPrefix, originalUrl));
+        images.setCard(variantUrl(identifier, ImageVariant.CARD, urlPrefix, originalUrl));
+        images.setDetail(variantUrl(identifier, ImageVariant.DETAIL, urlPrefix, originalUrl));
+        images.setOriginal(originalUrl);
+        return images;
+    }
+
+    private String variantUrl(String identifier, ImageVariant variant, String urlPrefix, String originalUrl) {
+        String variantIdentifier = productImageStorage.variantIdentifier(identifier, variant);
+        return variantIdentifier != null ? urlPrefix + variantIdentifier : originalUrl;
+    }
+
+    // Một lời gọi user-service (bulk) cho cả trang; storeId đã có trong cache thì không gọi
+    private Map<String, UserServiceResponse.UserResult> resolveSellers(Collection<Product> products, String token) {
+        if (token == null) {
+            return new HashMap<>();
+        }
+        return sellerResolver.resolveAll(products.stream().map(Product::getStoreId).toList(), token);
+    }
+
     private Map<String, Object> convertToProductMap(Product product) {
     Map<String, Object> productMap = new HashMap<>();
     productMap.put("id", product.getId());
@@ -212,19 +256,10 @@ public class ProductServiceImpl implements ProductService {
             storedImageIdentifier = storedImageIdentifier.substring("files/".length());
         }
 
-        String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString();
-        String cleanPublicPath = publicPathPattern.endsWith("/**")
-                ? publicPathPattern.substring(0, publicPathPattern.length() - 3)
-                : publicPathPattern;
-
-        if (cleanPublicPath.endsWith("/")) {
-            cleanPublicPath = cleanPublicPath.substring(0, cleanPublicPath.length() - 1);
-        }
-        if (!cleanPublicPath.startsWith("/")) {
-            cleanPublicPath = "/" + cleanPublicPath;
-        }
-
-        productMap.put("imageUrl", baseUrl + cleanPublicPath + "/" + storedImageIdentifier);
+        String urlPrefix = imageUrlPrefix();
+        String fullImageUrl = urlPrefix + storedImageIdentifier;
+        productMap.put("imageUrl", fullImageUrl);
+        productMap.put("images", buildImageUrls(storedImageIdentifier, urlPrefix, fullImageUrl));
     } else {
         productMap.put("imageUrl", null);
     }
@@ -264,6 +299,8 @@ public class ProductServiceImpl implements ProductService {
         product.setImageUrl(storedFileName);
 
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(savedProduct.getId(), ProductChangedEvent.Type.UPSERT,
+                null, listedCategoryOf(savedProduct)));
         logger.info("Đã tạo sản phẩm với ID: {} và file ảnh (nếu có): {}", savedProduct.getId(), storedFileName);
         return convertToProductResponseWithImageUrl(savedProduct, token);
     }
@@ -273,6 +310,7 @@ public class ProductServiceImpl implements ProductService {
 public ProductResponse updateProduct(Long id, ProductRequest productRequest, MultipartFile imageFile, String token) {
     Product product = productRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm với ID: " + id));
+    Long previousCategoryId = listedCategoryOf(product);
 
     String storeId = productRequest.getStoreId();
 
@@ -288,8 +326,11 @@ public ProductResponse updateProduct(Long id, ProductRequest productRequest, Mul
     }
 
     if (imageFile != null && !imageFile.isEmpty()) {
-        deleteStoredFile(product.getImageUrl());
+        // Lưu ảnh mới trước: nếu trùng nội dung với ảnh cũ thì định danh không đổi và không được xoá
         String newStoredFileName = storeFile(imageFile);
+        if (!newStoredFileName.equals(product.getImageUrl())) {
+            deleteStoredFile(product.getImageUrl());
+        }
         product.setImageUrl(newStoredFileName);
     }
 
@@ -299,7 +340,8 @@ public ProductResponse updateProduct(Long id, ProductRequest productRequest, Mul
         product.setPrice(productRequest.getPrice());
     }
     product.setSku(productRequest.getSku());
-    if (productRequest.getStockQuantity() != null) {
+    // Tồn kho của SKU flash sale do bộ đếm trong bộ nhớ nắm, chỉ thay đổi qua updateStock
+    if (productRequest.getStockQuantity() != null && !product.isFlashSale()) {
         product.setStockQuantity(productRequest.getStockQuantity());
     }
 
@@ -312,6 +354,8 @@ public ProductResponse updateProduct(Long id, ProductRequest productRequest, Mul
     }
 
     Product updatedProduct = productRepository.save(product);
+    eventPublisher.publishEvent(new ProductChangedEvent(updatedProduct.getId(), ProductChangedEvent.Type.UPSERT,
+            previousCategoryId, listedCategoryOf(updatedProduct)));
     logger.info("Đã cập nhật sản phẩm với ID: {}", updatedProduct.getId());
     return convertToProductResponseWithImageUrl(updatedProduct, token);
 }
@@ -319,9 +363,35 @@ public ProductResponse updateProduct(Long id, ProductRequest productRequest, Mul
     @Override
     @Transactional(readOnly = true)
     public ProductResponse getProductById(Long id, String token) {
-        Product product = productRepository.findById(id)
+        ProductSnapshot snapshot = productDetailCache.get(id, key -> productRepository.findById(key).map(ProductSnapshot::from))
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm với ID: " + id));
-        return convertToProductResponseWithImageUrl(product, token);
+        return convertToProductResponseWithImageUrl(snapshot.toProduct(), token);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductResponse> getProductsByIds(List<Long> ids, String token) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new AppException(ErrorCode.PRODUCT_BATCH_TOO_LARGE);
+        }
+
+        // 1 câu SQL (IN ...) cho toàn bộ danh sách, sau đó trả về đúng thứ tự FE/service gửi lên
+        Map<Long, Product> productsById = productRepository.findAllById(new LinkedHashSet<>(ids)).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+
+        Map<String, UserServiceResponse.UserResult> sellerCache = resolveSellers(productsById.values(), token);
+        List<ProductResponse> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = productsById.get(id);
+            if (product != null) {
+                result.add(convertToProductResponseWithImageUrl(product, token, sellerCache));
+            }
+        }
+        logger.info("Lấy {} / {} sản phẩm theo danh sách ID", result.size(), ids.size());
+        return result;
     }
 
     @Override
@@ -333,6 +403,20 @@ public Page<ProductResponse> findProducts(
         BigDecimal maxPrice,
         Pageable pageable,
         String token
+) {
+    return findProducts(categoryId, nameQuery, minPrice, maxPrice, pageable, false, token);
+}
+
+    @Override
+@Transactional(readOnly = true)
+public FacetedProductPage findProducts(
+        Long categoryId,
+        String nameQuery,
+        BigDecimal minPrice,
+        BigDecimal maxPrice,
+        Pageable pageable,
+        boolean withFacets,
+        String token
 ) {
     // 1) Chuẩn hoá các tham số filter
     Long normalizedCategoryId = normalizeCategoryId(categoryId);
@@ -347,7 +431,26 @@ public Page<ProductResponse> findProducts(
             pageable.getPageNumber(), pageable.getPageSize()
     );
 
-    // 2) Gọi repository với tham số đã chuẩn hoá
+    // 2) Có từ khoá: dùng chỉ mục tìm kiếm trong bộ nhớ (LIKE '%q%' không dùng được index, phải quét cả bảng).
+    //    Kết quả xếp theo độ liên quan, hoặc theo giá nếu FE sort=price. Chỉ mục chưa nạp xong thì dùng DB.
+    if (normalizedNameQuery != null && productSearchIndexer.isReady()) {
+        ProductSearchIndex.Hits hits = productSearchIndexer.search(
+                normalizedNameQuery, normalizedCategoryId, normalizedMinPrice, normalizedMaxPrice, pageable, withFacets);
+        Map<Long, Product> byId = productRepository.findAllById(hits.productIds()).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        Map<String, UserServiceResponse.UserResult> sellerCache = resolveSellers(byId.values(), token);
+        List<ProductResponse> content = new ArrayList<>();
+        for (Long productId : hits.productIds()) {
+            Product product = byId.get(productId);
+            if (product != null) {
+                content.add(convertToProductResponseWithImageUrl(product, token, sellerCache));
+            }
+        }
+        return new FacetedProductPage(content, pageable, hits.total(),
+                withFacets ? toFacetsResponse(hits.facets()) : null);
+    }
+
+    // 3) Gọi repository với tham số đã chuẩn hoá
     Page<Product> productPage = productRepository.searchProducts(
             normalizedCategoryId,
             normalizedNameQuery,
@@ -356,8 +459,59 @@ public Page<ProductResponse> findProducts(
             pageable
     );
 
-    // 3) Map sang ProductResponse và giữ nguyên thông tin phân trang
-    return productPage.map(product -> convertToProductResponseWithImageUrl(product, token));
+    // 4) Map sang ProductResponse và giữ nguyên thông tin phân trang.
+    //    Facet đếm từ các cột của chỉ mục (không GROUP BY); chỉ mục chưa sẵn sàng thì bỏ qua facet.
+    Map<String, UserServiceResponse.UserResult> sellerCache = resolveSellers(productPage.getContent(), token);
+    List<ProductResponse> content = productPage.getContent().stream()
+            .map(product -> convertToProductResponseWithImageUrl(product, token, sellerCache))
+            .collect(Collectors.toList());
+    ProductFacetsResponse facets = withFacets && productSearchIndexer.isReady()
+            ? toFacetsResponse(productSearchIndexer.facets(
+                    normalizedNameQuery, normalizedCategoryId, normalizedMinPrice, normalizedMaxPrice))
+            : null;
+    return new FacetedProductPage(content, pageable, productPage.getTotalElements(), facets);
+}
+
+private ProductFacetsResponse toFacetsResponse(ProductSearchIndex.Facets facets) {
+    Map<Long, String> categoryNames = categoryRepository.findAllById(facets.categories().keySet()).stream()
+            .collect(Collectors.toMap(Category::getId, Category::getName));
+    List<ProductFacetsResponse.FacetCount> categories = facets.categories().entrySet().stream()
+            .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+            .map(e -> ProductFacetsResponse.FacetCount.builder()
+                    .key(String.valueOf(e.getKey()))
+                    .label(categoryNames.get(e.getKey()))
+                    .count(e.getValue())
+                    .build())
+            .collect(Collectors.toList());
+
+    List<BigDecimal> bounds = ProductSearchIndex.PRICE_BUCKET_BOUNDS;
+    List<ProductFacetsResponse.FacetCount> priceRanges = new ArrayList<>();
+    for (int i = 0; i < facets.priceBuckets().size(); i++) {
+        BigDecimal from = i == 0 ? BigDecimal.ZERO : bounds.get(i - 1);
+        BigDecimal to = i < bounds.size() ? bounds.get(i) : null;
+        priceRanges.add(ProductFacetsResponse.FacetCount.builder()
+                .key(from.toPlainString() + "-" + (to != null ? to.toPlainString() : ""))
+                .minPrice(from)
+                .maxPrice(to)
+                .count(facets.priceBuckets().get(i))
+                .build());
+    }
+
+    // Sidebar chỉ hiển thị các cửa hàng có nhiều sản phẩm khớp nhất
+    List<ProductFacetsResponse.FacetCount> stores = facets.stores().entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(MAX_STORE_FACETS)
+            .map(e -> ProductFacetsResponse.FacetCount.builder()
+                    .key(e.getKey())
+                    .count(e.getValue())
+                    .build())
+            .collect(Collectors.toList());
+
+    return ProductFacetsResponse.builder()
+            .categories(categories)
+            .priceRanges(priceRanges)
+            .stores(stores)
+            .build();
 }
 
 
@@ -376,22 +530,35 @@ public Page<ProductResponse> findProducts(
             deleteStoredFile(product.getImageUrl());
         }
 
+        Long previousCategoryId = listedCategoryOf(product);
         productRepository.delete(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(id, ProductChangedEvent.Type.DELETE, previousCategoryId, null));
         logger.info("Đã xóa sản phẩm với ID: {} bởi cửa hàng: {}", id, storeId);
     }
 
     @Override
     @Transactional
     public ProductResponse updateStock(Long id, int quantityChange, String token) {
-        Product product = productRepository.findById(id)
+        // UPDATE có điều kiện thay cho đọc-sửa-ghi để các request đồng thời không oversell
+        int updated;
+        if (quantityChange < 0) {
+            FlashSaleInventoryService.Admission admission = flashSaleInventoryService.tryReserve(id, -quantityChange);
+            updated = admission == FlashSaleInventoryService.Admission.NOT_MANAGED
+                    ? productRepository.decreaseStockIfAvailable(id, -quantityChange)
+                    : (admission == FlashSaleInventoryService.Admission.ADMITTED ? 1 : 0);
+        } else if (flashSaleInventoryService.isManaged(id)) {
+            flashSaleInventoryService.release(id, quantityChange);
+            updated = 1;
+        } else {
+            updated = productRepository.increaseStock(id, quantityChange);
+        }
+        Product updatedProduct = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm với ID: " + id));
-        int newStock = product.getStockQuantity() + quantityChange;
-        if (newStock < 0) {
+        if (updated == 0) {
             throw new RuntimeException("Số lượng tồn kho không thể âm.");
         }
-        product.setStockQuantity(newStock);
-        Product updatedProduct = productRepository.save(product);
-        logger.info("Đã cập nhật tồn kho cho sản phẩm ID: {} thành {}", id, newStock);
+        eventPublisher.publishEvent(new ProductChangedEvent(id, ProductChangedEvent.Type.STOCK_CHANGED));
+        logger.info("Đã cập nhật tồn kho cho sản phẩm ID: {} thành {}", id, updatedProduct.getStockQuantity());
         return convertToProductResponseWithImageUrl(updatedProduct, token);
     }
 
@@ -406,9 +573,12 @@ public Page<ProductResponse> findProducts(
             throw new RuntimeException("Bạn không có quyền kích hoạt sản phẩm này");
         }
 
+        Long previousCategoryId = listedCategoryOf(product);
         product.setActive(true);
         product.setDeleted(false);
         productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(id, ProductChangedEvent.Type.UPSERT,
+                previousCategoryId, listedCategoryOf(product)));
         logger.info("Đã kích hoạt sản phẩm với ID: {} bởi cửa hàng: {}", id, storeId);
     }
 
@@ -423,8 +593,11 @@ public Page<ProductResponse> findProducts(
             throw new RuntimeException("Bạn không có quyền hủy kích hoạt sản phẩm này");
         }
 
+        Long previousCategoryId = listedCategoryOf(product);
         product.setActive(false);
         productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(id, ProductChangedEvent.Type.UPSERT,
+                previousCategoryId, null));
         logger.info("Đã hủy kích hoạt sản phẩm với ID: {} bởi cửa hàng: {}", id, storeId);
     }
 
@@ -465,4 +638,12 @@ private BigDecimal[] normalizePriceRange(BigDecimal minPrice, BigDecimal maxPric
     }
     return new BigDecimal[]{minPrice, maxPrice};
 }
-}
\ No newline at end of file
+
+    // Danh mục mà sản phẩm đang được tính vào (null nếu không bán), gửi kèm ProductChangedEvent
+    private static Long listedCategoryOf(Product product) {
+        if (!product.isActive() || product.isDeleted() || product.getCategory() == null) {
+            return null;
+        }
+        return product.getCategory().getId();
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.product.service;
+
+public interface PurchaseVerificationService {
+
+    /** User đã nhận hàng (đơn DELIVERED) có chứa sản phẩm này hay chưa. */
+    boolean hasPurchased(String username, Long productId);
+}
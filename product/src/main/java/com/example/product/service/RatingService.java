@@ -1,6 +1,7 @@
 package com.example.product.service;
 
 import com.example.product.dto.request.RatingRequest;
+import com.example.product.dto.response.RatingPageResponse;
 import com.example.product.dto.response.RatingResponse;
 import com.example.product.dto.response.RatingSummaryResponse;
 
@@ -10,11 +11,14 @@ public interface RatingService {
 
     RatingResponse createOrUpdateRating(Long productId, String username, RatingRequest request);
 
-    List<RatingResponse> getRatingsForProduct(Long productId);
+    RatingPageResponse getRatingsForProduct(Long productId, String cursor, int size);
 
     RatingSummaryResponse getRatingSummaryForProduct(Long productId);
 
     List<RatingResponse> getRatingsByUser(String username);
 
     void deleteMyRating(Long productId, Long ratingId, String username);
+
+    /** Tính lại product_rating_summary từ đầu dựa trên product_ratings. */
+    void rebuildRatingSummaries();
 }
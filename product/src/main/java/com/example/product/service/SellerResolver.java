@@ -0,0 +1,21 @@
+package com.example.product.service;
+
+import com.example.product.dto.response.UserServiceResponse;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Tra cứu người bán (userId, username) theo storeId, có cache để không gọi user-service cho từng sản phẩm.
+ */
+public interface SellerResolver {
+
+    /** @return người bán của cửa hàng, hoặc null nếu không tìm thấy / user-service lỗi */
+    UserServiceResponse.UserResult resolve(String storeId, String token);
+
+    /**
+     * Tra cứu nhiều cửa hàng; các storeId chưa có trong cache được lấy bằng đúng một lời gọi bulk.
+     * @return map chứa mọi storeId đầu vào (giá trị null nếu không tìm thấy), có thể sửa được
+     */
+    Map<String, UserServiceResponse.UserResult> resolveAll(Collection<String> storeIds, String token);
+}
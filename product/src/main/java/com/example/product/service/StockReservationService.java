@@ -0,0 +1,18 @@
+package com.example.product.service;
+
+import com.example.product.dto.request.StockReservationRequest;
+import com.example.product.dto.response.StockReservationResponse;
+
+public interface StockReservationService {
+
+    /**
+     * Trừ tồn kho cho toàn bộ các dòng trong một transaction (all-or-nothing).
+     * @throws com.example.product.exception.AppException INSUFFICIENT_STOCK nếu một dòng không đủ hàng
+     */
+    StockReservationResponse reserve(StockReservationRequest request);
+
+    /**
+     * Hoàn lại tồn kho của một reservation. Gọi lại nhiều lần vẫn chỉ hoàn một lần.
+     */
+    StockReservationResponse release(String reservationId);
+}
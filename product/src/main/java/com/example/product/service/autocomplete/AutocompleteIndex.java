@@ -0,0 +1,279 @@
+package com.example.product.service.autocomplete;
+
+import com.example.product.dto.response.AutocompleteResponse;
+import com.example.product.entity.Category;
+import com.example.product.entity.Product;
+import com.example.product.event.CategoryChangedEvent;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.event.ProductsImportedEvent;
+import com.example.product.repository.CategoryRepository;
+import com.example.product.repository.ProductRepository;
+import com.example.product.repository.ProductViewHistoryRepository;
+import com.example.product.service.catalog.CategoryCatalog;
+import com.example.product.service.search.TextNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gợi ý khi gõ (autocomplete) cho ô tìm kiếm, trả lời hoàn toàn từ bộ nhớ.
+ * Tên sản phẩm đang bán và tên danh mục đang hoạt động được chuẩn hoá (bỏ dấu, chữ thường) và đưa vào
+ * {@link SuggestionTrie}; mỗi tên có thêm khoá bắt đầu từ các từ tiếp theo để "iphone" khớp "Apple iPhone 15".
+ * Sản phẩm xếp theo số lượt xem trong cửa sổ gần đây, danh mục theo số sản phẩm đang bán.
+ * Thay đổi sản phẩm / danh mục được áp dụng ngay sau commit; toàn bộ được dựng lại định kỳ để cập nhật độ phổ biến.
+ */
+@Component
+@Slf4j
+public class AutocompleteIndex {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    // Trạng thái hoàn chỉnh của chỉ mục; được dựng mới rồi thay thế nguyên khối khi dựng lại
+    private final class State {
+        final SuggestionTrie products = new SuggestionTrie();
+        final Map<Long, String> productNames = new HashMap<>();
+        final SuggestionTrie categories = new SuggestionTrie();
+        final Map<Long, String> categoryNames = new HashMap<>();
+        final Map<Long, Long> viewCounts;
+
+        State(Map<Long, Long> viewCounts) {
+            this.viewCounts = viewCounts;
+        }
+
+        void putProduct(Long id, String name) {
+            removeProduct(id);
+            productNames.put(id, name);
+            products.setScore(id, viewCounts.getOrDefault(id, 0L));
+            keysOf(name).forEach(key -> products.insert(key, id));
+        }
+
+        void removeProduct(Long id) {
+            String previous = productNames.remove(id);
+            if (previous != null) {
+                keysOf(previous).forEach(key -> products.remove(key, id));
+                products.removeScore(id);
+            }
+        }
+
+        void putCategory(Long id, String name, long productCount) {
+            removeCategory(id);
+            categoryNames.put(id, name);
+            categories.setScore(id, productCount);
+            keysOf(name).forEach(key -> categories.insert(key, id));
+        }
+
+        void removeCategory(Long id) {
+            String previous = categoryNames.remove(id);
+            if (previous != null) {
+                keysOf(previous).forEach(key -> categories.remove(key, id));
+                categories.removeScore(id);
+            }
+        }
+    }
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductViewHistoryRepository viewHistoryRepository;
+    private final CategoryCatalog categoryCatalog;
+    private final int maxWordStarts;
+    private final int maxKeyLength;
+    private final int popularityWindowDays;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object buildLock = new Object();
+    private State state = new State(Map.of());
+    private volatile boolean ready;
+    private volatile boolean building;
+    // Sản phẩm thay đổi trong lúc dựng lại: áp dụng lại lên trạng thái mới sau khi thay thế
+    private final Set<Long> changedDuringBuild = ConcurrentHashMap.newKeySet();
+
+    public AutocompleteIndex(ProductRepository productRepository,
+                             CategoryRepository categoryRepository,
+                             ProductViewHistoryRepository viewHistoryRepository,
+                             CategoryCatalog categoryCatalog,
+                             @Value("${autocomplete.max-word-starts:3}") int maxWordStarts,
+                             @Value("${autocomplete.max-key-length:40}") int maxKeyLength,
+                             @Value("${autocomplete.popularity-window-days:30}") int popularityWindowDays) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.viewHistoryRepository = viewHistoryRepository;
+        this.categoryCatalog = categoryCatalog;
+        this.maxWordStarts = maxWordStarts;
+        this.maxKeyLength = maxKeyLength;
+        this.popularityWindowDays = popularityWindowDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofVirtual().name("product-autocomplete-builder").start(this::rebuild);
+    }
+
+    @Scheduled(initialDelayString = "${autocomplete.rebuild-interval-ms:600000}",
+            fixedDelayString = "${autocomplete.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        synchronized (buildLock) {
+            long started = System.currentTimeMillis();
+            building = true;
+            try {
+                Map<Long, Long> viewCounts = new HashMap<>();
+                for (Object[] row : viewHistoryRepository.countViewsSince(LocalDateTime.now().minusDays(popularityWindowDays))) {
+                    viewCounts.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+                }
+                State next = new State(viewCounts);
+                long lastId = 0;
+                List<Product> batch;
+                do {
+                    batch = productRepository.findTop1000ByIdGreaterThanAndIsDeletedFalseAndIsActiveTrueOrderByIdAsc(lastId);
+                    for (Product product : batch) {
+                        next.putProduct(product.getId(), product.getName());
+                        lastId = product.getId();
+                    }
+                } while (batch.size() == LOAD_BATCH_SIZE);
+                for (CategoryCatalog.Entry category : categoryCatalog.all(true)) {
+                    next.putCategory(category.id(), category.name(), categoryCatalog.productCount(category.id()));
+                }
+
+                lock.writeLock().lock();
+                try {
+                    state = next;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                ready = true;
+                building = false;
+                List<Long> changed = new ArrayList<>(changedDuringBuild);
+                changedDuringBuild.clear();
+                changed.forEach(this::refreshProduct);
+                log.info("Đã dựng chỉ mục autocomplete: {} sản phẩm, {} danh mục trong {} ms",
+                        next.productNames.size(), next.categoryNames.size(), System.currentTimeMillis() - started);
+            } catch (RuntimeException e) {
+                log.error("Dựng chỉ mục autocomplete thất bại, giữ chỉ mục cũ", e);
+            } finally {
+                building = false;
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.STOCK_CHANGED) {
+            return; // tồn kho không ảnh hưởng gợi ý
+        }
+        if (building) {
+            changedDuringBuild.add(event.getProductId());
+        }
+        refreshProduct(event.getProductId());
+    }
+
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (Product product : event.getProducts()) {
+                if (building) {
+                    changedDuringBuild.add(product.getId());
+                }
+                if (product.isActive() && !product.isDeleted()) {
+                    state.putProduct(product.getId(), product.getName());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        // Đọc thẳng từ DB: listener của CategoryCatalog có thể chưa chạy
+        Optional<Category> category = categoryRepository.findById(event.getCategoryId());
+        lock.writeLock().lock();
+        try {
+            if (category.isPresent() && category.get().isActive()) {
+                state.putCategory(category.get().getId(), category.get().getName(),
+                        categoryCatalog.productCount(category.get().getId()));
+            } else {
+                state.removeCategory(event.getCategoryId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public AutocompleteResponse suggest(String query, int limit, int categoryLimit) {
+        String prefix = normalize(query);
+        AutocompleteResponse.AutocompleteResponseBuilder response = AutocompleteResponse.builder().query(query);
+        if (prefix.isEmpty()) {
+            return response.products(List.of()).categories(List.of()).build();
+        }
+        lock.readLock().lock();
+        try {
+            State current = state;
+            return response
+                    .products(current.products.search(prefix, limit).stream()
+                            .map(id -> new AutocompleteResponse.Suggestion(id, current.productNames.get(id),
+                                    current.viewCounts.getOrDefault(id, 0L)))
+                            .toList())
+                    .categories(current.categories.search(prefix, categoryLimit).stream()
+                            .map(id -> new AutocompleteResponse.Suggestion(id, current.categoryNames.get(id),
+                                    categoryCatalog.productCount(id)))
+                            .toList())
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void refreshProduct(Long productId) {
+        // Đọc DB ngoài lock, chỉ cập nhật trie trong lock
+        Product product = productRepository.findById(productId).orElse(null);
+        lock.writeLock().lock();
+        try {
+            if (product != null && product.isActive() && !product.isDeleted()) {
+                state.putProduct(productId, product.getName());
+            } else {
+                state.removeProduct(productId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // "Điện thoại Samsung Galaxy" -> "dien thoai samsung galaxy", "thoai samsung galaxy", "samsung galaxy"
+    private Set<String> keysOf(String name) {
+        List<String> tokens = TextNormalizer.tokenize(name);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int start = 0; start < tokens.size() && start < maxWordStarts; start++) {
+            keys.add(truncate(String.join(" ", tokens.subList(start, tokens.size()))));
+        }
+        return keys;
+    }
+
+    private String normalize(String query) {
+        return truncate(String.join(" ", TextNormalizer.tokenize(query)));
+    }
+
+    private String truncate(String key) {
+        return key.length() > maxKeyLength ? key.substring(0, maxKeyLength) : key;
+    }
+}
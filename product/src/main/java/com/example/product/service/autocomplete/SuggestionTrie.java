@@ -0,0 +1,264 @@
+package com.example.product.service.autocomplete;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Radix trie (trie nén: mỗi cạnh là một chuỗi) ánh xạ khoá đã chuẩn hoá -> id gợi ý.
+ * Mỗi nút nhớ điểm cao nhất trong cây con, nên truy vấn top-k theo tiền tố là tìm kiếm best-first:
+ * chỉ mở các nhánh còn có thể vào top-k, không duyệt hết cây con của tiền tố ngắn như "a".
+ * Không thread-safe, nơi dùng tự khoá.
+ */
+final class SuggestionTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final long[] NO_IDS = new long[0];
+
+    private static final class Node {
+        String label;
+        char[] keys = NO_KEYS; // ký tự đầu của nhãn con, sắp tăng dần
+        Node[] children = NO_CHILDREN;
+        long[] ids = NO_IDS; // các gợi ý có khoá kết thúc tại nút này
+        long maxScore = -1; // -1 = cây con rỗng
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    // Phần tử của hàng đợi best-first: một nút (chưa mở) hoặc một gợi ý
+    private record Candidate(long score, Node node, long id) {
+    }
+
+    private final Node root = new Node("");
+    private final Map<Long, Long> scores = new HashMap<>();
+
+    /** Chỉ dùng cho gợi ý chưa có khoá; muốn đổi điểm thì gỡ các khoá, đặt điểm mới rồi thêm lại. */
+    void setScore(long id, long score) {
+        scores.put(id, score);
+    }
+
+    void removeScore(long id) {
+        scores.remove(id);
+    }
+
+    /** Thêm khoá cho gợi ý; điểm của gợi ý phải được đặt trước bằng {@link #setScore}. */
+    void insert(String key, long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int index = Arrays.binarySearch(node.keys, key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i));
+                addChild(node, -index - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                // Tách cạnh: nút trung gian giữ phần nhãn chung
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.keys = new char[]{child.label.charAt(0)};
+                middle.children = new Node[]{child};
+                middle.maxScore = child.maxScore;
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        for (long existing : node.ids) {
+            if (existing == id) {
+                return;
+            }
+        }
+        node.ids = Arrays.copyOf(node.ids, node.ids.length + 1);
+        node.ids[node.ids.length - 1] = id;
+        refresh(path);
+    }
+
+    void remove(String key, long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int index = Arrays.binarySearch(node.keys, key.charAt(i));
+            if (index < 0) {
+                return;
+            }
+            Node child = node.children[index];
+            if (!key.startsWith(child.label, i)) {
+                return;
+            }
+            node = child;
+            path.add(node);
+            i += child.label.length();
+        }
+        int position = -1;
+        for (int j = 0; j < node.ids.length; j++) {
+            if (node.ids[j] == id) {
+                position = j;
+            }
+        }
+        if (position < 0) {
+            return;
+        }
+        long[] ids = new long[node.ids.length - 1];
+        System.arraycopy(node.ids, 0, ids, 0, position);
+        System.arraycopy(node.ids, position + 1, ids, position, ids.length - position);
+        node.ids = ids.length == 0 ? NO_IDS : ids;
+        // Cắt các nút lá rỗng từ dưới lên
+        int last = path.size() - 1;
+        while (last > 0 && node.ids.length == 0 && node.children.length == 0) {
+            Node parent = path.get(last - 1);
+            removeChild(parent, Arrays.binarySearch(parent.keys, node.label.charAt(0)));
+            node = parent;
+            last--;
+        }
+        // Nút còn lại không giữ id và chỉ còn một con: gộp với con để cây vẫn nén
+        if (last > 0 && node.ids.length == 0 && node.children.length == 1) {
+            mergeWithOnlyChild(node);
+        }
+        refresh(path.subList(0, last + 1));
+    }
+
+    /** Tối đa {@code limit} id có khoá bắt đầu bằng {@code prefix}, điểm cao trước. */
+    List<Long> search(String prefix, int limit) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int index = Arrays.binarySearch(node.keys, prefix.charAt(i));
+            if (index < 0) {
+                return List.of();
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, prefix, i);
+            if (common < child.label.length() && i + common < prefix.length()) {
+                return List.of(); // lệch giữa cạnh
+            }
+            node = child;
+            i += common;
+        }
+        if (node.maxScore < 0) {
+            return List.of();
+        }
+
+        List<Long> result = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        PriorityQueue<Candidate> queue = new PriorityQueue<>((a, b) -> a.score() != b.score()
+                ? Long.compare(b.score(), a.score())
+                // cùng điểm: gợi ý trước nút để có thể dừng sớm, rồi id nhỏ trước cho ổn định
+                : a.node() == null && b.node() != null ? -1
+                : a.node() != null && b.node() == null ? 1
+                : Long.compare(a.id(), b.id()));
+        queue.add(new Candidate(node.maxScore, node, 0));
+        while (!queue.isEmpty() && result.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.node() == null) {
+                if (seen.add(candidate.id())) {
+                    result.add(candidate.id());
+                }
+                continue;
+            }
+            Node current = candidate.node();
+            for (long id : current.ids) {
+                if (!seen.contains(id)) {
+                    queue.add(new Candidate(scores.getOrDefault(id, 0L), null, id));
+                }
+            }
+            for (Node child : current.children) {
+                if (child.maxScore >= 0) {
+                    queue.add(new Candidate(child.maxScore, child, 0));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Số nút trong cây (kể cả gốc), để kiểm tra cây vẫn được nén sau khi thêm / xoá. */
+    int nodeCount() {
+        int count = 0;
+        List<Node> pending = new ArrayList<>(List.of(root));
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            count++;
+            pending.addAll(Arrays.asList(node.children));
+        }
+        return count;
+    }
+
+    // Tính lại điểm cao nhất của cây con, từ nút sâu nhất lên gốc
+    private void refresh(List<Node> path) {
+        for (int j = path.size() - 1; j >= 0; j--) {
+            Node node = path.get(j);
+            long max = -1;
+            for (long id : node.ids) {
+                max = Math.max(max, scores.getOrDefault(id, 0L));
+            }
+            for (Node child : node.children) {
+                max = Math.max(max, child.maxScore);
+            }
+            node.maxScore = max;
+        }
+    }
+
+    // Nhãn nối thêm nhãn con nên ký tự đầu (khoá ở nút cha) không đổi
+    private static void mergeWithOnlyChild(Node node) {
+        Node child = node.children[0];
+        node.label = node.label + child.label;
+        node.keys = child.keys;
+        node.children = child.children;
+        node.ids = child.ids;
+        node.maxScore = child.maxScore;
+    }
+
+    private static void addChild(Node parent, int position, Node child) {
+        char[] keys = new char[parent.keys.length + 1];
+        Node[] children = new Node[parent.children.length + 1];
+        System.arraycopy(parent.keys, 0, keys, 0, position);
+        System.arraycopy(parent.children, 0, children, 0, position);
+        keys[position] = child.label.charAt(0);
+        children[position] = child;
+        System.arraycopy(parent.keys, position, keys, position + 1, parent.keys.length - position);
+        System.arraycopy(parent.children, position, children, position + 1, parent.children.length - position);
+        parent.keys = keys;
+        parent.children = children;
+    }
+
+    private static void removeChild(Node parent, int position) {
+        if (position < 0) {
+            return;
+        }
+        char[] keys = new char[parent.keys.length - 1];
+        Node[] children = new Node[parent.children.length - 1];
+        System.arraycopy(parent.keys, 0, keys, 0, position);
+        System.arraycopy(parent.children, 0, children, 0, position);
+        System.arraycopy(parent.keys, position + 1, keys, position, keys.length - position);
+        System.arraycopy(parent.children, position + 1, children, position, children.length - position);
+        parent.keys = keys.length == 0 ? NO_KEYS : keys;
+        parent.children = children.length == 0 ? NO_CHILDREN : children;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int n = 0;
+        while (n < max && label.charAt(n) == key.charAt(offset + n)) {
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.product.service.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tầng cache thứ hai nằm ngoài heap cho catalog lớn: không làm tăng áp lực GC.
+ * Dữ liệu nằm trong vài slab direct ByteBuffer lớn (cấp phát một lần, khi con trỏ ghi chạm tới) dùng như một
+ * vòng ghi nối đuôi: entry mới luôn ghi tại con trỏ ghi, chỗ cần ghi đang có entry cũ thì entry đó bị bỏ (FIFO).
+ * Không cấp phát direct buffer cho từng entry nên không tốn chi phí allocate/Cleaner cho mỗi lần put.
+ * Chỉ mục trên heap ({@link LinkedHashMap} id -> vị trí trong vòng) giữ đúng thứ tự ghi, trùng với thứ tự trong vòng.
+ * Đọc giữ read lock trong lúc giải mã (vùng đang đọc không bị ghi đè), ghi / xoá giữ write lock.
+ * Mỗi entry mang hạn dùng riêng ở phần đầu.
+ */
+public class OffHeapProductStore {
+
+    private static final int HEADER_BYTES = Long.BYTES; // expiresAt (nanoTime)
+    private static final long MAX_SLAB_BYTES = 64L * 1024 * 1024;
+
+    // Vị trí trong vòng: address = slab * slabBytes + offset, một entry không bao giờ vắt qua hai slab
+    private record Slot(long address, int length) {
+    }
+
+    private final long ttlNanos;
+    private final int slabBytes;
+    private final ByteBuffer[] slabs;
+    private final long capacity;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LinkedHashMap<Long, Slot> entries = new LinkedHashMap<>();
+    private long writeAddress;
+    private long usedBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public OffHeapProductStore(long maxBytes, long ttlNanos) {
+        if (maxBytes < HEADER_BYTES) {
+            throw new IllegalArgumentException("max-bytes quá nhỏ: " + maxBytes);
+        }
+        this.ttlNanos = ttlNanos;
+        this.slabBytes = (int) Math.min(maxBytes, MAX_SLAB_BYTES);
+        this.slabs = new ByteBuffer[Math.toIntExact(maxBytes / slabBytes)];
+        this.capacity = (long) slabs.length * slabBytes;
+    }
+
+    public ProductSnapshot get(Long productId) {
+        Slot slot = null;
+        ProductSnapshot snapshot = null;
+        boolean expired = false;
+        lock.readLock().lock();
+        try {
+            slot = entries.get(productId);
+            if (slot != null) {
+                ByteBuffer view = view(slot);
+                if (view.getLong(view.position()) - System.nanoTime() <= 0) {
+                    expired = true;
+                } else {
+                    view.position(view.position() + HEADER_BYTES);
+                    snapshot = ProductSnapshot.readFrom(new DataInputStream(new BufferInputStream(view)));
+                }
+            }
+        } catch (IOException e) {
+            expired = true;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+        if (expired) {
+            remove(productId, slot);
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(ProductSnapshot snapshot) {
+        byte[] payload = encode(snapshot);
+        int length = HEADER_BYTES + payload.length;
+        lock.writeLock().lock();
+        try {
+            // Xoá bản cũ trước: entry vừa ghi nằm cuối thứ tự FIFO, và bản quá lớn không để lại dữ liệu cũ
+            Slot previous = entries.remove(snapshot.id());
+            if (previous != null) {
+                usedBytes -= previous.length();
+            }
+            if (length > slabBytes) {
+                return;
+            }
+            long offset = writeAddress % slabBytes;
+            if (offset + length > slabBytes) {
+                // Không đủ chỗ ở cuối slab: bỏ phần thừa (và entry cũ nằm trong đó), sang slab kế tiếp
+                evictRange(writeAddress, writeAddress - offset + slabBytes);
+                writeAddress = (writeAddress - offset + slabBytes) % capacity;
+            }
+            evictRange(writeAddress, writeAddress + length);
+
+            Slot slot = new Slot(writeAddress, length);
+            ByteBuffer target = slab(slot);
+            target.position((int) (writeAddress % slabBytes));
+            target.putLong(System.nanoTime() + ttlNanos).put(payload);
+            entries.put(snapshot.id(), slot);
+            usedBytes += length;
+            writeAddress = (writeAddress + length) % capacity;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Slot removed = entries.remove(productId);
+            if (removed != null) {
+                usedBytes -= removed.length();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Chỉ xoá nếu entry vẫn là vị trí đã đọc (không xoá nhầm bản mới được put sau đó)
+    private void remove(Long productId, Slot expected) {
+        lock.writeLock().lock();
+        try {
+            if (entries.remove(productId, expected)) {
+                usedBytes -= expected.length();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long usedBytes() {
+        lock.readLock().lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bỏ các entry bắt đầu trong [from, to) - vùng sắp bị ghi đè. Gọi khi đang giữ write lock.
+     * Entry cũ nhất luôn là entry gần con trỏ ghi nhất theo chiều tiến, nên chỉ cần xét từ đầu thứ tự FIFO.
+     */
+    private void evictRange(long from, long to) {
+        Iterator<Map.Entry<Long, Slot>> oldest = entries.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Slot slot = oldest.next().getValue();
+            if (slot.address() < from || slot.address() >= to) {
+                return;
+            }
+            usedBytes -= slot.length();
+            oldest.remove();
+            evictions.increment();
+        }
+    }
+
+    // Slab chứa slot, cấp phát lần đầu khi con trỏ ghi chạm tới; trả về bản duplicate để không đụng position chung
+    private ByteBuffer slab(Slot slot) {
+        int index = (int) (slot.address() / slabBytes);
+        if (slabs[index] == null) {
+            slabs[index] = ByteBuffer.allocateDirect(slabBytes);
+        }
+        return slabs[index].duplicate();
+    }
+
+    private ByteBuffer view(Slot slot) {
+        ByteBuffer view = slabs[(int) (slot.address() / slabBytes)].duplicate();
+        int offset = (int) (slot.address() % slabBytes);
+        view.limit(offset + slot.length()).position(offset);
+        return view;
+    }
+
+    private static byte[] encode(ProductSnapshot snapshot) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            snapshot.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Đọc trực tiếp từ ByteBuffer, không copy ra mảng trung gian
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+    }
+}
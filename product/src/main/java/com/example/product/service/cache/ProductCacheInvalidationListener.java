@@ -0,0 +1,61 @@
+package com.example.product.service.cache;
+
+import com.example.product.config.RabbitMQConfig;
+import com.example.product.event.ProductCacheInvalidation;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.service.catalog.CatalogVersion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+
+/**
+ * Xoá entry cache khi sản phẩm thay đổi: xoá tại chỗ sau commit, rồi phát lệnh cho các replica khác.
+ * Nếu RabbitMQ không gửi được thì các replica khác vẫn tự hết hạn theo TTL.
+ */
+@Slf4j
+@Component
+public class ProductCacheInvalidationListener {
+
+    private final ProductDetailCache productDetailCache;
+    private final CatalogVersion catalogVersion;
+    private final RabbitTemplate rabbitTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public ProductCacheInvalidationListener(ProductDetailCache productDetailCache, CatalogVersion catalogVersion,
+                                            RabbitTemplate rabbitTemplate) {
+        this.productDetailCache = productDetailCache;
+        this.catalogVersion = catalogVersion;
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        productDetailCache.invalidate(event.getProductId());
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.PRODUCT_CACHE_INVALIDATION_EXCHANGE, "",
+                    new ProductCacheInvalidation(event.getProductId(), instanceId,
+                            event.getType() == ProductChangedEvent.Type.STOCK_CHANGED));
+        } catch (AmqpException e) {
+            log.warn("Không gửi được lệnh xoá cache cho sản phẩm {}: {}", event.getProductId(), e.getMessage());
+        }
+    }
+
+    @RabbitListener(queues = "#{productCacheInvalidationQueue.name}")
+    public void onRemoteInvalidation(ProductCacheInvalidation message) {
+        if (instanceId.equals(message.getOrigin())) {
+            return;
+        }
+        productDetailCache.invalidate(message.getProductId());
+        // Sản phẩm đổi ở replica khác: ETag / trang đã cache ở đây cũng hết hiệu lực (trừ khi chỉ đổi tồn kho)
+        if (!message.isStockOnly()) {
+            catalogVersion.increment();
+        }
+        log.debug("Đã xoá cache sản phẩm {} theo lệnh từ instance {}", message.getProductId(), message.getOrigin());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.product.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.example.product.dto.response.ProductCacheStatsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Cache đọc-xuyên (read-through) cho chi tiết sản phẩm.
+ * L1: Caffeine trên heap, giới hạn số entry + TTL. L2 (tuỳ chọn): {@link OffHeapProductStore}.
+ * Dữ liệu được xoá khi sản phẩm thay đổi (xem {@link ProductCacheInvalidationListener}); TTL chỉ là lưới an toàn.
+ * Mỗi lần xoá tăng "thế hệ" của id; bản đọc từ DB (hoặc từ L2) chỉ được ghi vào cache nếu thế hệ chưa đổi
+ * kể từ trước khi đọc, để loader chậm không ghi đè snapshot cũ lên sau một lần xoá chạy song song.
+ */
+@Slf4j
+@Component
+public class ProductDetailCache {
+
+    // Số ô thế hệ (lũy thừa của 2); hai id chung ô chỉ làm lần ghi cache bị bỏ qua, không sai dữ liệu
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final Cache<Long, ProductSnapshot> onHeap;
+    private final OffHeapProductStore offHeap;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public ProductDetailCache(
+            @Value("${product-cache.max-size:10000}") long maxSize,
+            @Value("${product-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${product-cache.off-heap.enabled:false}") boolean offHeapEnabled,
+            @Value("${product-cache.off-heap.max-bytes:268435456}") long offHeapMaxBytes) {
+        this.onHeap = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.offHeap = offHeapEnabled
+                ? new OffHeapProductStore(offHeapMaxBytes, Duration.ofSeconds(ttlSeconds).toNanos())
+                : null;
+        log.info("Cache chi tiết sản phẩm: L1 tối đa {} entry, TTL {}s, L2 off-heap {}",
+                maxSize, ttlSeconds, offHeapEnabled ? offHeapMaxBytes + " bytes" : "tắt");
+    }
+
+    /**
+     * Lấy snapshot theo thứ tự L1 -> L2 -> loader (DB). Loader trả Optional rỗng thì không cache gì cả.
+     */
+    public Optional<ProductSnapshot> get(Long productId, Function<Long, Optional<ProductSnapshot>> loader) {
+        long generation = generations.get(stripe(productId));
+        ProductSnapshot cached = onHeap.getIfPresent(productId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (offHeap != null) {
+            ProductSnapshot promoted = offHeap.get(productId);
+            if (promoted != null) {
+                putIfCurrent(promoted, generation, false);
+                return Optional.of(promoted);
+            }
+        }
+        Optional<ProductSnapshot> loaded = loader.apply(productId);
+        loaded.ifPresent(snapshot -> putIfCurrent(snapshot, generation, true));
+        return loaded;
+    }
+
+    // compute() trên cùng key tuần tự với invalidate(), nên kiểm tra thế hệ và ghi là một bước
+    private void putIfCurrent(ProductSnapshot snapshot, long generation, boolean writeOffHeap) {
+        onHeap.asMap().compute(snapshot.id(), (id, current) -> {
+            if (generations.get(stripe(id)) != generation) {
+                return current;
+            }
+            if (writeOffHeap && offHeap != null) {
+                offHeap.put(snapshot);
+            }
+            return snapshot;
+        });
+    }
+
+    public void invalidate(Long productId) {
+        onHeap.asMap().compute(productId, (id, current) -> {
+            generations.incrementAndGet(stripe(id));
+            if (offHeap != null) {
+                offHeap.remove(id);
+            }
+            return null;
+        });
+    }
+
+    private static int stripe(Long productId) {
+        long h = productId * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (GENERATION_STRIPES - 1);
+    }
+
+    public ProductCacheStatsResponse stats() {
+        CacheStats l1 = onHeap.stats();
+        ProductCacheStatsResponse.ProductCacheStatsResponseBuilder builder = ProductCacheStatsResponse.builder()
+                .l1Size(onHeap.estimatedSize())
+                .l1Hits(l1.hitCount())
+                .l1Misses(l1.missCount())
+                .l1Evictions(l1.evictionCount())
+                .l1HitRate(l1.hitRate())
+                .offHeapEnabled(offHeap != null);
+        if (offHeap != null) {
+            builder.l2Size(offHeap.size())
+                    .l2Hits(offHeap.hitCount())
+                    .l2Misses(offHeap.missCount())
+                    .l2Evictions(offHeap.evictionCount())
+                    .l2UsedBytes(offHeap.usedBytes());
+        }
+        return builder.build();
+    }
+}
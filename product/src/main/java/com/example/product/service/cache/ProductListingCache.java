@@ -0,0 +1,52 @@
+package com.example.product.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache JSON đã serialize của các trang danh sách sản phẩm cho khách chưa đăng nhập, theo (phiên bản catalog, URL).
+ * Giới hạn theo tổng số byte; Caffeine (W-TinyLFU) chỉ giữ lại các truy vấn được hỏi thường xuyên.
+ * Khi phiên bản catalog đổi thì bỏ toàn bộ: entry của phiên bản cũ không bao giờ được hỏi lại.
+ */
+@Slf4j
+@Component
+public class ProductListingCache {
+
+    private final Cache<String, byte[]> pages;
+    private final int maxEntryBytes;
+    private volatile long version = -1;
+
+    public ProductListingCache(
+            @Value("${product-listing-cache.max-bytes:33554432}") long maxBytes,
+            @Value("${product-listing-cache.max-entry-bytes:262144}") int maxEntryBytes) {
+        this.pages = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, byte[] body) -> key.length() * 2 + body.length)
+                .build();
+        this.maxEntryBytes = maxEntryBytes;
+        log.info("Cache trang danh sách sản phẩm: tối đa {} bytes, mỗi trang tối đa {} bytes", maxBytes, maxEntryBytes);
+    }
+
+    public byte[] get(long catalogVersion, String key) {
+        return catalogVersion == version ? pages.getIfPresent(key) : null;
+    }
+
+    public void put(long catalogVersion, String key, byte[] body) {
+        if (body.length > maxEntryBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (catalogVersion < version) {
+                return; // trang dựng từ phiên bản đã cũ
+            }
+            if (catalogVersion > version) {
+                pages.invalidateAll();
+                version = catalogVersion;
+            }
+            pages.put(key, body);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.product.service.cache;
+
+import com.example.product.entity.Category;
+import com.example.product.entity.Product;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Bản chụp bất biến của một dòng products để cache (không giữ entity JPA giữa các thread/request).
+ * Phần phụ thuộc request (URL ảnh, thông tin người bán, tồn kho flash sale) vẫn được tính lúc trả response.
+ */
+public record ProductSnapshot(
+        Long id,
+        String sku,
+        String name,
+        String description,
+        BigDecimal price,
+        int stockQuantity,
+        String imageUrl,
+        boolean active,
+        boolean deleted,
+        boolean flashSale,
+        Long categoryId,
+        String storeId,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public static ProductSnapshot from(Product product) {
+        return new ProductSnapshot(
+                product.getId(),
+                product.getSku(),
+                product.getName(),
+                product.getDescription(),
+                product.getPrice(),
+                product.getStockQuantity(),
+                product.getImageUrl(),
+                product.isActive(),
+                product.isDeleted(),
+                product.isFlashSale(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getStoreId(),
+                product.getCreatedAt(),
+                product.getUpdatedAt());
+    }
+
+    /** Tạo một Product tạm (không managed) để dùng lại logic map sang ProductResponse. */
+    public Product toProduct() {
+        Product product = new Product();
+        product.setId(id);
+        product.setSku(sku);
+        product.setName(name);
+        product.setDescription(description);
+        product.setPrice(price);
+        product.setStockQuantity(stockQuantity);
+        product.setImageUrl(imageUrl);
+        product.setActive(active);
+        product.setDeleted(deleted);
+        product.setFlashSale(flashSale);
+        if (categoryId != null) {
+            Category category = new Category();
+            category.setId(categoryId);
+            product.setCategory(category);
+        }
+        product.setStoreId(storeId);
+        product.setCreatedAt(createdAt);
+        product.setUpdatedAt(updatedAt);
+        return product;
+    }
+
+    // Mã hoá nhị phân gọn cho tầng off-heap
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(id);
+        writeNullable(out, sku);
+        writeNullable(out, name);
+        writeNullable(out, description);
+        writeNullable(out, price != null ? price.toPlainString() : null);
+        out.writeInt(stockQuantity);
+        writeNullable(out, imageUrl);
+        out.writeBoolean(active);
+        out.writeBoolean(deleted);
+        out.writeBoolean(flashSale);
+        out.writeLong(categoryId != null ? categoryId : -1L);
+        writeNullable(out, storeId);
+        writeNullable(out, createdAt != null ? createdAt.toString() : null);
+        writeNullable(out, updatedAt != null ? updatedAt.toString() : null);
+    }
+
+    static ProductSnapshot readFrom(DataInput in) throws IOException {
+        Long id = in.readLong();
+        String sku = readNullable(in);
+        String name = readNullable(in);
+        String description = readNullable(in);
+        String price = readNullable(in);
+        int stockQuantity = in.readInt();
+        String imageUrl = readNullable(in);
+        boolean active = in.readBoolean();
+        boolean deleted = in.readBoolean();
+        boolean flashSale = in.readBoolean();
+        long categoryId = in.readLong();
+        String storeId = readNullable(in);
+        String createdAt = readNullable(in);
+        String updatedAt = readNullable(in);
+        return new ProductSnapshot(id, sku, name, description,
+                price != null ? new BigDecimal(price) : null,
+                stockQuantity, imageUrl, active, deleted, flashSale,
+                categoryId >= 0 ? categoryId : null,
+                storeId,
+                createdAt != null ? LocalDateTime.parse(createdAt) : null,
+                updatedAt != null ? LocalDateTime.parse(updatedAt) : null);
+    }
+
+    // writeUTF giới hạn 64KB nên mô tả dài được ghi dạng byte[] UTF-8
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
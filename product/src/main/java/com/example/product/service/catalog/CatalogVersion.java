@@ -0,0 +1,58 @@
+package com.example.product.service.catalog;
+
+import com.example.product.event.CategoryChangedEvent;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.event.ProductsImportedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phiên bản dữ liệu catalog (sản phẩm, danh mục) của instance này, tăng sau mỗi lần ghi đã commit
+ * và khi nhận lệnh xoá cache từ replica khác. Thay đổi chỉ về tồn kho (mỗi lần checkout) không làm tăng phiên bản,
+ * nếu không ETag / cache trang gần như không bao giờ trúng; số tồn kho hiển thị có thể cũ, giữ hàng vẫn kiểm tra trên DB. Dùng làm weak ETag cho danh sách / chi tiết sản phẩm và làm
+ * khoá cho cache response. ETag kèm id ngẫu nhiên của lần khởi động nên không bao giờ trùng giữa các replica
+ * hay sau khi khởi động lại (chỉ mất 304, không trả nhầm dữ liệu cũ).
+ * Phải đọc phiên bản TRƯỚC khi đọc dữ liệu: response dựng từ dữ liệu mới hơn phiên bản chỉ làm 304 lỡ một lần.
+ */
+@Component
+public class CatalogVersion {
+
+    private final String epoch = Long.toHexString(UUID.randomUUID().getMostSignificantBits());
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public void increment() {
+        version.incrementAndGet();
+    }
+
+    /** Weak ETag của phiên bản đã đọc; {@code variant} phân biệt các biểu diễn khác nhau của cùng URL. */
+    public String etag(long version, String variant) {
+        return "W/\"" + epoch + "-" + version + "-" + variant + "\"";
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.STOCK_CHANGED) {
+            return;
+        }
+        increment();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        increment();
+    }
+
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        increment();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.product.service.catalog;
+
+import com.example.product.entity.Category;
+import com.example.product.entity.Product;
+import com.example.product.event.CategoryChangedEvent;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.event.ProductsImportedEvent;
+import com.example.product.repository.CategoryRepository;
+import com.example.product.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Danh mục giữ trong bộ nhớ kèm số sản phẩm đang bán của từng danh mục.
+ * Đọc không khoá (snapshot bất biến + map đếm); ghi (sự kiện danh mục / sản phẩm, nạp lại) tuần tự qua một lock,
+ * và không bao giờ truy vấn DB khi đang giữ lock.
+ * Số đếm cập nhật theo chênh lệch: {@link ProductChangedEvent} mang sẵn danh mục trước / sau thay đổi,
+ * nên không cần nhớ danh mục của từng sản phẩm. Thay đổi ở replica khác (sự kiện chỉ phát trong JVM)
+ * được hợp nhất ở lần nạp lại định kỳ, chỉ đọc số đếm đã GROUP BY.
+ */
+@Component
+@Slf4j
+public class CategoryCatalog {
+
+    public record Entry(Long id, String name, String description, boolean active,
+                        LocalDateTime createdAt, LocalDateTime updatedAt) {
+    }
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final Object writeLock = new Object();
+    // Sắp theo id như thứ tự findAll trước đây
+    private volatile Map<Long, Entry> categories = Collections.emptyMap();
+    private final Map<Long, Long> productCounts = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public CategoryCatalog(CategoryRepository categoryRepository, ProductRepository productRepository) {
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+    }
+
+    public List<Entry> all(boolean activeOnly) {
+        ensureLoaded();
+        return categories.values().stream()
+                .filter(entry -> !activeOnly || entry.active())
+                .toList();
+    }
+
+    public Optional<Entry> get(Long id) {
+        ensureLoaded();
+        return Optional.ofNullable(categories.get(id));
+    }
+
+    public long productCount(Long categoryId) {
+        ensureLoaded();
+        return productCounts.getOrDefault(categoryId, 0L);
+    }
+
+    /**
+     * Nạp lại toàn bộ từ DB; chạy định kỳ để sửa lệch do thay đổi ở replica khác hoặc ghi ngoài luồng sự kiện.
+     * Truy vấn chạy ngoài lock; sự kiện áp dụng trong lúc truy vấn có thể bị ghi đè, lần nạp sau sẽ sửa lại.
+     */
+    @Scheduled(initialDelayString = "${category-catalog.refresh-interval-ms:600000}",
+            fixedDelayString = "${category-catalog.refresh-interval-ms:600000}")
+    public void reload() {
+        long started = System.currentTimeMillis();
+        Map<Long, Entry> loadedCategories = new TreeMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            loadedCategories.put(category.getId(), toEntry(category));
+        }
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : productRepository.countActiveProductsByCategory()) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        synchronized (writeLock) {
+            categories = Collections.unmodifiableMap(loadedCategories);
+            // Thay tại chỗ (không clear trước) để người đọc không khoá không thấy map rỗng giữa chừng
+            productCounts.keySet().retainAll(counts.keySet());
+            productCounts.putAll(counts);
+            loaded = true;
+        }
+        log.info("Đã nạp {} danh mục, {} sản phẩm đang bán trong {} ms", loadedCategories.size(),
+                counts.values().stream().mapToLong(Long::longValue).sum(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (!loaded) {
+            return; // lần đọc đầu tiên sẽ nạp cả thay đổi này
+        }
+        Optional<Entry> changed = categoryRepository.findById(event.getCategoryId()).map(CategoryCatalog::toEntry);
+        synchronized (writeLock) {
+            Map<Long, Entry> updated = new TreeMap<>(categories);
+            changed.ifPresentOrElse(entry -> updated.put(entry.id(), entry),
+                    () -> updated.remove(event.getCategoryId()));
+            categories = Collections.unmodifiableMap(updated);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.STOCK_CHANGED) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (!loaded) {
+                return;
+            }
+            move(event.getPreviousCategoryId(), event.getCategoryId());
+        }
+    }
+
+    // Sản phẩm nhập hàng loạt được INSERT thẳng bằng JDBC (luôn là sản phẩm mới), không có sự kiện cho từng sản phẩm
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        synchronized (writeLock) {
+            if (!loaded) {
+                return;
+            }
+            event.getProducts().forEach(product -> move(null, activeCategoryOf(product)));
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            reload();
+        }
+    }
+
+    // Chuyển một sản phẩm từ danh mục cũ sang danh mục mới (null = không được tính) và điều chỉnh số đếm hai bên
+    private void move(Long previous, Long categoryId) {
+        if (Objects.equals(previous, categoryId)) {
+            return;
+        }
+        if (previous != null) {
+            productCounts.computeIfPresent(previous, (id, count) -> count > 1 ? count - 1 : null);
+        }
+        if (categoryId != null) {
+            productCounts.merge(categoryId, 1L, Long::sum);
+        }
+    }
+
+    private Long activeCategoryOf(Product product) {
+        if (!product.isActive() || product.isDeleted() || product.getCategory() == null) {
+            return null;
+        }
+        return product.getCategory().getId();
+    }
+
+    private static Entry toEntry(Category category) {
+        return new Entry(category.getId(), category.getName(), category.getDescription(), category.isActive(),
+                category.getCreatedAt(), category.getUpdatedAt());
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.product.service.image;
+
+/**
+ * Các kích thước ảnh dẫn xuất sinh ra lúc upload. Ảnh luôn được thu nhỏ theo cạnh dài, không phóng to.
+ */
+public enum ImageVariant {
+    THUMBNAIL("thumb", 200),
+    CARD("card", 480),
+    DETAIL("detail", 1200);
+
+    private final String fileStem;
+    private final int maxDimension;
+
+    ImageVariant(String fileStem, int maxDimension) {
+        this.fileStem = fileStem;
+        this.maxDimension = maxDimension;
+    }
+
+    public String fileName() {
+        return fileStem + ".jpg";
+    }
+
+    public int maxDimension() {
+        return maxDimension;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.product.service.image;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Phục vụ file ảnh sản phẩm trực tiếp từ đĩa:
+ * <ul>
+ *     <li>ETag mạnh lấy từ hash nội dung (ảnh lưu theo hash) hoặc kích thước + thời điểm sửa (ảnh cũ);</li>
+ *     <li>If-None-Match -> 304, Range một đoạn -> 206 (If-Range được tôn trọng);</li>
+ *     <li>Ảnh lưu theo hash không bao giờ đổi nội dung nên được cache {@code immutable} một năm;</li>
+ *     <li>Thân response đi bằng sendfile của Tomcat khi connector hỗ trợ, ngược lại dùng FileChannel.transferTo.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class ProductImageDelivery {
+
+    // Thuộc tính request Tomcat dùng cho sendfile (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final Pattern CONTENT_ADDRESSED =
+            Pattern.compile("[0-9a-f]{2}/([0-9a-f]{64})/([A-Za-z0-9]+)(\\.[A-Za-z0-9]+)?");
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final String IMMUTABLE_CACHE = "public, max-age=31536000, immutable";
+    private static final String LEGACY_CACHE = "public, max-age=3600";
+
+    private final Path rootLocation;
+    private final long sendfileThreshold;
+
+    public ProductImageDelivery(
+            @Value("${app.upload.dir}") String uploadDir,
+            @Value("${product-image.sendfile-threshold-bytes:16384}") long sendfileThreshold) {
+        this.rootLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.sendfileThreshold = sendfileThreshold;
+    }
+
+    /**
+     * @param relativePath đường dẫn sau tiền tố public (ví dụ {@code ab/ab12.../card.jpg})
+     */
+    public void serve(String relativePath, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = resolve(relativePath);
+        BasicFileAttributes attributes = file != null ? readAttributes(file) : null;
+        if (attributes == null || !attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = attributes.size();
+        Matcher contentAddressed = CONTENT_ADDRESSED.matcher(relativePath);
+        String etag;
+        if (contentAddressed.matches()) {
+            etag = "\"" + contentAddressed.group(1) + "-" + contentAddressed.group(2) + "\"";
+            response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE);
+        } else {
+            etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+            response.setHeader(HttpHeaders.CACHE_CONTROL, LEGACY_CACHE);
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, attributes.lastModifiedTime().toMillis());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matchesIfNoneMatch(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long end = length; // exclusive
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangeApplies(request.getHeader(HttpHeaders.IF_RANGE), etag)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+        response.setContentLengthLong(end - start);
+
+        if ("HEAD".equals(request.getMethod()) || end == start) {
+            return;
+        }
+        if (end - start >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // Tomcat tự gửi file bằng sendfile sau khi handler trả về, dữ liệu không đi qua heap
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end);
+            return;
+        }
+        transfer(file, start, end, response.getOutputStream());
+    }
+
+    // Chặn path traversal và thư mục ẩn (ví dụ .staging của ProductImageStorage)
+    private Path resolve(String relativePath) {
+        if (relativePath == null || relativePath.isEmpty()) {
+            return null;
+        }
+        for (String segment : relativePath.split("/")) {
+            if (segment.isEmpty() || segment.startsWith(".")) {
+                return null;
+            }
+        }
+        Path file = rootLocation.resolve(relativePath).normalize();
+        return file.startsWith(rootLocation) ? file : null;
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean matchesIfNoneMatch(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2); // so sánh yếu theo RFC 9110 cho If-None-Match
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-Range chỉ chấp nhận ETag mạnh trùng khớp; dạng ngày tháng thì bỏ qua Range cho an toàn
+    private static boolean rangeApplies(String ifRange, String etag) {
+        return ifRange == null || ifRange.trim().equals(etag);
+    }
+
+    /**
+     * @return {start, endExclusive}; mảng rỗng nếu Range không dùng được (nhiều đoạn / sai cú pháp -> trả cả file);
+     * null nếu Range hợp lệ nhưng nằm ngoài file (416)
+     */
+    private static long[] parseRange(String header, long length) {
+        Matcher matcher = SINGLE_RANGE.matcher(header.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return new long[0];
+        }
+        try {
+            if (matcher.group(1).isEmpty()) {
+                long suffix = Long.parseLong(matcher.group(2));
+                if (suffix == 0) {
+                    return null;
+                }
+                return new long[]{Math.max(0, length - suffix), length};
+            }
+            long start = Long.parseLong(matcher.group(1));
+            long last = matcher.group(2).isEmpty() ? length - 1 : Long.parseLong(matcher.group(2));
+            if (start >= length || last < start) {
+                return null;
+            }
+            return new long[]{start, Math.min(last, length - 1) + 1};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static void transfer(Path file, long start, long end, OutputStream output) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = start;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+}
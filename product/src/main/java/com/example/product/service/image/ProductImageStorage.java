@@ -0,0 +1,388 @@
+package com.example.product.service.image;
+
+import com.example.product.exception.AppException;
+import com.example.product.exception.ErrorCode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Lưu ảnh sản phẩm theo nội dung (SHA-256): cùng một file upload nhiều lần chỉ tốn một bản trên đĩa.
+ * Bố cục: {@code <hash[0..2]>/<hash>/original.<ext>} cùng các ảnh dẫn xuất {@link ImageVariant} (JPEG).
+ * Việc giải mã / thu nhỏ ảnh chạy trên pool worker có giới hạn để upload đồng loạt không chiếm hết CPU.
+ * Lưu và xoá cùng một hash được tuần tự hoá qua khoá theo hash, nên thư mục vừa được dùng lại không bị xoá mất.
+ */
+@Slf4j
+@Component
+public class ProductImageStorage {
+
+    private static final String ORIGINAL_STEM = "original";
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private final Path rootLocation;
+    private final long maxPixels;
+    private final ThreadPoolExecutor workers;
+    // Khoá theo từng hash (giữ yếu: hash không còn ai dùng thì khoá được GC thu hồi)
+    private final Cache<String, Object> hashLocks = Caffeine.newBuilder().weakValues().build();
+    // Hash vừa được trả cho nơi gọi: sản phẩm dùng ảnh có thể chưa kịp lưu xuống DB, chưa được xoá
+    private final Cache<String, Boolean> recentlyStored;
+    // Ảnh dẫn xuất có trong từng thư mục hash (không đổi sau khi thư mục được đưa vào chỗ), tránh stat file mỗi lần render
+    private final Cache<String, Set<ImageVariant>> variantsByHash;
+
+    public ProductImageStorage(
+            @Value("${app.upload.dir}") String uploadDir,
+            @Value("${product-image.workers:2}") int workerCount,
+            @Value("${product-image.queue-capacity:64}") int queueCapacity,
+            @Value("${product-image.max-pixels:40000000}") long maxPixels,
+            @Value("${product-image.reuse-grace-seconds:600}") long reuseGraceSeconds) {
+        this.rootLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.maxPixels = maxPixels;
+        this.recentlyStored = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(reuseGraceSeconds))
+                .build();
+        this.variantsByHash = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .build();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "product-image-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Lưu file upload (và sinh các ảnh dẫn xuất nếu đọc được ảnh).
+     *
+     * @return định danh tương đối để lưu vào products.image_url, ví dụ {@code ab/ab12.../original.jpg}
+     */
+    public String store(MultipartFile file) {
+        byte[] content;
+        try {
+            content = file.getBytes();
+        } catch (IOException e) {
+            throw new AppException(ErrorCode.FILE_STORAGE_ERROR);
+        }
+        return store(content, file.getOriginalFilename());
+    }
+
+    /** Như {@link #store(MultipartFile)} nhưng với nội dung đã đọc sẵn (ví dụ ảnh trong file zip nhập hàng loạt). */
+    public String store(byte[] content, String originalFilename) {
+        String hash = sha256(content);
+        synchronized (lockFor(hash)) {
+            String identifier = storeLocked(content, originalFilename, hash);
+            recentlyStored.put(hash, Boolean.TRUE);
+            return identifier;
+        }
+    }
+
+    private String storeLocked(byte[] content, String originalFilename, String hash) {
+        String prefix = hash.substring(0, 2) + "/" + hash + "/";
+        Path directory = rootLocation.resolve(hash.substring(0, 2)).resolve(hash);
+
+        String existing = existingOriginal(directory);
+        if (existing != null) {
+            log.info("Ảnh {} đã tồn tại, dùng lại bản đã lưu", hash);
+            return prefix + existing;
+        }
+
+        String extension = extensionOf(originalFilename);
+
+        Path staging = rootLocation.resolve(".staging").resolve(UUID.randomUUID().toString());
+        try {
+            Files.createDirectories(staging);
+            Files.write(staging.resolve(ORIGINAL_STEM + extension), content);
+            renderVariants(content, staging, hash);
+            Files.createDirectories(directory.getParent());
+            moveIntoPlace(staging, directory);
+        } catch (IOException e) {
+            log.error("Lưu ảnh {} thất bại: {}", hash, e.getMessage());
+            throw new AppException(ErrorCode.FILE_STORAGE_ERROR);
+        } finally {
+            deleteQuietly(staging);
+        }
+        variantsByHash.put(hash, variantsIn(directory));
+        // Instance khác dùng chung thư mục upload có thể đã lưu cùng nội dung (với phần mở rộng khác) ngay trước đó
+        String stored = existingOriginal(directory);
+        String identifier = prefix + (stored != null ? stored : ORIGINAL_STEM + extension);
+        log.info("Đã lưu ảnh {} ({} bytes)", identifier, content.length);
+        return identifier;
+    }
+
+    /** Ảnh lưu theo nội dung thì có ảnh dẫn xuất; ảnh cũ (tên UUID) thì không. */
+    public boolean isContentAddressed(String identifier) {
+        return identifier != null && identifier.matches("[0-9a-f]{2}/[0-9a-f]{64}/" + ORIGINAL_STEM + "(\\.[A-Za-z0-9]+)?");
+    }
+
+    /** Định danh của ảnh dẫn xuất nếu đã được sinh ra, ngược lại null (ví dụ file không phải ảnh). */
+    public String variantIdentifier(String identifier, ImageVariant variant) {
+        if (!isContentAddressed(identifier)) {
+            return null;
+        }
+        String directory = identifier.substring(0, identifier.lastIndexOf('/') + 1);
+        String hash = directory.substring(3, directory.length() - 1);
+        Set<ImageVariant> variants = variantsByHash.get(hash, key -> variantsIn(rootLocation.resolve(directory)));
+        return variants.contains(variant) ? directory + variant.fileName() : null;
+    }
+
+    /**
+     * Xoá ảnh (cả thư mục ảnh dẫn xuất) nếu {@code stillInUse} trả false. Điều kiện được kiểm tra dưới khoá của hash,
+     * tuần tự với {@link #store(byte[], String)}; ảnh vừa được lưu / dùng lại gần đây thì giữ lại
+     * vì sản phẩm trỏ tới nó có thể chưa được lưu xuống DB.
+     */
+    public void delete(String identifier, BooleanSupplier stillInUse) {
+        if (identifier == null || identifier.isBlank()) {
+            return;
+        }
+        if (!isContentAddressed(identifier)) {
+            if (!stillInUse.getAsBoolean()) {
+                deleteFile(identifier, rootLocation.resolve(identifier).normalize(), false);
+            }
+            return;
+        }
+        String hash = identifier.substring(3, identifier.lastIndexOf('/'));
+        synchronized (lockFor(hash)) {
+            if (recentlyStored.getIfPresent(hash) != null) {
+                log.info("Ảnh {} vừa được lưu/dùng lại, không xóa", identifier);
+                return;
+            }
+            if (stillInUse.getAsBoolean()) {
+                log.info("Ảnh {} vẫn được sản phẩm khác sử dụng, không xóa", identifier);
+                return;
+            }
+            variantsByHash.invalidate(hash);
+            deleteFile(identifier, rootLocation.resolve(identifier).getParent(), true);
+        }
+    }
+
+    private void deleteFile(String identifier, Path target, boolean recursive) {
+        try {
+            if (recursive) {
+                FileSystemUtils.deleteRecursively(target);
+            } else {
+                Files.deleteIfExists(target);
+            }
+            log.info("Đã xóa file đã lưu: {}", identifier);
+        } catch (IOException e) {
+            log.error("Xóa file {} thất bại: {}", identifier, e.getMessage());
+        }
+    }
+
+    private Object lockFor(String hash) {
+        return hashLocks.get(hash, key -> new Object());
+    }
+
+    private static Set<ImageVariant> variantsIn(Path directory) {
+        Set<ImageVariant> variants = EnumSet.noneOf(ImageVariant.class);
+        for (ImageVariant variant : ImageVariant.values()) {
+            if (Files.exists(directory.resolve(variant.fileName()))) {
+                variants.add(variant);
+            }
+        }
+        return variants;
+    }
+
+    private void renderVariants(byte[] content, Path targetDirectory, String hash) throws IOException {
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            // Giải mã bản gốc (nặng nhất) cũng chạy trên worker, thread request chỉ chờ
+            Future<BufferedImage> decoding = workers.submit(() -> decode(content));
+            tasks.add(decoding);
+            BufferedImage source = decoding.get();
+            if (source == null) {
+                log.warn("Không đọc được ảnh {}, chỉ lưu file gốc", hash);
+                return;
+            }
+            for (ImageVariant variant : ImageVariant.values()) {
+                tasks.add(workers.submit(() -> {
+                    writeJpeg(resize(source, variant.maxDimension()), targetDirectory.resolve(variant.fileName()));
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (RejectedExecutionException e) {
+            tasks.forEach(task -> task.cancel(true));
+            log.warn("Hàng đợi xử lý ảnh đã đầy, từ chối upload {}", hash);
+            throw new AppException(ErrorCode.IMAGE_PROCESSING_BUSY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tasks.forEach(task -> task.cancel(true));
+            throw new IOException("Bị ngắt khi xử lý ảnh " + hash, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Sinh ảnh dẫn xuất thất bại cho " + hash, e.getCause());
+        }
+    }
+
+    // Đọc kích thước trước khi giải mã để chặn ảnh "bom" (kích thước khai báo khổng lồ)
+    private BufferedImage decode(byte[] content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("Ảnh quá lớn ({} pixel), bỏ qua sinh ảnh dẫn xuất", pixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Thu nhỏ nhiều bước (mỗi bước tối đa 1/2) cho chất lượng tốt hơn một lần bilinear
+    private static BufferedImage resize(BufferedImage source, int maxDimension) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            // JPEG không có kênh alpha -> vẽ lên nền trắng
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Hai upload cùng nội dung chạy song song: bản đến sau thấy thư mục đã có và bỏ bản của mình
+    private static void moveIntoPlace(Path staging, Path directory) throws IOException {
+        try {
+            Files.move(staging, directory, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            log.info("Ảnh {} vừa được lưu bởi request khác", directory.getFileName());
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(staging, directory);
+        } catch (IOException e) {
+            // Linux: rename sang thư mục đích không rỗng báo DirectoryNotEmptyException
+            if (!Files.isDirectory(directory)) {
+                throw e;
+            }
+        }
+    }
+
+    private static String existingOriginal(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.equals(ORIGINAL_STEM) || name.startsWith(ORIGINAL_STEM + "."))
+                    .findFirst()
+                    .orElse(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String extensionOf(String originalFilename) {
+        String cleaned = StringUtils.cleanPath(originalFilename == null ? "" : originalFilename);
+        int dot = cleaned.lastIndexOf('.');
+        String extension = dot > 0 ? cleaned.substring(dot).toLowerCase(Locale.ROOT) : "";
+        return extension.matches("\\.[a-z0-9]{1,5}") ? extension : "";
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            FileSystemUtils.deleteRecursively(path);
+        } catch (IOException e) {
+            log.warn("Không xoá được thư mục tạm {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -4,98 +4,87 @@ import com.example.product.dto.response.ProductResponse;
 import com.example.product.entity.Product;
 import com.example.product.repository.ProductRepository;
 import com.example.product.service.AiRecommendationService;
-import lombok.RequiredArgsConstructor;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import com.example.product.service.recommendation.RecommendationEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
 
 @Service
-@RequiredArgsConstructor
+@Slf4j
 @Transactional(readOnly = true)
 public class AiRecommendationServiceImpl implements AiRecommendationService {
 
-    // URL Python FastAPI recommender
-    // Ví dụ: http://localhost:8000
-    private static final String RECOMMENDER_BASE_URL = "http://host.docker.internal:8000";
+    // Lấy dư id vì một số sản phẩm có thể đã ngừng bán kể từ lần dựng mô hình
+    private static final int OVERFETCH = 2;
 
     private final ProductRepository productRepository;
-
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RecommendationEngine recommendationEngine;
+    private final int guestListSize;
+    // Danh sách cho khách dùng chung, làm mới nền; làm mới lỗi thì giữ danh sách cũ
+    private volatile List<ProductResponse> guestList = List.of();
+
+    public AiRecommendationServiceImpl(ProductRepository productRepository,
+                                       RecommendationEngine recommendationEngine,
+                                       @Value("${recommendation.guest-list-size:48}") int guestListSize) {
+        this.productRepository = productRepository;
+        this.recommendationEngine = recommendationEngine;
+        this.guestListSize = guestListSize;
+    }
 
     @Override
     public List<ProductResponse> getRecommendationsForUser(String username, int limit) {
-        List<Long> productIds = callRecommenderForUser(username, limit);
-        System.out.println("AI /recommend ids = " + productIds);
+        List<Long> productIds = new ArrayList<>(recommendationEngine.recommendForUser(username, limit * OVERFETCH));
+        log.debug("Gợi ý cho user {}: {} sản phẩm từ mô hình", username, productIds.size());
 
-        if (productIds == null || productIds.isEmpty()) {
-            productIds = callRecommenderForGuest(limit);
-            System.out.println("AI /guest ids = " + productIds);
+        // Chưa đủ (user mới / ít tương tác) -> bù bằng sản phẩm phổ biến
+        if (productIds.size() < limit * OVERFETCH) {
+            productIds.addAll(recommendationEngine.popular(limit * OVERFETCH - productIds.size(), new HashSet<>(productIds)));
         }
-
-        List<ProductResponse> rs = fetchProductsKeepOrder(productIds);
-        System.out.println("Returned products size = " + rs.size());
-        return rs;
+        return fetchProductsKeepOrder(productIds, limit);
     }
 
-
     @Override
     public List<ProductResponse> getRecommendationsForGuest(int limit) {
-        List<Long> productIds = callRecommenderForGuest(limit);
-        return fetchProductsKeepOrder(productIds);
+        List<ProductResponse> shared = guestList;
+        if (limit <= shared.size()) {
+            return shared.subList(0, limit);
+        }
+        return fetchProductsKeepOrder(recommendationEngine.popular(limit * OVERFETCH), limit);
     }
 
-    // =========================
-    // CALL PYTHON API
-    // =========================
-    private List<Long> callRecommenderForUser(String username, int limit) {
+    @Scheduled(fixedDelayString = "${recommendation.guest-refresh-interval-ms:60000}")
+    public void refreshGuestList() {
         try {
-            String url = RECOMMENDER_BASE_URL + "/recommend?username=" + username + "&n=" + limit;
-
-            ResponseEntity<List<Long>> res = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<List<Long>>() {}
-            );
-
-            return res.getBody() != null ? res.getBody() : List.of();
-        } catch (Exception e) {
-            return List.of();
+            guestList = List.copyOf(fetchProductsKeepOrder(
+                    recommendationEngine.popular(guestListSize * OVERFETCH), guestListSize));
+        } catch (DataAccessException e) {
+            log.warn("Làm mới danh sách gợi ý cho khách thất bại, giữ danh sách cũ ({} sản phẩm): {}",
+                    guestList.size(), e.getMessage());
         }
     }
 
-    private List<Long> callRecommenderForGuest(int limit) {
-        try {
-            String url = RECOMMENDER_BASE_URL + "/guest?n=" + limit;
-
-            ResponseEntity<List<Long>> res = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<List<Long>>() {}
-            );
-
-            return res.getBody() != null ? res.getBody() : List.of();
-        } catch (Exception e) {
-            return List.of();
+    @Override
+    public List<ProductResponse> getSimilarProducts(Long productId, int limit) {
+        List<Long> ids = new ArrayList<>(recommendationEngine.similar(productId, limit * OVERFETCH));
+        if (ids.isEmpty()) {
+            // Sản phẩm mới / chưa có ai xem cùng -> sản phẩm phổ biến
+            ids.addAll(recommendationEngine.popular(limit * OVERFETCH, Set.of(productId)));
         }
+        return fetchProductsKeepOrder(ids, limit);
     }
 
     // =========================
     // DB FETCH + KEEP ORDER
     // =========================
-    private List<ProductResponse> fetchProductsKeepOrder(List<Long> productIds) {
+    private List<ProductResponse> fetchProductsKeepOrder(List<Long> productIds, int limit) {
         if (productIds == null || productIds.isEmpty()) return List.of();
 
-        System.out.println("AI ids = " + productIds);
         List<Product> products = productRepository.findAllById(productIds);
-        System.out.println("Found products = " + products.size());
-
 
         Map<Long, Product> map = new HashMap<>();
         for (Product p : products) {
@@ -105,51 +94,22 @@ public class AiRecommendationServiceImpl implements AiRecommendationService {
         List<ProductResponse> result = new ArrayList<>();
         for (Long id : productIds) {
             Product p = map.get(id);
-            if (p != null) {
+            if (p != null && p.isActive() && !p.isDeleted()) {
                 result.add(toProductResponse(p));
+                if (result.size() == limit) {
+                    break;
+                }
             }
         }
         return result;
-        
     }
 
-    // =========================
-    // MAPPING (KHÔNG DÙNG builder)
-    // =========================
     private ProductResponse toProductResponse(Product p) {
-        // ⚠️ Nếu ProductResponse của bạn là record hoặc constructor khác,
-        // bạn chỉnh lại đúng fields đang có.
         ProductResponse dto = new ProductResponse();
-
-        // dưới đây là ví dụ phổ biến, bạn sửa theo class thực tế:
         dto.setId(p.getId());
         dto.setName(p.getName());
         dto.setPrice(p.getPrice());
         dto.setImageUrl(p.getImageUrl());
-
         return dto;
     }
-
-    @Override
-    public List<ProductResponse> getSimilarProducts(Long productId, int limit) {
-        List<Long> ids = callRecommenderSimilar(productId, limit);
-        return fetchProductsKeepOrder(ids);
-    }
-
-    private List<Long> callRecommenderSimilar(Long productId, int limit) {
-        try {
-            String url = RECOMMENDER_BASE_URL + "/similar?product_id=" + productId + "&n=" + limit;
-
-            ResponseEntity<List<Long>> res = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<List<Long>>() {}
-            );
-
-            return res.getBody() != null ? res.getBody() : List.of();
-        } catch (Exception e) {
-            return List.of();
-        }
-    }
 }
@@ -0,0 +1,255 @@
+package com.example.product.service.impl;
+
+import com.example.product.entity.FlashSaleFlushMark;
+import com.example.product.entity.Product;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.exception.AppException;
+import com.example.product.exception.ErrorCode;
+import com.example.product.repository.FlashSaleFlushMarkRepository;
+import com.example.product.repository.ProductRepository;
+import com.example.product.service.FlashSaleInventoryService;
+import com.example.product.service.inventory.FlashSaleJournal;
+import com.example.product.service.inventory.StripedStockCounter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+@Slf4j
+public class FlashSaleInventoryServiceImpl implements FlashSaleInventoryService {
+
+    private static final int FLUSH_MARK_ID = 1;
+
+    private final ProductRepository productRepository;
+    private final FlashSaleFlushMarkRepository flushMarkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FlashSaleJournal journal;
+    private final int stripes;
+    private final Map<Long, HotSku> hotSkus = new ConcurrentHashMap<>();
+
+    public FlashSaleInventoryServiceImpl(
+            ProductRepository productRepository,
+            FlashSaleFlushMarkRepository flushMarkRepository,
+            PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${flash-sale.journal-path}") String journalPath,
+            @Value("${flash-sale.journal-compact-threshold-bytes:1048576}") long compactThresholdBytes,
+            @Value("${flash-sale.stripes:16}") int stripes) {
+        this.productRepository = productRepository;
+        this.flushMarkRepository = flushMarkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        // Flush chạy transaction riêng, không dính vào transaction của request đang gọi
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.journal = new FlashSaleJournal(Paths.get(journalPath), compactThresholdBytes);
+        this.stripes = stripes;
+    }
+
+    // inFlight (LongAdder, không tranh chấp) + closed cho phép disable chờ các lượt giữ hàng đang chạy
+    // mà không phải khoá trên đường nóng
+    private static final class HotSku {
+        final StripedStockCounter counter;
+        final LongAdder inFlight = new LongAdder();
+        volatile boolean closed;
+
+        HotSku(StripedStockCounter counter) {
+            this.counter = counter;
+        }
+    }
+
+    /**
+     * Đối chiếu journal với mốc đã flush trong DB trước khi nhận request: phần đã trừ kho
+     * nhưng chưa kịp ghi dòng F (crash ngay sau commit) không được trừ lại.
+     */
+    @PostConstruct
+    public void skipAlreadyFlushed() {
+        long dbFlushedSeq = flushMarkRepository.findById(FLUSH_MARK_ID)
+                .map(FlashSaleFlushMark::getFlushedSeq)
+                .orElse(0L);
+        journal.skipFlushedUpTo(dbFlushedSeq);
+    }
+
+    /**
+     * Khôi phục sau khi khởi động: ghi phần journal chưa flush xuống DB trước,
+     * sau đó mới nạp bộ đếm từ stock_quantity của các sản phẩm đang flash sale.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void recover() {
+        Map<Long, Long> pending = journal.unflushedSnapshot().quantities();
+        if (!pending.isEmpty()) {
+            log.warn("Khôi phục flash sale: {} sản phẩm còn lượng bán chưa flush trong journal {}",
+                    pending.size(), journal.getPath());
+        }
+        flush();
+        for (Product product : productRepository.findByIsFlashSaleTrueAndIsDeletedFalse()) {
+            hotSkus.put(product.getId(), new HotSku(new StripedStockCounter(product.getStockQuantity(), stripes)));
+            log.info("Đã nạp sản phẩm flash sale {} với tồn kho {}", product.getId(), product.getStockQuantity());
+        }
+    }
+
+    @Override
+    public boolean isManaged(Long productId) {
+        HotSku sku = hotSkus.get(productId);
+        return sku != null && !sku.closed;
+    }
+
+    @Override
+    public Admission tryReserve(Long productId, int quantity) {
+        HotSku sku = hotSkus.get(productId);
+        if (sku == null) {
+            return Admission.NOT_MANAGED;
+        }
+        sku.inFlight.increment();
+        try {
+            if (sku.closed) {
+                return Admission.NOT_MANAGED;
+            }
+            if (!sku.counter.tryReserve(quantity)) {
+                return Admission.SOLD_OUT;
+            }
+            try {
+                journal.append(FlashSaleJournal.Type.R, productId, quantity);
+            } catch (RuntimeException e) {
+                // Không ghi được journal thì không nhận đơn
+                sku.counter.restock(quantity);
+                throw e;
+            }
+            return Admission.ADMITTED;
+        } finally {
+            sku.inFlight.decrement();
+        }
+    }
+
+    @Override
+    public void release(Long productId, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        HotSku sku = hotSkus.get(productId);
+        if (sku == null) {
+            journal.append(FlashSaleJournal.Type.X, productId, quantity);
+            return;
+        }
+        sku.inFlight.increment();
+        try {
+            journal.append(FlashSaleJournal.Type.X, productId, quantity);
+            if (!sku.closed) {
+                sku.counter.restock(quantity);
+            }
+        } finally {
+            sku.inFlight.decrement();
+        }
+    }
+
+    @Override
+    public OptionalLong available(Long productId) {
+        HotSku sku = hotSkus.get(productId);
+        return sku == null || sku.closed ? OptionalLong.empty() : OptionalLong.of(sku.counter.available());
+    }
+
+    @Override
+    public synchronized void enable(Long productId, String storeId) {
+        if (isManaged(productId)) {
+            return;
+        }
+        long stock = transactionTemplate.execute(status -> {
+            // Khoá dòng: các UPDATE trừ kho trên DB phải chờ, sau commit chúng bị loại bởi điều kiện is_flash_sale
+            Product product = productRepository.findByIdForUpdate(productId)
+                    .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND));
+            checkOwner(product, storeId);
+            productRepository.updateFlashSale(productId, true);
+            // Phần journal chưa flush (nếu có) sẽ còn được trừ/cộng vào DB sau
+            return product.getStockQuantity() - journal.unflushed(productId);
+        });
+        hotSkus.put(productId, new HotSku(new StripedStockCounter(stock, stripes)));
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.Type.STOCK_CHANGED));
+        log.info("Đã bật flash sale cho sản phẩm {} bởi cửa hàng {}, tồn kho nạp vào bộ nhớ: {}",
+                productId, storeId, stock);
+    }
+
+    @Override
+    public synchronized void disable(Long productId, String storeId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND));
+        checkOwner(product, storeId);
+
+        HotSku sku = hotSkus.get(productId);
+        if (sku != null) {
+            sku.closed = true;
+            while (sku.inFlight.sum() != 0) {
+                Thread.onSpinWait();
+            }
+        }
+        try {
+            flush();
+            transactionTemplate.executeWithoutResult(status -> productRepository.updateFlashSale(productId, false));
+        } catch (RuntimeException e) {
+            if (sku != null) {
+                sku.closed = false;
+            }
+            throw e;
+        }
+        if (sku != null) {
+            hotSkus.remove(productId, sku);
+        }
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.Type.STOCK_CHANGED));
+        log.info("Đã tắt flash sale cho sản phẩm {} bởi cửa hàng {}", productId, storeId);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${flash-sale.flush-interval-ms:200}")
+    public synchronized void flush() {
+        FlashSaleJournal.Snapshot pending = journal.unflushedSnapshot();
+        if (pending.quantities().isEmpty()) {
+            return;
+        }
+        // Cả lô cùng mốc seq trong một transaction; lỗi thì journal giữ nguyên, lần sau flush lại.
+        // Crash sau commit mà chưa ghi dòng F thì mốc trong DB cho biết lô này đã xuống DB
+        transactionTemplate.executeWithoutResult(status -> {
+            pending.quantities().forEach((productId, sold) ->
+                    productRepository.increaseStock(productId, Math.toIntExact(-sold)));
+            flushMarkRepository.advance(FLUSH_MARK_ID, pending.seq());
+        });
+        journal.markFlushed(pending);
+        journal.sync();
+        log.debug("Đã flush tồn kho flash sale cho {} sản phẩm (seq {})", pending.quantities().size(), pending.seq());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Flush tồn kho flash sale khi tắt service thất bại, sẽ khôi phục từ journal", e);
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.error("Không thể đóng journal flash sale", e);
+        }
+    }
+
+    private void checkOwner(Product product, String storeId) {
+        if (storeId == null || !product.getStoreId().equals(storeId)) {
+            log.error("Cửa hàng {} không có quyền thay đổi flash sale của sản phẩm {}", storeId, product.getId());
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+    }
+}
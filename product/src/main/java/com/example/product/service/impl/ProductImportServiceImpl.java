@@ -0,0 +1,556 @@
+package com.example.product.service.impl;
+
+import com.example.product.dto.response.ProductImportJobResponse;
+import com.example.product.entity.Category;
+import com.example.product.event.ProductsImportedEvent;
+import com.example.product.exception.AppException;
+import com.example.product.exception.ErrorCode;
+import com.example.product.repository.CategoryRepository;
+import com.example.product.repository.ProductRepository;
+import com.example.product.service.ProductImportService;
+import com.example.product.service.image.ProductImageStorage;
+import com.example.product.service.importer.CsvRecordReader;
+import com.example.product.service.importer.ProductImportJob;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Nhập sản phẩm hàng loạt cho người bán.
+ * File upload được chép ra thư mục tạm rồi đọc tuần tự từng dòng trên worker nền (không nạp cả file vào heap);
+ * danh mục được tra trong map nạp một lần, sản phẩm được INSERT theo lô bằng JDBC. Lô lỗi thì ghi lại từng dòng
+ * để chỉ ra đúng dòng hỏng. Trạng thái và lỗi theo dòng được giữ trong bộ nhớ của instance nhận file.
+ */
+@Service
+@Slf4j
+public class ProductImportServiceImpl implements ProductImportService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO products (sku, name, description, category_id, store_id, price, stock_quantity, image_url, "
+                    + "is_active, is_deleted, is_flash_sale, created_at, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, TRUE, FALSE, FALSE, ?, ?)";
+    private static final int MAX_SKU_LENGTH = 100;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("9999999999999.99");
+    private static final int IMAGE_BUSY_RETRIES = 5;
+
+    private enum Format { CSV, NDJSON }
+
+    // Một dòng hợp lệ đang chờ ghi theo lô
+    private record PendingRow(long row, String sku, String name, String description, long categoryId,
+                              BigDecimal price, int stockQuantity, String imageName) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final ProductImageStorage imageStorage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final Path workDir;
+    private final int batchSize;
+    private final int maxReportedErrors;
+    private final int maxRecordChars;
+    private final int maxImageBytes;
+    private final long retentionMinutes;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, ProductImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ProductImportServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            CategoryRepository categoryRepository,
+            ProductRepository productRepository,
+            ProductImageStorage imageStorage,
+            ApplicationEventPublisher eventPublisher,
+            ObjectMapper objectMapper,
+            @Value("${product-import.work-dir:${java.io.tmpdir}/product-import}") String workDir,
+            @Value("${product-import.batch-size:500}") int batchSize,
+            @Value("${product-import.max-reported-errors:1000}") int maxReportedErrors,
+            @Value("${product-import.max-record-chars:65536}") int maxRecordChars,
+            @Value("${product-import.max-image-bytes:10485760}") int maxImageBytes,
+            @Value("${product-import.retention-minutes:1440}") long retentionMinutes,
+            @Value("${product-import.workers:1}") int workerCount,
+            @Value("${product-import.queue-capacity:4}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.imageStorage = imageStorage;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.workDir = Paths.get(workDir).toAbsolutePath().normalize();
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+        this.maxRecordChars = maxRecordChars;
+        this.maxImageBytes = maxImageBytes;
+        this.retentionMinutes = retentionMinutes;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "product-import-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Override
+    public ProductImportJobResponse submit(String storeId, MultipartFile file, MultipartFile images, String format) {
+        if (storeId == null || storeId.isBlank()) {
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+        if (file == null || file.isEmpty()) {
+            throw new AppException(ErrorCode.INVALID_IMPORT_FILE);
+        }
+        Format detected = detectFormat(format, file);
+        ProductImportJob job = new ProductImportJob(UUID.randomUUID().toString(), storeId, detected.name(), maxReportedErrors);
+
+        // File multipart của request bị xoá khi request kết thúc -> chép ra file riêng cho worker
+        Path data = workDir.resolve(job.getId() + ".data");
+        Path zip = images != null && !images.isEmpty() ? workDir.resolve(job.getId() + ".zip") : null;
+        try {
+            Files.createDirectories(workDir);
+            file.transferTo(data);
+            if (zip != null) {
+                images.transferTo(zip);
+            }
+        } catch (IOException e) {
+            log.error("Không thể lưu file nhập sản phẩm của cửa hàng {}: {}", storeId, e.getMessage());
+            deleteQuietly(data, zip);
+            throw new AppException(ErrorCode.FILE_STORAGE_ERROR);
+        }
+
+        jobs.put(job.getId(), job);
+        try {
+            workers.execute(() -> run(job, detected, data, zip));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            deleteQuietly(data, zip);
+            log.warn("Hàng đợi nhập sản phẩm đã đầy, từ chối file của cửa hàng {}", storeId);
+            throw new AppException(ErrorCode.IMPORT_BUSY);
+        }
+        log.info("Đã nhận tác vụ nhập sản phẩm {} ({}, {} bytes, zip ảnh: {}) của cửa hàng {}",
+                job.getId(), detected, file.getSize(), zip != null, storeId);
+        return job.toResponse();
+    }
+
+    @Override
+    public ProductImportJobResponse getJob(String jobId, String storeId) {
+        ProductImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new AppException(ErrorCode.IMPORT_JOB_NOT_FOUND);
+        }
+        if (!job.getStoreId().equals(storeId)) {
+            log.error("Cửa hàng {} không có quyền xem tác vụ nhập {}", storeId, jobId);
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+        return job.toResponse();
+    }
+
+    // Dọn các tác vụ đã xong quá thời gian giữ lại
+    @Scheduled(fixedDelayString = "${product-import.cleanup-interval-ms:600000}")
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private void run(ProductImportJob job, Format format, Path data, Path zip) {
+        job.start();
+        long started = System.currentTimeMillis();
+        try (ZipFile zipFile = zip != null ? new ZipFile(zip.toFile()) : null) {
+            Importer importer = new Importer(job, zipFile);
+            if (format == Format.CSV) {
+                readCsv(data, importer);
+            } else {
+                readNdjson(data, importer);
+            }
+            importer.flush();
+            job.finish(ProductImportJob.Status.COMPLETED, null);
+            log.info("Tác vụ nhập {} hoàn tất: {} dòng, {} thành công, {} lỗi trong {} ms", job.getId(),
+                    job.getProcessedRows().get(), job.getImportedRows().get(), job.getFailedRows().get(),
+                    System.currentTimeMillis() - started);
+        } catch (IOException | RuntimeException e) {
+            // Các lô đã ghi trước đó được giữ nguyên; trạng thái báo rõ dừng ở đâu
+            log.error("Tác vụ nhập {} thất bại sau {} dòng", job.getId(), job.getProcessedRows().get(), e);
+            job.finish(ProductImportJob.Status.FAILED, "Dừng nhập sau " + job.getProcessedRows().get()
+                    + " dòng: " + e.getMessage());
+        } finally {
+            deleteQuietly(data, zip);
+        }
+    }
+
+    private void readCsv(Path data, Importer importer) throws IOException {
+        try (CsvRecordReader reader = new CsvRecordReader(Files.newBufferedReader(data, StandardCharsets.UTF_8), maxRecordChars)) {
+            List<String> header = reader.next();
+            if (header == null) {
+                throw new IOException("File CSV rỗng");
+            }
+            List<String> columns = header.stream().map(ProductImportServiceImpl::normalizeKey).toList();
+            long row = 1;
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                row++;
+                if (record.size() > columns.size()) {
+                    importer.reject(row, null, "Dòng có " + record.size() + " cột, nhiều hơn dòng tiêu đề (" + columns.size() + ")");
+                    continue;
+                }
+                Map<String, String> fields = new HashMap<>();
+                for (int i = 0; i < record.size(); i++) {
+                    fields.put(columns.get(i), record.get(i));
+                }
+                importer.accept(row, fields);
+            }
+        }
+    }
+
+    private void readNdjson(Path data, Importer importer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(data, StandardCharsets.UTF_8)) {
+            long row = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                row++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (line.length() > maxRecordChars) {
+                    importer.reject(row, null, "Dòng dài quá " + maxRecordChars + " ký tự");
+                    continue;
+                }
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (IOException e) {
+                    importer.reject(row, null, "JSON không hợp lệ");
+                    continue;
+                }
+                if (node == null || !node.isObject()) {
+                    importer.reject(row, null, "Mỗi dòng phải là một JSON object");
+                    continue;
+                }
+                Map<String, String> fields = new HashMap<>();
+                Iterator<Map.Entry<String, JsonNode>> iterator = node.fields();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, JsonNode> field = iterator.next();
+                    JsonNode value = field.getValue();
+                    if (!value.isNull()) {
+                        fields.put(normalizeKey(field.getKey()), value.isValueNode() ? value.asText() : value.toString());
+                    }
+                }
+                importer.accept(row, fields);
+            }
+        }
+    }
+
+    /** Trạng thái của một lượt nhập trên worker: map danh mục, SKU đã gặp, lô đang gom và ảnh trong zip. */
+    private final class Importer {
+
+        private final ProductImportJob job;
+        private final ZipFile zipFile;
+        private final Set<Long> categoryIds = new HashSet<>();
+        private final Map<String, Long> categoriesByName = new HashMap<>();
+        private final Set<String> ambiguousCategoryNames = new HashSet<>();
+        private final Map<String, ZipEntry> zipEntries = new HashMap<>();
+        // Cùng một ảnh dùng cho nhiều dòng chỉ xử lý một lần
+        private final Map<String, String> storedImages = new HashMap<>();
+        private final Set<String> seenSkus = new HashSet<>();
+        private final List<PendingRow> batch = new ArrayList<>();
+        private final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        Importer(ProductImportJob job, ZipFile zipFile) {
+            this.job = job;
+            this.zipFile = zipFile;
+            for (Category category : categoryRepository.findAll()) {
+                categoryIds.add(category.getId());
+                if (category.getName() != null) {
+                    String key = category.getName().trim().toLowerCase(Locale.ROOT);
+                    if (categoriesByName.putIfAbsent(key, category.getId()) != null) {
+                        ambiguousCategoryNames.add(key);
+                    }
+                }
+            }
+            if (zipFile != null) {
+                zipFile.stream()
+                        .filter(entry -> !entry.isDirectory() && !entry.getName().startsWith("__MACOSX/"))
+                        .forEach(entry -> {
+                            String name = entry.getName().toLowerCase(Locale.ROOT);
+                            zipEntries.put(name, entry);
+                            zipEntries.putIfAbsent(name.substring(name.lastIndexOf('/') + 1), entry);
+                        });
+            }
+        }
+
+        void reject(long row, String sku, String reason) {
+            job.rowProcessed();
+            job.rowFailed(row, sku, reason);
+        }
+
+        void accept(long row, Map<String, String> fields) {
+            String sku = trimToNull(first(fields, "sku"));
+            String name = trimToNull(first(fields, "name"));
+            String description = first(fields, "description");
+            String price = trimToNull(first(fields, "price"));
+            String stock = trimToNull(first(fields, "stockquantity", "stock", "quantity"));
+            String categoryId = trimToNull(first(fields, "categoryid"));
+            String categoryName = trimToNull(first(fields, "category", "categoryname"));
+            String image = trimToNull(first(fields, "image", "imagefile"));
+
+            if (sku == null) {
+                reject(row, null, "Thiếu SKU");
+                return;
+            }
+            if (sku.length() > MAX_SKU_LENGTH) {
+                reject(row, sku, "SKU dài quá " + MAX_SKU_LENGTH + " ký tự");
+                return;
+            }
+            if (name == null || name.length() > MAX_NAME_LENGTH) {
+                reject(row, sku, name == null ? "Thiếu tên sản phẩm" : "Tên sản phẩm dài quá " + MAX_NAME_LENGTH + " ký tự");
+                return;
+            }
+            BigDecimal parsedPrice;
+            try {
+                parsedPrice = price == null ? null : new BigDecimal(price);
+            } catch (NumberFormatException e) {
+                parsedPrice = null;
+            }
+            if (parsedPrice == null || parsedPrice.signum() < 0 || parsedPrice.scale() > 2
+                    || parsedPrice.compareTo(MAX_PRICE) > 0) {
+                reject(row, sku, "Giá không hợp lệ: " + price);
+                return;
+            }
+            int stockQuantity;
+            try {
+                stockQuantity = stock == null ? 0 : Integer.parseInt(stock);
+            } catch (NumberFormatException e) {
+                stockQuantity = -1;
+            }
+            if (stockQuantity < 0) {
+                reject(row, sku, "Số lượng tồn kho không hợp lệ: " + stock);
+                return;
+            }
+            Long resolvedCategory = resolveCategory(categoryId, categoryName);
+            if (resolvedCategory == null) {
+                reject(row, sku, categoryName != null && ambiguousCategoryNames.contains(categoryName.toLowerCase(Locale.ROOT))
+                        ? "Có nhiều danh mục tên '" + categoryName + "', hãy dùng category_id"
+                        : "Không tìm thấy danh mục: " + (categoryId != null ? categoryId : categoryName));
+                return;
+            }
+            if (image != null && zipFile == null) {
+                reject(row, sku, "Dòng có ảnh '" + image + "' nhưng không kèm file zip ảnh");
+                return;
+            }
+            if (!seenSkus.add(sku)) {
+                reject(row, sku, "SKU bị lặp lại trong file");
+                return;
+            }
+
+            job.rowProcessed();
+            batch.add(new PendingRow(row, sku, name, description, resolvedCategory, parsedPrice, stockQuantity, image));
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private Long resolveCategory(String categoryId, String categoryName) {
+            if (categoryId != null) {
+                try {
+                    long id = Long.parseLong(categoryId);
+                    return categoryIds.contains(id) ? id : null;
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            if (categoryName == null) {
+                return null;
+            }
+            String key = categoryName.toLowerCase(Locale.ROOT);
+            return ambiguousCategoryNames.contains(key) ? null : categoriesByName.get(key);
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // SKU đã có trong DB: báo lỗi rõ ràng thay vì để cả lô rơi vào nhánh ghi từng dòng
+            Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT sku FROM products WHERE sku IN (" + String.join(",", Collections.nCopies(batch.size(), "?")) + ")",
+                    String.class, batch.stream().map(PendingRow::sku).toArray()));
+
+            List<Object[]> args = new ArrayList<>(batch.size());
+            List<PendingRow> rows = new ArrayList<>(batch.size());
+            for (PendingRow row : batch) {
+                if (existing.contains(row.sku())) {
+                    job.rowFailed(row.row(), row.sku(), "SKU đã tồn tại");
+                    continue;
+                }
+                String imageUrl = null;
+                if (row.imageName() != null) {
+                    try {
+                        imageUrl = storeImage(row.imageName());
+                    } catch (IOException | RuntimeException e) {
+                        job.rowFailed(row.row(), row.sku(), "Không xử lý được ảnh '" + row.imageName() + "': " + e.getMessage());
+                        continue;
+                    }
+                }
+                rows.add(row);
+                args.add(new Object[]{row.sku(), row.name(), row.description(), row.categoryId(), job.getStoreId(),
+                        row.price(), row.stockQuantity(), imageUrl, now, now});
+            }
+            batch.clear();
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            List<String> inserted = new ArrayList<>(rows.size());
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, args);
+                rows.forEach(row -> inserted.add(row.sku()));
+            } catch (DataAccessException e) {
+                log.warn("Ghi lô {} dòng của tác vụ nhập {} thất bại, thử lại từng dòng: {}",
+                        rows.size(), job.getId(), e.getMessage());
+                for (int i = 0; i < rows.size(); i++) {
+                    try {
+                        jdbcTemplate.update(INSERT_SQL, args.get(i));
+                        inserted.add(rows.get(i).sku());
+                    } catch (DataAccessException rowError) {
+                        job.rowFailed(rows.get(i).row(), rows.get(i).sku(),
+                                NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+                    }
+                }
+            }
+            job.rowsImported(inserted.size());
+            if (!inserted.isEmpty()) {
+                eventPublisher.publishEvent(new ProductsImportedEvent(productRepository.findBySkuIn(inserted)));
+            }
+        }
+
+        private String storeImage(String imageName) throws IOException {
+            String key = imageName.toLowerCase(Locale.ROOT);
+            String stored = storedImages.get(key);
+            if (stored != null) {
+                return stored;
+            }
+            ZipEntry entry = zipEntries.get(key);
+            if (entry == null) {
+                throw new IOException("không có trong file zip");
+            }
+            byte[] content;
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                content = in.readNBytes(maxImageBytes + 1);
+            }
+            if (content.length > maxImageBytes) {
+                throw new IOException("ảnh lớn hơn " + maxImageBytes + " bytes");
+            }
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    stored = imageStorage.store(content, entry.getName());
+                    break;
+                } catch (AppException e) {
+                    // Pool xử lý ảnh dùng chung với upload thường: đầy thì chờ một chút rồi thử lại
+                    if (e.getErrorCode() != ErrorCode.IMAGE_PROCESSING_BUSY || attempt >= IMAGE_BUSY_RETRIES) {
+                        throw e;
+                    }
+                    try {
+                        Thread.sleep(200L * attempt);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+            storedImages.put(key, stored);
+            return stored;
+        }
+    }
+
+    private static Format detectFormat(String format, MultipartFile file) {
+        String hint = format != null ? format : file.getOriginalFilename();
+        String contentType = file.getContentType() != null ? file.getContentType().toLowerCase(Locale.ROOT) : "";
+        String lower = hint != null ? hint.toLowerCase(Locale.ROOT) : "";
+        if (lower.equals("csv") || lower.endsWith(".csv") || contentType.startsWith("text/csv")) {
+            return Format.CSV;
+        }
+        if (lower.equals("ndjson") || lower.equals("jsonl") || lower.endsWith(".ndjson") || lower.endsWith(".jsonl")
+                || contentType.startsWith("application/x-ndjson")) {
+            return Format.NDJSON;
+        }
+        throw new AppException(ErrorCode.INVALID_IMPORT_FILE);
+    }
+
+    // "Stock Quantity", "stock_quantity", "stockQuantity" -> "stockquantity"
+    private static String normalizeKey(String key) {
+        return key.trim().toLowerCase(Locale.ROOT).replace("_", "").replace("-", "").replace(" ", "");
+    }
+
+    private static String first(Map<String, String> fields, String... keys) {
+        for (String key : keys) {
+            String value = fields.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static void deleteQuietly(Path... paths) {
+        for (Path path : paths) {
+            if (path == null) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Không thể xoá file tạm {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
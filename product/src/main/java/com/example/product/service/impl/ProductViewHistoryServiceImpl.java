@@ -1,39 +1,222 @@
 package com.example.product.service.impl;
 
-import com.example.product.entity.Product;
-import com.example.product.entity.ProductViewHistory;
-import com.example.product.repository.ProductRepository;
-import com.example.product.repository.ProductViewHistoryRepository;
 import com.example.product.service.ProductViewHistoryService;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ghi lịch sử xem theo kiểu write-behind: request chỉ đẩy một bản ghi nhỏ vào hàng đợi (không khoá),
+ * một thread nền gom lại và INSERT theo lô bằng JDBC (đủ batch-size dòng hoặc sau max-delay-ms).
+ * Khi hàng đợi gần đầy thì chỉ lấy mẫu 1/sample-rate lượt xem, đầy hẳn thì bỏ; các lượt bị bỏ được đếm lại.
+ * Lô lỗi do DB không sẵn sàng thì bỏ luôn (có đếm) và chờ lùi dần trước lô sau, không thử lại từng dòng.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ProductViewHistoryServiceImpl implements ProductViewHistoryService {
 
-    private final ProductRepository productRepository;
-    private final ProductViewHistoryRepository historyRepository;
+    private static final String INSERT_SQL =
+            "INSERT INTO product_view_history (product_id, username, viewed_at) VALUES (?, ?, ?)";
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private record ViewEvent(long productId, String username, LocalDateTime viewedAt, long enqueuedAtNanos) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int capacity;
+    private final int samplingThreshold;
+    private final int sampleRate;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long maxBackoffNanos;
+    private long backoffNanos;
+
+    private final ConcurrentLinkedQueue<ViewEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private long reportedLost;
+
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public ProductViewHistoryServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            @Value("${view-history.queue-capacity:100000}") int capacity,
+            @Value("${view-history.sampling-threshold:0.8}") double samplingThreshold,
+            @Value("${view-history.sample-rate:10}") int sampleRate,
+            @Value("${view-history.batch-size:1000}") int batchSize,
+            @Value("${view-history.max-delay-ms:200}") long maxDelayMs,
+            @Value("${view-history.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.capacity = capacity;
+        this.samplingThreshold = (int) (capacity * samplingThreshold);
+        this.sampleRate = Math.max(1, sampleRate);
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = Thread.ofPlatform().name("product-view-writer").daemon().start(this::drainLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        log.info("Đã dừng ghi lịch sử xem: {} dòng đã ghi, {} còn trong hàng đợi", written.sum(), pending.get());
+    }
 
     @Override
-    @Transactional
     public void logView(Long productId, String username) {
+        int size = pending.get();
+        if (size >= samplingThreshold && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            sampledOut.increment();
+            return;
+        }
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(new ViewEvent(productId, username, LocalDateTime.now(), System.nanoTime()));
+        if (size + 1 == batchSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void drainLoop() {
+        List<ViewEvent> batch = new ArrayList<>(batchSize);
+        long deadline = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            ViewEvent event = queue.poll();
+            if (event != null) {
+                pending.decrementAndGet();
+                if (batch.isEmpty()) {
+                    deadline = event.enqueuedAtNanos() + maxDelayNanos;
+                }
+                batch.add(event);
+                if (batch.size() < batchSize) {
+                    continue;
+                }
+            } else if (batch.isEmpty()) {
+                LockSupport.parkNanos(maxDelayNanos);
+                continue;
+            } else if (running && deadline - System.nanoTime() > 0) {
+                LockSupport.parkNanos(deadline - System.nanoTime());
+                continue;
+            }
+            boolean ok;
+            try {
+                ok = writeBatch(batch);
+            } catch (RuntimeException e) {
+                // Không để thread ghi chết vì một lỗi bất ngờ: bỏ lô, đếm lại và chạy tiếp
+                failed.add(batch.size());
+                log.error("Lỗi không mong đợi khi ghi lô {} lượt xem, bỏ lô", batch.size(), e);
+                ok = false;
+            }
+            batch.clear();
+            backOff(ok);
+        }
+    }
+
+    /** @return false nếu DB không ghi được (lô đã bị bỏ), để thread ghi lùi lại trước lô sau */
+    private boolean writeBatch(List<ViewEvent> batch) {
         try {
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new RuntimeException("Sản phẩm không tồn tại: " + productId));
-
-            ProductViewHistory history = ProductViewHistory.builder()
-                    .product(product)
-                    .username(username) // có thể null nếu chưa login
-                    .build();
-
-            historyRepository.save(history);
-        } catch (Exception e) {
-            // Không nên làm fail luôn API chỉ vì lỗi log history
-            log.error("Lỗi khi ghi lịch sử xem sản phẩm {} cho user {}: {}", productId, username, e.getMessage());
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setLong(1, event.productId());
+                ps.setString(2, event.username()); // có thể null nếu chưa login
+                ps.setTimestamp(3, Timestamp.valueOf(event.viewedAt()));
+            });
+            written.add(batch.size());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Thường do một sản phẩm vừa bị xoá (vi phạm FK) -> ghi từng dòng để không mất cả lô
+            log.warn("Ghi lô {} lượt xem thất bại, chuyển sang ghi từng dòng: {}", batch.size(), e.getMessage());
+            return writeRows(batch);
+        } catch (DataAccessException e) {
+            // DB mất kết nối/quá tải: ghi lại từng dòng chỉ thêm N câu lệnh chắc chắn lỗi
+            failed.add(batch.size());
+            log.error("Ghi lô {} lượt xem thất bại, bỏ lô: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean writeRows(List<ViewEvent> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            ViewEvent event = batch.get(i);
+            try {
+                jdbcTemplate.update(INSERT_SQL, event.productId(), event.username(),
+                        Timestamp.valueOf(event.viewedAt()));
+                written.increment();
+            } catch (DataIntegrityViolationException rowError) {
+                failed.increment();
+                log.error("Lỗi khi ghi lịch sử xem sản phẩm {} cho user {}: {}",
+                        event.productId(), event.username(), rowError.getMessage());
+            } catch (DataAccessException rowError) {
+                failed.add(batch.size() - i);
+                log.error("Ghi từng dòng lịch sử xem thất bại, bỏ {} dòng còn lại: {}",
+                        batch.size() - i, rowError.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Lùi theo cấp số nhân (tối đa max-backoff-ms) khi DB lỗi liên tiếp; khi đang tắt thì không chờ
+    private void backOff(boolean ok) {
+        if (ok) {
+            backoffNanos = 0;
+            return;
+        }
+        backoffNanos = Math.min(maxBackoffNanos, Math.max(MIN_BACKOFF_NANOS, backoffNanos * 2));
+        long until = System.nanoTime() + backoffNanos;
+        while (running && until - System.nanoTime() > 0) {
+            LockSupport.parkNanos(until - System.nanoTime());
+        }
+    }
+
+    long writtenCount() {
+        return written.sum();
+    }
+
+    long droppedCount() {
+        return dropped.sum();
+    }
+
+    long failedCount() {
+        return failed.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${view-history.report-interval-ms:60000}")
+    public void reportLoss() {
+        long lost = sampledOut.sum() + dropped.sum() + failed.sum();
+        if (lost != reportedLost) {
+            reportedLost = lost;
+            log.warn("Lịch sử xem: đã ghi {}, bỏ qua do lấy mẫu {}, bỏ do đầy hàng đợi {}, ghi lỗi {}, đang chờ {}",
+                    written.sum(), sampledOut.sum(), dropped.sum(), failed.sum(), pending.get());
         }
     }
 }
@@ -0,0 +1,82 @@
+package com.example.product.service.impl;
+
+import com.example.product.client.OrderClient;
+import com.example.product.event.OrderDeliveredEvent;
+import com.example.product.service.PurchaseVerificationService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import feign.FeignException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache username -> các productId đã mua. Nạp một lần bằng /internal/orders/purchased-products,
+ * sau đó được bổ sung trực tiếp từ event order.delivered nên lượt đánh giá thường không cần gọi order-service.
+ * Chỉ khi sản phẩm chưa có trong cache (có thể đã lỡ event) mới hỏi lại order-service cho đúng sản phẩm đó.
+ */
+@Service
+@Slf4j
+public class PurchaseVerificationServiceImpl implements PurchaseVerificationService {
+
+    private final OrderClient orderClient;
+    private final Cache<String, Set<Long>> purchasedByUser;
+
+    public PurchaseVerificationServiceImpl(
+            OrderClient orderClient,
+            @Value("${purchase-cache.max-size:50000}") long maxSize,
+            @Value("${purchase-cache.ttl-seconds:3600}") long ttlSeconds) {
+        this.orderClient = orderClient;
+        this.purchasedByUser = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    @Override
+    public boolean hasPurchased(String username, Long productId) {
+        Set<Long> purchased;
+        try {
+            purchased = purchasedByUser.get(username, this::loadPurchased);
+        } catch (FeignException e) {
+            log.warn("Không nạp được danh sách đã mua của user {}: {}", username, e.getMessage());
+            return Boolean.TRUE.equals(orderClient.hasPurchased(username, productId));
+        }
+        if (purchased.contains(productId)) {
+            return true;
+        }
+        if (Boolean.TRUE.equals(orderClient.hasPurchased(username, productId))) {
+            purchased.add(productId);
+            return true;
+        }
+        return false;
+    }
+
+    @RabbitListener(queues = "#{orderDeliveredQueue.name}")
+    public void onOrderDelivered(OrderDeliveredEvent event) {
+        if (event.getUsername() == null || event.getProductIds() == null) {
+            return;
+        }
+        // Chỉ bổ sung khi user đã có trong cache; chưa có thì lần nạp đầu tiên sẽ lấy đủ từ order-service
+        purchasedByUser.asMap().computeIfPresent(event.getUsername(), (username, purchased) -> {
+            purchased.addAll(event.getProductIds());
+            return purchased;
+        });
+        log.debug("Đơn {} đã giao: cập nhật danh sách đã mua của user {}", event.getOrderId(), event.getUsername());
+    }
+
+    private Set<Long> loadPurchased(String username) {
+        List<Long> productIds = orderClient.getPurchasedProductIds(username);
+        Set<Long> purchased = ConcurrentHashMap.newKeySet();
+        if (productIds != null) {
+            purchased.addAll(productIds);
+        }
+        return purchased;
+    }
+}
@@ -1,16 +1,22 @@
 package com.example.product.service.impl;
 
-import com.example.product.client.OrderClient;
 import com.example.product.dto.request.RatingRequest;
+import com.example.product.dto.response.RatingPageResponse;
 import com.example.product.dto.response.RatingResponse;
 import com.example.product.dto.response.RatingSummaryResponse;
 import com.example.product.entity.Product;
 import com.example.product.entity.Rating;
+import com.example.product.exception.AppException;
+import com.example.product.exception.ErrorCode;
+import com.example.product.repository.ProductRatingSummaryRepository;
 import com.example.product.repository.ProductRepository;
 import com.example.product.repository.RatingRepository;
+import com.example.product.service.PurchaseVerificationService;
 import com.example.product.service.RatingService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,17 +24,24 @@ import org.springframework.transaction.annotation.Transactional;
 
 
 
-import java.util.IntSummaryStatistics;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class RatingServiceImpl implements RatingService {
 
     private final RatingRepository ratingRepository;
+    private final ProductRatingSummaryRepository ratingSummaryRepository;
     private final ProductRepository productRepository;
-    private final OrderClient orderClient;
+    private final PurchaseVerificationService purchaseVerificationService;
+
+    private static final int MAX_RATING_PAGE_SIZE = 100;
 
     @Override
     @Transactional
@@ -37,26 +50,35 @@ public class RatingServiceImpl implements RatingService {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new RuntimeException("Sản phẩm không tồn tại"));
 
-        // 2. kiểm tra đã mua chưa (gọi order-service)
-        Boolean purchased = orderClient.hasPurchased(username, productId);
-        if (purchased == null || !purchased) {
+        // 2. kiểm tra đã mua chưa (cache đã-mua, chỉ gọi order-service khi cache chưa biết)
+        if (!purchaseVerificationService.hasPurchased(username, productId)) {
             throw new RuntimeException("Bạn chỉ có thể đánh giá sau khi đã mua sản phẩm này");
         }
 
         // 3. tìm rating cũ của user cho sản phẩm này (nếu có thì update)
-        Rating rating = ratingRepository.findByProductIdAndUsername(productId, username)
+        Rating rating = ratingRepository.findByProductIdAndUsernameForUpdate(productId, username)
                 .orElseGet(() -> {
                     Rating r = new Rating();
                     r.setProduct(product);
                     r.setUsername(username);
                     return r;
                 });
+        boolean isNew = rating.getId() == null;
+        int oldValue = rating.getRatingValue();
 
         rating.setRatingValue(request.getRatingValue());
         rating.setComment(request.getComment());
 
         Rating saved = ratingRepository.save(rating);
 
+        // 4. cập nhật bảng tổng hợp trong cùng transaction (đổi số sao = bỏ sao cũ, thêm sao mới)
+        if (isNew) {
+            applySummaryDelta(productId, 1, saved.getRatingValue(), +1);
+        } else if (oldValue != saved.getRatingValue()) {
+            applySummaryDelta(productId, 0, oldValue, -1);
+            applySummaryDelta(productId, 0, saved.getRatingValue(), +1);
+        }
+
         return RatingResponse.builder()
                 .id(saved.getId())
                 .productId(productId)
@@ -68,53 +90,100 @@ public class RatingServiceImpl implements RatingService {
     }
 
     @Override
-    public List<RatingResponse> getRatingsForProduct(Long productId) {
-        return ratingRepository.findByProductId(productId)
-                .stream()
-                .map(r -> RatingResponse.builder()
-                        .id(r.getId())
-                        .productId(productId)
-                        .username(r.getUsername())
-                        .ratingValue(r.getRatingValue())
-                        .comment(r.getComment())
-                        .createdAt(r.getCreatedAt())
-                        .build())
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public RatingPageResponse getRatingsForProduct(Long productId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_RATING_PAGE_SIZE));
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<Rating> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = ratingRepository.findFirstPage(productId, limit);
+        } else {
+            RatingCursor after = decodeCursor(cursor);
+            rows = ratingRepository.findPageAfter(productId, after.createdAt(), after.id(), limit);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Rating> page = hasMore ? rows.subList(0, pageSize) : rows;
+        Rating last = page.isEmpty() ? null : page.get(page.size() - 1);
+
+        return RatingPageResponse.builder()
+                .items(page.stream()
+                        .map(r -> RatingResponse.builder()
+                                .id(r.getId())
+                                .productId(productId)
+                                .username(r.getUsername())
+                                .ratingValue(r.getRatingValue())
+                                .comment(r.getComment())
+                                .createdAt(r.getCreatedAt())
+                                .build())
+                        .collect(Collectors.toList()))
+                .nextCursor(hasMore ? encodeCursor(last) : null)
+                .hasMore(hasMore)
+                .build();
     }
 
-    @Override
-    public RatingSummaryResponse getRatingSummaryForProduct(Long productId) {
-        List<Rating> ratings = ratingRepository.findByProductId(productId);
-        if (ratings.isEmpty()) {
-            return RatingSummaryResponse.builder()
-                    .productId(productId)
-                    .averageRating(0.0)
-                    .totalRatings(0)
-                    .build();
-        }
+    // Cursor = base64url("createdAt|id") của dòng cuối trang trước; client coi như chuỗi mờ
+    private record RatingCursor(LocalDateTime createdAt, Long id) {
+    }
 
-        IntSummaryStatistics stats = ratings.stream()
-                .mapToInt(Rating::getRatingValue)
-                .summaryStatistics();
+    private static String encodeCursor(Rating rating) {
+        String raw = rating.getCreatedAt() + "|" + rating.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 
-        long count1 = ratings.stream().filter(r -> r.getRatingValue() == 1).count();
-        long count2 = ratings.stream().filter(r -> r.getRatingValue() == 2).count();
-        long count3 = ratings.stream().filter(r -> r.getRatingValue() == 3).count();
-        long count4 = ratings.stream().filter(r -> r.getRatingValue() == 4).count();
-        long count5 = ratings.stream().filter(r -> r.getRatingValue() == 5).count();
+    private static RatingCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new RatingCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+    }
 
-        double avg = stats.getAverage();
+    @Override
+    @Transactional(readOnly = true)
+    public RatingSummaryResponse getRatingSummaryForProduct(Long productId) {
+        return ratingSummaryRepository.findById(productId)
+                .filter(summary -> summary.getRatingCount() > 0)
+                .map(summary -> RatingSummaryResponse.builder()
+                        .productId(productId)
+                        .averageRating((double) summary.getRatingSum() / summary.getRatingCount())
+                        .totalRatings(summary.getRatingCount())
+                        .count1Star(summary.getCount1Star())
+                        .count2Star(summary.getCount2Star())
+                        .count3Star(summary.getCount3Star())
+                        .count4Star(summary.getCount4Star())
+                        .count5Star(summary.getCount5Star())
+                        .build())
+                .orElseGet(() -> RatingSummaryResponse.builder()
+                        .productId(productId)
+                        .averageRating(0.0)
+                        .totalRatings(0)
+                        .build());
+    }
 
-        return RatingSummaryResponse.builder()
-                .productId(productId)
-                .averageRating(avg)
-                .totalRatings(stats.getCount())
-                .count1Star(count1)
-                .count2Star(count2)
-                .count3Star(count3)
-                .count4Star(count4)
-                .count5Star(count5)
-                .build();
+    @Override
+    @Transactional
+    public void rebuildRatingSummaries() {
+        ratingSummaryRepository.rebuildFromRatings();
+        int removed = ratingSummaryRepository.deleteOrphans();
+        log.info("Đã tính lại bảng tổng hợp đánh giá cho {} sản phẩm ({} dòng thừa bị xoá)",
+                ratingSummaryRepository.count(), removed);
+    }
+
+    // sign = +1 khi thêm một lượt sao ratingValue, -1 khi bỏ; countDelta chỉ khác 0 khi thêm/xoá hẳn rating
+    private void applySummaryDelta(Long productId, int countDelta, int ratingValue, int sign) {
+        ratingSummaryRepository.applyDelta(productId,
+                countDelta,
+                (long) sign * ratingValue,
+                ratingValue == 1 ? sign : 0,
+                ratingValue == 2 ? sign : 0,
+                ratingValue == 3 ? sign : 0,
+                ratingValue == 4 ? sign : 0,
+                ratingValue == 5 ? sign : 0);
     }
 
     @Override
@@ -135,7 +204,7 @@ public class RatingServiceImpl implements RatingService {
     @Override
         @Transactional
         public void deleteMyRating(Long productId, Long ratingId, String username) {
-            Rating rating = ratingRepository.findById(ratingId)
+            Rating rating = ratingRepository.findByIdForUpdate(ratingId)
                     .orElseThrow(() -> new RuntimeException("Đánh giá không tồn tại"));
 
             // ✅ Kiểm tra đánh giá có thuộc đúng sản phẩm không
@@ -149,5 +218,6 @@ public class RatingServiceImpl implements RatingService {
         }
 
             ratingRepository.delete(rating);
+            applySummaryDelta(productId, -1, rating.getRatingValue(), -1);
         }
 }
@@ -0,0 +1,38 @@
+package com.example.product.service.impl;
+
+import com.example.product.repository.ProductRatingSummaryRepository;
+import com.example.product.repository.RatingRepository;
+import com.example.product.service.RatingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dựng lại bảng tổng hợp đánh giá: tự chạy khi khởi động nếu bảng thiếu sản phẩm (lần đầu triển khai),
+ * và theo lịch rating-summary.rebuild-cron nếu được cấu hình (mặc định tắt).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RatingSummaryRebuildJob {
+
+    private final RatingService ratingService;
+    private final RatingRepository ratingRepository;
+    private final ProductRatingSummaryRepository ratingSummaryRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfIncomplete() {
+        if (ratingSummaryRepository.count() < ratingRepository.countRatedProducts()) {
+            log.info("Bảng tổng hợp đánh giá chưa đủ, tính lại từ product_ratings");
+            ratingService.rebuildRatingSummaries();
+        }
+    }
+
+    @Scheduled(cron = "${rating-summary.rebuild-cron:-}")
+    public void rebuild() {
+        ratingService.rebuildRatingSummaries();
+    }
+}
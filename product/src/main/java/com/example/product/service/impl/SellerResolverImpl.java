@@ -0,0 +1,147 @@
+package com.example.product.service.impl;
+
+import com.example.product.client.UserServiceClient;
+import com.example.product.dto.response.SellerBatchResponse;
+import com.example.product.dto.response.UserServiceResponse;
+import com.example.product.service.SellerResolver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache storeId -> người bán, giới hạn số phần tử (LRU) và có TTL.
+ * Cửa hàng không tồn tại cũng được cache (TTL ngắn hơn) để không gọi lại liên tục.
+ * Nhiều request cùng miss một storeId thì chỉ request đầu tiên gọi user-service (single-flight),
+ * các request còn lại chờ kết quả của lời gọi đó.
+ */
+@Service
+@Slf4j
+public class SellerResolverImpl implements SellerResolver {
+
+    private record CachedSeller(UserServiceResponse.UserResult seller, long expiresAtNanos) {
+    }
+
+    private final UserServiceClient userServiceClient;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long waitTimeoutMs;
+    private final Map<String, CachedSeller> cache;
+    private final Map<String, CompletableFuture<UserServiceResponse.UserResult>> inFlight = new ConcurrentHashMap<>();
+
+    public SellerResolverImpl(
+            UserServiceClient userServiceClient,
+            @Value("${seller-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${seller-cache.negative-ttl-seconds:30}") long negativeTtlSeconds,
+            @Value("${seller-cache.max-size:10000}") int maxSize,
+            @Value("${seller-cache.wait-timeout-ms:3000}") long waitTimeoutMs) {
+        this.userServiceClient = userServiceClient;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSeller> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    @Override
+    public UserServiceResponse.UserResult resolve(String storeId, String token) {
+        if (storeId == null) {
+            return null;
+        }
+        return resolveAll(List.of(storeId), token).get(storeId);
+    }
+
+    @Override
+    public Map<String, UserServiceResponse.UserResult> resolveAll(Collection<String> storeIds, String token) {
+        Map<String, UserServiceResponse.UserResult> result = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        long now = System.nanoTime();
+        for (String storeId : new LinkedHashSet<>(storeIds)) {
+            if (storeId == null) {
+                continue;
+            }
+            CachedSeller cached = cache.get(storeId);
+            if (cached != null && cached.expiresAtNanos() - now > 0) {
+                result.put(storeId, cached.seller());
+            } else {
+                misses.add(storeId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        // Chia miss thành: storeId do request này đi lấy, và storeId đang có request khác lấy dở
+        Map<String, CompletableFuture<UserServiceResponse.UserResult>> owned = new HashMap<>();
+        Map<String, CompletableFuture<UserServiceResponse.UserResult>> waiting = new HashMap<>();
+        for (String storeId : misses) {
+            CompletableFuture<UserServiceResponse.UserResult> mine = new CompletableFuture<>();
+            CompletableFuture<UserServiceResponse.UserResult> existing = inFlight.putIfAbsent(storeId, mine);
+            if (existing == null) {
+                owned.put(storeId, mine);
+            } else {
+                waiting.put(storeId, existing);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            fetch(owned, token);
+            owned.forEach((storeId, future) -> result.put(storeId, future.getNow(null)));
+        }
+        waiting.forEach((storeId, future) -> result.put(storeId, await(storeId, future)));
+        return result;
+    }
+
+    private void fetch(Map<String, CompletableFuture<UserServiceResponse.UserResult>> owned, String token) {
+        try {
+            SellerBatchResponse response = userServiceClient.getSellersByStoreIds(new ArrayList<>(owned.keySet()), token);
+            Map<String, UserServiceResponse.UserResult> found = new HashMap<>();
+            if (response != null && response.getResult() != null) {
+                for (UserServiceResponse.UserResult seller : response.getResult()) {
+                    found.put(seller.getStoreId(), seller);
+                }
+            }
+            long now = System.nanoTime();
+            owned.forEach((storeId, future) -> {
+                UserServiceResponse.UserResult seller = found.get(storeId);
+                cache.put(storeId, new CachedSeller(seller, now + (seller != null ? ttlNanos : negativeTtlNanos)));
+                future.complete(seller);
+            });
+            log.info("Đã lấy thông tin người bán cho {} cửa hàng trong 1 lần gọi user-service", owned.size());
+        } catch (Exception e) {
+            // Lỗi thì không cache, lần sau thử lại; sản phẩm vẫn trả về, chỉ thiếu userId/username
+            log.warn("Không thể lấy thông tin người bán cho storeIds: {}. Lỗi: {}", owned.keySet(), e.getMessage());
+            owned.values().forEach(future -> future.complete(null));
+        } finally {
+            owned.forEach(inFlight::remove);
+        }
+    }
+
+    private UserServiceResponse.UserResult await(
+            String storeId, CompletableFuture<UserServiceResponse.UserResult> future) {
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.warn("Hết thời gian chờ thông tin người bán cho storeId: {}", storeId);
+            return null;
+        }
+    }
+}
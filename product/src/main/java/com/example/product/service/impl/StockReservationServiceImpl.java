@@ -0,0 +1,181 @@
+package com.example.product.service.impl;
+
+import com.example.product.dto.request.StockReservationRequest;
+import com.example.product.dto.response.StockReservationResponse;
+import com.example.product.entity.StockReservation;
+import com.example.product.entity.StockReservationLine;
+import com.example.product.entity.StockReservationStatus;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.exception.AppException;
+import com.example.product.exception.ErrorCode;
+import com.example.product.repository.ProductRepository;
+import com.example.product.repository.StockReservationRepository;
+import com.example.product.service.FlashSaleInventoryService;
+import com.example.product.service.StockReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private final ProductRepository productRepository;
+    private final StockReservationRepository reservationRepository;
+    private final FlashSaleInventoryService flashSaleInventoryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public StockReservationResponse reserve(StockReservationRequest request) {
+        try {
+            return transactionTemplate.execute(status -> doReserve(request));
+        } catch (DataIntegrityViolationException e) {
+            if (request.getOrderRef() == null) {
+                throw e;
+            }
+            // Request khác cùng orderRef vừa giữ hàng trước (trùng khoá order_ref): transaction này đã
+            // rollback cả phần trừ kho, trả về phiếu của request kia
+            return transactionTemplate.execute(status -> reservationRepository.findByOrderRef(request.getOrderRef())
+                    .map(existing -> {
+                        log.info("orderRef={} vừa được giữ hàng đồng thời bởi reservation={}, trả lại phiếu đó",
+                                request.getOrderRef(), existing.getId());
+                        return toResponse(existing);
+                    })
+                    .orElseThrow(() -> e));
+        }
+    }
+
+    private StockReservationResponse doReserve(StockReservationRequest request) {
+        // Bên gọi thử lại sau timeout (saga checkout): không trừ kho lần hai cho cùng một đơn
+        if (request.getOrderRef() != null) {
+            StockReservation existing = reservationRepository.findByOrderRef(request.getOrderRef()).orElse(null);
+            if (existing != null) {
+                log.info("orderRef={} đã có reservation={} ({}), trả lại phiếu cũ",
+                        request.getOrderRef(), existing.getId(), existing.getStatus());
+                return toResponse(existing);
+            }
+        }
+
+        // Gộp các dòng trùng productId; TreeMap để luôn khoá các dòng products theo thứ tự id
+        // -> hai đơn chứa cùng sản phẩm không bị deadlock lẫn nhau
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockReservationRequest.Item item : request.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
+        StockReservation reservation = new StockReservation();
+        reservation.setId(UUID.randomUUID().toString());
+        reservation.setOrderRef(request.getOrderRef());
+        reservation.setStatus(StockReservationStatus.RESERVED);
+
+        // Hàng flash sale được trừ trong bộ nhớ, không nằm trong transaction -> tự trả lại nếu rollback
+        Map<Long, Integer> heldInMemory = new HashMap<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    heldInMemory.forEach(flashSaleInventoryService::release);
+                }
+            }
+        });
+
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (!take(entry.getKey(), entry.getValue(), heldInMemory)) {
+                // Ném exception -> rollback toàn bộ các dòng đã trừ trước đó
+                log.warn("Không đủ tồn kho cho sản phẩm {} (yêu cầu {}), orderRef={}",
+                        entry.getKey(), entry.getValue(), request.getOrderRef());
+                throw new AppException(ErrorCode.INSUFFICIENT_STOCK);
+            }
+
+            StockReservationLine line = new StockReservationLine();
+            line.setReservation(reservation);
+            line.setProductId(entry.getKey());
+            line.setQuantity(entry.getValue());
+            reservation.getLines().add(line);
+        }
+
+        // Flush ngay để vi phạm khoá order_ref lộ ra ở đây (và được dịch sang DataIntegrityViolationException)
+        StockReservation saved = reservationRepository.saveAndFlush(reservation);
+        quantities.keySet().forEach(this::publishStockChanged);
+        log.info("Đã giữ hàng reservation={} cho orderRef={} ({} sản phẩm)",
+                saved.getId(), saved.getOrderRef(), saved.getLines().size());
+        return toResponse(saved);
+    }
+
+    @Override
+    @Transactional
+    public StockReservationResponse release(String reservationId) {
+        StockReservation reservation = reservationRepository.findByIdForUpdate(reservationId)
+                .orElseThrow(() -> new AppException(ErrorCode.STOCK_RESERVATION_NOT_FOUND));
+
+        if (reservation.getStatus() == StockReservationStatus.RELEASED) {
+            log.info("Reservation {} đã được hoàn kho trước đó, bỏ qua.", reservationId);
+            return toResponse(reservation);
+        }
+
+        reservation.getLines().stream()
+                .sorted((a, b) -> Long.compare(a.getProductId(), b.getProductId()))
+                .forEach(line -> {
+                    if (flashSaleInventoryService.isManaged(line.getProductId())) {
+                        flashSaleInventoryService.release(line.getProductId(), line.getQuantity());
+                    } else {
+                        productRepository.increaseStock(line.getProductId(), line.getQuantity());
+                    }
+                    publishStockChanged(line.getProductId());
+                });
+
+        reservation.setStatus(StockReservationStatus.RELEASED);
+        StockReservation saved = reservationRepository.save(reservation);
+        log.info("Đã hoàn kho reservation={} cho orderRef={}", saved.getId(), saved.getOrderRef());
+        return toResponse(saved);
+    }
+
+    private boolean take(Long productId, int quantity, Map<Long, Integer> heldInMemory) {
+        FlashSaleInventoryService.Admission admission = flashSaleInventoryService.tryReserve(productId, quantity);
+        if (admission == FlashSaleInventoryService.Admission.NOT_MANAGED) {
+            if (productRepository.decreaseStockIfAvailable(productId, quantity) > 0) {
+                return true;
+            }
+            // UPDATE trả 0 cũng có thể do sản phẩm vừa được bật flash sale -> thử lại trên bộ đếm
+            admission = flashSaleInventoryService.tryReserve(productId, quantity);
+        }
+        if (admission == FlashSaleInventoryService.Admission.ADMITTED) {
+            heldInMemory.merge(productId, quantity, Integer::sum);
+            return true;
+        }
+        return false;
+    }
+
+    private void publishStockChanged(Long productId) {
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.Type.STOCK_CHANGED));
+    }
+
+    private StockReservationResponse toResponse(StockReservation reservation) {
+        return StockReservationResponse.builder()
+                .reservationId(reservation.getId())
+                .orderRef(reservation.getOrderRef())
+                .status(reservation.getStatus().name())
+                .createdAt(reservation.getCreatedAt())
+                .items(reservation.getLines().stream()
+                        .map(line -> StockReservationResponse.Item.builder()
+                                .productId(line.getProductId())
+                                .quantity(line.getQuantity())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+}
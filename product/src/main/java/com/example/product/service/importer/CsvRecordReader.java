@@ -0,0 +1,110 @@
+package com.example.product.service.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc CSV (RFC 4180: dấu phẩy, trường trong ngoặc kép, "" là một dấu ngoặc kép, xuống dòng trong ngoặc)
+ * theo từng bản ghi, không nạp cả file vào bộ nhớ. Mỗi bản ghi bị giới hạn độ dài để một dấu ngoặc
+ * không đóng không nuốt hết phần còn lại của file vào heap.
+ */
+public class CsvRecordReader implements Closeable {
+
+    private final Reader reader;
+    private final int maxRecordChars;
+    private boolean firstChar = true;
+    private int pushedBack = -2;
+
+    public CsvRecordReader(Reader reader, int maxRecordChars) {
+        this.reader = reader;
+        this.maxRecordChars = maxRecordChars;
+    }
+
+    /** @return các trường của bản ghi tiếp theo, hoặc null khi hết file */
+    public List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int length = 0;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (quoted) {
+                    throw new IOException("Trường trong ngoặc kép không được đóng trước khi hết file");
+                }
+                if (!any) {
+                    return null;
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+            any = true;
+            if (++length > maxRecordChars) {
+                throw new IOException("Bản ghi dài quá " + maxRecordChars + " ký tự");
+            }
+            if (quoted) {
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        unread(following);
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    int following = read();
+                    if (following != '\n') {
+                        unread(following);
+                    }
+                }
+                if (fields.isEmpty() && field.isEmpty()) {
+                    any = false; // bỏ qua dòng trống
+                    length = 0;
+                    continue;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        int c = reader.read();
+        if (firstChar) {
+            firstChar = false;
+            if (c == '\uFEFF') { // BOM do Excel thêm vào
+                c = reader.read();
+            }
+        }
+        return c;
+    }
+
+    private void unread(int c) {
+        pushedBack = c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
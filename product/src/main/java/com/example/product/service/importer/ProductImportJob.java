@@ -0,0 +1,95 @@
+package com.example.product.service.importer;
+
+import com.example.product.dto.response.ProductImportJobResponse;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trạng thái của một lượt nhập sản phẩm hàng loạt. Được worker cập nhật trong lúc chạy
+ * và đọc đồng thời bởi API trạng thái, nên các bộ đếm là atomic và danh sách lỗi được đồng bộ.
+ */
+@Getter
+public class ProductImportJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String id;
+    private final String storeId;
+    private final String format;
+    private final int maxReportedErrors;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final AtomicLong processedRows = new AtomicLong();
+    private final AtomicLong importedRows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final List<ProductImportJobResponse.RowError> errors = new ArrayList<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile String message;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public ProductImportJob(String id, String storeId, String format, int maxReportedErrors) {
+        this.id = id;
+        this.storeId = storeId;
+        this.format = format;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public void start() {
+        startedAt = LocalDateTime.now();
+        status = Status.RUNNING;
+    }
+
+    public void finish(Status finalStatus, String finalMessage) {
+        message = finalMessage;
+        finishedAt = LocalDateTime.now();
+        status = finalStatus;
+    }
+
+    public void rowProcessed() {
+        processedRows.incrementAndGet();
+    }
+
+    public void rowsImported(int count) {
+        importedRows.addAndGet(count);
+    }
+
+    /** Ghi nhận một dòng lỗi; chỉ giữ chi tiết của {@code maxReportedErrors} lỗi đầu tiên để heap không tăng theo file. */
+    public void rowFailed(long row, String sku, String reason) {
+        failedRows.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < maxReportedErrors) {
+                errors.add(ProductImportJobResponse.RowError.builder().row(row).sku(sku).reason(reason).build());
+            }
+        }
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public ProductImportJobResponse toResponse() {
+        List<ProductImportJobResponse.RowError> reported;
+        synchronized (errors) {
+            reported = List.copyOf(errors);
+        }
+        return ProductImportJobResponse.builder()
+                .jobId(id)
+                .storeId(storeId)
+                .format(format)
+                .status(status.name())
+                .message(message)
+                .processedRows(processedRows.get())
+                .importedRows(importedRows.get())
+                .failedRows(failedRows.get())
+                .errorsTruncated(failedRows.get() > reported.size())
+                .errors(reported)
+                .createdAt(createdAt)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .build();
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.product.service.inventory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Nhật ký (append-only) cho tồn kho flash sale, dùng để khôi phục sau khi service bị crash.
+ *
+ * Mỗi dòng có dạng {@code <seq>,<loại>,<productId>,<số lượng>}, seq tăng dần:
+ * R = giữ hàng, X = trả hàng, F = mọi bản ghi có seq nhỏ hơn hoặc bằng seq của dòng F đã được ghi xuống bảng products.
+ * Phần chưa ghi xuống DB của một sản phẩm = tổng R - tổng X của các bản ghi sau mốc F cuối cùng.
+ * Mốc đã flush cũng được lưu trong DB cùng transaction trừ kho; nếu process chết sau khi commit mà chưa kịp
+ * ghi dòng F, {@link #skipFlushedUpTo(long)} dùng mốc trong DB để không trừ kho lần hai.
+ * Ghi theo kiểu group commit: {@link #append} chỉ bỏ bản ghi vào hàng đợi lock-free rồi chờ,
+ * một luồng ghi duy nhất gom các bản ghi đang chờ thành một lô, đánh seq, ghi một lần và fsync
+ * cả lô trước khi trả kết quả cho các request trong lô. Đường giữ hàng không phải tranh khoá
+ * chung hay tự làm I/O, nên không triệt tiêu phần chia stripe của {@link StripedStockCounter}.
+ */
+public class FlashSaleJournal implements Closeable {
+
+    public enum Type { R, X, F }
+
+    /** Phần chưa flush tại mốc {@code seq}: gồm đúng các bản ghi R/X có seq trong (mốc F trước, seq]. */
+    public record Snapshot(long seq, Map<Long, Long> quantities) {
+    }
+
+    private record Entry(long seq, long productId, long delta) {
+    }
+
+    // Bản ghi đang chờ luồng ghi, done hoàn tất sau khi cả lô đã fsync
+    private record Pending(Type type, long productId, long quantity, CompletableFuture<Void> done) {
+    }
+
+    // Giới hạn một lô để một lần ghi/fsync không kéo dài vô hạn khi tải dồn dập
+    private static final int MAX_BATCH = 1024;
+
+    private final Path path;
+    private final long compactThresholdBytes;
+    private final Map<Long, Long> unflushed = new HashMap<>();
+    // Bản ghi chưa flush đọc lại từ file, giữ đến khi đối chiếu với mốc trong DB
+    private List<Entry> replayed = new ArrayList<>();
+    private long lastSeq;
+    private long flushedSeq;
+    private FileChannel channel;
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public FlashSaleJournal(Path path, long compactThresholdBytes) {
+        this.path = path;
+        this.compactThresholdBytes = compactThresholdBytes;
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            if (Files.exists(path)) {
+                replay(Files.readAllLines(path, StandardCharsets.UTF_8));
+            }
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không thể mở journal flash sale: " + path, e);
+        }
+        this.writer = new Thread(this::writeLoop, "flash-sale-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    private void replay(List<String> lines) {
+        List<Entry> entries = new ArrayList<>();
+        for (String line : lines) {
+            String[] parts = line.split(",");
+            if (parts.length != 4) {
+                continue; // dòng cuối có thể bị ghi dở khi crash
+            }
+            try {
+                long seq = Long.parseLong(parts[0]);
+                Type type = Type.valueOf(parts[1]);
+                long productId = Long.parseLong(parts[2]);
+                long quantity = Long.parseLong(parts[3]);
+                lastSeq = Math.max(lastSeq, seq);
+                switch (type) {
+                    case R -> entries.add(new Entry(seq, productId, quantity));
+                    case X -> entries.add(new Entry(seq, productId, -quantity));
+                    case F -> flushedSeq = Math.max(flushedSeq, seq);
+                }
+            } catch (IllegalArgumentException ignored) {
+                // bỏ qua dòng hỏng
+            }
+        }
+        for (Entry entry : entries) {
+            if (entry.seq() > flushedSeq) {
+                replayed.add(entry);
+                add(entry.productId(), entry.delta());
+            }
+        }
+    }
+
+    private void add(long productId, long delta) {
+        unflushed.merge(productId, delta, Long::sum);
+        if (unflushed.get(productId) == 0L) {
+            unflushed.remove(productId);
+        }
+    }
+
+    /** Trả về sau khi bản ghi đã nằm trên đĩa; lỗi ghi thì ném lại cho request, bản ghi không được tính. */
+    public void append(Type type, long productId, long quantity) {
+        if (type == Type.F) {
+            throw new IllegalArgumentException("Dòng F chỉ được ghi qua markFlushed");
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal flash sale đã đóng");
+        }
+        Pending pending = new Pending(type, productId, quantity, new CompletableFuture<>());
+        queue.offer(pending);
+        LockSupport.unpark(writer);
+        // Đóng đúng lúc luồng ghi vừa thoát: tự rút bản ghi ra để không chờ mãi
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException("Journal flash sale đã đóng");
+        }
+        try {
+            pending.done().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            Pending next;
+            while (batch.size() < MAX_BATCH && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            RuntimeException failure = commit(batch);
+            for (Pending pending : batch) {
+                if (failure == null) {
+                    pending.done().complete(null);
+                } else {
+                    pending.done().completeExceptionally(failure);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    // Đánh seq, ghi và fsync cả lô trong monitor để snapshot luôn khớp với phần đã nằm trên đĩa
+    private synchronized RuntimeException commit(List<Pending> batch) {
+        StringBuilder records = new StringBuilder(batch.size() * 32);
+        long seq = lastSeq;
+        for (Pending pending : batch) {
+            records.append(line(++seq, pending.type(), pending.productId(), pending.quantity()));
+        }
+        long start = -1;
+        try {
+            start = channel.size();
+            writeFully(records.toString().getBytes(StandardCharsets.UTF_8));
+            channel.force(false);
+        } catch (IOException e) {
+            // Cắt phần ghi dở để lần replay sau không tính những bản ghi mà request đã nhận lỗi
+            if (start >= 0) {
+                try {
+                    channel.truncate(start);
+                } catch (IOException ignored) {
+                    // giữ lỗi gốc
+                }
+            }
+            return new UncheckedIOException("Ghi journal flash sale thất bại", e);
+        }
+        lastSeq = seq;
+        for (Pending pending : batch) {
+            add(pending.productId(), pending.type() == Type.R ? pending.quantity() : -pending.quantity());
+        }
+        return null;
+    }
+
+    private void write(long seq, Type type, long productId, long quantity) {
+        try {
+            writeFully(line(seq, type, productId, quantity).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ghi journal flash sale thất bại", e);
+        }
+    }
+
+    private static String line(long seq, Type type, long productId, long quantity) {
+        return seq + "," + type.name() + "," + productId + "," + quantity + "\n";
+    }
+
+    private void writeFully(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Bỏ các bản ghi đã được flush theo mốc lưu trong DB (crash sau commit, trước khi kịp ghi dòng F).
+     * Gọi một lần khi khởi động, trước khi service nhận request.
+     */
+    public synchronized void skipFlushedUpTo(long dbFlushedSeq) {
+        if (dbFlushedSeq > flushedSeq) {
+            for (Entry entry : replayed) {
+                if (entry.seq() <= dbFlushedSeq) {
+                    add(entry.productId(), -entry.delta());
+                }
+            }
+            // Journal mới hơn mốc trong DB (vd. mất file): đánh số tiếp từ mốc để không đụng seq cũ
+            lastSeq = Math.max(lastSeq, dbFlushedSeq);
+            flushedSeq = dbFlushedSeq;
+            write(flushedSeq, Type.F, 0, 0);
+            sync();
+        }
+        replayed = List.of();
+    }
+
+    /** Số lượng đã bán (trừ đi đã trả) nhưng chưa ghi xuống DB, theo từng sản phẩm, kèm mốc seq hiện tại. */
+    public synchronized Snapshot unflushedSnapshot() {
+        return new Snapshot(lastSeq, new HashMap<>(unflushed));
+    }
+
+    public synchronized long unflushed(long productId) {
+        return unflushed.getOrDefault(productId, 0L);
+    }
+
+    /** Ghi nhận {@code flushed} đã xuống DB; nếu không còn gì treo thì thu gọn file. */
+    public synchronized void markFlushed(Snapshot flushed) {
+        flushed.quantities().forEach((productId, quantity) -> add(productId, -quantity));
+        flushedSeq = Math.max(flushedSeq, flushed.seq());
+        write(flushed.seq(), Type.F, 0, 0);
+        try {
+            if (unflushed.isEmpty() && channel.size() > compactThresholdBytes) {
+                channel.truncate(0);
+                // Giữ lại mốc để seq tiếp tục tăng sau khi thu gọn
+                write(lastSeq, Type.F, 0, 0);
+                flushedSeq = lastSeq;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Thu gọn journal flash sale thất bại", e);
+        }
+    }
+
+    public synchronized void sync() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Sync journal flash sale thất bại", e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.done().completeExceptionally(new IllegalStateException("Journal flash sale đã đóng"));
+        }
+        synchronized (this) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.product.service.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bộ đếm tồn kho chia thành nhiều "stripe" cho SKU flash sale.
+ *
+ * Tồn kho được chia đều vào các ô; mỗi lượt giữ hàng chọn ngẫu nhiên một ô và CAS trừ trên ô đó,
+ * nên hàng nghìn luồng cùng mua một SKU không tranh chấp cùng một biến.
+ * Không ô nào được phép âm, do đó tổng đã bán không bao giờ vượt quá tổng tồn kho (không oversell).
+ * Khi không ô nào đủ hàng cho cả lượt, đường chậm gom từ nhiều ô dưới một lock.
+ */
+public final class StripedStockCounter {
+
+    // Mỗi ô cách nhau 8 long (64 byte) để tránh false sharing giữa các core
+    private static final int PADDING = 8;
+
+    private final int stripes;
+    private final AtomicLongArray cells;
+    private final Object gatherLock = new Object();
+
+    public StripedStockCounter(long initialStock, int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be > 0");
+        }
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        long base = Math.max(0, initialStock) / stripes;
+        long remainder = Math.max(0, initialStock) % stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PADDING, base + (i < remainder ? 1 : 0));
+        }
+    }
+
+    /**
+     * Giữ {@code quantity} đơn vị.
+     * @return true nếu giữ được toàn bộ, false nếu không đủ hàng (không trừ gì cả)
+     */
+    public boolean tryReserve(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity must be > 0");
+        }
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        for (int n = 0; n < stripes; n++) {
+            int idx = ((start + n) % stripes) * PADDING;
+            long current;
+            while ((current = cells.get(idx)) >= quantity) {
+                if (cells.compareAndSet(idx, current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+        return gather(quantity, start);
+    }
+
+    // Đường chậm: một ô không đủ, gom dần từ nhiều ô; thiếu thì trả lại những gì đã lấy
+    private boolean gather(int quantity, int start) {
+        synchronized (gatherLock) {
+            long[] taken = new long[stripes];
+            long remaining = quantity;
+            for (int n = 0; n < stripes && remaining > 0; n++) {
+                int stripe = (start + n) % stripes;
+                int idx = stripe * PADDING;
+                long current;
+                while ((current = cells.get(idx)) > 0 && remaining > 0) {
+                    long take = Math.min(current, remaining);
+                    if (cells.compareAndSet(idx, current, current - take)) {
+                        taken[stripe] += take;
+                        remaining -= take;
+                    }
+                }
+            }
+            if (remaining == 0) {
+                return true;
+            }
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                if (taken[stripe] > 0) {
+                    cells.addAndGet(stripe * PADDING, taken[stripe]);
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Trả hàng lại (huỷ đơn hoặc nhập thêm). */
+    public void restock(long quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        int idx = ThreadLocalRandom.current().nextInt(stripes) * PADDING;
+        cells.addAndGet(idx, quantity);
+    }
+
+    /** Tổng tồn kho hiện tại (ước lượng tại một thời điểm, không khoá). */
+    public long available() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+}
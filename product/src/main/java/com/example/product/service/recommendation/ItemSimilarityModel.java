@@ -0,0 +1,262 @@
+package com.example.product.service.recommendation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mô hình gợi ý item-item (bất biến) dựng từ tương tác ẩn (lượt xem, lượt mua) của user.
+ * Độ tương tự là cosine giữa hai vector user của hai sản phẩm, nhân hệ số co/(co + shrinkage)
+ * để cặp chỉ cùng xuất hiện ở một vài user không chiếm top. Top-k láng giềng của mỗi sản phẩm
+ * được lưu dạng CSR trên mảng nguyên thuỷ (long/float), không có object cho từng cặp.
+ */
+public final class ItemSimilarityModel {
+
+    static final ItemSimilarityModel EMPTY =
+            new ItemSimilarityModel(new long[0], new int[]{0}, new long[0], new float[0], new long[0]);
+
+    private final long[] itemIds; // tăng dần, tra bằng binary search
+    private final int[] neighbourStart; // láng giềng của itemIds[i] nằm ở [neighbourStart[i], neighbourStart[i + 1])
+    private final long[] neighbourIds;
+    private final float[] neighbourScores; // giảm dần trong từng đoạn
+    private final long[] popularIds; // phổ biến nhất trước
+
+    private ItemSimilarityModel(long[] itemIds, int[] neighbourStart, long[] neighbourIds,
+                                float[] neighbourScores, long[] popularIds) {
+        this.itemIds = itemIds;
+        this.neighbourStart = neighbourStart;
+        this.neighbourIds = neighbourIds;
+        this.neighbourScores = neighbourScores;
+        this.popularIds = popularIds;
+    }
+
+    public int itemCount() {
+        return itemIds.length;
+    }
+
+    public int neighbourCount() {
+        return neighbourIds.length;
+    }
+
+    public List<Long> similar(long productId, int limit) {
+        int index = Arrays.binarySearch(itemIds, productId);
+        if (index < 0) {
+            return List.of();
+        }
+        int end = Math.min(neighbourStart[index + 1], neighbourStart[index] + limit);
+        List<Long> result = new ArrayList<>(end - neighbourStart[index]);
+        for (int i = neighbourStart[index]; i < end; i++) {
+            result.add(neighbourIds[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Điểm của sản phẩm j = tổng (trọng số của user với i) x sim(i, j) trên các sản phẩm i trong hồ sơ user.
+     * Các sản phẩm trong {@code exclude} không được gợi ý.
+     */
+    public List<Long> recommend(Map<Long, Float> profile, Set<Long> exclude, int limit) {
+        Map<Long, Float> scores = new HashMap<>();
+        profile.forEach((productId, weight) -> {
+            int index = Arrays.binarySearch(itemIds, productId);
+            if (index < 0) {
+                return;
+            }
+            for (int i = neighbourStart[index]; i < neighbourStart[index + 1]; i++) {
+                if (!exclude.contains(neighbourIds[i])) {
+                    scores.merge(neighbourIds[i], weight * neighbourScores[i], Float::sum);
+                }
+            }
+        });
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Float>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    public List<Long> popular(int limit, Collection<Long> exclude) {
+        List<Long> result = new ArrayList<>(limit);
+        for (int i = 0; i < popularIds.length && result.size() < limit; i++) {
+            if (!exclude.contains(popularIds[i])) {
+                result.add(popularIds[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gom tương tác theo từng user (các dòng của cùng một user phải liền nhau) rồi tính mô hình.
+     * Lưu trên mảng nguyên thuỷ tự nới rộng để tránh một object cho mỗi tương tác.
+     */
+    static final class Builder {
+
+        private final int neighbours;
+        private final int maxItemsPerUser;
+        private final float shrinkage;
+
+        private int[] userStart = new int[1024];
+        private int userCount;
+        private long[] items = new long[4096];
+        private float[] weights = new float[4096];
+        private int size;
+        private final Map<Long, Float> popularity = new HashMap<>();
+
+        Builder(int neighbours, int maxItemsPerUser, float shrinkage) {
+            this.neighbours = neighbours;
+            this.maxItemsPerUser = maxItemsPerUser;
+            this.shrinkage = shrinkage;
+        }
+
+        void startUser() {
+            closeUser();
+            if (userCount + 1 >= userStart.length) {
+                userStart = Arrays.copyOf(userStart, userStart.length * 2);
+            }
+            userStart[userCount] = size;
+            userCount++;
+        }
+
+        void add(long productId, float weight) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            items[size] = productId;
+            weights[size] = weight;
+            size++;
+        }
+
+        void addPopularity(long productId, float weight) {
+            popularity.merge(productId, weight, Float::sum);
+        }
+
+        // User có quá nhiều sản phẩm: chỉ giữ maxItemsPerUser sản phẩm trọng số cao nhất (chặn chi phí bình phương)
+        private void closeUser() {
+            if (userCount == 0) {
+                return;
+            }
+            int start = userStart[userCount - 1];
+            int count = size - start;
+            if (count <= maxItemsPerUser) {
+                return;
+            }
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = start + i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(weights[b], weights[a]));
+            long[] keptItems = new long[maxItemsPerUser];
+            float[] keptWeights = new float[maxItemsPerUser];
+            for (int i = 0; i < maxItemsPerUser; i++) {
+                keptItems[i] = items[order[i]];
+                keptWeights[i] = weights[order[i]];
+            }
+            System.arraycopy(keptItems, 0, items, start, maxItemsPerUser);
+            System.arraycopy(keptWeights, 0, weights, start, maxItemsPerUser);
+            size = start + maxItemsPerUser;
+        }
+
+        ItemSimilarityModel build(int popularSize) {
+            closeUser();
+            userStart[userCount] = size;
+
+            // Đánh số sản phẩm theo thứ tự id tăng dần
+            long[] itemIds = Arrays.stream(items, 0, size).sorted().distinct().toArray();
+            int itemCount = itemIds.length;
+            int[] itemIndex = new int[size];
+            double[] squaredNorm = new double[itemCount];
+            int[] usersPerItem = new int[itemCount + 1];
+            for (int k = 0; k < size; k++) {
+                itemIndex[k] = Arrays.binarySearch(itemIds, items[k]);
+                squaredNorm[itemIndex[k]] += (double) weights[k] * weights[k];
+                usersPerItem[itemIndex[k] + 1]++;
+            }
+
+            // Chỉ mục ngược sản phẩm -> (user, trọng số), cũng dạng CSR
+            int[] itemUserStart = new int[itemCount + 1];
+            for (int i = 0; i < itemCount; i++) {
+                itemUserStart[i + 1] = itemUserStart[i] + usersPerItem[i + 1];
+            }
+            int[] itemUsers = new int[size];
+            float[] itemUserWeights = new float[size];
+            int[] fill = Arrays.copyOf(itemUserStart, itemCount);
+            for (int u = 0; u < userCount; u++) {
+                for (int k = userStart[u]; k < userStart[u + 1]; k++) {
+                    int position = fill[itemIndex[k]]++;
+                    itemUsers[position] = u;
+                    itemUserWeights[position] = weights[k];
+                }
+            }
+
+            int[] neighbourStart = new int[itemCount + 1];
+            long[] neighbourIds = new long[Math.toIntExact((long) itemCount * neighbours)];
+            float[] neighbourScores = new float[neighbourIds.length];
+            int written = 0;
+
+            double[] dot = new double[itemCount];
+            int[] together = new int[itemCount];
+            int[] touched = new int[itemCount];
+            int[] topIndex = new int[neighbours];
+            float[] topScore = new float[neighbours];
+            for (int i = 0; i < itemCount; i++) {
+                int touchedCount = 0;
+                for (int p = itemUserStart[i]; p < itemUserStart[i + 1]; p++) {
+                    int u = itemUsers[p];
+                    float weight = itemUserWeights[p];
+                    for (int k = userStart[u]; k < userStart[u + 1]; k++) {
+                        int j = itemIndex[k];
+                        if (j == i) {
+                            continue;
+                        }
+                        if (together[j] == 0) {
+                            touched[touchedCount++] = j;
+                        }
+                        together[j]++;
+                        dot[j] += (double) weight * weights[k];
+                    }
+                }
+
+                // Giữ top-k bằng chèn vào mảng đã sắp (k nhỏ)
+                int kept = 0;
+                for (int t = 0; t < touchedCount; t++) {
+                    int j = touched[t];
+                    float score = (float) (dot[j] / Math.sqrt(squaredNorm[i] * squaredNorm[j])
+                            * (together[j] / (together[j] + shrinkage)));
+                    dot[j] = 0;
+                    together[j] = 0;
+                    if (kept == neighbours && score <= topScore[kept - 1]) {
+                        continue;
+                    }
+                    int position = kept < neighbours ? kept++ : kept - 1;
+                    while (position > 0 && topScore[position - 1] < score) {
+                        topScore[position] = topScore[position - 1];
+                        topIndex[position] = topIndex[position - 1];
+                        position--;
+                    }
+                    topScore[position] = score;
+                    topIndex[position] = j;
+                }
+                neighbourStart[i] = written;
+                for (int t = 0; t < kept; t++) {
+                    neighbourIds[written] = itemIds[topIndex[t]];
+                    neighbourScores[written] = topScore[t];
+                    written++;
+                }
+            }
+            neighbourStart[itemCount] = written;
+
+            long[] popularIds = popularity.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Float>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(popularSize)
+                    .mapToLong(Map.Entry::getKey)
+                    .toArray();
+            return new ItemSimilarityModel(itemIds, neighbourStart,
+                    Arrays.copyOf(neighbourIds, written), Arrays.copyOf(neighbourScores, written), popularIds);
+        }
+    }
+}
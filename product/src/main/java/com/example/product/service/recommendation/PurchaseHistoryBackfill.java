@@ -0,0 +1,80 @@
+package com.example.product.service.recommendation;
+
+import com.example.product.client.OrderClient;
+import com.example.product.dto.response.DeliveredPurchaseResponse;
+import com.example.product.repository.ProductPurchaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Nạp lịch sử mua cũ vào product_purchases: bảng chỉ được ghi từ event order.delivered,
+ * nên các đơn đã giao trước khi có bảng không có trong mô hình gợi ý.
+ * Tự chạy khi khởi động nếu bảng còn rỗng (lần đầu triển khai), đọc theo trang từ order-service
+ * (keyset theo orderId); INSERT IGNORE nên chạy trùng với event hoặc replica khác không sao.
+ * Thời điểm mua lấy theo ngày đặt đơn (order-service không lưu ngày giao).
+ */
+@Component
+@Slf4j
+public class PurchaseHistoryBackfill {
+
+    private final OrderClient orderClient;
+    private final ProductPurchaseRepository purchaseRepository;
+    private final RecommendationEngine recommendationEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int pageSize;
+
+    public PurchaseHistoryBackfill(OrderClient orderClient,
+                                   ProductPurchaseRepository purchaseRepository,
+                                   RecommendationEngine recommendationEngine,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${recommendation.purchase-backfill.enabled:true}") boolean enabled,
+                                   @Value("${recommendation.purchase-backfill.page-size:500}") int pageSize) {
+        this.orderClient = orderClient;
+        this.purchaseRepository = purchaseRepository;
+        this.recommendationEngine = recommendationEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (!enabled || purchaseRepository.count() > 0) {
+            return;
+        }
+        Thread.ofVirtual().name("purchase-history-backfill").start(this::backfill);
+    }
+
+    void backfill() {
+        long afterOrderId = 0;
+        long rows = 0;
+        try {
+            while (true) {
+                List<DeliveredPurchaseResponse> page = orderClient.getDeliveredPurchases(afterOrderId, pageSize);
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                transactionTemplate.executeWithoutResult(status -> page.forEach(purchase ->
+                        purchaseRepository.insertIgnore(purchase.getOrderId(), purchase.getUsername(),
+                                purchase.getProductId(), purchase.getOrderDate())));
+                rows += page.size();
+                afterOrderId = page.get(page.size() - 1).getOrderId();
+            }
+        } catch (RuntimeException e) {
+            // Đã nạp một phần thì bảng không còn rỗng: lần khởi động sau không chạy lại, phần còn thiếu bị bỏ qua
+            log.error("Nạp lịch sử mua từ order-service thất bại sau {} dòng (đơn cuối {})", rows, afterOrderId, e);
+        }
+        log.info("Đã nạp {} dòng lịch sử mua từ các đơn đã giao", rows);
+        if (rows > 0) {
+            recommendationEngine.rebuild();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.product.service.recommendation;
+
+import com.example.product.config.RabbitMQConfig;
+import com.example.product.event.OrderDeliveredEvent;
+import com.example.product.repository.ProductPurchaseRepository;
+import com.example.product.service.trending.TrendingProducts;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bộ gợi ý chạy trong JVM (thay cho service Python bên ngoài).
+ * Job nền định kỳ đọc tương tác trong cửa sổ gần đây (lượt xem có username + lượt mua từ product_purchases),
+ * dựng {@link ItemSimilarityModel} rồi thay thế mô hình cũ; request chỉ đọc mô hình trong bộ nhớ,
+ * riêng gợi ý theo user thì đọc thêm hồ sơ gần đây của user đó (một truy vấn theo index, có timeout).
+ * Danh sách gợi ý theo user được cache theo TTL: hết hạn thì làm mới nền và vẫn trả bản cũ,
+ * làm mới lỗi thì giữ bản cũ; các request đồng thời của cùng user chỉ chạy một truy vấn.
+ */
+@Component
+@Slf4j
+public class RecommendationEngine {
+
+    // Trọng số tương tác: lượt xem (tối đa VIEW_CAP lượt mỗi sản phẩm) và lượt mua
+    private static final int VIEW_CAP = 5;
+    private static final float PURCHASE_WEIGHT = 5f;
+
+    private static final String INTERACTIONS_SQL =
+            "SELECT username, product_id, SUM(w) FROM ("
+                    + " SELECT username, product_id, LEAST(COUNT(*), " + VIEW_CAP + ") AS w FROM product_view_history"
+                    + " WHERE username IS NOT NULL AND viewed_at >= ? GROUP BY username, product_id"
+                    + " UNION ALL"
+                    + " SELECT username, product_id, " + PURCHASE_WEIGHT + " * COUNT(*) AS w FROM product_purchases"
+                    + " WHERE purchased_at >= ? GROUP BY username, product_id"
+                    + ") t GROUP BY username, product_id ORDER BY username";
+
+    // Độ phổ biến tính cả lượt xem của khách chưa đăng nhập
+    private static final String POPULARITY_SQL =
+            "SELECT product_id, SUM(w) FROM ("
+                    + " SELECT product_id, COUNT(*) AS w FROM product_view_history WHERE viewed_at >= ? GROUP BY product_id"
+                    + " UNION ALL"
+                    + " SELECT product_id, " + PURCHASE_WEIGHT + " * COUNT(*) AS w FROM product_purchases"
+                    + " WHERE purchased_at >= ? GROUP BY product_id"
+                    + ") t GROUP BY product_id";
+
+    private static final String PROFILE_SQL =
+            "SELECT product_id, SUM(w) FROM ("
+                    + " (SELECT product_id, LEAST(COUNT(*), " + VIEW_CAP + ") AS w FROM product_view_history"
+                    + " WHERE username = ? AND viewed_at >= ? GROUP BY product_id ORDER BY MAX(viewed_at) DESC LIMIT ?)"
+                    + " UNION ALL"
+                    + " (SELECT product_id, " + PURCHASE_WEIGHT + " * COUNT(*) AS w FROM product_purchases"
+                    + " WHERE username = ? GROUP BY product_id ORDER BY MAX(purchased_at) DESC LIMIT ?)"
+                    + ") t GROUP BY product_id";
+
+    private final JdbcTemplate modelJdbcTemplate;
+    private final JdbcTemplate profileJdbcTemplate;
+    private final ProductPurchaseRepository purchaseRepository;
+    private final TrendingProducts trendingProducts;
+    private final LoadingCache<String, List<Long>> userRecommendations;
+    private final int userListSize;
+    private final int windowDays;
+    private final int neighbours;
+    private final int maxItemsPerUser;
+    private final float shrinkage;
+    private final int popularSize;
+    private final int profileSize;
+
+    private volatile ItemSimilarityModel model = ItemSimilarityModel.EMPTY;
+    private volatile LocalDateTime builtAt;
+
+    public RecommendationEngine(JdbcTemplate jdbcTemplate,
+                                ProductPurchaseRepository purchaseRepository,
+                                TrendingProducts trendingProducts,
+                                @Value("${recommendation.window-days:90}") int windowDays,
+                                @Value("${recommendation.neighbours:20}") int neighbours,
+                                @Value("${recommendation.max-items-per-user:100}") int maxItemsPerUser,
+                                @Value("${recommendation.shrinkage:10}") float shrinkage,
+                                @Value("${recommendation.popular-size:500}") int popularSize,
+                                @Value("${recommendation.profile-size:50}") int profileSize,
+                                @Value("${recommendation.profile-query-timeout-seconds:2}") int profileQueryTimeoutSeconds,
+                                @Value("${recommendation.user-cache.max-size:50000}") long userCacheSize,
+                                @Value("${recommendation.user-cache.refresh-seconds:300}") long refreshSeconds,
+                                @Value("${recommendation.user-cache.stale-seconds:3600}") long staleSeconds,
+                                @Value("${recommendation.user-cache.list-size:100}") int userListSize) {
+        // JdbcTemplate mặc định đọc hết ResultSet vào bộ nhớ driver; fetch size MIN_VALUE bật chế độ stream
+        // từng dòng của MySQL Connector/J (kết nối bận cho tới khi đọc xong, nên dùng template riêng cho job này)
+        this.modelJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.modelJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        // Truy vấn hồ sơ nằm trên đường request: timeout riêng, không dùng chung với job dựng mô hình
+        this.profileJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.profileJdbcTemplate.setQueryTimeout(profileQueryTimeoutSeconds);
+        this.userListSize = userListSize;
+        this.userRecommendations = Caffeine.newBuilder()
+                .maximumSize(userCacheSize)
+                .refreshAfterWrite(Duration.ofSeconds(refreshSeconds))
+                .expireAfterWrite(Duration.ofSeconds(staleSeconds))
+                .build(this::loadUserRecommendations);
+        this.purchaseRepository = purchaseRepository;
+        this.trendingProducts = trendingProducts;
+        this.windowDays = windowDays;
+        this.neighbours = neighbours;
+        this.maxItemsPerUser = maxItemsPerUser;
+        this.shrinkage = shrinkage;
+        this.popularSize = popularSize;
+        this.profileSize = profileSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofVirtual().name("recommendation-model-builder").start(this::rebuild);
+    }
+
+    @Scheduled(initialDelayString = "${recommendation.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${recommendation.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        try {
+            Timestamp since = Timestamp.valueOf(LocalDateTime.now().minusDays(windowDays));
+            ItemSimilarityModel.Builder builder = new ItemSimilarityModel.Builder(neighbours, maxItemsPerUser, shrinkage);
+            String[] currentUser = {null};
+            int[] users = {0};
+            // Dòng đã sắp theo username: gom theo user khi đọc, không giữ ResultSet dạng list
+            modelJdbcTemplate.query(INTERACTIONS_SQL, (RowCallbackHandler) rs -> {
+                String username = rs.getString(1);
+                if (!username.equals(currentUser[0])) {
+                    builder.startUser();
+                    currentUser[0] = username;
+                    users[0]++;
+                }
+                builder.add(rs.getLong(2), rs.getFloat(3));
+            }, since, since);
+            modelJdbcTemplate.query(POPULARITY_SQL, (RowCallbackHandler) rs ->
+                    builder.addPopularity(rs.getLong(1), rs.getFloat(2)), since, since);
+
+            ItemSimilarityModel built = builder.build(popularSize);
+            model = built;
+            builtAt = LocalDateTime.now();
+            log.info("Đã dựng mô hình gợi ý: {} user, {} sản phẩm, {} cặp láng giềng trong {} ms",
+                    users[0], built.itemCount(), built.neighbourCount(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Dựng mô hình gợi ý thất bại, giữ mô hình cũ (dựng lúc {})", builtAt, e);
+        }
+    }
+
+    public List<Long> similar(Long productId, int limit) {
+        return model.similar(productId, limit);
+    }
+
+    /** Gợi ý theo hồ sơ gần đây của user; các sản phẩm đã xem/mua không được gợi ý lại. */
+    public List<Long> recommendForUser(String username, int limit) {
+        List<Long> ids;
+        try {
+            ids = userRecommendations.get(username);
+        } catch (DataAccessException e) {
+            // Lần nạp đầu lỗi (chưa có bản cũ): nơi gọi bù bằng sản phẩm phổ biến
+            log.warn("Không đọc được hồ sơ gợi ý của user {}: {}", username, e.getMessage());
+            return List.of();
+        }
+        return ids.size() > limit ? ids.subList(0, limit) : ids;
+    }
+
+    private List<Long> loadUserRecommendations(String username) {
+        Map<Long, Float> profile = new LinkedHashMap<>();
+        Timestamp since = Timestamp.valueOf(LocalDateTime.now().minusDays(windowDays));
+        profileJdbcTemplate.query(PROFILE_SQL, (RowCallbackHandler) rs -> profile.put(rs.getLong(1), rs.getFloat(2)),
+                username, since, profileSize, username, profileSize);
+        if (profile.isEmpty()) {
+            return List.of();
+        }
+        return List.copyOf(model.recommend(profile, profile.keySet(), userListSize));
+    }
+
+    public List<Long> popular(int limit, Set<Long> exclude) {
+        return model.popular(limit, exclude);
+    }
+
+    public List<Long> popular(int limit) {
+        return model.popular(limit, Set.of());
+    }
+
+    // Ghi lịch sử mua từ event order.delivered (hàng đợi bền dùng chung, mỗi event được một replica xử lý)
+    @RabbitListener(queues = RabbitMQConfig.PURCHASE_HISTORY_QUEUE)
+    @Transactional
+    public void onOrderDelivered(OrderDeliveredEvent event) {
+        if (event.getOrderId() == null || event.getUsername() == null || event.getProductIds() == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> recorded = new ArrayList<>();
+        for (Long productId : new HashSet<>(event.getProductIds())) {
+            // insertIgnore = 0: event giao lại, lượt mua đã được tính
+            if (purchaseRepository.insertIgnore(event.getOrderId(), event.getUsername(), productId, now) > 0) {
+                recorded.add(productId);
+            }
+        }
+        // Chỉ cộng điểm thịnh hành khi lượt mua đã commit: rollback rồi giao lại thì không bị tính hai lần
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    trendingProducts.recordPurchases(recorded);
+                } catch (RuntimeException e) {
+                    log.warn("Không cập nhật được sản phẩm thịnh hành cho đơn {}: {}", event.getOrderId(), e.getMessage());
+                }
+            }
+        });
+        log.debug("Đã ghi lịch sử mua của đơn {} ({} sản phẩm)", event.getOrderId(), event.getProductIds().size());
+    }
+}
@@ -0,0 +1,696 @@
+package com.example.product.service.search;
+
+import com.example.product.entity.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục đảo (inverted index) trong bộ nhớ cho tìm kiếm sản phẩm theo name, sku, description.
+ *
+ * Mỗi sản phẩm đang hiển thị (active, chưa xoá) là một "doc" với docId tăng dần; khi sửa sản phẩm,
+ * doc cũ bị đánh dấu chết và doc mới được thêm vào cuối, nhờ vậy posting list luôn sắp xếp theo docId
+ * và giao các token chỉ là phép trộn tuyến tính. Khi doc chết quá nhiều thì nén lại.
+ * Các cột category/price/store được lưu dạng mảng để lọc và đếm facet không cần chạm DB.
+ *
+ * Truy vấn: mọi token phải khớp (AND), token cuối khớp theo tiền tố (gõ dở "ip" vẫn ra "iphone");
+ * điểm liên quan = tổng idf * trọng số trường (sku > name > description).
+ */
+public class ProductSearchIndex {
+
+    private static final float SKU_WEIGHT = 4f;
+    private static final float NAME_WEIGHT = 3f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    // Tiền tố quá rộng ("m", "ao") thì không trộn posting mà dùng bitmap hợp làm bộ lọc
+    private static final int PREFIX_MERGE_LIMIT = 32_768;
+    private static final float PREFIX_WEIGHT = 1f;
+    private static final int MIN_DEAD_DOCS_BEFORE_COMPACT = 10_000;
+
+    // Mốc khoảng giá cho facet (VND): <100k, 100k-500k, 500k-1tr, 1tr-5tr, 5tr-10tr, >=10tr
+    public static final List<BigDecimal> PRICE_BUCKET_BOUNDS = List.of(
+            BigDecimal.valueOf(100_000), BigDecimal.valueOf(500_000), BigDecimal.valueOf(1_000_000),
+            BigDecimal.valueOf(5_000_000), BigDecimal.valueOf(10_000_000));
+    private static final double[] PRICE_BOUNDS = PRICE_BUCKET_BOUNDS.stream().mapToDouble(BigDecimal::doubleValue).toArray();
+    private static final int ANY = -1;
+    private static final int NONE = -2;
+
+    public record Hits(List<Long> productIds, long total, Facets facets) {
+    }
+
+    /**
+     * Số sản phẩm theo category, khoảng giá (theo PRICE_BUCKET_BOUNDS) và cửa hàng.
+     * Facet category bỏ qua bộ lọc category, facet giá bỏ qua bộ lọc giá, để sidebar vẫn hiện các lựa chọn khác.
+     */
+    public record Facets(Map<Long, Long> categories, List<Long> priceBuckets, Map<String, Long> stores) {
+    }
+
+    private static final class Postings {
+        int[] docs = new int[4];
+        float[] weights = new float[4];
+        int size;
+
+        void add(int doc, float weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = weight;
+            size++;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private final Map<Long, Integer> docByProduct = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private long[] productIds = new long[1024];
+    private double[] prices = new double[1024];
+    // Cột category/store lưu dạng số thứ tự (ordinal) để đếm facet bằng mảng thay vì map
+    private int[] categoryOrds = new int[1024];
+    private int[] storeOrds = new int[1024];
+    private final List<Long> categoryKeys = new ArrayList<>();
+    private final Map<Long, Integer> categoryOrdinals = new HashMap<>();
+    private final List<String> storeKeys = new ArrayList<>();
+    private final Map<String, Integer> storeOrdinals = new HashMap<>();
+    private int nextDoc;
+    // Phiên bản tăng sau mỗi thay đổi trực tiếp; trong lúc nạp toàn bộ nhớ phiên bản thay đổi cuối của từng sản phẩm
+    private long version;
+    private final Map<Long, Long> changedDuringLoad = new HashMap<>();
+    private boolean loading;
+
+    /** Thêm hoặc cập nhật sản phẩm; sản phẩm không hiển thị (inactive/đã xoá) bị gỡ khỏi chỉ mục. */
+    public void upsert(Product product) {
+        lock.writeLock().lock();
+        try {
+            recordChange(product.getId());
+            upsertInternal(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            recordChange(productId);
+            removeInternal(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Bắt đầu nạp toàn bộ: từ đây mỗi thay đổi trực tiếp được ghi lại để loại các dòng nạp đã cũ. */
+    public void startLoad() {
+        lock.writeLock().lock();
+        try {
+            loading = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Phiên bản hiện tại; lấy trước khi đọc một lô từ DB rồi truyền vào {@link #applyLoaded}. */
+    public long version() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Áp dụng một lô đọc từ DB khi chỉ mục đang ở phiên bản {@code readVersion}.
+     * Sản phẩm đã thay đổi trực tiếp sau phiên bản đó thì dòng đọc được có thể đã cũ nên bị bỏ.
+     * Trả về số dòng bị bỏ.
+     */
+    public int applyLoaded(List<Product> batch, long readVersion) {
+        lock.writeLock().lock();
+        try {
+            int discarded = 0;
+            for (Product product : batch) {
+                if (changedDuringLoad.getOrDefault(product.getId(), 0L) > readVersion) {
+                    discarded++;
+                } else {
+                    upsertInternal(product);
+                }
+            }
+            return discarded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void finishLoad() {
+        lock.writeLock().lock();
+        try {
+            loading = false;
+            changedDuringLoad.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void recordChange(Long productId) {
+        version++;
+        if (loading) {
+            changedDuringLoad.put(productId, version);
+        }
+    }
+
+    private void upsertInternal(Product product) {
+        removeInternal(product.getId());
+        if (!product.isActive() || product.isDeleted()) {
+            return;
+        }
+        int doc = nextDoc++;
+        ensureCapacity(doc + 1);
+        productIds[doc] = product.getId();
+        categoryOrds[doc] = product.getCategory() != null
+                ? ordinal(categoryOrdinals, categoryKeys, product.getCategory().getId()) : NONE;
+        storeOrds[doc] = product.getStoreId() != null ? ordinal(storeOrdinals, storeKeys, product.getStoreId()) : NONE;
+        prices[doc] = product.getPrice() != null ? product.getPrice().doubleValue() : Double.NaN;
+
+        Map<String, Float> termWeights = new HashMap<>();
+        addTerms(termWeights, product.getSku(), SKU_WEIGHT);
+        addTerms(termWeights, product.getName(), NAME_WEIGHT);
+        addTerms(termWeights, product.getDescription(), DESCRIPTION_WEIGHT);
+        termWeights.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new Postings()).add(doc, weight));
+
+        live.set(doc);
+        docByProduct.put(product.getId(), doc);
+        compactIfNeeded();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docByProduct.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tìm sản phẩm theo văn bản và bộ lọc.
+     * Mặc định xếp theo độ liên quan; nếu pageable có sort theo "price" thì xếp theo giá.
+     * {@code withFacets} = true thì đếm facet trong cùng lượt duyệt.
+     */
+    public Hits search(String text, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                       Pageable pageable, boolean withFacets) {
+        List<String> tokens = TextNormalizer.tokenize(text);
+        if (tokens.isEmpty()) {
+            return new Hits(List.of(), 0, withFacets ? emptyFacets() : null);
+        }
+        Sort.Order priceOrder = pageable.getSort().getOrderFor("price");
+        int wanted = (int) Math.min(Integer.MAX_VALUE - 8, pageable.getOffset() + pageable.getPageSize());
+        TopK top = new TopK(wanted, priceOrder != null, priceOrder != null && priceOrder.isDescending());
+        return query(tokens, categoryId, minPrice, maxPrice, top, pageable.getOffset(), withFacets);
+    }
+
+    /** Chỉ đếm facet, không lấy trang kết quả. {@code text} null = mọi sản phẩm đang hiển thị. */
+    public Facets facets(String text, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        List<String> tokens = text != null ? TextNormalizer.tokenize(text) : null;
+        if (tokens != null && tokens.isEmpty()) {
+            return emptyFacets();
+        }
+        return query(tokens, categoryId, minPrice, maxPrice, new TopK(0, false, false), 0, true).facets();
+    }
+
+    private Hits query(List<String> tokens, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                       TopK top, long offset, boolean withFacets) {
+        double min = minPrice != null ? minPrice.doubleValue() : Double.NEGATIVE_INFINITY;
+        double max = maxPrice != null ? maxPrice.doubleValue() : Double.POSITIVE_INFINITY;
+        boolean filterPrice = minPrice != null || maxPrice != null;
+
+        lock.readLock().lock();
+        try {
+            Matcher matcher = tokens != null ? matcher(tokens) : new Matcher(new Postings[0], new float[0], live, 0f);
+            if (matcher == null) {
+                return new Hits(List.of(), 0, withFacets ? emptyFacets() : null);
+            }
+            int targetCategory = categoryId == null ? ANY : categoryOrdinals.getOrDefault(categoryId, NONE);
+            if (matcher.lists.length == 0 && targetCategory == ANY && !filterPrice && !withFacets && !top.byPrice) {
+                return bitmapOnly(matcher.filter, top.capacity, offset);
+            }
+            long[] categoryCounts = withFacets ? new long[categoryKeys.size()] : null;
+            long[] storeCounts = withFacets ? new long[storeKeys.size()] : null;
+            long[] priceCounts = withFacets ? new long[PRICE_BOUNDS.length + 1] : null;
+
+            long total = 0;
+            for (int doc = matcher.next(); doc >= 0; doc = matcher.next()) {
+                if (!live.get(doc)) {
+                    continue;
+                }
+                boolean categoryOk = targetCategory == ANY || categoryOrds[doc] == targetCategory;
+                boolean priceOk = !filterPrice || (prices[doc] >= min && prices[doc] <= max);
+                if (categoryOk && priceOk) {
+                    total++;
+                    top.offer(doc, matcher.score, prices[doc]);
+                    if (withFacets && storeOrds[doc] >= 0) {
+                        storeCounts[storeOrds[doc]]++;
+                    }
+                }
+                if (withFacets) {
+                    if (priceOk && categoryOrds[doc] >= 0) {
+                        categoryCounts[categoryOrds[doc]]++;
+                    }
+                    if (categoryOk && !Double.isNaN(prices[doc])) {
+                        priceCounts[priceBucket(prices[doc])]++;
+                    }
+                }
+            }
+
+            int[] ordered = top.drainSorted();
+            List<Long> ids = new ArrayList<>();
+            for (int i = (int) Math.min(offset, ordered.length); i < ordered.length; i++) {
+                ids.add(productIds[ordered[i]]);
+            }
+            Facets facets = withFacets ? toFacets(categoryCounts, priceCounts, storeCounts) : null;
+            return new Hits(ids, total, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Chỉ có một token và tiền tố rộng, không lọc, không facet: mọi doc cùng điểm nên top-k là các docId nhỏ nhất.
+     * Đếm và lấy trang thẳng trên bitmap thay vì duyệt từng doc qua TopK.
+     */
+    private Hits bitmapOnly(BitSet filter, int wanted, long offset) {
+        BitSet matches = (BitSet) filter.clone();
+        matches.and(live);
+        List<Long> ids = new ArrayList<>();
+        int rank = 0;
+        for (int doc = matches.nextSetBit(0); doc >= 0 && rank < wanted; doc = matches.nextSetBit(doc + 1), rank++) {
+            if (rank >= offset) {
+                ids.add(productIds[doc]);
+            }
+        }
+        return new Hits(ids, matches.cardinality(), null);
+    }
+
+    // Trả về null nếu có token không khớp term nào (kết quả chắc chắn rỗng)
+    private Matcher matcher(List<String> tokens) {
+        List<Postings> exact = new ArrayList<>();
+        for (String token : tokens.subList(0, tokens.size() - 1)) {
+            Postings list = postings.get(token);
+            if (list == null || list.size == 0) {
+                return null;
+            }
+            exact.add(list);
+        }
+        NavigableMap<String, Postings> expansions = prefixMatches(tokens.get(tokens.size() - 1));
+        if (expansions.isEmpty()) {
+            return null;
+        }
+        BitSet prefixFilter = null;
+        int prefixDf;
+        if (postingsSize(expansions) <= PREFIX_MERGE_LIMIT) {
+            Postings merged = mergePostings(expansions);
+            exact.add(merged);
+            prefixDf = merged.size;
+        } else {
+            prefixFilter = unionBitmap(expansions);
+            prefixDf = prefixFilter.cardinality();
+        }
+
+        // Bắt đầu từ posting list ngắn nhất để giao nhanh nhất
+        Postings[] lists = exact.toArray(new Postings[0]);
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        float[] idf = new float[lists.length];
+        int liveDocs = Math.max(1, docByProduct.size());
+        for (int i = 0; i < lists.length; i++) {
+            idf[i] = (float) Math.log(1.0 + (double) liveDocs / lists[i].size);
+        }
+        float prefixScore = (float) Math.log(1.0 + (double) liveDocs / Math.max(1, prefixDf)) * PREFIX_WEIGHT;
+        return new Matcher(lists, idf, prefixFilter, prefixScore);
+    }
+
+    /**
+     * Duyệt các doc khớp mọi token: đi theo posting list ngắn nhất (hoặc bitmap nếu không có list nào),
+     * nhảy cóc trên các list còn lại. {@link #score} là điểm của doc vừa trả về.
+     */
+    private static final class Matcher {
+        private final Postings[] lists;
+        private final float[] idf;
+        private final int[] cursors;
+        private final BitSet filter;
+        private final float filterScore;
+        private int position = -1;
+        float score;
+
+        Matcher(Postings[] lists, float[] idf, BitSet filter, float filterScore) {
+            this.lists = lists;
+            this.idf = idf;
+            this.cursors = new int[lists.length];
+            this.filter = filter;
+            this.filterScore = filterScore;
+        }
+
+        int next() {
+            candidates:
+            while (true) {
+                int doc;
+                if (lists.length > 0) {
+                    if (++position >= lists[0].size) {
+                        return -1;
+                    }
+                    doc = lists[0].docs[position];
+                    score = idf[0] * lists[0].weights[position];
+                } else {
+                    position = filter.nextSetBit(position + 1);
+                    if (position < 0) {
+                        return -1;
+                    }
+                    doc = position;
+                    score = 0f;
+                }
+                for (int l = 1; l < lists.length; l++) {
+                    int pos = advance(lists[l], cursors[l], doc);
+                    cursors[l] = pos;
+                    if (pos >= lists[l].size || lists[l].docs[pos] != doc) {
+                        continue candidates;
+                    }
+                    score += idf[l] * lists[l].weights[pos];
+                }
+                if (filter != null) {
+                    if (lists.length > 0 && !filter.get(doc)) {
+                        continue;
+                    }
+                    score += filterScore;
+                }
+                return doc;
+            }
+        }
+    }
+
+    private static int priceBucket(double price) {
+        int bucket = 0;
+        while (bucket < PRICE_BOUNDS.length && price >= PRICE_BOUNDS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private Facets toFacets(long[] categoryCounts, long[] priceCounts, long[] storeCounts) {
+        Map<Long, Long> categories = new HashMap<>();
+        for (int ord = 0; ord < categoryCounts.length; ord++) {
+            if (categoryCounts[ord] > 0) {
+                categories.put(categoryKeys.get(ord), categoryCounts[ord]);
+            }
+        }
+        Map<String, Long> stores = new HashMap<>();
+        for (int ord = 0; ord < storeCounts.length; ord++) {
+            if (storeCounts[ord] > 0) {
+                stores.put(storeKeys.get(ord), storeCounts[ord]);
+            }
+        }
+        return new Facets(categories, Arrays.stream(priceCounts).boxed().toList(), stores);
+    }
+
+    private static Facets emptyFacets() {
+        return new Facets(Map.of(), Arrays.stream(new long[PRICE_BOUNDS.length + 1]).boxed().toList(), Map.of());
+    }
+
+    private static <K> int ordinal(Map<K, Integer> ordinals, List<K> keys, K key) {
+        return ordinals.computeIfAbsent(key, k -> {
+            keys.add(k);
+            return keys.size() - 1;
+        });
+    }
+
+    // Tìm kiếm nhảy cóc (galloping) tới vị trí đầu tiên có docId >= target
+    private static int advance(Postings list, int from, int target) {
+        int bound = 1;
+        int lo = from;
+        while (lo + bound < list.size && list.docs[lo + bound] < target) {
+            lo += bound;
+            bound <<= 1;
+        }
+        int hi = Math.min(list.size, lo + bound + 1);
+        int idx = Arrays.binarySearch(list.docs, lo, hi, target);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    private NavigableMap<String, Postings> prefixMatches(String prefix) {
+        NavigableMap<String, Postings> matches = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (matches.size() <= MAX_PREFIX_EXPANSIONS) {
+            return matches;
+        }
+        // Giữ lại MAX_PREFIX_EXPANSIONS term đầu tiên theo thứ tự từ điển
+        String last = prefix;
+        int taken = 0;
+        for (String term : matches.keySet()) {
+            last = term;
+            if (++taken == MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+        }
+        return matches.headMap(last, true);
+    }
+
+    private static int postingsSize(NavigableMap<String, Postings> lists) {
+        int total = 0;
+        for (Postings list : lists.values()) {
+            total += list.size;
+        }
+        return total;
+    }
+
+    // Gộp posting của mọi term có tiền tố này (giữ trọng số lớn nhất cho mỗi doc)
+    private static Postings mergePostings(NavigableMap<String, Postings> lists) {
+        if (lists.size() == 1) {
+            return lists.firstEntry().getValue();
+        }
+        // Mã hoá (doc, weight) vào một long để sắp xếp bằng mảng nguyên thuỷ
+        long[] entries = new long[postingsSize(lists)];
+        int n = 0;
+        for (Postings list : lists.values()) {
+            for (int i = 0; i < list.size; i++) {
+                entries[n++] = ((long) list.docs[i] << 32) | (Float.floatToRawIntBits(list.weights[i]) & 0xFFFFFFFFL);
+            }
+        }
+        Arrays.sort(entries);
+        Postings result = new Postings();
+        for (long entry : entries) {
+            int doc = (int) (entry >>> 32);
+            float weight = Float.intBitsToFloat((int) entry);
+            if (result.size > 0 && result.docs[result.size - 1] == doc) {
+                result.weights[result.size - 1] = Math.max(result.weights[result.size - 1], weight);
+            } else {
+                result.add(doc, weight);
+            }
+        }
+        return result;
+    }
+
+    private BitSet unionBitmap(NavigableMap<String, Postings> lists) {
+        BitSet union = new BitSet(nextDoc);
+        for (Postings list : lists.values()) {
+            for (int i = 0; i < list.size; i++) {
+                union.set(list.docs[i]);
+            }
+        }
+        return union;
+    }
+
+    private void addTerms(Map<String, Float> termWeights, String text, float weight) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            termWeights.merge(token, weight, Float::sum);
+        }
+    }
+
+    private void removeInternal(Long productId) {
+        Integer doc = docByProduct.remove(productId);
+        if (doc != null) {
+            live.clear(doc);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > productIds.length) {
+            int newLength = Math.max(capacity, productIds.length * 2);
+            productIds = Arrays.copyOf(productIds, newLength);
+            categoryOrds = Arrays.copyOf(categoryOrds, newLength);
+            storeOrds = Arrays.copyOf(storeOrds, newLength);
+            prices = Arrays.copyOf(prices, newLength);
+        }
+    }
+
+    // Nén: đánh số lại các doc còn sống (giữ nguyên thứ tự), bỏ doc chết khỏi mọi posting list
+    private void compactIfNeeded() {
+        int dead = nextDoc - docByProduct.size();
+        if (dead < MIN_DEAD_DOCS_BEFORE_COMPACT || dead < docByProduct.size() / 4) {
+            return;
+        }
+        int[] remap = new int[nextDoc];
+        int newDoc = 0;
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (live.get(doc)) {
+                remap[doc] = newDoc;
+                productIds[newDoc] = productIds[doc];
+                categoryOrds[newDoc] = categoryOrds[doc];
+                storeOrds[newDoc] = storeOrds[doc];
+                prices[newDoc] = prices[doc];
+                newDoc++;
+            } else {
+                remap[doc] = -1;
+            }
+        }
+        postings.values().removeIf(list -> {
+            int kept = 0;
+            for (int i = 0; i < list.size; i++) {
+                int mapped = remap[list.docs[i]];
+                if (mapped >= 0) {
+                    list.docs[kept] = mapped;
+                    list.weights[kept] = list.weights[i];
+                    kept++;
+                }
+            }
+            list.size = kept;
+            return kept == 0;
+        });
+        docByProduct.replaceAll((productId, doc) -> remap[doc]);
+        live.clear();
+        live.set(0, newDoc);
+        nextDoc = newDoc;
+    }
+
+    /** Giữ k doc tốt nhất bằng một heap nhỏ (gốc = doc kém nhất), tránh sắp xếp toàn bộ kết quả. */
+    private static final class TopK {
+        private final int capacity;
+        private final boolean byPrice;
+        private final boolean descendingPrice;
+        private int[] docs = new int[16];
+        private float[] scores = new float[16];
+        private double[] docPrices = new double[16];
+        private int size;
+
+        TopK(int capacity, boolean byPrice, boolean descendingPrice) {
+            this.capacity = capacity;
+            this.byPrice = byPrice;
+            this.descendingPrice = descendingPrice;
+        }
+
+        // true nếu a xếp trước b trong kết quả
+        private boolean better(int a, int b) {
+            if (byPrice) {
+                double pa = docPrices[a];
+                double pb = docPrices[b];
+                if (Double.isNaN(pa) != Double.isNaN(pb)) {
+                    return Double.isNaN(pb);
+                }
+                int cmp = Double.compare(pa, pb);
+                if (cmp != 0) {
+                    return descendingPrice ? cmp > 0 : cmp < 0;
+                }
+            } else if (scores[a] != scores[b]) {
+                return scores[a] > scores[b];
+            }
+            return docs[a] < docs[b];
+        }
+
+        void offer(int doc, float score, double price) {
+            if (capacity == 0) {
+                return;
+            }
+            if (size < capacity) {
+                if (size == docs.length) {
+                    int newLength = Math.min(capacity, size * 2);
+                    docs = Arrays.copyOf(docs, newLength);
+                    scores = Arrays.copyOf(scores, newLength);
+                    docPrices = Arrays.copyOf(docPrices, newLength);
+                }
+                set(size, doc, score, price);
+                siftUp(size++);
+                return;
+            }
+            // Đã đủ k phần tử: chỉ thay gốc (kém nhất) nếu doc mới tốt hơn
+            if (beats(doc, score, price, 0)) {
+                set(0, doc, score, price);
+                siftDown(0);
+            }
+        }
+
+        private boolean beats(int doc, float score, double price, int slot) {
+            if (byPrice) {
+                double other = docPrices[slot];
+                if (Double.isNaN(price) != Double.isNaN(other)) {
+                    return Double.isNaN(other);
+                }
+                int cmp = Double.compare(price, other);
+                if (cmp != 0) {
+                    return descendingPrice ? cmp > 0 : cmp < 0;
+                }
+            } else if (score != scores[slot]) {
+                return score > scores[slot];
+            }
+            return doc < docs[slot];
+        }
+
+        private void set(int slot, int doc, float score, double price) {
+            docs[slot] = doc;
+            scores[slot] = score;
+            docPrices[slot] = price;
+        }
+
+        private void swap(int a, int b) {
+            int d = docs[a]; docs[a] = docs[b]; docs[b] = d;
+            float s = scores[a]; scores[a] = scores[b]; scores[b] = s;
+            double p = docPrices[a]; docPrices[a] = docPrices[b]; docPrices[b] = p;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!better(parent, i)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int right = left + 1;
+                int worst = i;
+                if (left < size && better(worst, left)) {
+                    worst = left;
+                }
+                if (right < size && better(worst, right)) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        int[] drainSorted() {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = docs[0];
+                swap(0, --size);
+                siftDown(0);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.product.service.search;
+
+import com.example.product.entity.Product;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.event.ProductsImportedEvent;
+import com.example.product.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Giữ {@link ProductSearchIndex} đồng bộ với bảng products.
+ * Khi khởi động, chỉ mục được nạp nền theo từng lô (keyset theo id); trong lúc đó tìm kiếm
+ * vẫn dùng truy vấn LIKE trên DB. Sau đó mỗi thay đổi sản phẩm được áp dụng khi transaction commit.
+ * Thay đổi trực tiếp xảy ra trong lúc nạp được đánh phiên bản; dòng của lô nạp đọc trước phiên bản đó bị bỏ
+ * để lô cũ không ghi đè lên bản mới hơn.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndexer {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex index = new ProductSearchIndex();
+    private volatile boolean ready;
+
+    public ProductSearchIndexer(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        // Bật trước khi thread nạp chạy để mọi thay đổi từ lúc này đều được so phiên bản với lô nạp
+        index.startLoad();
+        Thread.ofVirtual().name("product-search-index-loader").start(this::load);
+    }
+
+    private void load() {
+        long started = System.currentTimeMillis();
+        try {
+            long lastId = 0;
+            long discarded = 0;
+            List<Product> batch;
+            do {
+                // Lấy phiên bản trước khi đọc: thay đổi trực tiếp nào áp dụng sau đó đều mới hơn dòng đọc được
+                long readVersion = index.version();
+                batch = productRepository.findTop1000ByIdGreaterThanAndIsDeletedFalseAndIsActiveTrueOrderByIdAsc(lastId);
+                discarded += index.applyLoaded(batch, readVersion);
+                if (!batch.isEmpty()) {
+                    lastId = batch.get(batch.size() - 1).getId();
+                }
+            } while (batch.size() == LOAD_BATCH_SIZE);
+            ready = true;
+            log.info("Đã nạp chỉ mục tìm kiếm: {} sản phẩm trong {} ms, bỏ {} dòng cũ hơn thay đổi trực tiếp",
+                    index.size(), System.currentTimeMillis() - started, discarded);
+        } catch (RuntimeException e) {
+            log.error("Nạp chỉ mục tìm kiếm thất bại, tìm kiếm tiếp tục dùng truy vấn DB", e);
+        } finally {
+            index.finishLoad();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.STOCK_CHANGED) {
+            return; // tồn kho không nằm trong chỉ mục
+        }
+        if (event.getType() == ProductChangedEvent.Type.DELETE) {
+            index.remove(event.getProductId());
+            return;
+        }
+        productRepository.findById(event.getProductId())
+                .ifPresentOrElse(index::upsert, () -> index.remove(event.getProductId()));
+    }
+
+    // Sản phẩm nhập hàng loạt được ghi thẳng bằng JDBC, không có event cho từng sản phẩm
+    @EventListener
+    public void onProductsImported(ProductsImportedEvent event) {
+        event.getProducts().forEach(index::upsert);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public ProductSearchIndex.Hits search(String text, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                          Pageable pageable, boolean withFacets) {
+        return index.search(text, categoryId, minPrice, maxPrice, pageable, withFacets);
+    }
+
+    public ProductSearchIndex.Facets facets(String text, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        return index.facets(text, categoryId, minPrice, maxPrice);
+    }
+}
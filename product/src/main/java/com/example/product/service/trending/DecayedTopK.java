@@ -0,0 +1,131 @@
+package com.example.product.service.trending;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Top-K sản phẩm theo điểm suy giảm theo thời gian (half-life), bộ nhớ cố định không phụ thuộc lưu lượng.
+ * Điểm từng sản phẩm được ước lượng bằng Count-Min sketch (conservative update); chỉ {@code capacity}
+ * ứng viên điểm cao nhất (heavy hitters) được giữ id.
+ * Suy giảm dùng forward decay: sự kiện ở thời điểm t cộng trọng số x e^(lambda (t - landmark)),
+ * nên mọi điểm đã lưu cùng thang và không phải cập nhật theo thời gian; khi hệ số quá lớn thì
+ * đổi landmark và nhân lại toàn bộ. Không thread-safe, nơi dùng tự khoá.
+ */
+final class DecayedTopK {
+
+    // Đổi landmark khi hệ số vượt e^20 (~5e8), còn rất xa giới hạn của double
+    private static final double MAX_EXPONENT = 20;
+
+    public record Item(long productId, double score) {
+    }
+
+    private final double[][] counters;
+    private final int width;
+    private final double lambda; // theo mili giây
+    private final int capacity;
+    private final Map<Long, Double> candidates;
+    private long landmark;
+    // Cận dưới của điểm nhỏ nhất trong candidates: điểm đã lưu chỉ tăng nên không cần quét lại khi chưa vượt
+    private double floor;
+
+    DecayedTopK(int depth, int width, long halfLifeMillis, int capacity, long now) {
+        this.counters = new double[depth][width];
+        this.width = width;
+        this.lambda = Math.log(2) / halfLifeMillis;
+        this.capacity = capacity;
+        this.candidates = new HashMap<>(capacity * 2);
+        this.landmark = now;
+    }
+
+    void add(long productId, double weight, long now) {
+        double exponent = lambda * (now - landmark);
+        if (exponent > MAX_EXPONENT) {
+            rescale(now);
+            exponent = 0;
+        }
+        double score = increment(productId, weight * Math.exp(exponent));
+
+        if (candidates.containsKey(productId) || candidates.size() < capacity) {
+            candidates.put(productId, score);
+            return;
+        }
+        if (score <= floor) {
+            return;
+        }
+        Long weakest = null;
+        double weakestScore = Double.MAX_VALUE;
+        for (Map.Entry<Long, Double> entry : candidates.entrySet()) {
+            if (entry.getValue() < weakestScore) {
+                weakest = entry.getKey();
+                weakestScore = entry.getValue();
+            }
+        }
+        if (score > weakestScore) {
+            candidates.remove(weakest);
+            candidates.put(productId, score);
+            weakestScore = Double.MAX_VALUE;
+            for (double value : candidates.values()) {
+                weakestScore = Math.min(weakestScore, value);
+            }
+        }
+        floor = weakestScore;
+    }
+
+    /** Tối đa {@code limit} ứng viên có điểm (đã suy giảm tới {@code now}) từ {@code minScore} trở lên, cao trước. */
+    List<Item> top(int limit, double minScore, long now) {
+        double decay = Math.exp(-lambda * (now - landmark));
+        List<Item> result = new ArrayList<>(candidates.size());
+        candidates.forEach((id, score) -> {
+            if (score * decay >= minScore) {
+                result.add(new Item(id, score * decay));
+            }
+        });
+        result.sort((a, b) -> a.score() != b.score()
+                ? Double.compare(b.score(), a.score())
+                : Long.compare(a.productId(), b.productId()));
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    void remove(long productId) {
+        candidates.remove(productId);
+    }
+
+    // Conservative update: chỉ nâng các ô đang thấp hơn (ước lượng cũ + trọng số), giảm sai số dư của Count-Min
+    private double increment(long productId, double weight) {
+        long hash = mix(productId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            estimate = Math.min(estimate, counters[row][Math.floorMod(h1 + row * h2, width)]);
+        }
+        double updated = estimate + weight;
+        for (int row = 0; row < counters.length; row++) {
+            int index = Math.floorMod(h1 + row * h2, width);
+            counters[row][index] = Math.max(counters[row][index], updated);
+        }
+        return updated;
+    }
+
+    private void rescale(long now) {
+        double factor = Math.exp(-lambda * (now - landmark));
+        for (double[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] *= factor;
+            }
+        }
+        candidates.replaceAll((id, score) -> score * factor);
+        floor *= factor;
+        landmark = now;
+    }
+
+    // Hàm trộn của SplitMix64: id liên tiếp vẫn rải đều trên các ô
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
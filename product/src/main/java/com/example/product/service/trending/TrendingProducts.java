@@ -0,0 +1,155 @@
+package com.example.product.service.trending;
+
+import com.example.product.dto.response.TrendingResponse;
+import com.example.product.entity.Product;
+import com.example.product.event.ProductChangedEvent;
+import com.example.product.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sản phẩm đang thịnh hành, tính hoàn toàn trong bộ nhớ từ luồng sự kiện xem / mua (không quét product_view_history).
+ * Mỗi phạm vi (toàn sàn và từng danh mục) có một {@link DecayedTopK} kích thước cố định, nên bộ nhớ chỉ
+ * phụ thuộc số danh mục chứ không phụ thuộc lưu lượng. Mỗi replica chỉ thấy phần lượt xem được cân bằng tải tới nó
+ * và phần lượt mua nó nhận từ hàng đợi dùng chung, tức một mẫu của cùng phân phối; điểm chỉ có ý nghĩa tương đối.
+ * Khởi động lại thì bắt đầu từ rỗng và đầy dần theo half-life.
+ */
+@Component
+public class TrendingProducts {
+
+    // Lấy dư ứng viên để còn đủ sau khi lọc sản phẩm đã ngừng bán / đổi danh mục
+    private static final int OVERFETCH = 2;
+
+    private final ProductRepository productRepository;
+    private final int depth;
+    private final int categoryWidth;
+    private final long halfLifeMillis;
+    private final int categoryCapacity;
+    private final double viewWeight;
+    private final double purchaseWeight;
+    private final double minScore;
+
+    private final DecayedTopK global;
+    private final Map<Long, DecayedTopK> byCategory = new ConcurrentHashMap<>();
+
+    public TrendingProducts(ProductRepository productRepository,
+                            @Value("${trending.sketch.depth:4}") int depth,
+                            @Value("${trending.sketch.width:4096}") int width,
+                            @Value("${trending.sketch.category-width:512}") int categoryWidth,
+                            @Value("${trending.half-life-minutes:360}") long halfLifeMinutes,
+                            @Value("${trending.capacity:200}") int capacity,
+                            @Value("${trending.category-capacity:50}") int categoryCapacity,
+                            @Value("${trending.view-weight:1}") double viewWeight,
+                            @Value("${trending.purchase-weight:5}") double purchaseWeight,
+                            @Value("${trending.min-score:1}") double minScore) {
+        this.productRepository = productRepository;
+        this.depth = depth;
+        this.categoryWidth = categoryWidth;
+        this.halfLifeMillis = Duration.ofMinutes(halfLifeMinutes).toMillis();
+        this.categoryCapacity = categoryCapacity;
+        this.viewWeight = viewWeight;
+        this.purchaseWeight = purchaseWeight;
+        this.minScore = minScore;
+        this.global = new DecayedTopK(depth, width, halfLifeMillis, capacity, System.currentTimeMillis());
+    }
+
+    /** @param categoryId danh mục của sản phẩm đang bán (null nếu không có / ngừng bán) */
+    public void recordView(Long productId, Long categoryId) {
+        record(productId, categoryId, viewWeight);
+    }
+
+    /** Lượt mua đến từ hàng đợi (ngoài đường request): đọc danh mục của cả đơn bằng một truy vấn theo khoá chính. */
+    public void recordPurchases(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        for (Product product : productRepository.findAllById(productIds)) {
+            Long categoryId = product.isActive() && !product.isDeleted() && product.getCategory() != null
+                    ? product.getCategory().getId()
+                    : null;
+            record(product.getId(), categoryId, purchaseWeight);
+        }
+    }
+
+    /**
+     * Top sản phẩm toàn sàn ({@code categoryId == null}) hoặc trong một danh mục. Xếp hạng lấy từ bộ nhớ,
+     * chỉ đọc thêm thông tin hiển thị của vài chục sản phẩm theo khoá chính.
+     */
+    public TrendingResponse trending(Long categoryId, int limit) {
+        List<DecayedTopK.Item> ranked = top(categoryId, limit * OVERFETCH);
+        Map<Long, Product> products = productRepository.findAllById(ranked.stream().map(DecayedTopK.Item::productId).toList())
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<TrendingResponse.Item> items = new ArrayList<>(limit);
+        for (DecayedTopK.Item item : ranked) {
+            Product product = products.get(item.productId());
+            if (product == null || !product.isActive() || product.isDeleted()) {
+                continue;
+            }
+            if (categoryId != null && (product.getCategory() == null || !categoryId.equals(product.getCategory().getId()))) {
+                continue;
+            }
+            items.add(new TrendingResponse.Item(product.getId(), product.getName(), product.getPrice(),
+                    product.getImageUrl(), item.score()));
+            if (items.size() == limit) {
+                break;
+            }
+        }
+        return TrendingResponse.builder().categoryId(categoryId).products(items).build();
+    }
+
+    List<DecayedTopK.Item> top(Long categoryId, int limit) {
+        DecayedTopK scope = categoryId == null ? global : byCategory.get(categoryId);
+        if (scope == null) {
+            return List.of();
+        }
+        synchronized (scope) {
+            return List.copyOf(scope.top(limit, minScore, System.currentTimeMillis()));
+        }
+    }
+
+    // Sản phẩm bị xoá: bỏ khỏi danh sách ứng viên để nhường chỗ (ô đếm trong sketch tự suy giảm)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() != ProductChangedEvent.Type.DELETE) {
+            return;
+        }
+        synchronized (global) {
+            global.remove(event.getProductId());
+        }
+        for (DecayedTopK scope : byCategory.values()) {
+            synchronized (scope) {
+                scope.remove(event.getProductId());
+            }
+        }
+    }
+
+    private void record(Long productId, Long categoryId, double weight) {
+        if (productId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (global) {
+            global.add(productId, weight, now);
+        }
+        // Số phạm vi bị chặn bởi số danh mục
+        if (categoryId != null) {
+            DecayedTopK scope = byCategory.computeIfAbsent(categoryId,
+                    id -> new DecayedTopK(depth, categoryWidth, halfLifeMillis, categoryCapacity, now));
+            synchronized (scope) {
+                scope.add(productId, weight, now);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.product.service.autocomplete;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestionTrieTest {
+
+	private static final long SAMSUNG = 1, SONY = 2, SAM = 3;
+
+	@Test
+	void insertSplitsEdgesAndKeepsEveryKeyReachable() {
+		SuggestionTrie trie = brands();
+
+		// gốc, "s", "am", "sung", "ony": "samsung" bị tách hai lần
+		assertEquals(5, trie.nodeCount());
+		assertEquals(List.of(SAMSUNG, SONY, SAM), trie.search("s", 10));
+		// Tiền tố dừng giữa cạnh "am"
+		assertEquals(List.of(SAMSUNG, SAM), trie.search("sa", 10));
+		assertEquals(List.of(SAMSUNG, SAM), trie.search("sam", 10));
+		assertEquals(List.of(SAMSUNG), trie.search("samsung", 10));
+		assertEquals(List.of(SONY), trie.search("so", 10));
+		assertEquals(List.of(SAMSUNG), trie.search("s", 1));
+	}
+
+	@Test
+	void removeMergesNodesLeftWithASingleChild() {
+		SuggestionTrie trie = brands();
+
+		// Cắt "ony", nút "s" chỉ còn con "am" -> gộp thành "sam"
+		trie.remove("sony", SONY);
+		assertEquals(3, trie.nodeCount());
+		assertEquals(List.of(SAMSUNG, SAM), trie.search("s", 10));
+		assertEquals(List.of(SAMSUNG, SAM), trie.search("sa", 10));
+
+		// "sam" hết id và chỉ còn con "sung" -> gộp thành "samsung"
+		trie.remove("sam", SAM);
+		assertEquals(2, trie.nodeCount());
+		assertEquals(List.of(SAMSUNG), trie.search("samsu", 10));
+
+		trie.remove("samsung", SAMSUNG);
+		assertEquals(1, trie.nodeCount());
+		assertTrue(trie.search("s", 10).isEmpty());
+	}
+
+	@Test
+	void reinsertingWithNewScoreReordersResults() {
+		SuggestionTrie trie = new SuggestionTrie();
+		put(trie, 1, 10, "ao thun", "thun");
+		put(trie, 2, 5, "ao khoac", "khoac");
+		assertEquals(List.of(1L, 2L), trie.search("ao", 10));
+
+		// Cách AutocompleteIndex đổi điểm: gỡ các khoá, đặt điểm mới, thêm lại
+		update(trie, 2, 20, "ao khoac", "khoac");
+		assertEquals(List.of(2L, 1L), trie.search("ao", 10));
+		assertEquals(List.of(2L), trie.search("ao", 1));
+
+		update(trie, 2, 1, "ao khoac", "khoac");
+		assertEquals(List.of(1L, 2L), trie.search("ao", 10));
+		assertEquals(List.of(1L), trie.search("ao", 1));
+		assertEquals(List.of(2L), trie.search("kh", 10));
+	}
+
+	@Test
+	void sameIdUnderSeveralKeysIsReturnedOnce() {
+		SuggestionTrie trie = new SuggestionTrie();
+		put(trie, 1, 10, "ao thun", "ao");
+		put(trie, 2, 5, "ao so mi");
+
+		assertEquals(List.of(1L, 2L), trie.search("ao", 10));
+	}
+
+	@Test
+	void prefixMissesReturnNothingAndRemovingUnknownKeysIsANoOp() {
+		SuggestionTrie trie = brands();
+
+		assertTrue(trie.search("x", 10).isEmpty());
+		// Lệch giữa cạnh và dài hơn mọi khoá
+		assertTrue(trie.search("samx", 10).isEmpty());
+		assertTrue(trie.search("samsungs", 10).isEmpty());
+
+		trie.remove("sa", SAM);
+		trie.remove("samsung", SONY);
+		trie.remove("lg", SAMSUNG);
+		assertEquals(5, trie.nodeCount());
+		assertEquals(List.of(SAMSUNG, SONY, SAM), trie.search("s", 10));
+	}
+
+	@Test
+	void randomInsertsAndRemovesMatchBruteForce() {
+		SuggestionTrie trie = new SuggestionTrie();
+		Map<Long, Set<String>> keys = new HashMap<>();
+		Map<Long, Long> scores = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20_000; i++) {
+			long id = random.nextInt(50);
+			// Bảng chữ nhỏ để khoá hay chung tiền tố, cạnh bị tách và gộp liên tục
+			String key = randomKey(random, 1 + random.nextInt(6));
+			if (random.nextInt(3) > 0) {
+				if (!scores.containsKey(id)) {
+					// Điểm khác nhau giữa các id để thứ tự mong đợi là duy nhất
+					long score = id * 37 % 101;
+					trie.setScore(id, score);
+					scores.put(id, score);
+				}
+				trie.insert(key, id);
+				keys.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+			} else {
+				trie.remove(key, id);
+				if (keys.containsKey(id) && keys.get(id).remove(key) && keys.get(id).isEmpty()) {
+					keys.remove(id);
+					trie.removeScore(id);
+					scores.remove(id);
+				}
+			}
+			String prefix = randomKey(random, 1 + random.nextInt(3));
+			assertEquals(expected(keys, scores, prefix, 5), trie.search(prefix, 5), prefix);
+		}
+	}
+
+	private static List<Long> expected(Map<Long, Set<String>> keys, Map<Long, Long> scores, String prefix, int limit) {
+		List<Long> ids = new ArrayList<>();
+		keys.forEach((id, idKeys) -> {
+			if (idKeys.stream().anyMatch(key -> key.startsWith(prefix))) {
+				ids.add(id);
+			}
+		});
+		ids.sort(Comparator.comparing((Long id) -> scores.get(id)).reversed());
+		return ids.subList(0, Math.min(limit, ids.size()));
+	}
+
+	private static String randomKey(Random random, int length) {
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			key.append("abc".charAt(random.nextInt(3)));
+		}
+		return key.toString();
+	}
+
+	private static SuggestionTrie brands() {
+		SuggestionTrie trie = new SuggestionTrie();
+		put(trie, SAMSUNG, 10, "samsung");
+		put(trie, SONY, 5, "sony");
+		put(trie, SAM, 1, "sam");
+		return trie;
+	}
+
+	private static void put(SuggestionTrie trie, long id, long score, String... keys) {
+		trie.setScore(id, score);
+		for (String key : keys) {
+			trie.insert(key, id);
+		}
+	}
+
+	private static void update(SuggestionTrie trie, long id, long score, String... keys) {
+		for (String key : keys) {
+			trie.remove(key, id);
+		}
+		trie.removeScore(id);
+		put(trie, id, score, keys);
+	}
+}
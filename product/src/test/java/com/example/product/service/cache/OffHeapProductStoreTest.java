@@ -0,0 +1,93 @@
+package com.example.product.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapProductStoreTest {
+
+	private static final long TTL = Duration.ofMinutes(1).toNanos();
+
+	@Test
+	void putReplacesPreviousValue() {
+		OffHeapProductStore store = new OffHeapProductStore(4096, TTL);
+		store.put(snapshot(1L, "old"));
+		store.put(snapshot(1L, "new"));
+
+		assertEquals("new", store.get(1L).description());
+		assertEquals(1, store.size());
+	}
+
+	@Test
+	void wrappingTheRingEvictsOldestAndKeepsNewest() {
+		OffHeapProductStore store = new OffHeapProductStore(4096, TTL);
+		for (long id = 1; id <= 100; id++) {
+			store.put(snapshot(id, "x".repeat(100)));
+		}
+
+		assertNull(store.get(1L));
+		assertNotNull(store.get(100L));
+		assertTrue(store.evictionCount() > 0);
+		assertTrue(store.usedBytes() <= 4096);
+	}
+
+	@Test
+	void entryLargerThanSlabIsNotStoredAndDropsStaleValue() {
+		OffHeapProductStore store = new OffHeapProductStore(4096, TTL);
+		store.put(snapshot(1L, "small"));
+		store.put(snapshot(1L, "x".repeat(5000)));
+
+		assertNull(store.get(1L));
+		assertEquals(0, store.usedBytes());
+	}
+
+	@Test
+	void expiredEntryIsRemovedOnRead() throws Exception {
+		OffHeapProductStore store = new OffHeapProductStore(4096, 1);
+		store.put(snapshot(1L, "x"));
+		Thread.sleep(1);
+
+		assertNull(store.get(1L));
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	void randomOperationsNeverReturnStaleValues() {
+		OffHeapProductStore store = new OffHeapProductStore(4096, TTL);
+		Map<Long, String> latest = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 50_000; i++) {
+			long id = random.nextInt(64);
+			int op = random.nextInt(10);
+			if (op < 6) {
+				// Độ dài khác nhau để con trỏ ghi thường xuyên phải bỏ phần cuối slab
+				String description = "d" + i + "x".repeat(random.nextInt(400));
+				store.put(snapshot(id, description));
+				latest.put(id, description);
+			} else if (op < 7) {
+				store.remove(id);
+				latest.remove(id);
+			} else {
+				ProductSnapshot cached = store.get(id);
+				if (cached != null) {
+					assertEquals(latest.get(id), cached.description());
+				}
+			}
+			assertTrue(store.usedBytes() <= 4096);
+		}
+	}
+
+	private static ProductSnapshot snapshot(Long id, String description) {
+		return new ProductSnapshot(id, "SKU-" + id, "Sản phẩm " + id, description, BigDecimal.TEN, 5,
+				null, true, false, false, 3L, "store-1", null, null);
+	}
+}
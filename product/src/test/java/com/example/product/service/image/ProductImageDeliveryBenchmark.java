@@ -0,0 +1,223 @@
+package com.example.product.service.image;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chạy tải thật qua Tomcat nhúng (connector NIO, bật sendfile) để so ProductImageDelivery với
+ * resource handler cũ (ResourceHttpRequestHandler) trên cùng một file ảnh.
+ * Chạy thủ công: {@code mvn -pl product test -Dtest=ProductImageDeliveryBenchmark -Dbenchmark=true};
+ * tuỳ chỉnh bằng {@code -Dbenchmark.seconds} và {@code -Dbenchmark.concurrency}. Kết quả ghi qua logger.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProductImageDeliveryBenchmark {
+
+	private static final String HASH = "ab".repeat(32);
+	private static final String RELATIVE_PATH = "ab/" + HASH + "/card.jpg";
+	private static final int IMAGE_BYTES = 48 * 1024;
+	private static final int SENDFILE_THRESHOLD = 16 * 1024;
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+	private static final Duration WARMUP = Duration.ofSeconds(3);
+	private static final Duration MEASURE = Duration.ofSeconds(Long.getLong("benchmark.seconds", 10));
+	private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 32);
+
+	@TempDir
+	Path temp;
+
+	private Tomcat tomcat;
+	private HttpClient client;
+	private String baseUrl;
+	// Số response mà handler giao cho sendfile, để chắc chắn nhánh sendfile thật sự được đo
+	private final LongAdder sendfileResponses = new LongAdder();
+
+	@BeforeEach
+	void startTomcat() throws Exception {
+		Path root = temp.resolve("uploads");
+		byte[] image = new byte[IMAGE_BYTES];
+		new Random(42).nextBytes(image);
+		Path file = root.resolve(RELATIVE_PATH);
+		Files.createDirectories(file.getParent());
+		Files.write(file, image);
+
+		ProductImageDelivery delivery = new ProductImageDelivery(root.toString(), SENDFILE_THRESHOLD);
+		ResourceHttpRequestHandler resourceHandler = new ResourceHttpRequestHandler();
+		resourceHandler.setLocations(List.of(new FileSystemResource(root + "/")));
+
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(temp.resolve("tomcat").toString());
+		Connector connector = new Connector("org.apache.coyote.http11.Http11NioProtocol");
+		connector.setPort(0);
+		connector.setProperty("useSendfile", "true");
+		tomcat.setConnector(connector);
+		Context context = tomcat.addContext("", null);
+
+		Tomcat.addServlet(context, "delivery", new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+				delivery.serve(request.getPathInfo().substring(1), request, response);
+				if (request.getAttribute(SENDFILE_FILENAME) != null) {
+					sendfileResponses.increment();
+				}
+			}
+		});
+		context.addServletMappingDecoded("/files/*", "delivery");
+
+		Tomcat.addServlet(context, "legacy", new HttpServlet() {
+			@Override
+			public void init() throws ServletException {
+				resourceHandler.setServletContext(getServletContext());
+				try {
+					resourceHandler.afterPropertiesSet();
+				} catch (Exception e) {
+					throw new ServletException(e);
+				}
+			}
+
+			@Override
+			protected void doGet(HttpServletRequest request, HttpServletResponse response)
+					throws ServletException, IOException {
+				request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, request.getPathInfo().substring(1));
+				resourceHandler.handleRequest(request, response);
+			}
+		});
+		context.addServletMappingDecoded("/legacy/*", "legacy");
+
+		tomcat.start();
+		baseUrl = "http://localhost:" + connector.getLocalPort();
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+	}
+
+	@AfterEach
+	void stopTomcat() throws Exception {
+		client.close();
+		tomcat.stop();
+		tomcat.destroy();
+	}
+
+	@Test
+	void compareWithResourceHandler() throws Exception {
+		// Lấy validator mà mỗi bên trả về để mô phỏng client đã có ảnh trong cache
+		HttpResponse<byte[]> first = client.send(get("/files/", null, null), HttpResponse.BodyHandlers.ofByteArray());
+		assertEquals(200, first.statusCode());
+		assertEquals(IMAGE_BYTES, first.body().length);
+		String etag = first.headers().firstValue(HttpHeaders.ETAG).orElseThrow();
+		HttpResponse<byte[]> legacyFirst = client.send(get("/legacy/", null, null), HttpResponse.BodyHandlers.ofByteArray());
+		assertEquals(200, legacyFirst.statusCode());
+		String lastModified = legacyFirst.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElseThrow();
+
+		run("resource handler, 200", get("/legacy/", null, null), 200);
+		run("image delivery,   200", get("/files/", null, null), 200);
+		run("resource handler, revalidate", get("/legacy/", null, lastModified), 304);
+		run("image delivery,   revalidate", get("/files/", etag, null), 304);
+
+		assertTrue(sendfileResponses.sum() > 0, "Nhánh sendfile không được dùng");
+	}
+
+	private HttpRequest get(String prefix, String ifNoneMatch, String ifModifiedSince) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + prefix + RELATIVE_PATH)).GET();
+		if (ifNoneMatch != null) {
+			builder.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+		if (ifModifiedSince != null) {
+			builder.header(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+		}
+		return builder.build();
+	}
+
+	private void run(String label, HttpRequest request, int expectedStatus) throws Exception {
+		load(request, expectedStatus, WARMUP);
+		long start = System.nanoTime();
+		List<long[]> results = load(request, expectedStatus, MEASURE);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long requests = 0;
+		long bytes = 0;
+		List<Long> latencies = new ArrayList<>();
+		for (long[] worker : results) {
+			// worker[0] = số byte, phần còn lại là độ trễ từng request (ns)
+			bytes += worker[0];
+			for (int i = 1; i < worker.length; i++) {
+				latencies.add(worker[i]);
+			}
+			requests += worker.length - 1;
+		}
+		long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(sorted);
+		log.info("{} | {} luồng | {} req/s | {} MB/s | p50 {} µs | p99 {} µs",
+				String.format("%-28s", label), CONCURRENCY,
+				String.format("%,.0f", requests / seconds),
+				String.format("%,.1f", bytes / seconds / 1e6),
+				sorted[sorted.length / 2] / 1_000,
+				sorted[(int) (sorted.length * 0.99)] / 1_000);
+	}
+
+	private List<long[]> load(HttpRequest request, int expectedStatus, Duration duration) throws Exception {
+		long deadline = System.nanoTime() + duration.toNanos();
+		List<Future<long[]>> futures = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < CONCURRENCY; i++) {
+				futures.add(executor.submit(() -> {
+					long bytes = 0;
+					List<Long> latencies = new ArrayList<>();
+					while (System.nanoTime() < deadline) {
+						long begin = System.nanoTime();
+						HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+						latencies.add(System.nanoTime() - begin);
+						if (response.statusCode() != expectedStatus) {
+							throw new IllegalStateException("Mã trạng thái " + response.statusCode() + ", mong đợi " + expectedStatus);
+						}
+						bytes += response.body().length;
+					}
+					long[] result = new long[latencies.size() + 1];
+					result[0] = bytes;
+					for (int j = 0; j < latencies.size(); j++) {
+						result[j + 1] = latencies.get(j);
+					}
+					return result;
+				}));
+			}
+			List<long[]> results = new ArrayList<>();
+			for (Future<long[]> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		}
+	}
+}
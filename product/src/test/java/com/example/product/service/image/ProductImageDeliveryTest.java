@@ -0,0 +1,164 @@
+package com.example.product.service.image;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProductImageDeliveryTest {
+
+	private static final String HASH = "ab".repeat(32);
+	private static final String RELATIVE_PATH = "ab/" + HASH + "/card.jpg";
+	private static final String ETAG = "\"" + HASH + "-card\"";
+	private static final int SENDFILE_THRESHOLD = 1024;
+
+	// Thuộc tính request Tomcat dùng cho sendfile
+	private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	@TempDir
+	Path temp;
+
+	private Path root;
+	private byte[] content;
+	private ProductImageDelivery delivery;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		root = temp.resolve("uploads");
+		content = new byte[4096];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		Path file = root.resolve(RELATIVE_PATH);
+		Files.createDirectories(file.getParent());
+		Files.write(file, content);
+		// File nằm ngoài thư mục upload và thư mục tạm ẩn: không được phục vụ
+		Files.writeString(temp.resolve("secret.txt"), "secret");
+		Files.createDirectories(root.resolve(".staging"));
+		Files.writeString(root.resolve(".staging/card.jpg"), "staging");
+		delivery = new ProductImageDelivery(root.toString(), SENDFILE_THRESHOLD);
+	}
+
+	@Test
+	void servesWholeFileWithImmutableCaching() throws Exception {
+		MockHttpServletResponse response = serve(RELATIVE_PATH, request());
+
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+		assertEquals("public, max-age=31536000, immutable", response.getHeader(HttpHeaders.CACHE_CONTROL));
+		assertEquals("image/jpeg", response.getContentType());
+		assertEquals(content.length, response.getContentLengthLong());
+		assertArrayEquals(content, response.getContentAsByteArray());
+	}
+
+	@Test
+	void matchingIfNoneMatchReturnsNotModifiedWithoutBody() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + ETAG);
+
+		MockHttpServletResponse response = serve(RELATIVE_PATH, request);
+
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	void singleRangeReturnsPartialContent() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+
+		MockHttpServletResponse response = serve(RELATIVE_PATH, request);
+
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("bytes 100-199/4096", response.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertEquals(100, response.getContentLengthLong());
+		assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+	}
+
+	@Test
+	void suffixRangeReturnsTail() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.RANGE, "bytes=-10");
+
+		MockHttpServletResponse response = serve(RELATIVE_PATH, request);
+
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("bytes 4086-4095/4096", response.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(Arrays.copyOfRange(content, 4086, 4096), response.getContentAsByteArray());
+	}
+
+	@Test
+	void staleIfRangeIgnoresRange() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+		request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+
+		MockHttpServletResponse response = serve(RELATIVE_PATH, request);
+
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(content, response.getContentAsByteArray());
+	}
+
+	@Test
+	void rangeOutsideFileReturnsNotSatisfiable() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.RANGE, "bytes=5000-6000");
+
+		MockHttpServletResponse response = serve(RELATIVE_PATH, request);
+
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+		assertEquals("bytes */4096", response.getHeader(HttpHeaders.CONTENT_RANGE));
+	}
+
+	@Test
+	void pathTraversalAndHiddenDirectoriesAreNotFound() throws Exception {
+		for (String path : new String[]{"../secret.txt", "ab/../../secret.txt", "ab//card.jpg", ".staging/card.jpg", ""}) {
+			MockHttpServletResponse response = serve(path, request());
+
+			assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus(), path);
+			assertEquals(0, response.getContentAsByteArray().length, path);
+		}
+	}
+
+	@Test
+	void largeBodyIsHandedToSendfileWhenConnectorSupportsIt() throws Exception {
+		MockHttpServletRequest request = request();
+		request.setAttribute(SENDFILE_SUPPORTED, Boolean.TRUE);
+		request.addHeader(HttpHeaders.RANGE, "bytes=0-2047");
+
+		MockHttpServletResponse response = serve(RELATIVE_PATH, request);
+
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals(root.resolve(RELATIVE_PATH).toString(), request.getAttribute(SENDFILE_FILENAME));
+		assertEquals(0L, request.getAttribute(SENDFILE_START));
+		assertEquals(2048L, request.getAttribute(SENDFILE_END));
+		// Tomcat gửi thân response sau khi handler trả về, handler không tự ghi gì
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	private MockHttpServletResponse serve(String relativePath, MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		delivery.serve(relativePath, request, response);
+		return response;
+	}
+
+	private static MockHttpServletRequest request() {
+		return new MockHttpServletRequest("GET", "/files/" + RELATIVE_PATH);
+	}
+}
@@ -0,0 +1,163 @@
+package com.example.product.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductViewHistoryServiceImplTest {
+
+	private final FakeJdbcTemplate jdbc = new FakeJdbcTemplate();
+	private ProductViewHistoryServiceImpl service;
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (service != null) {
+			service.stop();
+		}
+	}
+
+	@Test
+	void fullBatchIsWrittenInOneStatementAndRestOnShutdown() throws Exception {
+		// max-delay rất lớn: chỉ đủ lô mới được ghi trước khi tắt
+		service = start(100, 5, 60_000);
+		for (long id = 1; id <= 7; id++) {
+			service.logView(id, "user");
+		}
+
+		await(() -> service.writtenCount() == 5);
+		assertEquals(List.of(5), jdbc.batchSizes);
+
+		service.stop();
+		service = null;
+		assertEquals(List.of(5, 2), jdbc.batchSizes);
+		assertEquals(0, jdbc.rowInserts);
+	}
+
+	@Test
+	void partialBatchIsWrittenAfterMaxDelay() throws Exception {
+		service = start(100, 100, 50);
+		service.logView(1L, "user");
+		service.logView(2L, null);
+		service.logView(3L, "user");
+
+		await(() -> service.writtenCount() == 3);
+		assertEquals(List.of(3), jdbc.batchSizes);
+	}
+
+	@Test
+	void viewsBeyondCapacityAreDroppedAndCounted() throws Exception {
+		service = new ProductViewHistoryServiceImpl(jdbc, 10, 1.0, 1, 100, 50, 10);
+		for (long id = 1; id <= 15; id++) {
+			service.logView(id, "user");
+		}
+		assertEquals(5, service.droppedCount());
+
+		service.start();
+		await(() -> service.writtenCount() == 10);
+		assertEquals(List.of(10), jdbc.batchSizes);
+	}
+
+	@Test
+	void integrityViolationFallsBackToRowInserts() throws Exception {
+		jdbc.batchFailure = new DataIntegrityViolationException("fk");
+		jdbc.failingProductId = 2L;
+		service = start(100, 3, 60_000);
+		for (long id = 1; id <= 3; id++) {
+			service.logView(id, "user");
+		}
+
+		await(() -> service.writtenCount() + service.failedCount() == 3);
+		assertEquals(2, service.writtenCount());
+		assertEquals(1, service.failedCount());
+		assertEquals(3, jdbc.rowInserts);
+	}
+
+	@Test
+	void outageDropsBatchWithoutRowRetriesAndRecovers() throws Exception {
+		jdbc.batchFailure = new DataAccessResourceFailureException("connection refused");
+		service = start(100, 3, 60_000);
+		for (long id = 1; id <= 3; id++) {
+			service.logView(id, "user");
+		}
+		await(() -> service.failedCount() == 3);
+		assertEquals(0, jdbc.rowInserts);
+
+		jdbc.batchFailure = null;
+		for (long id = 4; id <= 6; id++) {
+			service.logView(id, "user");
+		}
+		await(() -> service.writtenCount() == 3);
+		assertEquals(0, jdbc.rowInserts);
+	}
+
+	@Test
+	void unexpectedExceptionDoesNotStopWriter() throws Exception {
+		jdbc.batchFailure = new IllegalStateException("boom");
+		service = start(100, 3, 60_000);
+		for (long id = 1; id <= 3; id++) {
+			service.logView(id, "user");
+		}
+		await(() -> service.failedCount() == 3);
+
+		jdbc.batchFailure = null;
+		for (long id = 4; id <= 6; id++) {
+			service.logView(id, "user");
+		}
+		await(() -> service.writtenCount() == 3);
+	}
+
+	private ProductViewHistoryServiceImpl start(int capacity, int batchSize, long maxDelayMs) {
+		// Không lấy mẫu (sample-rate 1), lùi tối đa 10ms để test chạy nhanh
+		ProductViewHistoryServiceImpl started =
+				new ProductViewHistoryServiceImpl(jdbc, capacity, 1.0, 1, batchSize, maxDelayMs, 10);
+		started.start();
+		return started;
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	// Ghi lại các lô/dòng thay cho DB thật, có thể cấu hình để giả lập lỗi
+	private static final class FakeJdbcTemplate extends JdbcTemplate {
+		final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		volatile RuntimeException batchFailure;
+		volatile Long failingProductId;
+		volatile int rowInserts;
+
+		@Override
+		public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+				ParameterizedPreparedStatementSetter<T> pss) {
+			RuntimeException failure = batchFailure;
+			if (failure != null) {
+				throw failure;
+			}
+			batchSizes.add(batchArgs.size());
+			return new int[0][];
+		}
+
+		@Override
+		public int update(String sql, Object... args) {
+			rowInserts++;
+			if (failingProductId != null && failingProductId.equals(args[0])) {
+				throw new DataIntegrityViolationException("fk");
+			}
+			return 1;
+		}
+	}
+}
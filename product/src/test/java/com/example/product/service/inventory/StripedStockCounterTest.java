@@ -0,0 +1,136 @@
+package com.example.product.service.inventory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StripedStockCounterTest {
+
+	private static final int RESERVATIONS = 10_000;
+
+	@Test
+	void noOversellUnderTenThousandConcurrentReservations() throws Exception {
+		int stock = 3_000;
+		StripedStockCounter counter = new StripedStockCounter(stock, 16);
+		AtomicInteger admittedUnits = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < RESERVATIONS; i++) {
+				// Trộn số lượng 1..3 để đi qua cả đường gom nhiều stripe
+				int quantity = 1 + (i % 3);
+				futures.add(executor.submit(() -> {
+					start.await();
+					if (counter.tryReserve(quantity)) {
+						admittedUnits.addAndGet(quantity);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+
+		assertEquals(stock, admittedUnits.get() + counter.available());
+		assertEquals(0, counter.available());
+	}
+
+	@Test
+	void journalReplayRestoresUnflushedQuantities(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("inventory.journal");
+		try (FlashSaleJournal journal = new FlashSaleJournal(file, 1024)) {
+			journal.append(FlashSaleJournal.Type.R, 1L, 5);
+			journal.append(FlashSaleJournal.Type.R, 1L, 3);
+			journal.append(FlashSaleJournal.Type.X, 1L, 2);
+			journal.markFlushed(journal.unflushedSnapshot());
+			journal.append(FlashSaleJournal.Type.R, 2L, 7);
+			journal.append(FlashSaleJournal.Type.R, 1L, 2);
+		}
+
+		// Mở lại như sau khi crash: chỉ phần chưa flush còn treo
+		try (FlashSaleJournal recovered = new FlashSaleJournal(file, 1024)) {
+			recovered.skipFlushedUpTo(0);
+			assertEquals(Map.of(1L, 2L, 2L, 7L), recovered.unflushedSnapshot().quantities());
+		}
+	}
+
+	@Test
+	void concurrentAppendsAreGroupCommittedWithoutLosingRecords(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("inventory.journal");
+		int appends = 5_000;
+		try (FlashSaleJournal journal = new FlashSaleJournal(file, 1024)) {
+			CountDownLatch start = new CountDownLatch(1);
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				List<Future<?>> futures = new ArrayList<>();
+				for (int i = 0; i < appends; i++) {
+					long productId = i % 4;
+					futures.add(executor.submit(() -> {
+						start.await();
+						journal.append(FlashSaleJournal.Type.R, productId, 1);
+						return null;
+					}));
+				}
+				start.countDown();
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			}
+
+			// Mỗi bản ghi một seq riêng, dù được ghi theo lô
+			FlashSaleJournal.Snapshot snapshot = journal.unflushedSnapshot();
+			assertEquals(appends, snapshot.seq());
+			assertEquals(Map.of(0L, 1250L, 1L, 1250L, 2L, 1250L, 3L, 1250L), snapshot.quantities());
+		}
+
+		try (FlashSaleJournal recovered = new FlashSaleJournal(file, 1024)) {
+			recovered.skipFlushedUpTo(0);
+			assertEquals(Map.of(0L, 1250L, 1L, 1250L, 2L, 1250L, 3L, 1250L), recovered.unflushedSnapshot().quantities());
+		}
+	}
+
+	@Test
+	void appendAfterCloseFails(@TempDir Path dir) throws Exception {
+		FlashSaleJournal journal = new FlashSaleJournal(dir.resolve("inventory.journal"), 1024);
+		journal.close();
+
+		assertThrows(IllegalStateException.class, () -> journal.append(FlashSaleJournal.Type.R, 1L, 1));
+	}
+
+	@Test
+	void journalReplaySkipsBatchCommittedBeforeCrash(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("inventory.journal");
+		long committedSeq;
+		try (FlashSaleJournal journal = new FlashSaleJournal(file, 1024)) {
+			journal.append(FlashSaleJournal.Type.R, 1L, 5);
+			journal.append(FlashSaleJournal.Type.R, 2L, 4);
+			// Lô này đã commit xuống DB (mốc lưu trong DB) nhưng process chết trước khi ghi dòng F
+			committedSeq = journal.unflushedSnapshot().seq();
+			journal.append(FlashSaleJournal.Type.R, 1L, 1);
+		}
+
+		try (FlashSaleJournal recovered = new FlashSaleJournal(file, 1024)) {
+			recovered.skipFlushedUpTo(committedSeq);
+			assertEquals(Map.of(1L, 1L), recovered.unflushedSnapshot().quantities());
+		}
+
+		// Mốc đã được ghi vào journal: lần khởi động sau không cần DB cũng không trừ lại
+		try (FlashSaleJournal reopened = new FlashSaleJournal(file, 1024)) {
+			assertEquals(Map.of(1L, 1L), reopened.unflushedSnapshot().quantities());
+		}
+	}
+}
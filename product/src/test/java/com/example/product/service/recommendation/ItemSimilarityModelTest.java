@@ -0,0 +1,110 @@
+package com.example.product.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemSimilarityModelTest {
+
+	private static final long A = 1, B = 2, C = 3, D = 4;
+
+	// u1: A B, u2: A B C, u3: C D -> sim(A,B) = 1, sim(A,C) = sim(B,C) = 0.5, sim(C,D) = 0.707, A và D không chung user
+	private static final long[][] USERS = {{A, B}, {A, B, C}, {C, D}};
+
+	@Test
+	void similarOrdersNeighboursByCosine() {
+		ItemSimilarityModel model = build(10, 0, USERS);
+
+		assertEquals(List.of(B, C), model.similar(A, 10));
+		// Điểm bằng nhau (A, B) giữ thứ tự gặp trước
+		assertEquals(List.of(D, A, B), model.similar(C, 10));
+		assertEquals(List.of(C), model.similar(D, 10));
+		assertEquals(4, model.itemCount());
+	}
+
+	@Test
+	void neighboursAreCappedAtK() {
+		ItemSimilarityModel model = build(1, 0, USERS);
+
+		assertEquals(List.of(D), model.similar(C, 10));
+		assertEquals(4, model.neighbourCount());
+	}
+
+	@Test
+	void shrinkageDampensPairsSeenTogetherRarely() {
+		long a = 1, rare = 2, common = 3;
+		// rare chỉ đi cùng a ở một user (cosine 0.707), common đi cùng a ở hai user nhưng phổ biến hơn (cosine 0.577)
+		long[][] users = {{a, rare, common}, {a, common}, {common}, {common}, {common}, {common}};
+
+		assertEquals(List.of(rare, common), build(10, 0, users).similar(a, 10));
+		// co/(co + 5): rare 0.707 x 1/6 = 0.118 < common 0.577 x 2/7 = 0.165
+		assertEquals(List.of(common, rare), build(10, 5, users).similar(a, 10));
+	}
+
+	@Test
+	void recommendSumsProfileWeightsTimesSimilarityAndExcludesProfile() {
+		ItemSimilarityModel model = build(10, 0, USERS);
+
+		assertEquals(List.of(B, C), model.recommend(Map.of(A, 1f), Set.of(A), 10));
+
+		// C: 1 x 0.5 (từ A) + 2 x 0.707 (từ D) = 1.91 > B: 1 x 1 (từ A)
+		Map<Long, Float> profile = new LinkedHashMap<>();
+		profile.put(A, 1f);
+		profile.put(D, 2f);
+		assertEquals(List.of(C, B), model.recommend(profile, profile.keySet(), 10));
+		assertEquals(List.of(C), model.recommend(profile, profile.keySet(), 1));
+	}
+
+	@Test
+	void heavyUserKeepsOnlyTopWeightedItems() {
+		ItemSimilarityModel.Builder builder = new ItemSimilarityModel.Builder(10, 2, 0);
+		builder.startUser();
+		builder.add(A, 3);
+		builder.add(B, 2);
+		builder.add(C, 1);
+		ItemSimilarityModel model = builder.build(0);
+
+		assertEquals(2, model.itemCount());
+		assertEquals(List.of(B), model.similar(A, 10));
+		assertTrue(model.similar(C, 10).isEmpty());
+	}
+
+	@Test
+	void popularRanksByWeightThenIdAndSkipsExcluded() {
+		ItemSimilarityModel.Builder builder = new ItemSimilarityModel.Builder(10, 100, 0);
+		builder.addPopularity(A, 1);
+		builder.addPopularity(C, 3);
+		builder.addPopularity(B, 2);
+		builder.addPopularity(B, 1);
+		ItemSimilarityModel model = builder.build(2);
+
+		assertEquals(List.of(B, C), model.popular(5, Set.of()));
+		assertEquals(List.of(C), model.popular(5, Set.of(B)));
+	}
+
+	@Test
+	void unknownProductsHaveNoRecommendations() {
+		ItemSimilarityModel model = build(10, 0, USERS);
+
+		assertTrue(model.similar(99L, 10).isEmpty());
+		assertTrue(model.recommend(Map.of(99L, 1f), Set.of(), 10).isEmpty());
+		assertTrue(ItemSimilarityModel.EMPTY.similar(A, 10).isEmpty());
+	}
+
+	private static ItemSimilarityModel build(int neighbours, float shrinkage, long[][] users) {
+		ItemSimilarityModel.Builder builder = new ItemSimilarityModel.Builder(neighbours, 100, shrinkage);
+		for (long[] items : users) {
+			builder.startUser();
+			for (long item : items) {
+				builder.add(item, 1f);
+			}
+		}
+		return builder.build(0);
+	}
+}
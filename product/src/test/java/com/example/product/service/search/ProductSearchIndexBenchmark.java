@@ -0,0 +1,165 @@
+package com.example.product.service.search;
+
+import com.example.product.entity.Category;
+import com.example.product.entity.Product;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đo độ trễ tìm kiếm của ProductSearchIndex ở quy mô khoảng 1 triệu sản phẩm (mục tiêu p99 dưới 20 ms),
+ * so với quét tuần tự kiểu LIKE '%...%' trên cùng dữ liệu để thấy mức chênh lệch.
+ * Chạy thủ công: {@code mvn -pl product test -Dtest=ProductSearchIndexBenchmark -Dbenchmark=true -DargLine=-Xmx4g};
+ * tuỳ chỉnh bằng {@code -Dbenchmark.products} và {@code -Dbenchmark.queries}. Kết quả ghi qua logger.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProductSearchIndexBenchmark {
+
+	private static final int PRODUCTS = Integer.getInteger("benchmark.products", 1_000_000);
+	private static final int QUERIES = Integer.getInteger("benchmark.queries", 2_000);
+	private static final int WARMUP_QUERIES = 500;
+	private static final int SCAN_QUERIES = 20;
+	private static final long TARGET_P99_NANOS = 20_000_000;
+
+	private static final String[] TYPES = {"Áo thun", "Áo khoác", "Quần jean", "Giày thể thao", "Điện thoại",
+			"Tai nghe", "Ốp lưng", "Bàn phím", "Chuột", "Đồng hồ", "Balo", "Nồi cơm điện", "Máy xay", "Son môi"};
+	private static final String[] BRANDS = {"Samsung", "Apple", "Xiaomi", "Oppo", "Nike", "Adidas", "Sony",
+			"Logitech", "Casio", "Sunhouse", "Philips", "Uniqlo", "Zara", "Lock&Lock"};
+	private static final String[] ATTRIBUTES = {"đen", "trắng", "xanh", "đỏ", "nam", "nữ", "cao cấp", "chính hãng",
+			"giá rẻ", "size L", "size M", "chống nước", "không dây", "bluetooth", "cotton", "da thật"};
+	private static final int CATEGORIES = 200;
+	private static final int STORES = 5_000;
+
+	private static final Pageable FIRST_PAGE = PageRequest.of(0, 20);
+	private static final Pageable BY_PRICE = PageRequest.of(0, 20, Sort.by(Sort.Direction.ASC, "price"));
+
+	@Test
+	void searchLatencyAtOneMillionProducts() {
+		Random random = new Random(42);
+		ProductSearchIndex index = new ProductSearchIndex();
+		List<String> names = new ArrayList<>(PRODUCTS);
+		long start = System.nanoTime();
+		for (long id = 1; id <= PRODUCTS; id++) {
+			Product product = randomProduct(id, random);
+			index.upsert(product);
+			names.add(TextNormalizer.fold(product.getName()));
+		}
+		long buildMillis = (System.nanoTime() - start) / 1_000_000;
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		log.info("Dựng chỉ mục {} sản phẩm trong {} ms ({} sp/s), heap đang dùng ~{} MB",
+				index.size(), buildMillis, String.format("%,.0f", PRODUCTS * 1000.0 / buildMillis),
+				(runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+
+		List<String> selective = new ArrayList<>();
+		List<String> broad = new ArrayList<>();
+		for (int i = 0; i < 256; i++) {
+			selective.add(pick(BRANDS, random) + " " + pick(TYPES, random) + " " + pick(ATTRIBUTES, random));
+			// Gõ dở một ký tự: tiền tố rất rộng, đi nhánh bitmap
+			broad.add(pick(TYPES, random).substring(0, 1));
+		}
+
+		long[] selectiveLatency = measure(() -> {
+			String query = selective.get(random.nextInt(selective.size()));
+			return index.search(query, null, null, null, FIRST_PAGE, false).total();
+		});
+		long[] broadLatency = measure(() -> {
+			String query = broad.get(random.nextInt(broad.size()));
+			return index.search(query, null, null, null, FIRST_PAGE, false).total();
+		});
+		long[] facetedLatency = measure(() -> {
+			String query = selective.get(random.nextInt(selective.size()));
+			return index.search(query, (long) random.nextInt(CATEGORIES) + 1, BigDecimal.valueOf(100_000),
+					BigDecimal.valueOf(5_000_000), BY_PRICE, true).total();
+		});
+		long[] typeLatency = measure(() -> {
+			String query = pick(TYPES, random);
+			return index.search(query, null, null, null, FIRST_PAGE, true).total();
+		});
+
+		report("nhiều token, chọn lọc", selectiveLatency);
+		report("tiền tố 1 ký tự", broadLatency);
+		report("lọc + facet + sort giá", facetedLatency);
+		report("loại sản phẩm + facet", typeLatency);
+
+		long[] scanLatency = new long[SCAN_QUERIES];
+		for (int i = 0; i < SCAN_QUERIES; i++) {
+			String needle = TextNormalizer.fold(pick(TYPES, random));
+			long begin = System.nanoTime();
+			long matches = 0;
+			for (String name : names) {
+				if (name.contains(needle)) {
+					matches++;
+				}
+			}
+			scanLatency[i] = System.nanoTime() - begin;
+			assertTrue(matches > 0);
+		}
+		report("quét tuần tự (LIKE)", scanLatency);
+
+		for (long[] latency : List.of(selectiveLatency, broadLatency, facetedLatency, typeLatency)) {
+			assertTrue(percentile(latency, 0.99) < TARGET_P99_NANOS, "p99 vượt mục tiêu 20 ms");
+		}
+	}
+
+	private static long[] measure(Supplier<Long> query) {
+		for (int i = 0; i < WARMUP_QUERIES; i++) {
+			query.get();
+		}
+		long[] latency = new long[QUERIES];
+		long hits = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			long begin = System.nanoTime();
+			hits += query.get();
+			latency[i] = System.nanoTime() - begin;
+		}
+		assertTrue(hits > 0, "Truy vấn đo không trả về kết quả nào");
+		return latency;
+	}
+
+	private static void report(String label, long[] latency) {
+		log.info("{} | {} truy vấn | p50 {} µs | p99 {} µs | max {} µs",
+				String.format("%-24s", label), latency.length,
+				percentile(latency, 0.5) / 1_000, percentile(latency, 0.99) / 1_000,
+				Arrays.stream(latency).max().orElse(0) / 1_000);
+	}
+
+	private static long percentile(long[] latency, double quantile) {
+		long[] sorted = latency.clone();
+		Arrays.sort(sorted);
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))];
+	}
+
+	private static Product randomProduct(long id, Random random) {
+		Category category = new Category();
+		category.setId((long) random.nextInt(CATEGORIES) + 1);
+		Product product = new Product();
+		product.setId(id);
+		product.setSku("SKU-" + id);
+		product.setName(pick(TYPES, random) + " " + pick(BRANDS, random) + " " + pick(ATTRIBUTES, random)
+				+ " " + pick(ATTRIBUTES, random) + " " + (random.nextInt(900) + 100));
+		product.setDescription(pick(ATTRIBUTES, random) + ", " + pick(ATTRIBUTES, random) + ", bảo hành "
+				+ (random.nextInt(24) + 1) + " tháng");
+		product.setCategory(category);
+		product.setStoreId("store-" + random.nextInt(STORES));
+		product.setPrice(BigDecimal.valueOf((random.nextInt(20_000) + 1) * 1_000L));
+		return product;
+	}
+
+	private static String pick(String[] values, Random random) {
+		return values[random.nextInt(values.length)];
+	}
+}
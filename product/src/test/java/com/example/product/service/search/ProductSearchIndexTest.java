@@ -0,0 +1,260 @@
+package com.example.product.service.search;
+
+import com.example.product.entity.Category;
+import com.example.product.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+
+	private static final Pageable FIRST_PAGE = PageRequest.of(0, 10);
+
+	@Test
+	void everyTokenMustMatchAndLastTokenMatchesByPrefix() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		index.upsert(product(1L, "IP15P", "iPhone 15 Pro", 1L, 30_000_000));
+		index.upsert(product(2L, "IP15", "iPhone 15", 1L, 20_000_000));
+		index.upsert(product(3L, "CASE1", "Ốp lưng iPhone", 2L, 150_000));
+		index.upsert(product(4L, "SS1", "Điện thoại Samsung", 1L, 10_000_000));
+
+		assertEquals(Set.of(1L, 2L), ids(index, "iphone 15"));
+		assertEquals(Set.of(1L, 2L, 3L), ids(index, "iph"));
+		assertEquals(Set.of(1L), ids(index, "iphone pro"));
+		// Bỏ dấu ở cả văn bản lẫn truy vấn
+		assertEquals(Set.of(4L), ids(index, "dien thoai"));
+		assertEquals(Set.of(3L), ids(index, "op LUNG"));
+		// Token không phải cuối phải khớp nguyên từ
+		assertTrue(ids(index, "ipho 15").isEmpty());
+		assertTrue(ids(index, "iphone xyz").isEmpty());
+		assertTrue(ids(index, "  ").isEmpty());
+	}
+
+	@Test
+	void skuOutranksNameWhichOutranksDescription() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		Product inDescription = product(1L, "P1", "Tai nghe", 1L, 100);
+		inDescription.setDescription("Tương thích galaxy");
+		index.upsert(inDescription);
+		index.upsert(product(2L, "P2", "Ốp galaxy", 1L, 100));
+		index.upsert(product(3L, "GALAXY", "Điện thoại", 1L, 100));
+
+		assertEquals(List.of(3L, 2L, 1L), index.search("galaxy", null, null, null, FIRST_PAGE, false).productIds());
+	}
+
+	@Test
+	void filtersNarrowResultsAndFacetsIgnoreTheirOwnFilter() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		index.upsert(product(1L, "A1", "Áo thun", 1L, 50_000));
+		index.upsert(product(2L, "A2", "Áo khoác", 1L, 600_000));
+		index.upsert(product(3L, "A3", "Áo sơ mi", 2L, 200_000));
+		Product otherStore = product(4L, "A4", "Áo len", 2L, 20_000_000);
+		otherStore.setStoreId("store-2");
+		index.upsert(otherStore);
+
+		ProductSearchIndex.Hits hits = index.search("ao", 1L, null, BigDecimal.valueOf(500_000), FIRST_PAGE, true);
+
+		assertEquals(List.of(1L), hits.productIds());
+		assertEquals(1, hits.total());
+		// Facet category bỏ qua bộ lọc category nhưng vẫn theo bộ lọc giá
+		assertEquals(Map.of(1L, 1L, 2L, 1L), hits.facets().categories());
+		// Facet giá bỏ qua bộ lọc giá nhưng vẫn theo category: <100k và 500k-1tr
+		assertEquals(List.of(1L, 0L, 1L, 0L, 0L, 0L), hits.facets().priceBuckets());
+		assertEquals(Map.of("store-1", 1L), hits.facets().stores());
+
+		ProductSearchIndex.Facets all = index.facets(null, null, null, null);
+		assertEquals(Map.of(1L, 2L, 2L, 2L), all.categories());
+		assertEquals(Map.of("store-1", 3L, "store-2", 1L), all.stores());
+		assertEquals(List.of(1L, 1L, 1L, 0L, 0L, 1L), all.priceBuckets());
+	}
+
+	@Test
+	void priceSortAndPaginationUseTheWholeResultSet() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		for (long id = 1; id <= 25; id++) {
+			// Giá 1..25 nghìn, mỗi id một giá nhưng không theo thứ tự id
+			index.upsert(product(id, "S" + id, "Giày chạy bộ " + id, 1L, priceOf(id) * 1000));
+		}
+		Sort byPrice = Sort.by(Sort.Direction.ASC, "price");
+
+		ProductSearchIndex.Hits second = index.search("giay", null, null, null, PageRequest.of(1, 10, byPrice), false);
+
+		assertEquals(25, second.total());
+		List<Long> expected = new ArrayList<>();
+		for (long price = 11; price <= 20; price++) {
+			expected.add(idWithPrice(price));
+		}
+		assertEquals(expected, second.productIds());
+
+		List<Long> descending = index.search("giay", null, null, null,
+				PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "price")), false).productIds();
+		assertEquals(List.of(idWithPrice(25), idWithPrice(24), idWithPrice(23)), descending);
+	}
+
+	@Test
+	void updateReplacesTermsAndHiddenProductsLeaveTheIndex() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		index.upsert(product(1L, "P1", "Bàn phím cơ", 1L, 100));
+		index.upsert(product(2L, "P2", "Chuột không dây", 1L, 100));
+
+		index.upsert(product(1L, "P1", "Bàn phím giả cơ", 1L, 100));
+		assertEquals(Set.of(1L), ids(index, "gia"));
+		assertEquals(2, index.size());
+
+		Product inactive = product(1L, "P1", "Bàn phím giả cơ", 1L, 100);
+		inactive.setActive(false);
+		index.upsert(inactive);
+		assertTrue(ids(index, "ban phim").isEmpty());
+
+		Product deleted = product(2L, "P2", "Chuột không dây", 1L, 100);
+		deleted.setDeleted(true);
+		index.upsert(deleted);
+		index.remove(99L);
+		assertEquals(0, index.size());
+		assertTrue(ids(index, "chuot").isEmpty());
+	}
+
+	@Test
+	void compactionKeepsLiveDocumentsSearchable() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		for (long id = 1; id <= 100; id++) {
+			index.upsert(product(id, "K" + id, "Sản phẩm " + id, id % 3, 100));
+		}
+		// Sửa đi sửa lại một sản phẩm đủ để số doc chết vượt ngưỡng nén
+		for (int i = 0; i < 12_000; i++) {
+			index.upsert(product(7L, "K7", "Sản phẩm bản " + i, 1L, 100));
+		}
+
+		assertEquals(100, index.size());
+		assertEquals(Set.of(7L), ids(index, "ban 11999"));
+		assertTrue(ids(index, "ban 11998").isEmpty());
+		assertEquals(100, index.search("san pham", null, null, null, PageRequest.of(0, 200), false).total());
+		assertEquals(Set.of(42L), ids(index, "san pham 42"));
+	}
+
+	@Test
+	void broadPrefixPagesThroughLiveDocumentsInIndexOrder() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		// Đủ nhiều posting để tiền tố "m" đi nhánh bitmap
+		for (long id = 1; id <= 40_000; id++) {
+			index.upsert(product(id, "B" + id, (id % 2 == 0 ? "Mũ " : "Móc khoá ") + id, 1L, 100));
+		}
+		index.remove(2L);
+		index.upsert(product(1L, "B1", "Dây sạc", 1L, 100));
+
+		ProductSearchIndex.Hits hits = index.search("m", null, null, null, PageRequest.of(1, 3), false);
+
+		assertEquals(39_998, hits.total());
+		assertEquals(List.of(6L, 7L, 8L), hits.productIds());
+		assertEquals(List.of(3L, 4L, 5L), index.search("m", null, null, null, PageRequest.of(0, 3), false).productIds());
+		// Có bộ lọc thì đi đường duyệt từng doc, kết quả phải khớp
+		assertEquals(39_998, index.search("m", 1L, null, null, PageRequest.of(0, 3), false).total());
+		assertEquals(List.of(3L, 4L, 5L), index.search("m", 1L, null, null, PageRequest.of(0, 3), false).productIds());
+	}
+
+	@Test
+	void loadedRowsOlderThanLiveChangesAreDiscarded() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		index.startLoad();
+		long readVersion = index.version();
+		List<Product> staleBatch = List.of(
+				product(1L, "P1", "Tên cũ", 1L, 100),
+				product(2L, "P2", "Đèn bàn", 1L, 100),
+				product(3L, "P3", "Đã xoá", 1L, 100));
+
+		// Thay đổi trực tiếp commit sau khi lô được đọc nhưng trước khi lô được áp dụng
+		index.upsert(product(1L, "P1", "Tên mới", 1L, 100));
+		index.remove(3L);
+
+		assertEquals(2, index.applyLoaded(staleBatch, readVersion));
+		assertEquals(Set.of(1L), ids(index, "ten moi"));
+		assertTrue(ids(index, "ten cu").isEmpty());
+		assertTrue(ids(index, "da xoa").isEmpty());
+		assertEquals(Set.of(2L), ids(index, "den"));
+
+		// Lô đọc sau thay đổi đã thấy bản mới nên được áp dụng
+		assertEquals(0, index.applyLoaded(List.of(product(1L, "P1", "Tên mới hơn", 1L, 100)), index.version()));
+		assertEquals(Set.of(1L), ids(index, "hon"));
+
+		index.finishLoad();
+		assertEquals(0, index.applyLoaded(List.of(product(3L, "P3", "Nạp lại", 1L, 100)), 0));
+	}
+
+	@Test
+	void randomUpdatesMatchBruteForce() {
+		ProductSearchIndex index = new ProductSearchIndex();
+		String[] words = {"ao", "quan", "giay", "dep", "mu", "tui", "xanh", "do", "den", "trang"};
+		Map<Long, String> names = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 5_000; i++) {
+			long id = random.nextInt(300);
+			if (random.nextInt(5) == 0) {
+				index.remove(id);
+				names.remove(id);
+			} else {
+				String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+				index.upsert(product(id, "R" + id, name, 1L, 100));
+				names.put(id, name);
+			}
+			String query = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)].substring(0, 1);
+			assertEquals(bruteForce(names, query), ids(index, query));
+		}
+	}
+
+	private static Set<Long> bruteForce(Map<Long, String> names, String query) {
+		List<String> tokens = TextNormalizer.tokenize(query);
+		Set<Long> ids = new HashSet<>();
+		names.forEach((id, name) -> {
+			List<String> terms = TextNormalizer.tokenize(name);
+			boolean all = terms.containsAll(tokens.subList(0, tokens.size() - 1))
+					&& terms.stream().anyMatch(term -> term.startsWith(tokens.get(tokens.size() - 1)));
+			if (all) {
+				ids.add(id);
+			}
+		});
+		return ids;
+	}
+
+	private static long priceOf(long id) {
+		return id * 7 % 25 + 1;
+	}
+
+	private static long idWithPrice(long price) {
+		for (long id = 1; id <= 25; id++) {
+			if (priceOf(id) == price) {
+				return id;
+			}
+		}
+		throw new IllegalArgumentException("Không có id với giá " + price);
+	}
+
+	private static Set<Long> ids(ProductSearchIndex index, String text) {
+		return new HashSet<>(index.search(text, null, null, null, PageRequest.of(0, 1000), false).productIds());
+	}
+
+	private static Product product(Long id, String sku, String name, Long categoryId, long price) {
+		Category category = new Category();
+		category.setId(categoryId);
+		Product product = new Product();
+		product.setId(id);
+		product.setSku(sku);
+		product.setName(name);
+		product.setCategory(category);
+		product.setStoreId("store-1");
+		product.setPrice(BigDecimal.valueOf(price));
+		return product;
+	}
+}
@@ -0,0 +1,64 @@
+package com.example.product.service.trending;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecayedTopKTest {
+
+	private static final long HALF_LIFE = TimeUnit.HOURS.toMillis(6);
+
+	@Test
+	void findsHeavyHittersInLongTailLargerThanSketch() {
+		DecayedTopK topK = new DecayedTopK(4, 1024, HALF_LIFE, 50, 0);
+		Random random = new Random(42);
+		// 10 sản phẩm nóng (mỗi cái 2000 lượt) lẫn trong 100_000 lượt xem rải trên 50_000 sản phẩm khác
+		for (int i = 0; i < 120_000; i++) {
+			long productId = i % 6 == 0 ? 1 + random.nextInt(10) : 1_000 + random.nextInt(50_000);
+			topK.add(productId, 1, 0);
+		}
+
+		List<DecayedTopK.Item> top = topK.top(10, 1, 0);
+		assertEquals(10, top.size());
+		for (DecayedTopK.Item item : top) {
+			assertTrue(item.productId() <= 10, "sản phẩm nóng phải chiếm top 10: " + top);
+			assertTrue(item.score() >= 1_900 && item.score() < 2_300, "ước lượng lệch: " + item);
+		}
+	}
+
+	@Test
+	void olderBurstDecaysBelowFreshActivity() {
+		DecayedTopK topK = new DecayedTopK(4, 512, HALF_LIFE, 10, 0);
+		for (int i = 0; i < 1_000; i++) {
+			topK.add(1, 1, 0);
+		}
+		long later = 4 * HALF_LIFE; // 1000 lượt cũ còn ~62.5
+		for (int i = 0; i < 100; i++) {
+			topK.add(2, 1, later);
+		}
+
+		List<DecayedTopK.Item> top = topK.top(2, 1, later);
+		assertEquals(2L, top.get(0).productId());
+		assertEquals(62.5, top.get(1).score(), 0.01);
+	}
+
+	@Test
+	void rescalingKeepsScores() {
+		DecayedTopK topK = new DecayedTopK(4, 512, HALF_LIFE, 10, 0);
+		topK.add(1, 8, 0);
+		// Đủ xa để phải đổi landmark (hệ số > e^20): 8 lượt cũ còn 8 / 2^30
+		long later = 30 * HALF_LIFE;
+		topK.add(2, 1, later);
+		topK.add(1, 2, later);
+
+		List<DecayedTopK.Item> top = topK.top(2, 0, later);
+		assertEquals(1L, top.get(0).productId());
+		assertEquals(2 + 8 / Math.pow(2, 30), top.get(0).score(), 1e-9);
+		assertEquals(1, top.get(1).score(), 1e-9);
+	}
+}
@@ -170,4 +170,13 @@ public class UserController {
                 .result(userService.getStoreByStoreId(storeId, page, size))
                 .build();
     }
-}
\ No newline at end of file
+
+    // Lấy thông tin người bán cho nhiều cửa hàng trong 1 lần gọi (product-service dùng khi map danh sách sản phẩm).
+    // Không kèm danh sách sản phẩm nên không gọi ngược lại product-service.
+    @PostMapping("/stores/sellers")
+    public ApiResponRequest<List<StoreResponse>> getSellersByStoreIds(@RequestBody List<String> storeIds) {
+        return ApiResponRequest.<List<StoreResponse>>builder()
+                .result(userService.getSellersByStoreIds(storeIds))
+                .build();
+    }
+}
@@ -103,6 +103,7 @@ public class AuthenticationService {
             ))
             .jwtID(UUID.randomUUID().toString())
             .claim("scope", buildScope(user))
+            .claim("userId", user.getId()) // để service khác lấy UUID mà không phải gọi lại user-service
             .build();
         
         Payload payload = new Payload(jwtClaimsSet.toJSONObject());
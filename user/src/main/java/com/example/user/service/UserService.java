@@ -349,4 +349,23 @@ public class UserService {
 
         return response;
     }
-}
\ No newline at end of file
+
+    public List<StoreResponse> getSellersByStoreIds(List<String> storeIds) {
+        if (storeIds == null || storeIds.isEmpty()) {
+            return List.of();
+        }
+        List<SellerProfile> profiles = sellerProfileRepository.findAllById(storeIds);
+        log.info("Lấy thông tin người bán cho {} / {} cửa hàng", profiles.size(), storeIds.size());
+        return profiles.stream()
+                .filter(profile -> profile.getUser() != null)
+                .map(profile -> {
+                    StoreResponse response = new StoreResponse();
+                    response.setStoreId(profile.getId());
+                    response.setStoreName(profile.getStoreName());
+                    response.setUserId(profile.getUser().getId());
+                    response.setUsername(profile.getUser().getUsername());
+                    return response;
+                })
+                .toList();
+    }
+}
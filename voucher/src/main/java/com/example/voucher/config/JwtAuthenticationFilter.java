@@ -14,12 +14,15 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    public static final String SERVICE_AUTHORITY = "SERVICE";
+
     private final CustomJwtDecoder jwtDecoder;
 
     @Override
@@ -50,6 +53,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 );
                 auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(auth);
+            } else if (scope != null && Arrays.asList(scope.split(" ")).contains(SERVICE_AUTHORITY)) {
+                // Token service-to-service (order-service tự ký, scope SERVICE)
+                var auth = new UsernamePasswordAuthenticationToken(
+                        username,
+                        null,
+                        Collections.singletonList(new SimpleGrantedAuthority(SERVICE_AUTHORITY))
+                );
+                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(auth);
             }
 
         } catch (Exception e) {
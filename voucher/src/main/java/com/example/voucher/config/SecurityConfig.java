@@ -35,6 +35,10 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
+                // Đánh dấu / hoàn voucher theo đơn: chỉ order-service (token scope SERVICE) được gọi.
+                // Đặt trước danh sách public bên dưới vì "/vouchers/**" cũng khớp hai đường dẫn này.
+                .requestMatchers("/vouchers/use", "/vouchers/release")
+                    .hasAuthority(JwtAuthenticationFilter.SERVICE_AUTHORITY)
                 // ✅ Cho phép các API public
                 .requestMatchers(
                     "/vouchers",
@@ -59,9 +59,20 @@ public class VoucherController {
     @PostMapping("/use")
     public ResponseEntity<Void> useVoucher(
             @RequestParam String userId,
-            @RequestParam String code
+            @RequestParam String code,
+            @RequestParam String orderRef
+    ) {
+        voucherService.markVoucherUsed(userId, code, orderRef);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/release")
+    public ResponseEntity<Void> releaseVoucher(
+            @RequestParam String userId,
+            @RequestParam String code,
+            @RequestParam String orderRef
     ) {
-        voucherService.markVoucherUsed(userId, code);
+        voucherService.releaseVoucher(userId, code, orderRef);
         return ResponseEntity.ok().build();
     }
 
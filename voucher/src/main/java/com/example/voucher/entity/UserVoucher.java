@@ -27,6 +27,10 @@ public class UserVoucher {
 
     private boolean used;
 
+    // Đơn hàng đã dùng bản voucher này (mỗi đơn tối đa một bản), để đánh dấu / hoàn tác idempotent theo đơn
+    @Column(name = "order_ref", length = 64, unique = true)
+    private String orderRef;
+
     @PrePersist
     public void prePersist() {
         assignedAt = LocalDateTime.now();
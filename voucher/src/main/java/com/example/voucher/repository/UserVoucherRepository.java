@@ -1,7 +1,12 @@
 package com.example.voucher.repository;
 
 import com.example.voucher.entity.UserVoucher;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,6 +16,18 @@ public interface UserVoucherRepository extends JpaRepository<UserVoucher, Long>
             String userId,
             String code
     );
+
+    // Khóa bản voucher sẽ đánh dấu để hai đơn đồng thời không dùng chung một bản
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select uv from UserVoucher uv where uv.userId = :userId and uv.voucher.code = :code "
+            + "and uv.used = false order by uv.id asc")
+    List<UserVoucher> lockUnusedByUserIdAndCode(
+            @Param("userId") String userId,
+            @Param("code") String code,
+            Pageable pageable
+    );
+
+    Optional<UserVoucher> findByOrderRef(String orderRef);
     
     List<UserVoucher> findByUserId(String userId);
 
@@ -15,8 +15,11 @@ public interface VoucherService {
        // ✅ THÊM: tính số tiền giảm
     BigDecimal calculateDiscount(String userId, String code, BigDecimal orderAmount);
 
-    // ✅ THÊM: đánh dấu voucher đã dùng (gọi sau khi thanh toán thành công)
-    void markVoucherUsed(String userId, String code);
+    // ✅ THÊM: đánh dấu voucher đã dùng cho đơn orderRef (gọi lại với cùng orderRef thì không dùng thêm bản nào)
+    void markVoucherUsed(String userId, String code, String orderRef);
+
+    // Hoàn tác markVoucherUsed của đơn orderRef khi đơn hàng không tạo được (bù trừ của saga checkout)
+    void releaseVoucher(String userId, String code, String orderRef);
 
     List<VoucherResponse> getAvailableVouchers(String userId);
 
@@ -8,6 +8,7 @@ import com.example.voucher.repository.VoucherRepository;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import com.example.voucher.client.LoyaltyClient;
 import com.example.voucher.client.LoyaltySpendPointsRequest;
@@ -130,9 +131,15 @@ public class VoucherServiceImpl implements VoucherService {
 
     // ✅ GỌI SAU KHI ORDER ĐÃ THANH TOÁN THÀNH CÔNG
     @Override
-    public void markVoucherUsed(String userId, String code) {
+    @Transactional
+    public void markVoucherUsed(String userId, String code, String orderRef) {
+        if (userVoucherRepository.findByOrderRef(orderRef).isPresent()) {
+            return; // đơn này đã đánh dấu (lần gọi trước timeout phía order-service)
+        }
         UserVoucher userVoucher = userVoucherRepository
-                .findFirstByUserIdAndVoucher_CodeAndUsedFalseOrderByIdAsc(userId, code)
+                .lockUnusedByUserIdAndCode(userId, code, PageRequest.of(0, 1))
+                .stream()
+                .findFirst()
                 .orElse(null);
 
         if (userVoucher == null) {
@@ -140,8 +147,9 @@ public class VoucherServiceImpl implements VoucherService {
         }
         Voucher voucher = userVoucher.getVoucher();
 
-        // đánh dấu userVoucher
+        // đánh dấu userVoucher, ghi kèm đơn đã dùng (unique: lần gọi trùng đồng thời sẽ rollback)
         userVoucher.setUsed(true);
+        userVoucher.setOrderRef(orderRef);
         userVoucherRepository.save(userVoucher);
 
         // tăng used của voucher
@@ -157,6 +165,33 @@ public class VoucherServiceImpl implements VoucherService {
         voucherRepository.save(voucher);
     }
 
+    @Override
+    @Transactional
+    public void releaseVoucher(String userId, String code, String orderRef) {
+        UserVoucher userVoucher = userVoucherRepository.findByOrderRef(orderRef)
+                .filter(uv -> uv.getUserId().equals(userId) && uv.getVoucher().getCode().equals(code))
+                .orElse(null);
+
+        if (userVoucher == null) {
+            return; // đơn này chưa đánh dấu (hoặc đã hoàn trước đó) thì thôi
+        }
+        Voucher voucher = userVoucher.getVoucher();
+
+        userVoucher.setUsed(false);
+        userVoucher.setOrderRef(null);
+        userVoucherRepository.save(userVoucher);
+
+        Integer used = voucher.getUsed() != null ? voucher.getUsed() : 0;
+        Integer quantity = voucher.getQuantity() != null ? voucher.getQuantity() : 0;
+        // voucher bị INACTIVE vì lượt dùng này chạm đúng quantity -> mở lại
+        if (voucher.getStatus() == Voucher.Status.INACTIVE && quantity > 0 && used.equals(quantity)) {
+            voucher.setStatus(Voucher.Status.ACTIVE);
+        }
+        voucher.setUsed(Math.max(0, used - 1));
+
+        voucherRepository.save(voucher);
+    }
+
     public List<VoucherResponse> getAvailableVouchers(String userId) {
     LocalDateTime now = LocalDateTime.now();
 